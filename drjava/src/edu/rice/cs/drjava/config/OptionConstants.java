@@ -1418,6 +1418,22 @@ public interface OptionConstants {
   public static final NonNegativeIntegerOption HISTORY_MAX_SIZE =
     new NonNegativeIntegerOption("history.max.size", Integer.valueOf(500));
   
+  /** Maximum number of characters retained in the Console and Interactions Pane; 0 for unlimited. */
+  public static final NonNegativeIntegerOption CONSOLE_MAX_LENGTH =
+    new NonNegativeIntegerOption("console.max.length", Integer.valueOf(2000000));
+  
+  /** Whether text trimmed from the Console and Interactions Pane is kept in a temporary file for "Save Copy". */
+  public static final BooleanOption CONSOLE_SPILL_TRIMMED =
+    new BooleanOption("console.spill.trimmed", Boolean.TRUE);
+  
+  /** Memory budget (in megabytes) for unmodified documents kept in memory; 0 selects a quarter of the heap. */
+  public static final NonNegativeIntegerOption DOCUMENT_CACHE_BUDGET =
+    new NonNegativeIntegerOption("document.cache.budget", Integer.valueOf(0));
+  
+  /** Whether to keep the text of documents kicked out of the document cache in compressed form. */
+  public static final BooleanOption DOCUMENT_CACHE_COMPRESS =
+    new BooleanOption("document.cache.compress", Boolean.TRUE);
+  
   /** Number of files to list in the recent file list */
   public static final NonNegativeIntegerOption RECENT_FILES_MAX_SIZE =
     new NonNegativeIntegerOption("recent.files.max.size", Integer.valueOf(5));
@@ -1479,6 +1495,11 @@ public interface OptionConstants {
   public static final BooleanOption SHOW_PATH_WARNINGS = 
     new BooleanOption("show.path.warnings", Boolean.FALSE);
   
+  /** Whether to recompile only the changed sources (and the sources depending on them) when compiling into a build
+    * directory. */
+  public static final BooleanOption INCREMENTAL_COMPILATION = 
+    new BooleanOption("incremental.compilation", Boolean.TRUE);
+  
   /** Default compiler to use
     * Stores the name of the compiler to use, set by changing the selection in
     * the ForcedChoiceOption created by COMPILER_PREFERENCE_CONTROL.evaluate()
@@ -1656,6 +1677,10 @@ public interface OptionConstants {
   public static final ForcedChoiceOption SLAVE_JVM_XMX =
     new ForcedChoiceOption("slave.jvm.xmx", "default", heapSizeChoices);
   
+  /** Whether to keep a spare Interactions JVM started, so that resetting the Interactions Pane does not wait for a
+    * new JVM to start. */
+  public static final BooleanOption INTERACTIONS_SPARE_JVM = new BooleanOption("interactions.spare.jvm", Boolean.TRUE);
+  
   /** The last state of the "Clipboard History" dialog. */
   public static final StringOption DIALOG_CLIPBOARD_HISTORY_STATE = new StringOption("dialog.clipboard.history.state", "default");
   
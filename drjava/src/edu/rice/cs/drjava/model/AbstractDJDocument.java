@@ -56,17 +56,20 @@ import edu.rice.cs.util.text.SwingDocument;
 import java.awt.EventQueue;
 import java.util.ArrayList;
 import java.util.Set;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.SortedMap;
 import java.util.StringTokenizer;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.ProgressMonitor;
 import javax.swing.text.AbstractDocument;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
 import javax.swing.text.Position;
 
 import static edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelStates.*;
@@ -99,14 +102,18 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   protected static final HashSet<String> _primTypes = _makePrimTypes();
   /** The default indent setting. */
   protected volatile int _indent = 2;
-  /** Initial number of elements in _queryCache (see below). */
-  private static final int INIT_CACHE_SIZE = 0x10000;  // 16**4 = 16384 
+  /** Maximum number of answers retained in _queryCache (see below). */
+  public static final int QUERY_CACHE_CAPACITY = 0x4000;  // 16**3 * 4 = 16384
   /** Constant specifying how large pos must be before incremental analysis is applied in posInBlockComment */
   public static final int POS_THRESHOLD = 10000; 
 //  /** Constant specifying how large pos must be before incremental analysis is applied in posInParenPhrase */
 //  public static final int POS_THRESHOLD = 10000; 
   /** The set of closing braces recognized in most indenting operations. */ 
   public static final char[] CLOSING_BRACES = {'}', ')'};
+  /** Minimum size of a block (in chars) for which _indentBlock computes indentation on worker threads. */
+  public static final int PARALLEL_INDENT_THRESHOLD = 0x10000;  // 64K
+  /** Minimum size of a block segment handed to a single worker thread by _indentBlockInParallel. */
+  public static final int PARALLEL_INDENT_SEGMENT_SIZE = 0x2000;  // 8K
   
   /*-------- FIELDS ----------*/
   
@@ -120,15 +127,14 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * purposes. */
   protected volatile int _currentLocation = 0;
   
-  /* The fields _queryCache, _offsetToQueries, and _cacheModified function as an extension of the reduced model. 
-   * When enabled in blockIndent, this data structure caches calls to the reduced model to speed up indent performance.
-   * Must be cleared every time the document is changed.  Use by calling _checkCache, _storeInCache, and _clearCache.
-   * When _queryCache = null, the cache is disabled.
+  /* The field _queryCache functions as an extension of the reduced model.  It caches calls to the reduced model across
+   * edits to speed up indenting and other structural queries.  It must be selectively cleared every time the document
+   * is changed, which the insert and remove commands do.  Use by calling _checkCache, _storeInCache, and _clearCache.
    */
-  private volatile HashMap<Query, Object> _queryCache;
+  private final QueryCache _queryCache = new QueryCache(QUERY_CACHE_CAPACITY);
   
-  /** Records the set of queries (as a list) for each offset. */
-  private volatile SortedMap<Integer, List<Query>> _offsetToQueries;
+  /* The highlight spans of recently painted lines.  Like _queryCache, it is selectively cleared by _clearCache. */
+  private final HighlightSpanCache _highlightCache = new HighlightSpanCache();
   
   /** The instance of the indent decision tree used by Definitions documents. */
   private volatile Indenter _indenter;
@@ -152,11 +158,16 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * interactions documents. 
     * @param indenter the indenter to use for this document
     */
-  protected AbstractDJDocument(Indenter indenter) { 
+  protected AbstractDJDocument(Indenter indenter) { this(indenter, true); }
+  
+  /** Constructor used to build a new document with an existing indenter.
+    * @param indenter the indenter to use for this document
+    * @param listen whether to rebuild the indenter when the indentation options change; a scratch document borrows
+    *        the indenter of a document that already does so
+    */
+  private AbstractDJDocument(Indenter indenter, boolean listen) { 
     _indenter = indenter;
-    _queryCache = null;
-    _offsetToQueries = null;
-    _initNewIndenter();
+    if (listen) _initNewIndenter();
 //     System.err.println("AbstractDJDocument constructor with indent level " + indenter.getIndentLevel() 
 //    + " invoked on " + this);
   }
@@ -168,6 +179,12 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   private Indenter getIndenter() { return _indenter; }
   
+  /** Determines whether the calling thread may access this document.  Documents are confined to the event thread, 
+    * except scratch documents which are confined to the thread that created them.
+    * @return true if the calling thread is the thread this document is confined to
+    */
+  protected boolean _inDocumentThread() { return EventQueue.isDispatchThread(); }
+  
   /** Get the indent level.
     * @return the indent level
     */
@@ -228,6 +245,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   public void setKeywords(Set<String> keywords) {
     _keywords.clear();
     _keywords.addAll(keywords);
+    _highlightCache.clear();
   }
   
   /** Create a set of Java/GJ primitive types for special coloring.
@@ -247,7 +265,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   public ArrayList<HighlightStatus> getHighlightStatus(int start, int end) {
     
-    assert EventQueue.isDispatchThread();
+    assert _inDocumentThread();
     
     if (start == end) return new ArrayList<HighlightStatus>(0);
     ArrayList<HighlightStatus> v;
@@ -270,6 +288,22 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     return v;
   }
   
+  /** Returns the highlight spans of the line containing pos.  The spans are served from a per-line cache, so repeated
+    * calls for an unchanged line neither move _currentLocation nor allocate.  ONLY runs in the event thread.
+    * @param pos an offset in the document
+    * @return the highlight spans of the line containing pos; valid until the document is next queried or modified
+    */
+  public HighlightSpanCache.LineSpans getHighlightSpans(int pos) {
+    Element root = getDefaultRootElement();
+    int line = root.getElementIndex(pos);
+    Element elt = root.getElement(line);
+    int start = elt.getStartOffset();
+    int end = Math.min(elt.getEndOffset(), getLength());  // the last line ends past the end of the document
+    HighlightSpanCache.LineSpans spans = _highlightCache.get(line, start, end);
+    if (spans == null) spans = _highlightCache.put(line, start, end, getHighlightStatus(start, end));
+    return spans;
+  }
+  
   /** Distinguishes keywords from normal text in the given HighlightStatus element. Specifically, it looks to see
     * if the given text contains a keyword. If it does, it splits the HighlightStatus block into separate blocks
     * so that each keyword has its own block. This process identifies all keywords in the given block.
@@ -464,7 +498,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   /** Add a character to the underlying reduced model. ASSUMEs _reduced lock is already held!
     * @param curChar the character to be added. */
   private void _addCharToReducedModel(char curChar) {
-//    _clearCache(_currentLocation);  // redundant; already done in insertUpdate
+//    _clearCache(_currentLocation);  // redundant; already done in InsertCommand
     _reduced.insertChar(curChar);
   }
   
@@ -552,7 +586,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   
   /** Assumes that read lock and reduced lock are already held. */
   public ReducedModelState getStateAtCurrent() { 
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     return _reduced.getStateAtCurrent(); 
   }
   
@@ -645,7 +679,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * @return position of enclosing brace, or ERROR_INDEX (-1) if beginning of document is reached.
     */
   public int findNextEnclosingBrace(final int pos, final char opening, final char closing) throws BadLocationException {
-    assert EventQueue.isDispatchThread();
+    assert _inDocumentThread();
     
     // Check cache
     final Query key = new Query.NextEnclosingBrace(pos, opening, closing);
@@ -692,7 +726,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     
     setCurrentLocation(origPos);    // Restore the state of the reduced model;
     
-    if (i == text.length()) reducedPos = -1; // No matching char was found
+    if (i == text.length()) {  // No matching char was found; the answer depends on the rest of the document
+      _storeInCache(key, -1, Integer.MAX_VALUE);
+      return -1;
+    }
     _storeInCache(key, reducedPos, reducedPos);
     // Return position of matching char or ERROR_INDEX (-1)     
     return reducedPos;  
@@ -721,7 +758,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   public int findPrevDelimiter(final int pos, final char[] delims, final boolean skipBracePhrases)
     throws BadLocationException {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     // Check cache
     final Query key = new Query.PrevDelimiter(pos, delims, skipBracePhrases);
@@ -812,7 +849,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   public boolean findCharInStmtBeforePos(char findChar, int position) {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     if (position == -1) {
       String msg = 
@@ -860,7 +897,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   public int _findPrevCharPos(final int pos, final char[] whitespace) throws BadLocationException {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     // Check cache
     final Query key = new Query.PrevCharPos(pos, whitespace);
@@ -925,10 +962,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    * @param key Name of the method and arguments
    * @return the object in the cache associated with key; null if not in the cache.
    */
-  protected Object _checkCache(final Query key) {
-    if (_queryCache == null) return null;
-    return _queryCache.get(key); 
-  }
+  protected Object _checkCache(final Query key) { return _queryCache.get(key); }
   
   /** Stores the given result in the helper method cache. 
    * Query classes define equality structurally.
@@ -940,51 +974,31 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    *                unchanged, the query should return the same answer.
    */
   protected void _storeInCache(final Query query, final Object answer, final int offset) {
-    if (_queryCache == null) return;
-    _queryCache.put(query, answer);
-    _addToOffsetsToQueries(query, offset);
+    _queryCache.put(query, answer, offset);
   }
   
   /** Clears the memozing cache of queries with offset {@literal >=} than 
-   * specified value.  Should be called every time the document is modified. 
+   * specified value, and the highlight spans of the lines reaching that offset.  Should be called every time the
+   * document is modified. 
    * @param offset the offset beyond which to clear
    */
   protected void _clearCache(int offset) {
-    if (_queryCache == null) return;
-    
-    if (offset <= 0) {
-      _queryCache.clear();
-      _offsetToQueries.clear();
-      return;
-    }
-    // The Integer[] copy of the key set is required to avoid ConcurrentModifiationExceptions.  Ugh!
-    Integer[] deadOffsets = _offsetToQueries.tailMap(offset).keySet().toArray(new Integer[0]);
-    for (int i: deadOffsets) {
-      for (Query query: _offsetToQueries.get(i)) _queryCache.remove(query);  // remove query entry from cache
-      _offsetToQueries.remove(i);   // remove query bucket for i from offsetToQueries table
-    }
+    _queryCache.clear(offset);
+    _highlightCache.invalidate(offset);
   }
   
-  /** Add {@literal <query,offset>} pair to _offsetToQueries map. 
-   * Assumes lock on _queryCache is already held.
-   * @param query the query
-   * @param offset the offset
-   */
-  private void _addToOffsetsToQueries(final Query query, final int offset) {
-    List<Query> selectedQueries = _offsetToQueries.get(offset);
-    if (selectedQueries == null) {
-      selectedQueries = new LinkedList<Query>();
-      _offsetToQueries.put(offset, selectedQueries);
-    }
-    selectedQueries.add(query);
-  }
+  /** @return the number of lines currently held in the highlight span cache; used for testing. */
+  int _getHighlightCacheSize() { return _highlightCache.size(); }
+  
+  /** @return the number of answers currently held in the query cache; used for testing. */
+  int _getQueryCacheSize() { return _queryCache.size(); }
   
   /** Default indentation - uses OTHER flag and no progress indicator.  Assume write lock is already held.
     * @param selStart the offset of the initial character of the region to indent
     * @param selEnd the offset of the last character of the region to indent
     */
   public void indentLines(int selStart, int selEnd) {
-    assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    assert Utilities.TEST_MODE || _inDocumentThread();
     try { indentLines(selStart, selEnd, Indenter.IndentReason.OTHER, null); }
     catch (OperationCanceledException oce) {
       // Indenting without a ProgressMonitor should never be cancelled!
@@ -1004,7 +1018,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   public void indentLines(int selStart, int selEnd, Indenter.IndentReason reason, ProgressMonitor pm)
     throws OperationCanceledException {
     
-    assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    assert Utilities.TEST_MODE || _inDocumentThread();
     
     // Begins a compound edit.
     // int key = startCompoundEdit(); // commented out in connection with the FrenchKeyBoard Fix
@@ -1046,9 +1060,25 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   private void _indentBlock(final int start, final int end, Indenter.IndentReason reason, ProgressMonitor pm)
     throws OperationCanceledException, BadLocationException {
     
-    // Set up the query cache;
-    _queryCache = new HashMap<Query, Object>(INIT_CACHE_SIZE);
-    _offsetToQueries = new TreeMap<Integer, List<Query>>();
+    if (reason == Indenter.IndentReason.OTHER && end - start >= PARALLEL_INDENT_THRESHOLD && 
+        Runtime.getRuntime().availableProcessors() > 1) {
+      _indentBlockInParallel(start, end, pm);
+    }
+    else _indentBlockSequentially(start, end, reason, pm);
+  }
+  
+  /** Indents the lines between and including the lines containing points start and end one line at a time.  Only 
+    * runs in event thread (or in a thread confined scratch document).
+    * @param start Position in document to start indenting from
+    * @param end Position in document to end indenting at
+    * @param reason a flag from {@link Indenter} to indicate the reason for the indent
+    * @param pm used to display progress, null if no reporting is desired
+    * @throws OperationCanceledException if the operation was canceled
+    * @throws BadLocationException if attempts to reference an invalid location
+    */
+  private void _indentBlockSequentially(final int start, final int end, Indenter.IndentReason reason, 
+                                        ProgressMonitor pm)
+    throws OperationCanceledException, BadLocationException {
     
     // Keep marker at the end. This Position will be the correct endpoint no matter how we change 
     // the doc doing the indentLine calls.
@@ -1076,10 +1106,177 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       // location yet. That happens at the top of the loop, after we check if we're past the end. 
       walker += _reduced.getDistToNextNewline() + 1;
     }
+  }
+  
+  /** Indents a large block by splitting it into segments at top-level statement and member boundaries (line starts
+    * that follow a ';' or '}' outside of any brace, or inside the body of a top-level class only, and outside of any
+    * comment or quotation) and computing the indentation of each segment in a thread confined scratch document on a
+    * shared worker thread.  The text of such a segment is tokenized identically in isolation, and the indentation 
+    * rules only consult text preceding the segment when indenting its first line; a segment of members is preceded
+    * by a lone "{" line in its scratch document, standing in for the unindented line that opens the class body.
+    * Hence the first line of each segment is indented in place (in document order) and compared with the scratch
+    * result; if they agree the remaining lines are copied from the scratch result, otherwise the segment is indented
+    * sequentially.  The first segment, which depends on the text preceding start, is always indented sequentially.
+    * Only runs in the event thread.
+    * @param start Position in document to start indenting from
+    * @param end Position in document to end indenting at
+    * @param pm used to display progress, null if no reporting is desired
+    * @throws OperationCanceledException if the operation was canceled
+    * @throws BadLocationException if attempts to reference an invalid location
+    */
+  private void _indentBlockInParallel(final int start, final int end, ProgressMonitor pm)
+    throws OperationCanceledException, BadLocationException {
     
-    // disable the query cache
-    _queryCache = null;
-    _offsetToQueries = null;
+    final int blockStart = _getLineStartPos(start);
+    final int blockEnd = _getLineEndPos(end);
+    final String text = getText(0, blockEnd);
+    
+    // Find the segment boundaries by tracking the brace nesting of the normal (uncommented, unquoted) text
+    setCurrentLocation(0);
+    final ArrayList<HighlightStatus> status = _reduced.getHighlightStatus(0, blockEnd);
+    final ArrayList<Integer> bounds = new ArrayList<Integer>();
+    final ArrayList<String> prefixes = new ArrayList<String>();
+    bounds.add(blockStart);
+    prefixes.add("");
+    final StringBuilder openBraces = new StringBuilder();
+    char lastSignificant = ';';
+    for (HighlightStatus hs: status) {
+      if (hs.getState() != HighlightStatus.NORMAL) continue;
+      final int hsEnd = Math.min(hs.getLocation() + hs.getLength(), blockEnd);
+      for (int i = hs.getLocation(); i < hsEnd; i++) {
+        final char ch = text.charAt(i);
+        switch (ch) {
+          case '{': case '(': case '[': 
+            openBraces.append(ch); 
+            break;
+          case '}': case ')': case ']':
+            final int top = openBraces.length() - 1;
+            final char opening = (ch == '}') ? '{' : (ch == ')') ? '(' : '[';
+            if (top < 0 || openBraces.charAt(top) != opening) {  // unbalanced text; boundaries cannot be trusted
+              _indentBlockSequentially(start, end, Indenter.IndentReason.OTHER, pm);
+              return;
+            }
+            openBraces.setLength(top);
+            break;
+          case newline:
+            final int next = i + 1;
+            final int depth = openBraces.length();
+            if ((depth == 0 || (depth == 1 && openBraces.charAt(0) == '{')) && 
+                (lastSignificant == ';' || lastSignificant == '}') && next < end && 
+                next - bounds.get(bounds.size() - 1) >= PARALLEL_INDENT_SEGMENT_SIZE) {
+              bounds.add(next);
+              prefixes.add(depth == 0 ? "" : "{\n");
+            }
+            break;
+        }
+        if (! Character.isWhitespace(ch)) lastSignificant = ch;
+      }
+    }
+    
+    final int numSegments = bounds.size();
+    if (numSegments < 3) {  // at most one segment could be indented off the event thread
+      _indentBlockSequentially(start, end, Indenter.IndentReason.OTHER, pm);
+      return;
+    }
+    bounds.add(blockEnd);
+    
+    // Segment 0 is indented in place, so the remaining segments are submitted to the pool
+    final ArrayList<String> segments = new ArrayList<String>(numSegments);
+    final ArrayList<Future<String>> results = new ArrayList<Future<String>>(numSegments);
+    try {
+      final Position[] marks = new Position[numSegments + 1];
+      for (int k = 0; k <= numSegments; k++) marks[k] = createUnwrappedPosition(bounds.get(k));
+      for (int k = 1; k < numSegments; k++) {
+        final int segStart = bounds.get(k);
+        final String segment = text.substring(segStart, bounds.get(k + 1));
+        final String prefix = prefixes.get(k);
+        final int limit = Math.min(bounds.get(k + 1), end) - segStart;
+        segments.add(segment);
+        results.add(IndentWorkers.POOL.submit(new Callable<String>() {
+          public String call() throws Exception { 
+            final String indented = _indentInScratchDocument(prefix + segment, prefix.length() + limit);
+            return (prefix.length() == 0) ? indented : indented.substring(indented.indexOf(newline) + 1);
+          }
+        }));
+      }
+      
+      _indentBlockSequentially(start, marks[1].getOffset(), Indenter.IndentReason.OTHER, pm);
+      
+      for (int k = 1; k < numSegments; k++) {
+        final String indented;
+        try { indented = results.get(k - 1).get(); }
+        catch (InterruptedException e) { throw new UnexpectedException(e); }
+        catch (ExecutionException e) { throw new UnexpectedException(e.getCause()); }
+        _applyIndentedSegment(marks[k], marks[k + 1], segments.get(k - 1), indented, pm);
+      }
+    }
+    finally { for (Future<String> r: results) r.cancel(true); }  // abandons the remaining work on cancellation
+  }
+  
+  /** Indents the given text as a document of its own.  Runs in a worker thread of _indentBlockInParallel.
+    * @param text the text of a block segment
+    * @param limit the offset in text at which indenting stops
+    * @return the indented text
+    */
+  private String _indentInScratchDocument(String text, int limit) 
+    throws OperationCanceledException, BadLocationException {
+    final AbstractDJDocument doc = new ScratchDocument(getIndenter());
+    doc.insertString(0, text, null);
+    doc._indentBlockSequentially(0, limit, Indenter.IndentReason.OTHER, null);
+    return doc.getText();
+  }
+  
+  /** Replaces the segment of this document beginning at segStart by the indented text computed by 
+    * _indentInScratchDocument, changing only the lines that differ.  Falls back on sequential indentation if the 
+    * in-place indentation of the first line of the segment disagrees with the indented text.  Only runs in the event
+    * thread.
+    * @param segStart the start of the segment in this document
+    * @param segEnd the end of the segment in this document
+    * @param original the text of the segment before indentation
+    * @param indented the text of the segment after indentation
+    * @param pm used to display progress, null if no reporting is desired
+    * @throws OperationCanceledException if the operation was canceled
+    * @throws BadLocationException if attempts to reference an invalid location
+    */
+  private void _applyIndentedSegment(Position segStart, Position segEnd, String original, String indented, 
+                                     ProgressMonitor pm) 
+    throws OperationCanceledException, BadLocationException {
+    
+    final String[] oldLines = original.split("\n", -1);
+    final String[] newLines = indented.split("\n", -1);
+    
+    int lineStart = segStart.getOffset();
+    setCurrentLocation(lineStart);
+    _indentLine(Indenter.IndentReason.OTHER);
+    final int firstLineEnd = _getLineEndPos(lineStart);
+    if (oldLines.length != newLines.length || ! newLines[0].equals(getText(lineStart, firstLineEnd - lineStart))) {
+      _indentBlockSequentially(firstLineEnd + 1, segEnd.getOffset(), Indenter.IndentReason.OTHER, pm);
+      return;
+    }
+    
+    for (int j = 1; j < newLines.length; j++) {
+      lineStart += newLines[j - 1].length() + 1;
+      final String oldLine = oldLines[j];
+      final String newLine = newLines[j];
+      if (oldLine.equals(newLine)) continue;
+      // Replace the differing middle of the line, which is normally its leading whitespace
+      final int oldLen = oldLine.length();
+      final int newLen = newLine.length();
+      final int minLen = Math.min(oldLen, newLen);
+      int prefix = 0;
+      while (prefix < minLen && oldLine.charAt(prefix) == newLine.charAt(prefix)) prefix++;
+      int suffix = 0;
+      while (suffix < minLen - prefix && oldLine.charAt(oldLen - 1 - suffix) == newLine.charAt(newLen - 1 - suffix)) {
+        suffix++;
+      }
+      if (oldLen - prefix - suffix > 0) remove(lineStart + prefix, oldLen - prefix - suffix);
+      if (newLen - prefix - suffix > 0) insertString(lineStart + prefix, newLine.substring(prefix, newLen - suffix), null);
+    }
+    
+    if (pm != null) {
+      pm.setProgress(segEnd.getOffset());
+      if (pm.isCanceled()) throw new OperationCanceledException();
+    }
   }
   
   /** Indents a line using the Indenter.  Public ONLY for testing purposes. 
@@ -1094,7 +1291,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * @param currPos A position on the current line
     */
   public int getIntelligentBeginLinePos(int currPos) throws BadLocationException {
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     String prefix;
     int firstChar;
@@ -1143,7 +1340,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * @param whitespace  characters to skip when looking for beginning of next statement
     */
   public int _getIndentOfCurrStmt(final int pos, final char[] delims, final char[] whitespace)  {
-    assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    assert Utilities.TEST_MODE || _inDocumentThread();
     
     try {
       // Check cache
@@ -1210,7 +1407,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   public int findCharOnLine(final int pos, final char findChar) {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();  // violated in some unit tests
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();  // violated in some unit tests
     
     // Check cache
     final Query key = new Query.CharOnLine(pos, findChar);
@@ -1243,8 +1440,11 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       }
       setCurrentLocation(oldPos);  // restore old position
       
-      if (i == -1) matchIndex = -1;
-      _storeInCache(key, matchIndex, Math.max(pos - 1, matchIndex));
+      if (i == -1) {  // No valid match; the answer depends on the entire line
+        matchIndex = -1;
+        _storeInCache(key, matchIndex, Math.max(pos - 1, lineEnd));
+      }
+      else _storeInCache(key, matchIndex, Math.max(pos - 1, matchIndex));
     }
     catch (BadLocationException e) { throw new UnexpectedException(e); }
     
@@ -1258,7 +1458,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   public int _getLineStartPos(final int pos) {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     if (pos < 0 || pos > getLength()) return -1;
     // Check cache
@@ -1283,7 +1483,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   public int _getLineEndPos(final int pos) {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     if (pos < 0 || pos > getLength()) return -1;
     
@@ -1314,7 +1514,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   public int _getLineFirstCharPos(final int pos) {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     // Check cache
     final Query key = new Query.LineFirstCharPos(pos);
@@ -1373,7 +1573,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   public int getFirstNonWSCharPos(final int pos, final char[] whitespace, final boolean acceptComments) throws 
     BadLocationException {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     // Check cache
     final Query key = new Query.FirstNonWSCharPos(pos, whitespace, acceptComments);
@@ -1485,7 +1685,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   public boolean _inParenPhrase(final int pos) {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     // Check cache
     final Query key = new Query.PosInParenPhrase(pos);
@@ -1510,7 +1710,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   public BraceInfo _getLineEnclosingBrace() {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     // Check cache
     final int lineStart = _getLineStartPos(_currentLocation);
@@ -1650,7 +1850,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   private boolean onlySpacesBeforeCurrent() throws BadLocationException{
     
-    assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    assert Utilities.TEST_MODE || _inDocumentThread();
     
     int lineStart = _getLineStartPos(_currentLocation);
     if (lineStart < 0) lineStart = 0;    // _currentLocation on first line
@@ -1674,7 +1874,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   private int _getWhiteSpace() throws BadLocationException {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     int lineEnd = _getLineEndPos(_currentLocation);  // index of next '\n' char or end of document
     int lineLen = lineEnd - _currentLocation;
@@ -1697,7 +1897,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     
 //    System.err.println("lockState = " + _lockState);
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     int lineStart = _getLineStartPos(_currentLocation);
     if (lineStart < 0) lineStart = 0;    // _currentLocation on first line
@@ -1723,7 +1923,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   public void setTab(int tab, int pos) {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     try {
       int startPos = _getLineStartPos(pos);
@@ -1754,7 +1954,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   public void setTab(String tab, int pos) {
     
-    /* */ assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    /* */ assert Utilities.TEST_MODE || _inDocumentThread();
     
     try {
       int startPos = _getLineStartPos(pos);
@@ -1787,7 +1987,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   protected void insertUpdate(AbstractDocument.DefaultDocumentEvent chng, AttributeSet attr) {
     
-    assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    assert Utilities.TEST_MODE || _inDocumentThread();
     
     super.insertUpdate(chng, attr);
     
@@ -1796,8 +1996,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final int length = chng.getLength();
       final String str = getText(offset, length);
       
-      if (length > 0) _clearCache(offset);    // Selectively clear the query cache
-      
       Runnable doCommand = 
         (length == 1) ? new CharInsertCommand(offset, str.charAt(0)) : new InsertCommand(offset, str);
       RemoveCommand undoCommand = new UninsertCommand(offset, length, str);
@@ -1824,7 +2022,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    */
   protected void removeUpdate(AbstractDocument.DefaultDocumentEvent chng) {
     
-    assert Utilities.TEST_MODE || EventQueue.isDispatchThread();
+    assert Utilities.TEST_MODE || _inDocumentThread();
     
     try {
       final int offset = chng.getOffset();
@@ -1833,8 +2031,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final String removedText = getText(offset, length);
       super.removeUpdate(chng);
       
-      if (length > 0) _clearCache(offset);  // Selectively clear the query cache
-      
       Runnable doCommand = new RemoveCommand(offset, length, removedText);
       Runnable undoCommand = new UnremoveCommand(offset, removedText);
       
@@ -1924,9 +2120,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _text = text;
     }
     
-    /** Inserts chars in reduced model and moves location to end of insert; cache has already been cleared. */
+    /** Selectively clears the query cache, inserts chars in reduced model and moves location to end of insert. */
     public void run() {
       
+      _clearCache(_offset);
       _reduced.move(_offset - _currentLocation);  
       int len = _text.length();
       // Record any change to line numbering
@@ -1964,9 +2161,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _ch = ch;
     }
     
-    /** Inserts chars in reduced model and moves location to end of insert; cache has already been cleared. */
+    /** Selectively clears the query cache, inserts chars in reduced model and moves location to end of insert. */
     public void run() {
       
+      _clearCache(_offset);
       _reduced.move(_offset - _currentLocation);  
       if (_ch == newline) _numLinesChanged(_offset);  // record change to line numbering
       _addCharToReducedModel(_ch);
@@ -1986,8 +2184,9 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _removedText = removedText;
     }
     
-    /** Removes chars from reduced model; cache has already been selectively cleared. */
+    /** Selectively clears the query cache and removes chars from reduced model. */
     public void run() {
+      _clearCache(_offset);
       setCurrentLocation(_offset);
       if (_removedText.indexOf(newline) >= 0) _numLinesChanged(_offset);  // record change to line numbering
       _reduced.delete(_length);    
@@ -2000,4 +2199,33 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     public UninsertCommand(final int offset, final int length, String text) { super(offset, length, text); }
     public void run() { super.run(); }
   }
+  
+  /** Holds the worker threads shared by all invocations of _indentBlockInParallel, which are created on first use. */
+  private static class IndentWorkers {
+    static final ExecutorService POOL = 
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private final AtomicInteger _count = new AtomicInteger();
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "Indent Worker " + _count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+  }
+  
+  /** A thread confined document without undo support used by _indentBlockInParallel to indent a block segment off the
+    * event thread.
+    */
+  private static class ScratchDocument extends AbstractDJDocument {
+    private final Thread _owner = Thread.currentThread();
+    ScratchDocument(Indenter indenter) { super(indenter, false); }
+    protected boolean _inDocumentThread() { return Thread.currentThread() == _owner; }
+    protected int startCompoundEdit() { return 0; /* Do nothing. */ }
+    protected void endCompoundEdit(int key) { /* Do nothing. */ }
+    protected void endLastCompoundEdit() { /* Do nothing. */ }
+    protected void addUndoRedo(AbstractDocument.DefaultDocumentEvent chng, Runnable undoCommand, Runnable doCommand) {
+      /* Do nothing. */ 
+    }
+    protected void _styleChanged() { /* Do nothing. */ }
+  }
 }
@@ -91,6 +91,7 @@ import edu.rice.cs.drjava.config.OptionListener;
 import edu.rice.cs.drjava.model.cache.DCacheAdapter;
 import edu.rice.cs.drjava.model.cache.DDReconstructor;
 import edu.rice.cs.drjava.model.cache.DocumentCache ;
+import edu.rice.cs.drjava.model.cache.DocumentImage;
 import edu.rice.cs.drjava.model.compiler.CompilerModel;
 import edu.rice.cs.drjava.model.debug.Breakpoint;
 import edu.rice.cs.drjava.model.debug.DebugBreakpointData;
@@ -154,6 +155,7 @@ import edu.rice.cs.util.swing.DocumentIterator;
 import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.util.text.AbstractDocumentInterface;
 import edu.rice.cs.util.text.ConsoleDocument;
+import edu.rice.cs.util.text.ConsoleOutputBatcher;
 import edu.rice.cs.util.text.EditDocumentInterface;
 
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
@@ -198,6 +200,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
   /** The document used to display System.out and System.err, and to read from System.in. */
   protected final ConsoleDocument _consoleDoc;
   
+  /** Appends printed text to _consoleDoc in batches. */
+  private final ConsoleOutputBatcher _consoleOutput;
+  
   /** The document adapter used in the console document. */
   protected final InteractionsDJDocument _consoleDocAdapter;
   
@@ -288,6 +293,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     
     _consoleDocAdapter = new InteractionsDJDocument(_notifier);
     _consoleDoc = new ConsoleDocument(_consoleDocAdapter);
+    _consoleOutput = new ConsoleOutputBatcher(_consoleDoc);
     
     _bookmarkManager = new ConcreteRegionManager<MovingDocumentRegion>();
     _findResultsManagers = new LinkedList<RegionManager<MovingDocumentRegion>>();
@@ -368,6 +374,27 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     };
     DrJava.getConfig().addOptionListener(BROWSER_HISTORY_MAX_SIZE, browserHistoryMaxSizeListener);
     getBrowserHistoryManager().setMaximumSize(DrJava.getConfig().getSetting(BROWSER_HISTORY_MAX_SIZE).intValue());
+    
+    // setup option listeners for the size of the console
+    OptionListener<Integer> consoleMaxLengthListener = new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) { _consoleDoc.setMaxLength(oce.value); }
+    };
+    DrJava.getConfig().addOptionListener(CONSOLE_MAX_LENGTH, consoleMaxLengthListener);
+    _consoleDoc.setMaxLength(DrJava.getConfig().getSetting(CONSOLE_MAX_LENGTH).intValue());
+    OptionListener<Boolean> consoleSpillListener = new OptionListener<Boolean>() {
+      public void optionChanged(OptionEvent<Boolean> oce) { _consoleDoc.setSpillTrimmed(oce.value); }
+    };
+    DrJava.getConfig().addOptionListener(CONSOLE_SPILL_TRIMMED, consoleSpillListener);
+    _consoleDoc.setSpillTrimmed(DrJava.getConfig().getSetting(CONSOLE_SPILL_TRIMMED).booleanValue());
+    
+    // setup option listener for the memory budget of the document cache
+    OptionListener<Integer> documentCacheBudgetListener = new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) {
+        _cache.setMemoryBudget(((long) oce.value.intValue()) << 20);
+      }
+    };
+    DrJava.getConfig().addOptionListener(DOCUMENT_CACHE_BUDGET, documentCacheBudgetListener);
+    _cache.setMemoryBudget(((long) DrJava.getConfig().getSetting(DOCUMENT_CACHE_BUDGET).intValue()) << 20);
   }
   
   // ----- STATE -----
@@ -2265,6 +2292,21 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
    */
   public boolean isAlreadyOpen(File file) { return (_getOpenDocument(file) != null); }
   
+  /** Asks the document cache to reconstruct the documents of the given files in the background.  Files that are not 
+    * open are ignored.
+    * @param files the files whose documents are likely to be needed soon, most likely last
+    */
+  public void prefetchDocuments(Iterable<File> files) {
+    for (File f: files) _prefetchDocument(_getOpenDocument(f));
+  }
+  
+  /** Asks the document cache to reconstruct the given document in the background.
+    * @param doc the document to prefetch; may be null
+    */
+  private void _prefetchDocument(OpenDefinitionsDocument doc) {
+    if (doc instanceof ConcreteOpenDefDoc) ((ConcreteOpenDefDoc) doc).prefetchDocument();
+  }
+  
   /** Returns the OpenDefinitionsDocument corresponding to the INavigatorItem/DefinitionsDocument passed in.
     * @param doc the searched for Document
     * @return its corresponding OpenDefinitionsDocument
@@ -2302,6 +2344,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     if (nextdoc == doc) nextdoc = _documentNavigator.getFirst();  // wrap around if necessary
     OpenDefinitionsDocument res = getNextDocHelper(nextdoc, frame);
 //      Utilities.showDebug("nextDocument(" + d + ") = " + res);
+    if (res != null) _prefetchDocument(_documentNavigator.getNext(res));  // the user is likely to keep going
     return res;
 //    }
 //    catch(DocumentClosedException dce) { return getNextDocument(nextdoc); }
@@ -2334,7 +2377,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     OpenDefinitionsDocument doc = getODDForDocument(d);
     prevdoc = _documentNavigator.getPrevious(doc);
     if (prevdoc == doc) prevdoc = _documentNavigator.getLast(); // wrap around if necessary
-    return getPrevDocHelper(prevdoc);
+    OpenDefinitionsDocument res = getPrevDocHelper(prevdoc);
+    if (res != null) _prefetchDocument(_documentNavigator.getPrevious(res));  // the user is likely to keep going
+    return res;
 //    }
 //    catch(DocumentClosedException dce) { return getPrevDocument(prevdoc); }
   }
@@ -2517,14 +2562,19 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     });
   }
   
-  /** Appends a string to the given document using a particular attribute set (identified by a String key). Also waits
-    * for a small amount of time (InteractionsModel.WRITE_DELAY) to prevent any one writer from flooding the model with
-    * print calls to the point where the user interface could become unresponsive.  Only runs in event thread.
+  /** Appends a string to the given document using a particular attribute set (identified by a String key).  Text for
+    * the console document is appended in batches (see ConsoleOutputBatcher), which prevents any one writer from
+    * flooding the event queue with print calls to the point where the user interface could become unresponsive.  Can
+    * safely be run outside the event thread.
     * @param doc Document to append to
     * @param s String to append to the end of the document
     * @param style the style to print with
     */
   protected void _docAppend(final ConsoleDocument doc, final String s, final String style) {
+    if (doc == _consoleDoc) {
+      _consoleOutput.print(s, style);
+      return;
+    }
     Utilities.invokeLater(new Runnable() {
       public void run() { doc.insertBeforeLastPrompt(s, style); }
     });
@@ -2730,8 +2780,8 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     
 //     private boolean _modifiedSinceSave;
     
-    /** Cached String image of document as last read from or written to disk; initially null */
-    private volatile String _image;
+    /** Cached image of document as last read from or written to disk; initially null */
+    private volatile DocumentImage _image;
     private volatile File _file;
     private volatile long _timestamp;
     
@@ -3069,6 +3119,13 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
 //      catch(DocumentFileClosed e) { /* not clear what to do here */ }
     }
     
+    /** @param text the text of this document
+      * @return an image of text, which is compressed if DOCUMENT_CACHE_COMPRESS is set
+      */
+    private DocumentImage _makeImage(String text) {
+      return DocumentImage.make(text, DrJava.getConfig().getSetting(DOCUMENT_CACHE_COMPRESS).booleanValue());
+    }
+    
     /** @return a default DDReconstructor that will make the corresponding DefinitionsDocument. */
     protected DDReconstructor makeReconstructor() {
       return new DDReconstructor() {
@@ -3087,18 +3144,24 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
         
         // Returns the text for this document as a String; assert never returns null;
         public String getText() {
-          String image = _image;
-          if (image != null) return image;
+          final DocumentImage image = _image;
+          if (image != null) return image.getText();
           
           // Document has not yet been read from disk; read it and set _image before returning text.
           // Synchronization on this was eliminated because it does not prevent the returned string from becoming 
           // inconsistent with _doc/_file in the presence of huge scheduling delays.  Of course, all getText operations 
           // can return stale data in the presence of such delays. 
-          try { image = FileOps.readFileAsSwingText(_file); }
-          catch(IOException e) {  image = ""; }  
+          String text;
+          try { text = FileOps.readFileAsSwingText(_file); }
+          catch(IOException e) {  text = ""; }  
 //          System.err.println("Returning image '" + image + " for file " + _file);
-          _image = image;
-          return _image;
+          _image = _makeImage(text);
+          return text;
+        }
+        
+        public int getLength() {
+          final DocumentImage image = _image;
+          return (image != null) ? image.getLength() : getText().length();
         }
         
         public DefinitionsDocument make() throws IOException, BadLocationException, FileMovedException {
@@ -3114,7 +3177,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
           _editorKit.read(new StringReader(image), newDefDoc, 0);
           //  Set document property to write out document using newLine conventions of the host platform.
           newDefDoc.putProperty(DefaultEditorKit.EndOfLineStringProperty, StringOps.EOL);
-          _log.log("Reading from image for " + _file + " containing " + _image.length() + " chars");    
+          _log.log("Reading from image for " + _file + " containing " + image.length() + " chars");    
           
           _loc = Math.min(_loc, image.length()); // make sure not past end
           _loc = Math.max(_loc, 0); // make sure not less than 0
@@ -3151,7 +3214,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
           // Save document image.  Note: this could be optimized to eliminate redundant updates to _image
           String text = doc.getText();
           if (text.length() > 0) {
-            _image = text;  
+            _image = _makeImage(text);  
 //            _log.log("Saving image containing " + _image.length() + " chars for " + _file);
           }
           _loc = doc.getCurrentLocation();
@@ -3381,6 +3444,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     /** @return true if this document is resident in memory. _cacheAdapter should be non-null. */
     public boolean isReady() { return _cacheAdapter != null && _cacheAdapter.isReady(); }
     
+    /** Asks the document cache to reconstruct this document in the background if it is not resident. */
+    void prefetchDocument() { if (_cacheAdapter != null) _cache.prefetch(_cacheAdapter); }
+    
     /** Determines if the document has been modified since the last save.
       * @return true if the document has been modified
       */
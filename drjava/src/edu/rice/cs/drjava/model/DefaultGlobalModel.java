@@ -409,6 +409,14 @@ public class DefaultGlobalModel extends AbstractGlobalModel {
     setClassPathChanged(true);
   }
   
+  /** Updates the classpath state; a change also discards the state the compilers keep between compilations.
+    * @param changed true if the classpath has changed; false otherwise
+    */
+  public void setClassPathChanged(boolean changed) {
+    super.setClassPathChanged(changed);
+    if (changed && _compilerModel != null) _compilerModel.resetCompilerCaches();
+  }
+  
   // ----- METHODS -----
   
   /** @return the interactions model. */
@@ -805,6 +813,7 @@ public class DefaultGlobalModel extends AbstractGlobalModel {
     _debugger.addListener(new DebugListener() {
       public void watchSet(final DebugWatchData w) { setProjectChanged(true); }
       public void watchRemoved(final DebugWatchData w) { setProjectChanged(true); }    
+      public void watchUpdated(final DebugWatchData w) { }
       
       public void regionAdded(final Breakpoint bp) { }
       public void regionChanged(final Breakpoint bp) { }
@@ -539,6 +539,8 @@ public class DummyGlobalModel implements GlobalModel {
     throw new UnsupportedOperationException("Tried to getDocumentForFile on a Dummy with file: " + file);
   }
   
+  public void prefetchDocuments(Iterable<File> files) { /* prefetching is only a hint */ }
+  
   public boolean isAlreadyOpen(File file) {
     throw new UnsupportedOperationException("Tried to call isAlreadyOpen on a Dummy with file: " + file);
   }
@@ -687,6 +687,12 @@ public interface GlobalModel extends ILoadDocuments {
    */
   public OpenDefinitionsDocument getDocumentForFile(File file) throws IOException;
   
+  /** Asks the model to load the documents of the given files in the background, because they are likely to be 
+    * needed soon.  Files that are not open are ignored.  This is only a hint; it may be ignored.
+    * @param files the files whose documents should be prefetched, most likely last
+    */
+  public void prefetchDocuments(Iterable<File> files);
+  
   /** @return the GlobalEventModifier attached to global model. */
   public GlobalEventNotifier getNotifier();
   
@@ -0,0 +1,177 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.util.List;
+
+import edu.rice.cs.drjava.model.definitions.reducedmodel.HighlightStatus;
+
+/** A per-line cache of the highlight spans of an AbstractDJDocument, used to repaint the document without consulting
+  * the reduced model.  The spans of each line are held in primitive arrays that are reused when the line is refilled,
+  * so a lookup that hits the cache does not allocate.  The cache is direct-mapped on the line number: line n occupies
+  * slot n % LINE_SLOTS, which keeps all lines of any reasonably sized viewport resident at once.  The highlighting of
+  * the text before an edit does not depend on the edit, so an edit at offset k evicts exactly the lines extending to
+  * k or beyond.
+  * @version $Id$
+  */
+public class HighlightSpanCache {
+  
+  /** The number of line slots in the cache. */
+  public static final int LINE_SLOTS = 256;
+  
+  /** The highlight spans covering a single line of a document.  Spans are contiguous and sorted by location.  The
+    * contents of a LineSpans object are overwritten when its slot is refilled, so it must be consumed before the
+    * document is next queried.
+    */
+  public static final class LineSpans {
+    private int _line = -1;
+    private int _start;
+    private int _end;
+    private int _size;
+    private int[] _locations = new int[8];
+    private int[] _lengths = new int[8];
+    private int[] _states = new int[8];
+    
+    /** @return the offset of the first character of the line */
+    public int getStart() { return _start; }
+    
+    /** @return the offset following the last character of the line */
+    public int getEnd() { return _end; }
+    
+    /** @return the number of spans in the line */
+    public int size() { return _size; }
+    
+    /** @param i the index of a span
+      * @return the offset of the first character of span i */
+    public int getLocation(int i) { return _locations[i]; }
+    
+    /** @param i the index of a span
+      * @return the length of span i */
+    public int getLength(int i) { return _lengths[i]; }
+    
+    /** @param i the index of a span
+      * @return the HighlightStatus state of span i */
+    public int getState(int i) { return _states[i]; }
+    
+    /** @param pos an offset within the line
+      * @return the index of the span containing pos, or size() if pos lies beyond the last span */
+    public int indexOf(int pos) {
+      int lo = 0;
+      int hi = _size - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        if (_locations[mid] + _lengths[mid] <= pos) lo = mid + 1;
+        else if (_locations[mid] > pos) hi = mid - 1;
+        else return mid;
+      }
+      return lo;
+    }
+    
+    /** Overwrites the spans of this object with the given highlight status blocks. */
+    private void _fill(int line, int start, int end, List<HighlightStatus> stats) {
+      int n = stats.size();
+      if (n > _locations.length) {
+        int cap = Math.max(n, 2 * _locations.length);
+        _locations = new int[cap];
+        _lengths = new int[cap];
+        _states = new int[cap];
+      }
+      for (int i = 0; i < n; i++) {
+        HighlightStatus stat = stats.get(i);
+        _locations[i] = stat.getLocation();
+        _lengths[i] = stat.getLength();
+        _states[i] = stat.getState();
+      }
+      _line = line;
+      _start = start;
+      _end = end;
+      _size = n;
+    }
+  }
+  
+  /** The line slots; a slot whose _line is -1 is empty. */
+  private final LineSpans[] _slots = new LineSpans[LINE_SLOTS];
+  
+  public HighlightSpanCache() {
+    for (int i = 0; i < LINE_SLOTS; i++) _slots[i] = new LineSpans();
+  }
+  
+  /** @param line the line number
+    * @param start the offset of the first character of the line
+    * @param end the offset following the last character of the line
+    * @return the cached spans of the line, or null if they are not cached
+    */
+  public synchronized LineSpans get(int line, int start, int end) {
+    LineSpans spans = _slots[line % LINE_SLOTS];
+    if (spans._line != line || spans._start != start || spans._end != end) return null;
+    return spans;
+  }
+  
+  /** Caches the spans of a line, evicting the line previously occupying its slot.
+    * @param line the line number
+    * @param start the offset of the first character of the line
+    * @param end the offset following the last character of the line
+    * @param stats the highlight status blocks covering [start, end)
+    * @return the cached spans of the line
+    */
+  public synchronized LineSpans put(int line, int start, int end, List<HighlightStatus> stats) {
+    LineSpans spans = _slots[line % LINE_SLOTS];
+    spans._fill(line, start, end, stats);
+    return spans;
+  }
+  
+  /** Evicts all lines extending to offset or beyond.
+    * @param offset the offset of a change to the document
+    */
+  public synchronized void invalidate(int offset) {
+    for (LineSpans spans: _slots) {
+      if (spans._line >= 0 && spans._end >= offset) spans._line = -1;
+    }
+  }
+  
+  /** Evicts all lines. */
+  public synchronized void clear() {
+    for (LineSpans spans: _slots) spans._line = -1;
+  }
+  
+  /** @return the number of cached lines */
+  public synchronized int size() {
+    int n = 0;
+    for (LineSpans spans: _slots) if (spans._line >= 0) n++;
+    return n;
+  }
+}
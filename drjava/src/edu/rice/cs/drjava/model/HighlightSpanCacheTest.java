@@ -0,0 +1,129 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.util.ArrayList;
+import javax.swing.text.BadLocationException;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
+import edu.rice.cs.drjava.model.definitions.reducedmodel.HighlightStatus;
+import edu.rice.cs.util.UnexpectedException;
+import edu.rice.cs.util.swing.Utilities;
+
+/** Tests the per-line highlight span cache and its use by AbstractDJDocument.
+  * @version $Id$
+  */
+public final class HighlightSpanCacheTest extends DrJavaTestCase {
+  
+  private static ArrayList<HighlightStatus> _spans(int... triples) {
+    ArrayList<HighlightStatus> stats = new ArrayList<HighlightStatus>();
+    for (int i = 0; i < triples.length; i += 3) stats.add(new HighlightStatus(triples[i], triples[i + 1], triples[i + 2]));
+    return stats;
+  }
+  
+  public void testLookupAndInvalidation() {
+    HighlightSpanCache cache = new HighlightSpanCache();
+    cache.put(0, 0, 10, _spans(0, 3, HighlightStatus.TYPE, 3, 7, HighlightStatus.NORMAL));
+    cache.put(1, 10, 20, _spans(10, 10, HighlightStatus.COMMENTED));
+    assertEquals(2, cache.size());
+    
+    HighlightSpanCache.LineSpans spans = cache.get(0, 0, 10);
+    assertNotNull(spans);
+    assertEquals(2, spans.size());
+    assertEquals(HighlightStatus.TYPE, spans.getState(0));
+    assertEquals(3, spans.getLocation(1));
+    assertEquals(7, spans.getLength(1));
+    assertEquals(0, spans.indexOf(2));
+    assertEquals(1, spans.indexOf(3));
+    assertEquals(2, spans.indexOf(10));
+    
+    assertNull("line bounds changed", cache.get(1, 10, 21));
+    assertNull("different line in the same slot", cache.get(1 + HighlightSpanCache.LINE_SLOTS, 10, 20));
+    
+    cache.invalidate(15);  // evicts only the second line
+    assertNotNull(cache.get(0, 0, 10));
+    assertNull(cache.get(1, 10, 20));
+    
+    cache.invalidate(10);  // an edit at the end of a line may change its last token
+    assertEquals(0, cache.size());
+  }
+  
+  public void testSlotReuse() {
+    HighlightSpanCache cache = new HighlightSpanCache();
+    HighlightSpanCache.LineSpans first = cache.put(3, 0, 40, _spans(0, 40, HighlightStatus.NORMAL));
+    ArrayList<HighlightStatus> many = new ArrayList<HighlightStatus>();
+    for (int i = 0; i < 20; i++) many.add(new HighlightStatus(i, 1, i % 2));
+    HighlightSpanCache.LineSpans second = cache.put(3 + HighlightSpanCache.LINE_SLOTS, 0, 20, many);
+    assertSame(first, second);
+    assertEquals(20, second.size());
+    assertNull(cache.get(3, 0, 40));
+    assertEquals(1, cache.size());
+  }
+  
+  /** Checks that the document serves repaints from the cache and evicts edited lines. */
+  public void testDocumentSpans() {
+    final AbstractDJDocument doc = new DefinitionsDocument(new GlobalEventNotifier());
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try {
+          doc.insertString(0, "int x = 1;\n// c\n/* a\n b */ return;\n", null);
+          HighlightSpanCache.LineSpans spans = doc.getHighlightSpans(2);
+          assertEquals(0, spans.getStart());
+          assertEquals(11, spans.getEnd());
+          assertEquals(HighlightStatus.TYPE, spans.getState(0));
+          assertSame(spans, doc.getHighlightSpans(5));
+          
+          HighlightSpanCache.LineSpans last = doc.getHighlightSpans(25);
+          int i = last.indexOf(27);
+          assertEquals(HighlightStatus.KEYWORD, last.getState(i));
+          assertEquals(2, doc._getHighlightCacheSize());
+          
+          doc.remove(16, 2);  // uncomment the block comment; the first line is unaffected
+          assertEquals(1, doc._getHighlightCacheSize());
+          assertSame(spans, doc.getHighlightSpans(0));
+          last = doc.getHighlightSpans(20);
+          assertEquals(HighlightStatus.NORMAL, last.getState(last.indexOf(20)));
+          
+          doc.setKeywords(new java.util.HashSet<String>());
+          assertEquals(0, doc._getHighlightCacheSize());
+        }
+        catch (BadLocationException e) { throw new UnexpectedException(e); }
+      }
+    });
+  }
+}
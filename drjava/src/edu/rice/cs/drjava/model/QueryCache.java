@@ -0,0 +1,145 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** A bounded memo table for the reduced model queries of an AbstractDJDocument.  Each answer is recorded together with
+  * the offset bounding the right edge of the text on which it depends.  The entries are indexed by that offset so that
+  * an edit at offset k evicts exactly the answers depending on text at or after k, in time proportional to the number
+  * of evicted entries.  Entries are kept in least-recently-used order; once the table holds more than its capacity,
+  * the least recently used entries are discarded.
+  * @version $Id$
+  */
+class QueryCache {
+  
+  /** A cached answer together with the offset on which it depends. */
+  private static class Entry {
+    final Object _answer;
+    final int _offset;
+    Entry(Object answer, int offset) {
+      _answer = answer;
+      _offset = offset;
+    }
+  }
+  
+  /** The maximum number of cached answers. */
+  private final int _capacity;
+  
+  /** The cached answers in access order. */
+  private final LinkedHashMap<Query, Entry> _entries;
+  
+  /** The queries cached for each dependency offset. */
+  private final TreeMap<Integer, ArrayList<Query>> _offsetToQueries;
+  
+  /** @param capacity the maximum number of answers to retain */
+  QueryCache(int capacity) {
+    _capacity = capacity;
+    _entries = new LinkedHashMap<Query, Entry>(16, 0.75f, true);
+    _offsetToQueries = new TreeMap<Integer, ArrayList<Query>>();
+  }
+  
+  /** @param query the query to look up
+    * @return the cached answer to query, or null if there is none
+    */
+  synchronized Object get(Query query) {
+    Entry e = _entries.get(query);
+    return (e == null) ? null : e._answer;
+  }
+  
+  /** Caches an answer, evicting the least recently used answers if the capacity is exceeded.
+    * @param query the query
+    * @param answer the answer to query
+    * @param offset the offset bounding the right edge of the text on which answer depends
+    */
+  synchronized void put(Query query, Object answer, int offset) {
+    Entry old = _entries.put(query, new Entry(answer, offset));
+    if (old != null) _unindex(query, old._offset);
+    ArrayList<Query> queries = _offsetToQueries.get(offset);
+    if (queries == null) {
+      queries = new ArrayList<Query>(2);
+      _offsetToQueries.put(offset, queries);
+    }
+    queries.add(query);
+    
+    if (_entries.size() > _capacity) {
+      Iterator<Map.Entry<Query, Entry>> it = _entries.entrySet().iterator();
+      while (_entries.size() > _capacity) {
+        Map.Entry<Query, Entry> eldest = it.next();
+        it.remove();
+        _unindex(eldest.getKey(), eldest.getValue()._offset);
+      }
+    }
+  }
+  
+  /** Evicts all answers depending on text at or after offset.
+    * @param offset the offset of a change to the document
+    */
+  synchronized void clear(int offset) {
+    if (offset <= 0) {
+      clear();
+      return;
+    }
+    SortedMap<Integer, ArrayList<Query>> dead = _offsetToQueries.tailMap(offset);
+    for (ArrayList<Query> queries: dead.values()) {
+      for (Query query: queries) _entries.remove(query);
+    }
+    dead.clear();
+  }
+  
+  /** Evicts all answers. */
+  synchronized void clear() {
+    _entries.clear();
+    _offsetToQueries.clear();
+  }
+  
+  /** @return the number of cached answers */
+  synchronized int size() { return _entries.size(); }
+  
+  /** Removes query from the bucket for offset. */
+  private void _unindex(Query query, int offset) {
+    ArrayList<Query> queries = _offsetToQueries.get(offset);
+    if (queries == null) return;
+    queries.remove(query);
+    if (queries.isEmpty()) _offsetToQueries.remove(offset);
+  }
+}
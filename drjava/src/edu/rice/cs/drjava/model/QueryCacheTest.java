@@ -0,0 +1,95 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the offset-indexed invalidation and the size bound of QueryCache.
+  * @version $Id$
+  */
+public final class QueryCacheTest extends DrJavaTestCase {
+  
+  public void testOffsetInvalidation() {
+    QueryCache cache = new QueryCache(100);
+    Query q5 = new Query.LineStartPos(5);
+    Query q10 = new Query.LineStartPos(10);
+    Query q20 = new Query.LineEndPos(20);
+    cache.put(q5, 0, 4);
+    cache.put(q10, 6, 9);
+    cache.put(q20, 25, 25);
+    assertEquals(3, cache.size());
+    
+    cache.clear(26);  // edit after every dependency offset
+    assertEquals(3, cache.size());
+    
+    cache.clear(9);   // evicts answers depending on text at or after 9
+    assertEquals(Integer.valueOf(0), cache.get(q5));
+    assertNull(cache.get(q10));
+    assertNull(cache.get(q20));
+    assertEquals(1, cache.size());
+    
+    cache.clear(0);
+    assertEquals(0, cache.size());
+  }
+  
+  public void testReplaceAnswer() {
+    QueryCache cache = new QueryCache(100);
+    Query q = new Query.LineStartPos(5);
+    cache.put(q, 0, 40);
+    cache.put(q, 1, 4);
+    assertEquals(1, cache.size());
+    cache.clear(10);  // the stale dependency offset 40 must no longer evict the answer
+    assertEquals(Integer.valueOf(1), cache.get(q));
+  }
+  
+  public void testLeastRecentlyUsedEviction() {
+    QueryCache cache = new QueryCache(2);
+    Query q1 = new Query.LineStartPos(1);
+    Query q2 = new Query.LineStartPos(2);
+    Query q3 = new Query.LineStartPos(3);
+    cache.put(q1, 0, 0);
+    cache.put(q2, 0, 1);
+    cache.get(q1);       // q2 is now the least recently used entry
+    cache.put(q3, 0, 2);
+    assertEquals(2, cache.size());
+    assertNull(cache.get(q2));
+    assertEquals(Integer.valueOf(0), cache.get(q1));
+    assertEquals(Integer.valueOf(0), cache.get(q3));
+    cache.clear(1);
+    assertEquals(1, cache.size());
+  }
+}
@@ -67,4 +67,7 @@ public interface DDReconstructor {
   
   /** @return the string text for document that has been kicked out; null otherwise. */
   public String getText();
+  
+  /** @return the length of the text returned by getText(), which may be computed without materializing the text. */
+  public int getLength();
 }
@@ -74,6 +74,17 @@ import edu.rice.cs.plt.iter.IterUtil;
   * Since the cache and document managers can both be concurrently accessed from multiple threads, the methods in the
   * DocumentCache and DocManager classes are synchronized.  Some operations require locks on both the cache and a
   * document manager, but the code is written so that none of them require these locks to be held simultaneously.
+  * <p>
+  * Besides the limit on the number of resident documents, the cache enforces a memory budget on the estimated 
+  * footprint of the resident queue (see {@link #estimateFootprint}).  When the budget is exceeded, documents are
+  * kicked out using the GreedyDual-Size policy: each resident document carries a credit equal to the cache 
+  * inflation value at its last use plus its reconstruction cost per byte, the document with the least credit is 
+  * kicked out first, and the inflation value rises to that credit.  Hence small, recently used documents stay 
+  * resident while large, idle documents are virtualized first.
+  * <p>
+  * Documents that are likely to be needed next (neighbors in the document navigator, files with compiler errors or
+  * failing tests) can be reconstructed ahead of time by {@link #prefetch}, which hands them to a low priority 
+  * background thread.
   */
 
 public class DocumentCache {
@@ -83,9 +94,43 @@ public class DocumentCache {
   
   private static final int INIT_CACHE_SIZE = 32;
   
+  /** Default memory budget used when the maximum heap size is unknown. */
+  private static final long DEFAULT_MEMORY_BUDGET = 256L << 20;  // 256 MB
+  
+  /** Estimated fixed footprint of a DefinitionsDocument (undo manager, element tree root, listeners, ...). */
+  public static final long DOC_OVERHEAD = 16L << 10;
+  /** Estimated footprint per character: gap buffer, reduced model tokens, and style runs. */
+  public static final long BYTES_PER_CHAR = 8;
+  /** Estimated footprint per line: the line element and its two positions. */
+  public static final long BYTES_PER_LINE = 128;
+  /** Estimated fixed cost (in characters processed) of reconstructing a document. */
+  private static final double RECONSTRUCTION_OVERHEAD = 4096;
+  
   /** invariant {@code _residentQueue.size() <= CACHE_SIZE} */
   private volatile int CACHE_SIZE;
   
+  /** Memory budget in bytes for the estimated footprint of the resident queue; at least one document is always 
+    * retained regardless of its size. */
+  private volatile long _memoryBudget;
+  
+  /** Sum of the footprints of the documents in the resident queue; only accessed while holding _cacheLock. */
+  private long _residentBytes = 0;
+  
+  /** The GreedyDual-Size inflation value; it equals the credit of the most recently evicted document. */
+  private volatile double _inflation = 0;
+  
+  /** Maximum number of pending prefetch requests; older requests are dropped. */
+  public static final int PREFETCH_LIMIT = 4;
+  
+  /** Number of milliseconds an idle prefetch thread waits for a request before terminating. */
+  private static final long PREFETCH_IDLE_TIME = 5000;
+  
+  /** Pending prefetch requests in order of arrival; also serves as the lock for _prefetcher. */
+  private final LinkedHashSet<DocManager> _prefetchQueue = new LinkedHashSet<DocManager>();
+  
+  /** The thread serving _prefetchQueue, or null if no thread is running. */
+  private Thread _prefetcher = null;
+  
   /** Data structure representing the queue of resident unmodified documents. */
   private final LinkedHashSet<DocManager> _residentQueue;
   
@@ -95,6 +140,7 @@ public class DocumentCache {
   public DocumentCache(int size) {
 //    Utilities.showDebug("DocumentCache created with size = " + size);
     CACHE_SIZE = size;
+    _memoryBudget = defaultMemoryBudget();
     _residentQueue = new LinkedHashSet<DocManager>();
   }
   
@@ -127,7 +173,7 @@ public class DocumentCache {
       int diff = _residentQueue.size() - CACHE_SIZE;
       if (diff > 0) {
         Iterable<DocManager> toRemove = IterUtil.snapshot(IterUtil.truncate(_residentQueue, diff));
-        for (DocManager dm : toRemove) { _residentQueue.remove(dm); dm.kickOut(); }
+        for (DocManager dm : toRemove) dm.remove();
       }
     }
   }
@@ -135,8 +181,105 @@ public class DocumentCache {
   public int getCacheSize() { return CACHE_SIZE; }
   public int getNumInCache() { return _residentQueue.size(); }
   
+  /** Changes the memory budget (in bytes) for the unmodified documents in the cache, kicking out documents if 
+    * necessary.
+    * @param bytes the new budget; 0 selects the default budget
+    */
+  public void setMemoryBudget(long bytes) {
+    if (bytes < 0) throw new IllegalArgumentException("Cannot set the memory budget to less than zero.");
+    synchronized(_cacheLock) {
+      _memoryBudget = (bytes == 0) ? defaultMemoryBudget() : bytes;
+      _enforceMemoryBudget(null);
+    }
+  }
+  
+  public long getMemoryBudget() { return _memoryBudget; }
+  
+  /** @return the estimated footprint in bytes of the documents in the resident queue */
+  public long getResidentBytes() { synchronized(_cacheLock) { return _residentBytes; } }
+  
+  /** @return a quarter of the maximum heap size, or DEFAULT_MEMORY_BUDGET if the maximum heap size is unknown */
+  public static long defaultMemoryBudget() {
+    final long max = Runtime.getRuntime().maxMemory();
+    return (max == Long.MAX_VALUE) ? DEFAULT_MEMORY_BUDGET : max / 4;
+  }
+  
+  /** Estimates the number of bytes retained by a resident DefinitionsDocument including its reduced model.
+    * @param doc the document
+    * @return the estimated footprint of doc
+    */
+  public static long estimateFootprint(DefinitionsDocument doc) {
+    return DOC_OVERHEAD + BYTES_PER_CHAR * doc.getLength() + 
+      BYTES_PER_LINE * doc.getDefaultRootElement().getElementCount();
+  }
+  
+  /** Kicks out documents in order of increasing credit until the resident queue fits in the memory budget.  Assumes
+    * that _cacheLock is already held.
+    * @param keep a document that must not be kicked out, or null
+    */
+  private void _enforceMemoryBudget(DocManager keep) {
+    while (_residentBytes > _memoryBudget && _residentQueue.size() > 1) {
+      DocManager victim = null;
+      for (DocManager dm: _residentQueue) {
+        if (dm != keep && (victim == null || dm._credit < victim._credit)) victim = dm;
+      }
+      if (victim == null) return;
+      _inflation = Math.max(_inflation, victim._credit);
+      victim.remove();
+    }
+  }
+  
   public String toString() { return _residentQueue.toString(); }
   
+  /** Asks the cache to reconstruct the document of the given adapter on a low priority background thread, so that a 
+    * later call on getDocument() does not have to.  Does nothing if the document is resident or closed.  Only the
+    * most recent PREFETCH_LIMIT requests are retained.
+    * @param adapter an adapter returned by register on this cache
+    */
+  public void prefetch(DCacheAdapter adapter) {
+    if (! (adapter instanceof DocManager)) return;
+    final DocManager mgr = (DocManager) adapter;
+    if (mgr.getCache() != this || mgr.isReady() || mgr.isClosed()) return;
+    synchronized(_prefetchQueue) {
+      _prefetchQueue.remove(mgr);  // move a repeated request to the end
+      _prefetchQueue.add(mgr);
+      if (_prefetchQueue.size() > PREFETCH_LIMIT) _prefetchQueue.remove(IterUtil.first(_prefetchQueue));
+      if (_prefetcher == null) {
+        _prefetcher = new Thread("DocumentCache prefetcher") { public void run() { _servePrefetchRequests(); } };
+        _prefetcher.setDaemon(true);
+        _prefetcher.setPriority(Thread.MIN_PRIORITY);
+        _prefetcher.start();
+      }
+      else _prefetchQueue.notify();
+    }
+  }
+  
+  /** @return the number of pending prefetch requests */
+  public int getNumPendingPrefetches() { synchronized(_prefetchQueue) { return _prefetchQueue.size(); } }
+  
+  /** Body of the prefetch thread.  The most recent request is served first; the thread terminates after it has been
+    * idle for PREFETCH_IDLE_TIME milliseconds.
+    */
+  private void _servePrefetchRequests() {
+    while (true) {
+      final DocManager mgr;
+      synchronized(_prefetchQueue) {
+        if (_prefetchQueue.isEmpty()) {
+          try { _prefetchQueue.wait(PREFETCH_IDLE_TIME); }
+          catch(InterruptedException e) { /* fall through */ }
+          if (_prefetchQueue.isEmpty()) {
+            _prefetcher = null;
+            return;
+          }
+        }
+        mgr = IterUtil.last(_prefetchQueue);
+        _prefetchQueue.remove(mgr);
+      }
+      try { mgr.prefetch(); }
+      catch(RuntimeException e) { _log.log("Prefetching " + mgr + " failed: " + e); }
+    }
+  }
+  
   
   ///////////////////////////// DocManager //////////////////////////
   
@@ -162,6 +305,15 @@ public class DocumentCache {
 
     private volatile int _stat; // I know, this is not very OO
     private volatile DefinitionsDocument _doc;
+    /** Whether close() has been called; a closed document is never prefetched. */
+    private volatile boolean _isClosed = false;
+    
+    /** The estimated footprint of _doc when it was last added to the resident queue. */
+    private volatile long _footprint = 0;
+    /** The estimated cost of reconstructing _doc (in characters processed) when it was last added to the queue. */
+    private volatile double _cost = 0;
+    /** The GreedyDual-Size credit of this document; see DocumentCache. */
+    private volatile double _credit = 0;
     
     /** Instantiates a manager for the documents that are produced by the given document reconstructor.
      * @param rec The reconstructor used to create the document
@@ -195,7 +347,7 @@ public class DocumentCache {
       catch(BadLocationException e) { throw new UnexpectedException(e); }      
 //        Utilities.showDebug("Document " + _doc + " reconstructed; _stat = " + _stat);
 //      System.err.println("Making document for " + this);
-      if (_stat == NOT_IN_QUEUE) add();       // add this to queue 
+      if (_stat == NOT_IN_QUEUE || _stat == IN_QUEUE) add();  // add this to queue or update its footprint
       return _doc;
     }
     
@@ -210,7 +362,10 @@ public class DocumentCache {
       
 //      The following double-check idiom is safe in Java 1.4 and later JVMs provided that _doc is volatile.
       final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
-      if (doc != null) return doc;  
+      if (doc != null) {
+        touch();
+        return doc;  
+      }
       synchronized(_cacheLock) { // lock the cache so that this DocManager's state can be updated
         if (_doc != null) return _doc;  // _doc may have changed since test outside of _cacheLock
         return makeDocument();
@@ -221,7 +376,7 @@ public class DocumentCache {
       * to be loaded. */
     public int getLength() {
       final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
-      if (doc == null /* || ! doc.isModifiedSinceSave()*/) return _rec.getText().length();
+      if (doc == null /* || ! doc.isModifiedSinceSave()*/) return _rec.getLength();
       return doc.getLength();
     }
     
@@ -250,18 +405,32 @@ public class DocumentCache {
       */
     public boolean isReady() {  return _doc != null; }  // _doc is volatile so synchronization is unnecessary
     
+    /** @return true if this document has been closed */
+    boolean isClosed() { return _isClosed; }
+    
+    /** @return the cache that created this manager */
+    DocumentCache getCache() { return DocumentCache.this; }
+    
+    /** Reconstructs the document unless it is resident or closed.  Called from the prefetch thread. */
+    void prefetch() {
+      synchronized(_cacheLock) {
+        if (_doc == null && ! _isClosed) makeDocument();
+      }
+    }
+    
     /** Closes the corresponding document for this adapter.  Done when a document is closed by the navigator. */
     public void close() {
 //      Utilities.showDebug("close() called on " + this);
       synchronized(_cacheLock) {
-        _residentQueue.remove(this);
+        _isClosed = true;
+        dequeue();
         closingKickOut();
       }
     }
     
     public void documentModified() {
       synchronized(_cacheLock) { 
-        _residentQueue.remove(this); // remove modified document from queue if present
+        dequeue(); // remove modified document from queue if present
         _stat = UNMANAGED;
       }
     }
@@ -290,16 +459,38 @@ public class DocumentCache {
       if (! _residentQueue.contains(this)) {
         _residentQueue.add(this);
         _stat = IN_QUEUE;
+        _footprint = 0;
       }
+      // _doc may still be null if this is called while the document is being reconstructed
+      final DefinitionsDocument doc = _doc;
+      final long footprint = (doc == null) ? 0 : estimateFootprint(doc);
+      _residentBytes += footprint - _footprint;
+      _footprint = footprint;
+      _cost = (doc == null) ? 0 : RECONSTRUCTION_OVERHEAD + doc.getLength();
+      touch();
       if (_residentQueue.size() > CACHE_SIZE) IterUtil.first(_residentQueue).remove();
+      _enforceMemoryBudget(this);
     }
     
     /** Removes this DocManager from the queue and sets status to NOT_IN_QUEUE.  Assumes _cacheLock is already held. */
     private void remove() { 
-      _residentQueue.remove(this);
+      dequeue();
       kickOut();
     }
     
+    /** Removes this DocManager from the queue (if present) without changing its status.  Assumes _cacheLock is
+      * already held. 
+      */
+    private void dequeue() {
+      if (_residentQueue.remove(this)) _residentBytes -= _footprint;
+    }
+    
+    /** Restores the credit of this document on use.  Does not require _cacheLock. */
+    private void touch() {
+      final long footprint = _footprint;
+      if (footprint > 0) _credit = _inflation + _cost / footprint;
+    }
+    
     /* All of the following private methods presume that _cacheLock is held */
     private boolean isUnmanagedOrUntitled() { return (_stat & 0x1) != 0; }  // tests if _stat is odd
     
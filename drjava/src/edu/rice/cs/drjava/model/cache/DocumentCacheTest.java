@@ -408,6 +408,68 @@ public class DocumentCacheTest extends DrJavaTestCase {
   }
   
   
+  /** Tests that the memory budget kicks out large documents before small ones. */
+  public void testMemoryBudget() throws BadLocationException, IOException {
+    final StringBuilder sb = new StringBuilder();
+    while (sb.length() < 100000) sb.append("  int x = 0;  // filler\n");
+    File small1 = tempFile(1);
+    File big = tempFile(2);
+    IOUtil.writeStringToFile(big, "class Big {\n" + sb + "}\n");
+    File small2 = tempFile(3);
+    File small3 = tempFile(4);
+    
+    _cache.setMemoryBudget(200000);
+    assertEquals("Wrong memory budget", 200000, _cache.getMemoryBudget());
+    
+    OpenDefinitionsDocument doc1 = openFile(small1);
+    doc1.getCurrentLine();
+    OpenDefinitionsDocument docBig = openFile(big);
+    docBig.getCurrentLine();
+    // the most recently used document is never kicked out to make room for itself
+    assertTrue("The big document should be ready", _adapterTable.get(docBig).isReady());
+    assertFalse("Document 1 should have been kicked out", _adapterTable.get(doc1).isReady());
+    
+    OpenDefinitionsDocument doc2 = openFile(small2);
+    doc2.getCurrentLine();
+    OpenDefinitionsDocument doc3 = openFile(small3);
+    doc3.getCurrentLine();
+    assertFalse("The big document should have been kicked out", _adapterTable.get(docBig).isReady());
+    assertTrue("Document 2 should be ready", _adapterTable.get(doc2).isReady());
+    assertTrue("Document 3 should be ready", _adapterTable.get(doc3).isReady());
+    assertEquals("There should be 2 documents in the cache", 2, _cache.getNumInCache());
+    assertTrue("The cache should fit in its budget", _cache.getResidentBytes() <= _cache.getMemoryBudget());
+    
+    // the kicked out document is reconstructed from its image
+    assertEquals("Wrong length of virtualized document", 14 + sb.length(), docBig.getLength());
+    docBig.getCurrentLine();
+    assertTrue("The big document should be ready", _adapterTable.get(docBig).isReady());
+    assertEquals("Wrong text of reconstructed document", "class Big {\n" + sb + "}\n", docBig.getText());
+  }
+  
+  /** Tests that prefetch reconstructs a virtualized document in the background, but never a closed one. */
+  public void testPrefetch() throws BadLocationException, IOException, InterruptedException {
+    OpenDefinitionsDocument[] docs = new OpenDefinitionsDocument[6];
+    for (int i = 0; i < docs.length; i++) {
+      docs[i] = openFile(tempFile(i));
+      docs[i].getCurrentLine();  // forces document to be read into memory
+    }
+    // cache = [2 3 4 5]
+    DCacheAdapter adapter0 = _adapterTable.get(docs[0]);
+    DCacheAdapter adapter1 = _adapterTable.get(docs[1]);
+    assertFalse("Document 0 shouldn't be ready", adapter0.isReady());
+    assertFalse("Document 1 shouldn't be ready", adapter1.isReady());
+    
+    _model.closeFileWithoutPrompt(docs[1]);
+    _cache.prefetch(adapter1);
+    _cache.prefetch(adapter0);
+    for (int i = 0; i < 100 && ! adapter0.isReady(); i++) Thread.sleep(50);
+    
+    assertTrue("Document 0 should have been prefetched", adapter0.isReady());
+    assertFalse("Closed document 1 should not have been prefetched", adapter1.isReady());
+    assertEquals("There should be 4 documents in the cache", 4, _cache.getNumInCache());
+    assertEquals("There should be no pending prefetches", 0, _cache.getNumPendingPrefetches());
+  }
+  
 //  private DefinitionsDocument _saved; // used for testReconstructor()
   
 //  public void testReconstructor() throws IOException{
@@ -0,0 +1,139 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import edu.rice.cs.util.UnexpectedException;
+
+/** An immutable image of the text of a document that has been (or may be) kicked out of the DocumentCache.  A
+  * compressed image keeps the text deflated and only caches the inflated text through a soft reference, so a large
+  * number of virtualized documents can be reconstructed without touching the disk at a fraction of the memory cost.
+  * @version $Id$
+  */
+public final class DocumentImage {
+  
+  /** Images of texts shorter than this length are never compressed. */
+  public static final int MIN_COMPRESSED_LENGTH = 1024;
+  
+  private static final String ENCODING = "UTF-8";
+  
+  /** The text of the image, or null if the image is compressed. */
+  private final String _text;
+  /** The deflated UTF-8 encoding of the text, or null if the image is not compressed. */
+  private final byte[] _deflated;
+  private final int _length;
+  /** The most recently inflated text of a compressed image. */
+  private volatile SoftReference<String> _inflated;
+  
+  private DocumentImage(String text, byte[] deflated, int length) {
+    _text = text;
+    _deflated = deflated;
+    _length = length;
+    _inflated = new SoftReference<String>(text);
+  }
+  
+  /** @param text the text of the image
+    * @param compress whether the text should be kept deflated
+    * @return an image of the given text
+    */
+  public static DocumentImage make(String text, boolean compress) {
+    if (! compress || text.length() < MIN_COMPRESSED_LENGTH) return new DocumentImage(text, null, text.length());
+    final DocumentImage image = new DocumentImage(null, _deflate(text), text.length());
+    image._inflated = new SoftReference<String>(text);
+    return image;
+  }
+  
+  /** @return the text of this image */
+  public String getText() {
+    if (_text != null) return _text;
+    String text = _inflated.get();
+    if (text == null) {
+      text = _inflate(_deflated);
+      _inflated = new SoftReference<String>(text);
+    }
+    return text;
+  }
+  
+  /** @return the length of the text of this image; does not inflate a compressed image */
+  public int getLength() { return _length; }
+  
+  /** @return true if this image is kept deflated */
+  public boolean isCompressed() { return _deflated != null; }
+  
+  /** @return an estimate of the number of bytes retained by this image, excluding softly reachable text */
+  public long getFootprint() { return (_deflated != null) ? _deflated.length : 2L * _length; }
+  
+  private static byte[] _deflate(String text) {
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(text.getBytes(ENCODING));
+      deflater.finish();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() / 4);
+      final byte[] buffer = new byte[8192];
+      while (! deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+      return out.toByteArray();
+    }
+    catch(UnsupportedEncodingException e) { throw new UnexpectedException(e); }
+    finally { deflater.end(); }
+  }
+  
+  private static String _inflate(byte[] deflated) {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(deflated);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(deflated.length * 4);
+      final byte[] buffer = new byte[8192];
+      while (! inflater.finished()) {
+        final int n = inflater.inflate(buffer);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new UnexpectedException("Truncated document image");
+        }
+        out.write(buffer, 0, n);
+      }
+      return out.toString(ENCODING);
+    }
+    catch(DataFormatException e) { throw new UnexpectedException(e); }
+    catch(UnsupportedEncodingException e) { throw new UnexpectedException(e); }
+    finally { inflater.end(); }
+  }
+}
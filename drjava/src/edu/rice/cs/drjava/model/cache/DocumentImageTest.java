@@ -0,0 +1,68 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.cache;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the compressed and uncompressed forms of DocumentImage.
+  * @version $Id$
+  */
+public class DocumentImageTest extends DrJavaTestCase {
+  
+  public void testShortTextIsNotCompressed() {
+    DocumentImage image = DocumentImage.make("class A { }\n", true);
+    assertFalse("Short image should not be compressed", image.isCompressed());
+    assertEquals("Wrong text", "class A { }\n", image.getText());
+    assertEquals("Wrong length", 12, image.getLength());
+  }
+  
+  public void testCompressedRoundTrip() {
+    final StringBuilder sb = new StringBuilder("/* \u00e9\u00e8 unicode \u4e2d */\n");
+    for (int i = 0; i < 2000; i++) sb.append("  int field").append(i).append(" = ").append(i).append(";\n");
+    final String text = sb.toString();
+    
+    DocumentImage image = DocumentImage.make(text, true);
+    assertTrue("Long image should be compressed", image.isCompressed());
+    assertEquals("Wrong length", text.length(), image.getLength());
+    assertTrue("Compressed image should be smaller than its text", image.getFootprint() < 2L * text.length());
+    assertEquals("Wrong text", text, image.getText());
+    
+    DocumentImage plain = DocumentImage.make(text, false);
+    assertFalse("Image should not be compressed", plain.isCompressed());
+    assertEquals("Wrong text", text, plain.getText());
+  }
+}
@@ -39,6 +39,7 @@ package edu.rice.cs.drjava.model.compiler;
 import java.io.File;
 import java.io.IOException;
 import javax.swing.text.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.LinkedList;
@@ -200,9 +201,29 @@ public class CompilerErrorModel {
    */
   public Position getPosition(DJError error) {
     int spot = Arrays.binarySearch(_errors, error);
+    if (spot >= 0) _prefetchAround(spot);  // error navigation is likely to visit the neighboring files next
     return _positions[spot];
   }
   
+  /** Asks the model to prefetch the documents containing the nearest errors before and after the error at index idx
+    * that lie in other files.
+    * @param idx the index of the current error, or -1 to prefetch the document of the first error with a file
+    */
+  private void _prefetchAround(int idx) {
+    if (_model == null) return;
+    final File file = (idx >= 0) ? _errors[idx].file() : null;
+    final ArrayList<File> files = new ArrayList<File>(2);
+    for (int i = idx - 1; i >= 0; i--) {
+      final File f = _errors[i].file();
+      if (f != null && ! f.equals(file)) { files.add(f); break; }
+    }
+    for (int i = idx + 1; i < _numErrors; i++) {  // added last, since moving forward is more common
+      final File f = _errors[i].file();
+      if (f != null && ! f.equals(file)) { files.add(f); break; }
+    }
+    if (! files.isEmpty()) _model.prefetchDocuments(files);
+  }
+  
   /** @return the number of CompilerErrors. */
   public int getNumErrors() { return _numErrors; }
   
@@ -439,6 +460,8 @@ public class CompilerErrorModel {
           _filesToIndexes.put(file, new StartAndEndIndex(fileStartIndex, fileEndIndex));
         }
       }
+      // Loading the documents above may have kicked the first one out of the cache
+      _prefetchAround(-1);
     }
     catch (BadLocationException ble) { throw new UnexpectedException(ble); }
     catch (StringIndexOutOfBoundsException e) { throw new UnexpectedException(e); }
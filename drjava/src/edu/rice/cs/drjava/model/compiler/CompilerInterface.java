@@ -132,4 +132,8 @@ public interface CompilerInterface {
   /** Return true if this compiler can be used in conjunction with the language level facility.
     * @return true if language levels can be used. */
   boolean supportsLanguageLevels();
+  
+  /** Discards any state this compiler keeps between compilations, such as open class path archives.  Called when the
+    * class path may have changed. */
+  void resetCaches();
 }
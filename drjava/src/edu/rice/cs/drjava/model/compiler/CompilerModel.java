@@ -124,6 +124,10 @@ public interface CompilerModel {
     */
   public void setActiveCompiler(CompilerInterface compiler);
   
+  /** Discards the state that the registered compilers keep between compilations.  Must be called whenever the class 
+    * path changes. */
+  public void resetCompilerCaches();
+  
   /* This method is no longer used. */
 //  /** Add a compiler to the active list */
 //  public void addCompiler(CompilerInterface compiler);
@@ -95,6 +95,10 @@ public class DefaultCompilerModel implements CompilerModel {
   /** The lock providing mutual exclustion between compilation and unit testing */
   private Object _compilerLock = new Object();
   
+  /** The session in which language level conversions run; it caches the symbols read from library class files across
+    * conversions, and is invalidated with the compilers' caches and whenever the active compiler changes. */
+  private final ConversionSession _llSession = new ConversionSession();
+  
   /** The LanguageLevelStackTraceMapper that helps translate .java line 
     * numbers to .dj* line numbers when an error is thrown */
   public LanguageLevelStackTraceMapper _LLSTM;
@@ -360,7 +364,10 @@ public class DefaultCompilerModel implements CompilerModel {
         // Mutual exclusion with JUnit code that finds all test classes (in DefaultJUnitModel)
         synchronized(_compilerLock) {
           if (preprocessedFiles == null) {
-            errors.addAll(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
+            if (buildDir != null && DrJava.getConfig().getSetting(OptionConstants.INCREMENTAL_COMPILATION)) {
+              errors.addAll(_compileIncrementally(compiler, files, classPath, buildDir, bootClassPath));
+            }
+            else errors.addAll(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
           }
           else {
             /** If compiling a language level file, do not show warnings, as these are not caught by the language level 
@@ -377,6 +384,94 @@ public class DefaultCompilerModel implements CompilerModel {
     }
   }
   
+  /** Compiles only the stale files among the given files into buildDir, followed by the files depending on classes
+    * whose API changed, as recorded in the DependencyGraph stored in buildDir.  Compilation proceeds in rounds until
+    * no further API changes occur or a round has errors.  If the graph is missing or was built with a different 
+    * compiler or class path, all files are compiled.  Dependents that are not among the given files are made stale,
+    * so that they are recompiled whenever they are next compiled.
+    * @param compiler the compiler to use
+    * @param files the files to be compiled
+    * @param classPath the class path
+    * @param buildDir the (canonical) build directory
+    * @param bootClassPath the boot class path, or null
+    * @return the errors and warnings reported by the compiler
+    */
+  static List<DJError> _compileIncrementally(CompilerInterface compiler, List<File> files, List<File> classPath, 
+                                             File buildDir, List<File> bootClassPath) {
+    final String configuration = compiler.getName() + " " + compiler.version() + "; classPath = " + classPath +
+      "; bootClassPath = " + bootClassPath;
+    final DependencyGraph graph = DependencyGraph.load(buildDir, configuration);
+    
+    // Map canonical files (used by the graph) to the files as given (used in error messages)
+    final LinkedHashMap<File, File> originals = new LinkedHashMap<File, File>();
+    for (File f: files) originals.put(IOUtil.attemptCanonicalFile(f), f);
+    
+    // The classes of earlier rounds must be visible to the compiler
+    final List<File> roundClassPath = new ArrayList<File>(classPath);
+    if (! roundClassPath.contains(buildDir)) roundClassPath.add(buildDir);
+    
+    final HashSet<String> changed = new HashSet<String>();
+    graph.removeMissing(changed);
+    final LinkedHashSet<File> round = new LinkedHashSet<File>(graph.getStaleSources(originals.keySet()));
+    _addDependents(graph, changed, originals.keySet(), round);
+    changed.clear();
+    
+    final LinkedList<DJError> errors = new LinkedList<DJError>();
+    while (! round.isEmpty()) {
+      _log.log("Incremental compilation round of " + round.size() + " out of " + originals.size() + " files");
+      // Class file time stamps may only be accurate to the second
+      final long start = (System.currentTimeMillis() / 1000 - 1) * 1000;
+      final List<File> toCompile = new ArrayList<File>(round.size());
+      for (File f: round) toCompile.add(originals.get(f));
+      final List<? extends DJError> roundErrors = 
+        compiler.compile(toCompile, roundClassPath, null, buildDir, bootClassPath, null, true);
+      errors.addAll(roundErrors);
+      
+      boolean failed = false;
+      for (DJError e: roundErrors) failed |= ! e.isWarning();
+      if (failed) {
+        graph.removeAll(round);  // recompile them next time
+        break;
+      }
+      
+      final Map<File, List<DependencyGraph.ClassEntry>> compiled = graph.readCompiledClasses(start, round);
+      boolean constantsChanged = false;
+      for (File f: round) {
+        List<DependencyGraph.ClassEntry> classes = compiled.get(f);
+        if (classes == null) classes = Collections.<DependencyGraph.ClassEntry>emptyList();
+        constantsChanged |= graph.record(f, classes, changed);
+      }
+      
+      // The files just compiled were compiled against each other; any other file may be out of date
+      final Set<File> compiledTogether = new HashSet<File>(round);
+      round.clear();
+      if (constantsChanged) {  // constants may have been inlined anywhere
+        round.addAll(originals.keySet());
+        final Set<File> others = graph.getSources();
+        others.removeAll(originals.keySet());
+        graph.removeAll(others);
+      }
+      else _addDependents(graph, changed, originals.keySet(), round);
+      round.removeAll(compiledTogether);
+      changed.clear();
+    }
+    graph.save();
+    return errors;
+  }
+  
+  /** Adds the dependents of the changed classes that are among the files being compiled to round, and removes the 
+    * others from the graph, making them stale.
+    * @param graph the dependency graph
+    * @param changed the names of the classes whose API changed
+    * @param files the canonical files being compiled
+    * @param round receives the files to be compiled next
+    */
+  private static void _addDependents(DependencyGraph graph, Set<String> changed, Set<File> files, Set<File> round) {
+    final Set<File> others = graph.getDependents(changed);
+    for (File f: files) if (others.remove(f)) round.add(f);
+    graph.removeAll(others);
+  }
+  
   /** Reorders files so that all file names containing "Test" are at the end.  
    * @param files the files to be sorted
    * @return the sorted list of files
@@ -552,7 +647,7 @@ public class DefaultCompilerModel implements CompilerModel {
       }
       
       /* Perform language levels conversion, creating corresponding .java files. */
-      LanguageLevelConverter llc = new LanguageLevelConverter();
+      LanguageLevelConverter llc = new LanguageLevelConverter(_llSession);
       Options llOpts;  /* Options passed as arguments to LLConverter */
       if (bootClassPath == null) { llOpts = new Options(getActiveCompiler().version(), classPath); }
       else { llOpts = new Options(getActiveCompiler().version(), classPath, bootClassPath); }
@@ -629,6 +724,12 @@ public class DefaultCompilerModel implements CompilerModel {
     */
   public CompilerInterface getActiveCompiler() { return _active; }
   
+  /** Discards the state that the registered compilers and the language level converter keep between compilations. */
+  public void resetCompilerCaches() {
+    for (CompilerInterface c: _compilers) c.resetCaches();
+    _llSession.invalidateAll();
+  }
+  
   /** Sets which compiler is the "active" compiler.
     *
     * @param compiler Compiler to set active.
@@ -641,6 +742,7 @@ public class DefaultCompilerModel implements CompilerModel {
       // _active should be set correctly already
     }
     else if (_compilers.contains(compiler)) {
+      if (_active != compiler) _llSession.invalidateAll();
       _active = compiler;
       _notifier.activeCompilerChanged();
     }
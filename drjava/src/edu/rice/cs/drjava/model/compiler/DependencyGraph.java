@@ -0,0 +1,540 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import edu.rice.cs.util.Log;
+import edu.rice.cs.util.UnexpectedException;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** The dependency graph used by DefaultCompilerModel to compile incrementally.  For each source file compiled into a
+  * build directory, the graph records the size and time stamp of the source, and the classes compiled from
+  * it.  For each class it records a digest of its API (its non-private members), whether it declares compile-time
+  * constants, its direct supertypes, and the classes referenced from its constant pool.  The graph is stored in the build directory and
+  * is discarded whenever the compiler, class path, or boot class path changes.
+  * <p>
+  * A source file is stale if it is not in the graph, its contents changed, or one of its class files is missing.  
+  * When the API of a class changes, the sources referring to that class or to one of its subtypes (which inherit its
+  * members) must be recompiled; when a class declaring
+  * compile-time constants changes, no dependency information can be trusted (constants are inlined), so every 
+  * source must be recompiled.</p>
+  * @version $Id$
+  */
+public class DependencyGraph {
+  
+  /** Log file. */
+  private static final Log _log = new Log("DependencyGraph.txt", false);
+  
+  /** Name of the file in the build directory holding the graph. */
+  public static final String FILE_NAME = ".drjava-dependencies";
+  
+  /** First line of the graph file; it must be changed whenever the file format changes. */
+  private static final String HEADER = "DrJava dependency graph 2";
+  
+  /** Time stamps of sources modified less than this many milliseconds before they were recorded are not trusted, since
+    * some file systems only keep time stamps to the second. */
+  private static final long TIME_STAMP_RESOLUTION = 2000;
+  
+  private final File _buildDir;
+  private final String _configuration;
+  
+  /** Maps canonical source files to their entries. */
+  private final HashMap<File, SourceEntry> _sources = new HashMap<File, SourceEntry>();
+  
+  /** Creates an empty graph. 
+    * @param buildDir the build directory
+    * @param configuration a description of the compiler and class paths used to compile into buildDir 
+    */
+  public DependencyGraph(File buildDir, String configuration) {
+    _buildDir = buildDir;
+    _configuration = configuration;
+  }
+  
+  /** Loads the graph stored in the given build directory.
+    * @param buildDir the build directory
+    * @param configuration a description of the compiler and class paths to be used
+    * @return the stored graph, or an empty graph if there is no stored graph, it cannot be read, or it was built 
+    *         with a different configuration
+    */
+  public static DependencyGraph load(File buildDir, String configuration) {
+    final DependencyGraph graph = new DependencyGraph(buildDir, configuration);
+    final File file = new File(buildDir, FILE_NAME);
+    if (! file.isFile()) return graph;
+    try {
+      final BufferedReader in = new BufferedReader(new FileReader(file));
+      try {
+        if (! HEADER.equals(in.readLine()) || ! configuration.equals(in.readLine())) return graph;
+        SourceEntry source = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+          final String[] fields = line.split("\t", -1);
+          if (fields[0].equals("S") && fields.length == 5) {
+            source = new SourceEntry(Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4].equals("1"));
+            graph._sources.put(new File(fields[1]), source);
+          }
+          else if (fields[0].equals("C") && fields.length == 6 && source != null) {
+            source._classes.add(new ClassEntry(fields[1], fields[2], fields[3].equals("1"), _parseNames(fields[4]), 
+                                               _parseNames(fields[5])));
+          }
+          else throw new IOException("Malformed line: " + line);
+        }
+      }
+      finally { in.close(); }
+    }
+    catch(IOException e) {
+      _log.log("Discarding dependency graph " + file + ": " + e);
+      graph._sources.clear();
+    }
+    catch(NumberFormatException e) {
+      _log.log("Discarding dependency graph " + file + ": " + e);
+      graph._sources.clear();
+    }
+    return graph;
+  }
+  
+  /** Stores this graph in its build directory.  If the graph cannot be written, any stored graph is deleted so that
+    * the next compilation starts from scratch. */
+  public void save() {
+    final File file = new File(_buildDir, FILE_NAME);
+    final File temp = new File(_buildDir, FILE_NAME + ".tmp");
+    try {
+      final BufferedWriter out = new BufferedWriter(new FileWriter(temp));
+      try {
+        out.write(HEADER); out.newLine();
+        out.write(_configuration); out.newLine();
+        for (Map.Entry<File, SourceEntry> e: _sources.entrySet()) {
+          final SourceEntry source = e.getValue();
+          out.write("S\t" + e.getKey().getPath() + "\t" + source._lastModified + "\t" + source._length + "\t" + 
+                    (source._isTrusted ? "1" : "0"));
+          out.newLine();
+          for (ClassEntry c: source._classes) {
+            out.write("C\t" + c._name + "\t" + c._api + "\t" + (c._hasConstants ? "1" : "0") + "\t" + 
+                      _formatNames(c._supertypes) + "\t" + _formatNames(c._references));
+            out.newLine();
+          }
+        }
+      }
+      finally { out.close(); }
+      if (! IOUtil.attemptMove(temp, file)) throw new IOException("Could not rename " + temp + " to " + file);
+    }
+    catch(IOException e) {
+      _log.log("Could not save dependency graph " + file + ": " + e);
+      IOUtil.attemptDelete(temp);
+      IOUtil.attemptDelete(file);
+    }
+  }
+  
+  /** @return the space-separated class names in s */
+  private static HashSet<String> _parseNames(String s) {
+    final HashSet<String> names = new HashSet<String>();
+    if (s.length() > 0) names.addAll(Arrays.asList(s.split(" ")));
+    return names;
+  }
+  
+  /** @return the given class names, separated by spaces */
+  private static String _formatNames(Set<String> names) {
+    final StringBuilder sb = new StringBuilder();
+    for (String n: names) {
+      if (sb.length() > 0) sb.append(' ');
+      sb.append(n);
+    }
+    return sb.toString();
+  }
+  
+  /** Deletes the graph stored in the given build directory, forcing the next compilation to start from scratch.
+    * @param buildDir the build directory
+    */
+  public static void delete(File buildDir) { IOUtil.attemptDelete(new File(buildDir, FILE_NAME)); }
+  
+  /** @param sources canonical source files
+    * @return the stale sources among the given sources, in the same order
+    */
+  public List<File> getStaleSources(Iterable<File> sources) {
+    final ArrayList<File> stale = new ArrayList<File>();
+    for (File f: sources) if (_isStale(f)) stale.add(f);
+    return stale;
+  }
+  
+  /** @param source a canonical source file
+    * @return true if source is not in the graph, its contents changed, or one of its class files is missing */
+  private boolean _isStale(File source) {
+    final SourceEntry entry = _sources.get(source);
+    if (entry == null) return true;
+    final long lastModified = source.lastModified();
+    final long length = source.length();
+    if (lastModified != entry._lastModified || length != entry._length) return true;
+    for (ClassEntry c: entry._classes) {
+      if (! new File(_buildDir, c._name + ".class").isFile()) return true;
+    }
+    return ! entry._isTrusted;
+  }
+  
+  /** Removes the given sources from the graph, which makes them stale.
+    * @param sources the sources to remove
+    */
+  public void removeAll(Collection<File> sources) { for (File f: sources) _sources.remove(f); }
+  
+  /** Removes the sources that no longer exist.  Sources that are merely absent from the current compilation keep
+    * their entries, since a later compilation may include them again.
+    * @param changed receives the names of the classes compiled from the removed sources
+    */
+  public void removeMissing(Set<String> changed) {
+    final Iterator<Map.Entry<File, SourceEntry>> it = _sources.entrySet().iterator();
+    while (it.hasNext()) {
+      final Map.Entry<File, SourceEntry> e = it.next();
+      if (! e.getKey().isFile()) {
+        for (ClassEntry c: e.getValue()._classes) changed.add(c._name);
+        it.remove();
+      }
+    }
+  }
+  
+  /** Records the classes just compiled from the given source, replacing its old entry.
+    * @param source a canonical source file
+    * @param classes the classes compiled from source
+    * @param changed receives the names of the classes whose API changed (including added and removed classes)
+    * @return true if one of the changed classes declares (or declared) compile-time constants
+    */
+  public boolean record(File source, List<ClassEntry> classes, Set<String> changed) {
+    final long lastModified = source.lastModified();
+    final long recorded = System.currentTimeMillis();
+    // A source modified just before it was recorded may be modified again without changing its time stamp
+    final boolean isTrusted = recorded - lastModified >= TIME_STAMP_RESOLUTION;
+    final SourceEntry entry = new SourceEntry(lastModified, source.length(), isTrusted);
+    entry._classes.addAll(classes);
+    
+    final SourceEntry old = _sources.put(source, entry);
+    final HashMap<String, ClassEntry> oldClasses = new HashMap<String, ClassEntry>();
+    if (old != null) for (ClassEntry c: old._classes) oldClasses.put(c._name, c);
+    boolean constants = false;
+    for (ClassEntry c: classes) {
+      final ClassEntry o = oldClasses.remove(c._name);
+      if (o == null || ! o._api.equals(c._api)) {
+        changed.add(c._name);
+        constants |= c._hasConstants || (o != null && o._hasConstants);
+      }
+    }
+    for (ClassEntry o: oldClasses.values()) {  // removed classes
+      changed.add(o._name);
+      constants |= o._hasConstants;
+    }
+    return constants;
+  }
+  
+  /** A class inherits the members of its supertypes, so code that only names a subtype of a changed class (calling
+    * an inherited method, say) is affected by the change as well.  The dependents are therefore found from the 
+    * given classes together with all of their (direct and indirect) subtypes in the graph.
+    * @param classNames internal names of classes
+    * @return the sources in the graph compiled into classes that refer to one of the given classes or their subtypes
+    */
+  public Set<File> getDependents(Set<String> classNames) {
+    final HashSet<File> dependents = new HashSet<File>();
+    if (classNames.isEmpty()) return dependents;
+    final HashSet<String> closure = new HashSet<String>(classNames);
+    boolean grew = true;
+    while (grew) {
+      grew = false;
+      for (SourceEntry source: _sources.values()) {
+        for (ClassEntry c: source._classes) {
+          if (! closure.contains(c._name) && ! Collections.disjoint(c._supertypes, closure)) {
+            closure.add(c._name);
+            grew = true;
+          }
+        }
+      }
+    }
+    for (Map.Entry<File, SourceEntry> e: _sources.entrySet()) {
+      for (ClassEntry c: e.getValue()._classes) {
+        if (! Collections.disjoint(c._references, closure)) {
+          dependents.add(e.getKey());
+          break;
+        }
+      }
+    }
+    return dependents;
+  }
+  
+  /** @return a new set holding the sources in this graph */
+  public Set<File> getSources() { return new HashSet<File>(_sources.keySet()); }
+  
+  /** @return the number of sources in this graph */
+  public int size() { return _sources.size(); }
+  
+  /** Finds the class files in the build directory modified at or after the given time and attributes them to the 
+    * given sources, using the package of each class and its SourceFile attribute (or the name of its outermost class).
+    * @param since the time (in milliseconds) at which the compilation started
+    * @param sources the canonical sources that were compiled
+    * @return a map from each source to the classes compiled from it; sources without classes are absent
+    */
+  public Map<File, List<ClassEntry>> readCompiledClasses(long since, Collection<File> sources) {
+    final HashMap<String, File> sourcesByName = new HashMap<String, File>();
+    for (File f: sources) {
+      final File old = sourcesByName.put(f.getName(), f);
+      if (old != null) sourcesByName.put(f.getName(), null);  // ambiguous name; resolved by path below
+    }
+    final HashMap<File, List<ClassEntry>> result = new HashMap<File, List<ClassEntry>>();
+    final LinkedList<File> dirs = new LinkedList<File>();
+    dirs.add(_buildDir);
+    while (! dirs.isEmpty()) {
+      final File[] files = dirs.removeFirst().listFiles();
+      if (files == null) continue;
+      for (File f: files) {
+        if (f.isDirectory()) dirs.add(f);
+        else if (f.getName().endsWith(".class") && f.lastModified() >= since) {
+          final ClassEntry c = readClassFile(f);
+          if (c == null) continue;
+          final File source = _findSource(c, sourcesByName, sources);
+          if (source == null) continue;
+          List<ClassEntry> classes = result.get(source);
+          if (classes == null) {
+            classes = new ArrayList<ClassEntry>();
+            result.put(source, classes);
+          }
+          classes.add(c);
+        }
+      }
+    }
+    return result;
+  }
+  
+  /** @return the source among the given sources from which the given class was compiled, or null */
+  private static File _findSource(ClassEntry c, HashMap<String, File> sourcesByName, Collection<File> sources) {
+    final int slash = c._name.lastIndexOf('/');
+    final String pkgPath = (slash < 0) ? "" : c._name.substring(0, slash + 1).replace('/', File.separatorChar);
+    final String sourceName = c._sourceFile;
+    if (! sourcesByName.containsKey(sourceName)) return null;
+    final File source = sourcesByName.get(sourceName);
+    final String suffix = File.separator + pkgPath + sourceName;
+    if (source != null) return source.getPath().endsWith(suffix) || pkgPath.length() == 0 ? source : null;
+    for (File f: sources) if (f.getPath().endsWith(suffix)) return f;
+    return null;
+  }
+  
+  /** Reads the API, constants, and references of a class file.
+    * @param file a class file
+    * @return the class entry, or null if the file cannot be read
+    */
+  public static ClassEntry readClassFile(File file) {
+    try {
+      final InputStream in = new FileInputStream(file);
+      final ClassReader reader;
+      try { reader = new ClassReader(in); }
+      finally { in.close(); }
+      
+      final ApiVisitor api = new ApiVisitor();
+      reader.accept(api, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+      final String name = reader.getClassName();
+      String sourceFile = api._sourceFile;
+      if (sourceFile == null) {  // compiled without debugging information; guess from the outermost class
+        String outer = name.substring(name.lastIndexOf('/') + 1);
+        final int dollar = outer.indexOf('$');
+        if (dollar > 0) outer = outer.substring(0, dollar);
+        sourceFile = outer + ".java";
+      }
+      final HashSet<String> refs = _readReferences(reader);
+      refs.remove(name);
+      final ClassEntry c = new ClassEntry(name, api.digest(), api._hasConstants, api._supertypes, refs);
+      c._sourceFile = sourceFile;
+      return c;
+    }
+    catch(IOException e) {
+      _log.log("Could not read " + file + ": " + e);
+      return null;
+    }
+    catch(RuntimeException e) {  // malformed class file
+      _log.log("Could not parse " + file + ": " + e);
+      return null;
+    }
+  }
+  
+  /** Collects the names of the classes referenced from the constant pool: class constants and class types in 
+    * descriptors and signatures.  Classes in the java.* packages are omitted. */
+  private static HashSet<String> _readReferences(ClassReader reader) throws IOException {
+    final HashSet<String> refs = new HashSet<String>();
+    for (int i = 1; i < reader.getItemCount(); i++) {
+      final int index = reader.getItem(i);
+      if (index == 0) continue;  // second slot of a long or double constant
+      final int tag = reader.readByte(index - 1);
+      if (tag == 7) _addReference(refs, _readUTF8(reader, reader.getItem(reader.readUnsignedShort(index))));
+      else if (tag == 1) {  // CONSTANT_Utf8: scan for descriptors
+        final String s = _readUTF8(reader, index);
+        int start = s.indexOf('L');
+        while (start >= 0) {
+          final int end = s.indexOf(';', start);
+          if (end < 0) break;
+          final int lt = s.indexOf('<', start);  // generic signatures
+          final int stop = (lt >= 0 && lt < end) ? lt : end;
+          _addReference(refs, s.substring(start + 1, stop));
+          start = s.indexOf('L', start + 1);
+        }
+      }
+    }
+    return refs;
+  }
+  
+  /** Decodes the CONSTANT_Utf8 item at the given offset of the class file. */
+  private static String _readUTF8(ClassReader reader, int index) throws IOException {
+    final int length = reader.readUnsignedShort(index);
+    return new DataInputStream(new ByteArrayInputStream(reader.b, index, length + 2)).readUTF();
+  }
+  
+  private static void _addReference(Set<String> refs, String name) {
+    if (name.startsWith("[")) {  // array class constant
+      final int l = name.indexOf('L');
+      if (l < 0) return;
+      name = name.substring(l + 1, name.length() - 1);
+    }
+    if (name.length() > 0 && ! name.startsWith("java/") && name.indexOf(' ') < 0 && name.indexOf('\t') < 0) {
+      refs.add(name);
+    }
+  }
+  
+  /** Computes a digest of the API of a class: its header, inner class table, and non-private members. */
+  private static class ApiVisitor extends ClassVisitor {
+    private final ArrayList<String> _members = new ArrayList<String>();
+    private String _header = "";
+    private String _sourceFile = null;
+    private boolean _hasConstants = false;
+    private final HashSet<String> _supertypes = new HashSet<String>();
+    
+    ApiVisitor() { super(Opcodes.ASM6); }
+    
+    public void visit(int version, int access, String name, String signature, String superName, 
+                      String[] interfaces) {
+      _header = access + " " + name + " " + signature + " " + superName + " " + Arrays.toString(interfaces);
+      if (superName != null) _addReference(_supertypes, superName);
+      if (interfaces != null) for (String i: interfaces) _addReference(_supertypes, i);
+    }
+    public void visitSource(String source, String debug) { _sourceFile = source; }
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {
+      _members.add("I " + name + " " + outerName + " " + innerName + " " + access);
+    }
+    public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+      if ((access & Opcodes.ACC_PRIVATE) == 0) {
+        _members.add("F " + access + " " + name + " " + desc + " " + signature + " " + value);
+        if (value != null && (access & Opcodes.ACC_STATIC) != 0 && (access & Opcodes.ACC_FINAL) != 0) {
+          _hasConstants = true;
+        }
+      }
+      return null;
+    }
+    public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+      if ((access & Opcodes.ACC_PRIVATE) == 0) {
+        _members.add("M " + access + " " + name + " " + desc + " " + signature + " " + Arrays.toString(exceptions));
+      }
+      return null;
+    }
+    
+    String digest() {
+      Collections.sort(_members);
+      try {
+        final MessageDigest md = MessageDigest.getInstance("MD5");
+        md.update(_header.getBytes("UTF-8"));
+        for (String m: _members) { md.update((byte) '\n'); md.update(m.getBytes("UTF-8")); }
+        final StringBuilder sb = new StringBuilder();
+        for (byte b: md.digest()) sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        return sb.toString();
+      }
+      catch(NoSuchAlgorithmException e) { throw new UnexpectedException(e); }
+      catch(java.io.UnsupportedEncodingException e) { throw new UnexpectedException(e); }
+    }
+  }
+  
+  /** The record of a compiled source file. */
+  private static class SourceEntry {
+    private final long _lastModified;
+    private final long _length;
+    /** False if the time stamp was too recent to be trusted, so the source must be recompiled next time. */
+    private final boolean _isTrusted;
+    private final ArrayList<ClassEntry> _classes = new ArrayList<ClassEntry>();
+    SourceEntry(long lastModified, long length, boolean isTrusted) {
+      _lastModified = lastModified;
+      _length = length;
+      _isTrusted = isTrusted;
+    }
+  }
+  
+  /** The record of a compiled class. */
+  public static class ClassEntry {
+    private final String _name;
+    private final String _api;
+    private final boolean _hasConstants;
+    private final Set<String> _supertypes;
+    private final Set<String> _references;
+    /** The name of the source file, as recorded in the class file; not stored in the graph. */
+    private String _sourceFile;
+    
+    ClassEntry(String name, String api, boolean hasConstants, Set<String> supertypes, Set<String> references) {
+      _name = name;
+      _api = api;
+      _hasConstants = hasConstants;
+      _supertypes = supertypes;
+      _references = references;
+    }
+    
+    /** @return the internal name of this class */
+    public String getName() { return _name; }
+    
+    /** @return the digest of the API of this class */
+    public String getApi() { return _api; }
+    
+    /** @return the internal names of the direct superclass and interfaces of this class (outside java.*) */
+    public Set<String> getSupertypes() { return _supertypes; }
+    
+    /** @return the internal names of the classes referred to by this class */
+    public Set<String> getReferences() { return _references; }
+  }
+}
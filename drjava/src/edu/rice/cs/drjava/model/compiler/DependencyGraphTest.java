@@ -0,0 +1,260 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import javax.tools.ToolProvider;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.DJError;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.reflect.JavaVersion;
+
+/** Tests the DependencyGraph used for incremental compilation.
+  * @version $Id$
+  */
+public class DependencyGraphTest extends DrJavaTestCase {
+  private static final String CONFIG = "javac; classPath = []";
+  
+  private File _buildDir;
+  private File _srcDir;
+  private File _a;
+  private File _b;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    File root = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+    _buildDir = new File(root, "classes");
+    File srcDir = new File(root, "src" + File.separator + "p");
+    _srcDir = srcDir;
+    new File(_buildDir, "p").mkdirs();
+    srcDir.mkdirs();
+    _a = IOUtil.attemptCanonicalFile(new File(srcDir, "A.java"));
+    _b = IOUtil.attemptCanonicalFile(new File(srcDir, "B.java"));
+    IOUtil.writeStringToFile(_a, "package p; class A { }");
+    IOUtil.writeStringToFile(_b, "package p; class B { A a; }");
+    _age(_a);
+    _age(_b);
+  }
+  
+  /** Moves the time stamp of f into the past so the graph trusts it. */
+  private static void _age(File f) { f.setLastModified(System.currentTimeMillis() - 10000); }
+  
+  /** Writes class p/name with the given method and, if ref is not null, a field of type p/ref. */
+  private void _writeClass(String name, String method, String ref, boolean constant) throws Exception {
+    _writeClass(name, "java/lang/Object", method, ref, constant);
+  }
+  
+  /** Writes class p/name extending superName with the given method and, if ref is not null, a field of type p/ref. */
+  private void _writeClass(String name, String superName, String method, String ref, boolean constant) 
+    throws Exception {
+    ClassWriter cw = new ClassWriter(0);
+    cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "p/" + name, null, superName, null);
+    cw.visitSource(name + ".java", null);
+    if (ref != null) cw.visitField(Opcodes.ACC_PUBLIC, "f", "Lp/" + ref + ";", null, null).visitEnd();
+    if (constant) cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "C", "I", null, 1);
+    cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, method, "()V", null, null).visitEnd();
+    cw.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_ABSTRACT, "hidden" + System.nanoTime(), "()V", null, null);
+    cw.visitEnd();
+    FileOutputStream out = new FileOutputStream(new File(_buildDir, "p" + File.separator + name + ".class"));
+    try { out.write(cw.toByteArray()); }
+    finally { out.close(); }
+  }
+  
+  /** Compiles both classes and records them in a fresh graph. */
+  private DependencyGraph _record() throws Exception {
+    _writeClass("A", "foo", null, false);
+    _writeClass("B", "bar", "A", false);
+    DependencyGraph graph = new DependencyGraph(_buildDir, CONFIG);
+    List<File> sources = Arrays.asList(_a, _b);
+    assertEquals("all sources are stale", sources, graph.getStaleSources(sources));
+    Map<File, List<DependencyGraph.ClassEntry>> compiled = graph.readCompiledClasses(0, sources);
+    assertEquals("A compiled from A.java", "p/A", compiled.get(_a).get(0).getName());
+    assertEquals("B compiled from B.java", "p/B", compiled.get(_b).get(0).getName());
+    assertTrue("B refers to A", compiled.get(_b).get(0).getReferences().contains("p/A"));
+    Set<String> changed = new HashSet<String>();
+    for (File f: sources) assertFalse("no constants", graph.record(f, compiled.get(f), changed));
+    assertEquals("new classes changed", new HashSet<String>(Arrays.asList("p/A", "p/B")), changed);
+    assertEquals("nothing stale", 0, graph.getStaleSources(sources).size());
+    return graph;
+  }
+  
+  /** Tests that stale sources and the dependents of API changes are found. */
+  public void testStaleSourcesAndDependents() throws Exception {
+    DependencyGraph graph = _record();
+    List<File> sources = Arrays.asList(_a, _b);
+    
+    // Changing a private member does not change the API
+    _writeClass("A", "foo", null, false);
+    Set<String> changed = new HashSet<String>();
+    graph.record(_a, graph.readCompiledClasses(0, Arrays.asList(_a)).get(_a), changed);
+    assertEquals("private change", 0, changed.size());
+    
+    // Changing a public member does
+    _writeClass("A", "baz", null, false);
+    graph.record(_a, graph.readCompiledClasses(0, Arrays.asList(_a)).get(_a), changed);
+    assertEquals("public change", Collections.singleton("p/A"), changed);
+    assertEquals("B depends on A", Collections.singleton(_b), graph.getDependents(changed));
+    
+    // Adding a constant requires everything to be recompiled
+    _writeClass("A", "baz", null, true);
+    assertTrue("constant", graph.record(_a, graph.readCompiledClasses(0, Arrays.asList(_a)).get(_a), changed));
+    
+    // Editing a source or deleting a class file makes it stale
+    IOUtil.writeStringToFile(_a, "package p; class A { void foo() { } }");
+    assertEquals("edited A", Arrays.asList(_a), graph.getStaleSources(sources));
+    new File(_buildDir, "p" + File.separator + "B.class").delete();
+    assertEquals("edited A, deleted B", sources, graph.getStaleSources(sources));
+  }
+  
+  /** Tests that the graph survives being saved and loaded, but not a change of configuration. */
+  public void testSaveAndLoad() throws Exception {
+    DependencyGraph graph = _record();
+    graph.save();
+    List<File> sources = Arrays.asList(_a, _b);
+    
+    DependencyGraph loaded = DependencyGraph.load(_buildDir, CONFIG);
+    assertEquals("loaded size", 2, loaded.size());
+    assertEquals("nothing stale", 0, loaded.getStaleSources(sources).size());
+    assertEquals("B depends on A", Collections.singleton(_b), loaded.getDependents(Collections.singleton("p/A")));
+    
+    Set<String> changed = new HashSet<String>();
+    loaded.removeMissing(changed);
+    assertEquals("nothing missing", 0, changed.size());
+    _a.delete();
+    loaded.removeMissing(changed);
+    assertEquals("removed A", Collections.singleton("p/A"), changed);
+    assertEquals("A is stale", Arrays.asList(_a), loaded.getStaleSources(sources));
+    
+    assertEquals("other configuration", 0, DependencyGraph.load(_buildDir, CONFIG + "x").size());
+    DependencyGraph.delete(_buildDir);
+    assertEquals("deleted", 0, DependencyGraph.load(_buildDir, CONFIG).size());
+  }
+  
+  /** Tests that the dependents of a class include the code referring to its indirect subtypes. */
+  public void testSubtypeDependents() throws Exception {
+    DependencyGraph graph = _record();
+    File c = IOUtil.attemptCanonicalFile(new File(_srcDir, "C.java"));
+    File d = IOUtil.attemptCanonicalFile(new File(_srcDir, "D.java"));
+    IOUtil.writeStringToFile(c, "package p; class C extends A { }");
+    IOUtil.writeStringToFile(d, "package p; class D { C c; }");
+    _writeClass("C", "p/A", "baz", null, false);
+    _writeClass("D", "quux", "C", false);
+    List<File> added = Arrays.asList(c, d);
+    Map<File, List<DependencyGraph.ClassEntry>> compiled = graph.readCompiledClasses(0, added);
+    assertEquals("C extends A", Collections.singleton("p/A"), compiled.get(c).get(0).getSupertypes());
+    Set<String> changed = new HashSet<String>();
+    for (File f: added) graph.record(f, compiled.get(f), changed);
+    
+    assertEquals("dependents of A", new HashSet<File>(Arrays.asList(_b, c, d)), 
+                 graph.getDependents(Collections.singleton("p/A")));
+    assertEquals("dependents of C", Collections.singleton(d), graph.getDependents(Collections.singleton("p/C")));
+    assertEquals("dependents of D", Collections.<File>emptySet(), graph.getDependents(Collections.singleton("p/D")));
+    
+    graph.save();
+    assertEquals("supertypes are saved", new HashSet<File>(Arrays.asList(_b, c, d)), 
+                 DependencyGraph.load(_buildDir, CONFIG).getDependents(Collections.singleton("p/A")));
+  }
+  
+  /** Tests that compiling part of the sources keeps the graph entries of the others, and that a later compilation of
+    * all sources recompiles exactly the dependents of the changed API, including those that only name a subtype. */
+  public void testCompileIncrementally() throws Exception {
+    IOUtil.writeStringToFile(_a, "package p; public class A { public void foo() { } }");
+    IOUtil.writeStringToFile(_b, "package p; public class B extends A { }");
+    File c = IOUtil.attemptCanonicalFile(new File(_srcDir, "C.java"));
+    IOUtil.writeStringToFile(c, "package p; class C { void m(B b) { b.foo(); } }");
+    for (File f: new File[] { _a, _b, c }) _age(f);
+    List<File> all = Arrays.asList(_a, _b, c);
+    List<File> compiled = new ArrayList<File>();
+    CompilerInterface compiler = _compiler(compiled);
+    List<File> classPath = Collections.emptyList();
+    
+    assertEquals(0, DefaultCompilerModel._compileIncrementally(compiler, all, classPath, _buildDir, null).size());
+    assertEquals("first compilation", all, compiled);
+    compiled.clear();
+    DefaultCompilerModel._compileIncrementally(compiler, Arrays.asList(_a), classPath, _buildDir, null);
+    DefaultCompilerModel._compileIncrementally(compiler, all, classPath, _buildDir, null);
+    assertEquals("nothing changed", Collections.<File>emptyList(), compiled);
+    
+    // Only A is compiled, so B and C are left stale; C calls foo through B, so it must be recompiled too
+    IOUtil.writeStringToFile(_a, "package p; public class A { public void foo() { } public void bar() { } }");
+    _a.setLastModified(System.currentTimeMillis() - 5000);
+    DefaultCompilerModel._compileIncrementally(compiler, Arrays.asList(_a), classPath, _buildDir, null);
+    assertEquals("partial compilation", Arrays.asList(_a), compiled);
+    compiled.clear();
+    DefaultCompilerModel._compileIncrementally(compiler, all, classPath, _buildDir, null);
+    assertEquals("dependents", new HashSet<File>(Arrays.asList(_b, c)), new HashSet<File>(compiled));
+  }
+  
+  /** A compiler that runs the system compiler, adding the files it is given to compiled. */
+  private static CompilerInterface _compiler(final List<File> compiled) {
+    InvocationHandler h = new InvocationHandler() {
+      public Object invoke(Object proxy, Method m, Object[] args) {
+        if (m.getName().equals("getName")) return "javax.tools";
+        else if (m.getName().equals("version")) return JavaVersion.JAVA_6;
+        else if (m.getName().equals("compile")) {
+          List<String> javacArgs = new ArrayList<String>();
+          javacArgs.add("-d");
+          javacArgs.add(((File) args[3]).getPath());
+          javacArgs.add("-cp");
+          List<File> classPath = new ArrayList<File>();
+          for (Object f: (List<?>) args[1]) classPath.add((File) f);
+          javacArgs.add(IOUtil.pathToString(classPath));
+          for (Object f: (List<?>) args[0]) {
+            compiled.add((File) f);
+            javacArgs.add(((File) f).getPath());
+          }
+          int result = ToolProvider.getSystemJavaCompiler().run(null, null, null, javacArgs.toArray(new String[0]));
+          assertEquals("javac succeeded", 0, result);
+          return Collections.<DJError>emptyList();
+        }
+        else throw new UnsupportedOperationException(m.getName());
+      }
+    };
+    return (CompilerInterface) Proxy.newProxyInstance(CompilerInterface.class.getClassLoader(), 
+                                                      new Class<?>[] { CompilerInterface.class }, h);
+  }
+}
@@ -378,6 +378,9 @@ public abstract class JavacCompiler implements CompilerInterface {
     * @return true if language levels can be used. */
   public boolean supportsLanguageLevels() { return true; }
   
+  /** Discards any state kept between compilations.  Does nothing unless overridden. */
+  public void resetCaches() { }
+  
   /** Return the set of keywords that should be highlighted in the specified file.
     * @param f file for which to return the keywords
     * @return the set of keywords that should be highlighted in the specified file. */
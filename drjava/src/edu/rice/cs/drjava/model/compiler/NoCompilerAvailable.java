@@ -117,6 +117,8 @@ public class NoCompilerAvailable implements CompilerInterface {
     * @return true if language levels can be used. */
   public boolean supportsLanguageLevels() { return true; }
   
+  public void resetCaches() { }
+  
   /** Return the set of keywords that should be highlighted in the specified file.
     * @param f file for which to return the keywords
     * @return the set of keywords that should be highlighted in the specified file. */
@@ -178,6 +178,19 @@ public class DebugEventNotifier extends EventNotifier<DebugListener> implements
     finally { _lock.endRead(); }
   }
 
+  /** Called when the value or type of a watch has been updated.  Must be executed in event thread.
+    * @param w the watch
+    */
+  public void watchUpdated(DebugWatchData w) {
+    assert EventQueue.isDispatchThread();
+    _lock.startRead();
+    try {
+      int size = _listeners.size();
+      for (int i = 0; i < size; i++) { _listeners.get(i).watchUpdated(w); }
+    }
+    finally { _lock.endRead(); }
+  }
+
   /** Called when a breakpoint is removed from a document.  Must be executed in event thread.
     * @param bp the breakpoint
     */
@@ -74,6 +74,11 @@ public interface DebugListener extends RegionManagerListener<Breakpoint> {
     */
   public void watchRemoved(DebugWatchData w);
   
+  /** Called when the value or type of a watch has been updated.  Must be executed in event thread.
+    * @param w the watch
+    */
+  public void watchUpdated(DebugWatchData w);
+  
   /** Called when a step is requested on the current thread.  Must be executed in event thread. */
   public void stepRequested();
   
@@ -535,6 +535,9 @@ public abstract class DebugTestCase extends GlobalModelTestCase {
     
     public void watchRemoved(DebugWatchData w) { fail("watchRemoved fired unexpectedly"); }
     
+    /** Watches are updated asynchronously, so updates are not counted. */
+    public void watchUpdated(DebugWatchData w) { }
+    
     public void stepRequested() { fail("stepRequested fired unexpectedly"); }
     
     public void currThreadSuspended() { fail("currThreadSuspended fired unexpectedly"); }
@@ -37,6 +37,7 @@
 package edu.rice.cs.drjava.model.debug;
 
 import java.util.ArrayList;
+import java.util.List;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 
 /** Interface for any debugger implementation to be used by DrJava.
@@ -171,7 +172,7 @@ public interface Debugger {
   /** @return a Vector of StackData for the current thread.
     * @throws DebugException if an error occurs 
     */
-  public ArrayList<DebugStackData> getCurrentStackFrameData() throws DebugException;
+  public List<DebugStackData> getCurrentStackFrameData() throws DebugException;
   
   /** @return true if there are any threads in the program currently being
     * debugged which have been suspended (by the user or by hitting a breakpoint).
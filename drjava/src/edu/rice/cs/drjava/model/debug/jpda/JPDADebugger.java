@@ -57,6 +57,7 @@ import edu.rice.cs.drjava.model.DrJavaFileUtils;
 import edu.rice.cs.drjava.model.repl.DefaultInteractionsModel;
 import edu.rice.cs.drjava.model.repl.DummyInteractionsListener;
 import edu.rice.cs.drjava.model.repl.InteractionsListener;
+import edu.rice.cs.drjava.model.repl.InteractionsModel;
 import edu.rice.cs.drjava.model.repl.newjvm.InterpreterJVM;
 import edu.rice.cs.drjava.model.compiler.LanguageLevelStackTraceMapper;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
@@ -116,9 +117,17 @@ public class JPDADebugger implements Debugger {
   /** Manages all event requests in JDI. */
   private volatile EventRequestManager _eventManager;
   
+  /** Stack frames of the current suspended thread, fetched during this suspension; null if none have been requested
+    * since the last suspension or resumption.  Only accessed in event thread. */
+  private volatile JPDAStackFrames _stackFrames = null;
+  
   /** Vector of all current Watches. */
   private final ArrayList<DebugWatchData> _watches = new ArrayList<DebugWatchData>();
   
+  /** Incremented whenever the watches are updated or hidden, so that the results of older updates are dropped.  Only
+    * modified in event thread. */
+  private volatile int _watchGeneration = 0;
+  
   /** Keeps track of any DebugActions whose classes have not yet been loaded, so that EventRequests can be created when the correct
     * ClassPrepareEvent occurs.
     */
@@ -747,12 +756,13 @@ public class JPDADebugger implements Debugger {
     return threads;
   }
   
-  /** Returns a Vector of DebugStackData for the current suspended thread.
-   * @throws DebugException if the current thread is running or there
-   * are no suspended threads
-   * TO DO: Config option for hiding DrJava subset of stack trace
-   */
-  public ArrayList<DebugStackData> getCurrentStackFrameData() throws DebugException {
+  /** Returns the stack frames of the current suspended thread.  The frames are fetched lazily, a page at a time, and
+    * kept until the thread resumes, so repeated calls during one suspension cost nothing.
+    * @throws DebugException if the current thread is running or there
+    * are no suspended threads
+    * TO DO: Config option for hiding DrJava subset of stack trace
+    */
+  public List<DebugStackData> getCurrentStackFrameData() throws DebugException {
     assert EventQueue.isDispatchThread();
     if (! isReady()) return new ArrayList<DebugStackData>();
     
@@ -762,15 +772,13 @@ public class JPDADebugger implements Debugger {
     
     try {
       ThreadReference thread = _suspendedThreads.peek();
-      ArrayList<DebugStackData> frames = new ArrayList<DebugStackData>();
-      // get a list of language level files whose line numbers need to be translated 
-      final List<File> files = new ArrayList<File>();
-      for (OpenDefinitionsDocument odd: _model.getLLOpenDefinitionsDocuments()) { files.add(odd.getRawFile()); }
-      for (StackFrame f : thread.frames()) {
-        // map Java line numbers to LL line numbers
-        String method = JPDAStackData.methodName(f);
-        StackTraceElement ste = getLLStackTraceElement(f.location(), files);
-        frames.add(new JPDAStackData(method, ste.getLineNumber()));
+      JPDAStackFrames frames = _stackFrames;
+      if (frames == null || frames.getThread() != thread) {
+        // get a list of language level files whose line numbers need to be translated 
+        final List<File> files = new ArrayList<File>();
+        for (OpenDefinitionsDocument odd: _model.getLLOpenDefinitionsDocuments()) { files.add(odd.getRawFile()); }
+        frames = new JPDAStackFrames(this, thread, files);
+        _stackFrames = frames;
       }
       return frames;
     }
@@ -782,10 +790,6 @@ public class JPDADebugger implements Debugger {
       error.log("VMDisconnected when getting the current stack frame data.", vmde);
       return new ArrayList<DebugStackData>();
     }
-    catch (InvalidStackFrameException isfe) {
-      error.log("The stack frame requested is invalid.", isfe);
-      return new ArrayList<DebugStackData>();
-    }
   }
   
   /** Return the adjusted location (identical to input unless the matching 
@@ -891,8 +895,23 @@ public class JPDADebugger implements Debugger {
     }
     
     ThreadReference threadRef = _suspendedThreads.peek();
-    Iterator<StackFrame> i;
+    final List<File> files = new ArrayList<File>();
+    for(OpenDefinitionsDocument odd: _model.getLLOpenDefinitionsDocuments()) { files.add(odd.getRawFile()); }
     
+    // a frame from the current stack table: fetch just that frame
+    JPDAStackFrames frames = _stackFrames;
+    int index = (frames != null && frames.getThread() == threadRef) ? frames.indexOf(stackData) : -1;
+    if (index >= 0) {
+      try {
+        scrollToSource(getLLLocation(threadRef.frame(index).location(), files), false);
+        return;
+      }
+      catch (IncompatibleThreadStateException e) {
+        throw new DebugException("Unable to find stack frames: " + e);
+      }
+    }
+    
+    Iterator<StackFrame> i;
     try {
       if (threadRef.frameCount() <= 0 ) {
         printMessage("Could not scroll to source. The current thread had no stack frames.");
@@ -904,9 +923,6 @@ public class JPDADebugger implements Debugger {
       throw new DebugException("Unable to find stack frames: " + e);
     }
 
-    final List<File> files = new ArrayList<File>();
-    for(OpenDefinitionsDocument odd: _model.getLLOpenDefinitionsDocuments()) { files.add(odd.getRawFile()); }
-    
     // map Java to LL line numbers using LanguageLevelStackTraceMapper
     while (i.hasNext()) {
       StackFrame frame = i.next();
@@ -948,7 +964,8 @@ public class JPDADebugger implements Debugger {
     assert EventQueue.isDispatchThread();
     for (int i = 0; i < _model.getBreakpointManager().getRegions().size(); i++) {
       Breakpoint bp = _model.getBreakpointManager().getRegions().get(i);
-      if ((LLBreakpointLineNum(bp) ==  line) && (bp.getClassName().equals(className))) {
+      // compare the class first: mapping the line of a language level file reads its line number map
+      if (bp.getClassName().equals(className) && (LLBreakpointLineNum(bp) == line)) {
         return bp;
       }
     }
@@ -1250,6 +1267,7 @@ public class JPDADebugger implements Debugger {
     
     
     _runningThread = thread;
+    _stackFrames = null;
     if (!fromStep) {
       // Copy variables back into the thread
       _copyVariablesFromInterpreter();
@@ -1290,6 +1308,7 @@ public class JPDADebugger implements Debugger {
     // We do this before stepping since DrJava will hang if you try to copy back
     // variables after creating the step request.
     _runningThread = thread;
+    _stackFrames = null;
     _copyVariablesFromInterpreter();
     
     _log.log(this + " is Deleting pending requests ...");
@@ -1432,53 +1451,49 @@ public class JPDADebugger implements Debugger {
     * is already held.
     */
   private void _hideWatches() {
+    _watchGeneration++;  // drop the results of pending updates
     for (int i = 0; i < _watches.size(); i++) {
       DebugWatchData currWatch = _watches.get(i);
       currWatch.hideValueAndType();
     }
   }
   
-  /** Updates the stored value of each watched field and variable. Synchronization is necessary because this method is 
-    * called from unsynchronized listeners. */
-  private /* synchronized */ void _updateWatches() {
+  /** Updates the stored value of each watched field and variable.  The watches are evaluated on a separate thread in
+    * a single request to the interpreter, so that a long list of watches does not block the event thread; the results
+    * are applied in the event thread, firing watchUpdated.  Results are dropped if the watches have been updated or
+    * hidden again in the meantime.  Only runs in event thread.
+    */
+  private void _updateWatches() {
     assert EventQueue.isDispatchThread();
     if (! isReady()) return;
     
-    for (DebugWatchData w : _watches) {
-      String name = w.getName();
-      String val = "";
-      String type = "";
-//      ArrayList<Integer> arr_index = new ArrayList<Integer>();
-//      
-//      if (name.indexOf("[") != -1 && name.indexOf("]") != -1) {
-//        name = name.substring(0, name.indexOf("["));
-//        arr_index.add(Integer.parseInt(w.getName().substring(w.getName().indexOf("[")+1, w.getName().indexOf("]"))));      
-//        if (w.getName().indexOf("]")<(w.getName().length()-1)) {
-//          String iter = w.getName().substring(w.getName().indexOf("]")+1, w.getName().length());
-//          while(iter.indexOf("[") != -1 && iter.indexOf("]") != -1) {
-//            arr_index.add(Integer.parseInt(iter.substring(iter.indexOf("[")+1, iter.indexOf("]"))));      
-//            if (iter.indexOf("]")<(iter.length()-1))
-//              iter = iter.substring(iter.indexOf("]")+1, iter.length());
-//            else 
-//              iter = "";
-//          }
-//        }
-//      }
-//     
-//      int [] indices = new int[arr_index.size()];
-//      for (int i = 0; i < arr_index.size(); i++) {
-//        indices[i] = arr_index.get(i);
-//      }
-      Pair<String,String> pair = _model.getInteractionsModel().getVariableToString(name);
-      // System.out.println("pair == null? "+(pair == null));
-      val = pair.first();
-      type = pair.second();
-      
-      if (val == null) { w.setNoValue(); }
-      else { w.setValue(val); }
-      if (type == null) { w.setNoType(); }
-      else { w.setType(type); }
-    }
+    final int generation = ++_watchGeneration;
+    final List<DebugWatchData> watches = new ArrayList<DebugWatchData>(_watches);
+    if (watches.isEmpty()) return;
+    final InteractionsModel interactionsModel = _model.getInteractionsModel();
+    new Thread("Update Watches") {
+      public void run() {
+        List<String> names = new ArrayList<String>(watches.size());
+        for (DebugWatchData w: watches) { names.add(w.getName()); }
+        final List<Pair<String,String>> values = interactionsModel.getVariablesToString(names);
+        Utilities.invokeLater(new Runnable() {
+          public void run() {
+            if (generation != _watchGeneration) return;
+            for (int i = 0; i < watches.size(); i++) {
+              DebugWatchData w = watches.get(i);
+              if (! _watches.contains(w)) continue;  // removed in the meantime
+              String val = values.get(i).first();
+              String type = values.get(i).second();
+              if (val == null) { w.setNoValue(); }
+              else { w.setValue(val); }
+              if (type == null) { w.setNoType(); }
+              else { w.setType(type); }
+              _notifier.watchUpdated(w);
+            }
+          }
+        });
+      }
+    }.start();
   }
   
   /** Copy the current selected thread's visible variables (those in scope) into
@@ -1495,16 +1510,19 @@ public class JPDADebugger implements Debugger {
       // Name the new interpreter based on this thread
       String interpreterName = _getUniqueThreadName(thread);
       ObjectReference mirroredName = _mirrorString(interpreterName, toRelease);
-      ObjectReference thisVal = thread.frame(0).thisObject();
-      ClassObjectReference thisClass = thread.frame(0).location().declaringType().classObject();
+      // frame is invalidated by the first method invoked in thread (as in _box), so everything needed from it
+      // is fetched up front; the values of all locals come in one request
+      StackFrame frame = thread.frame(0);
+      ObjectReference thisVal = frame.thisObject();
+      ClassObjectReference thisClass = frame.location().declaringType().classObject();
       
       List<ObjectReference> localVars = new LinkedList<ObjectReference>();
       List<StringReference> localVarNames = new LinkedList<StringReference>();
       List<ClassObjectReference> localVarClasses = new LinkedList<ClassObjectReference>();
       try {
-        // we don't store the value thread.frame(0) anywhere, because it is invalidated
-        // each time we invoke a method in thread (as in _box)
-        for (LocalVariable v : thread.frame(0).visibleVariables()) {
+        List<LocalVariable> visible = frame.visibleVariables();
+        Map<LocalVariable, Value> values = frame.getValues(visible);
+        for (LocalVariable v : visible) {
           try {
             // Get the type first, so that if an error occurs, we haven't mutated the lists.
             Type t = v.type();
@@ -1516,7 +1534,7 @@ public class JPDADebugger implements Debugger {
               localVarClasses.add(null);
             }
             localVarNames.add(_mirrorString(v.name(), toRelease));
-            Value val = thread.frame(0).getValue(v);
+            Value val = values.get(v);
             if (val == null || val instanceof ObjectReference) { localVars.add((ObjectReference) val); }
             else { localVars.add(_box((PrimitiveValue) val, thread, toRelease)); }
           }
@@ -1755,6 +1773,7 @@ public class JPDADebugger implements Debugger {
   private void _switchToSuspendedThread(BreakpointRequest request, boolean updateWatches) throws DebugException {
     _log.log(this + " executing _switchToSuspendedThread()");
     _runningThread = null;
+    _stackFrames = null;
     if (updateWatches) _updateWatches();
     final ThreadReference currThread = _suspendedThreads.peek();
     _notifier.currThreadSuspended();
@@ -0,0 +1,121 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.debug.jpda;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.List;
+
+import com.sun.jdi.*;
+import edu.rice.cs.drjava.model.debug.DebugStackData;
+
+import static edu.rice.cs.plt.debug.DebugUtil.error;
+
+/** The stack frames of a suspended thread, fetched from the debuggee a page at a time when they are first requested.
+  * Only the frames the stack table actually shows are transferred, however deep the stack is.  Frames that cannot be
+  * fetched (because the thread has resumed, for example) are reported as UNAVAILABLE.  Valid until the thread
+  * resumes; only accessed in the event thread.
+  * @version $Id$
+  */
+class JPDAStackFrames extends AbstractList<DebugStackData> {
+  /** Number of frames fetched in one request. */
+  public static final int PAGE_SIZE = 32;
+  
+  /** Placeholder for a frame that could not be fetched. */
+  public static final DebugStackData UNAVAILABLE = new JPDAStackData("<unavailable>", -1);
+  
+  private final JPDADebugger _debugger;
+  private final ThreadReference _thread;
+  /** The language level files whose line numbers need to be translated. */
+  private final List<File> _files;
+  private final DebugStackData[] _frames;
+  
+  /** @param debugger the debugger, which maps locations to language level line numbers
+    * @param thread the suspended thread
+    * @param files the language level files whose line numbers need to be translated
+    * @throws IncompatibleThreadStateException if the thread is not suspended
+    */
+  public JPDAStackFrames(JPDADebugger debugger, ThreadReference thread, List<File> files)
+    throws IncompatibleThreadStateException {
+    _debugger = debugger;
+    _thread = thread;
+    _files = files;
+    _frames = new DebugStackData[thread.frameCount()];
+  }
+  
+  /** @return the thread whose frames these are */
+  public ThreadReference getThread() { return _thread; }
+  
+  public int size() { return _frames.length; }
+  
+  public DebugStackData get(int i) {
+    if (i < 0 || i >= _frames.length) { throw new IndexOutOfBoundsException("Frame " + i); }
+    if (_frames[i] == null) { _fetchPage(i - i % PAGE_SIZE); }
+    return _frames[i];
+  }
+  
+  /** Searches only the frames fetched so far, so it never causes a request to the debuggee.
+    * @param o a frame
+    * @return the index of o, if it was returned by get, or -1
+    */
+  public int indexOf(Object o) {
+    if (o == UNAVAILABLE) { return -1; }
+    for (int i = 0; i < _frames.length; i++) { if (_frames[i] == o) { return i; } }
+    return -1;
+  }
+  
+  /** Fetches the page of frames beginning at start. */
+  private void _fetchPage(int start) {
+    int length = Math.min(PAGE_SIZE, _frames.length - start);
+    try {
+      List<StackFrame> page = _thread.frames(start, length);
+      for (int i = 0; i < page.size(); i++) {
+        StackFrame f = page.get(i);
+        // map Java line numbers to LL line numbers
+        StackTraceElement ste = _debugger.getLLStackTraceElement(f.location(), _files);
+        _frames[start + i] = new JPDAStackData(JPDAStackData.methodName(f), ste.getLineNumber());
+      }
+    }
+    catch (IncompatibleThreadStateException e) { error.log("Unable to obtain stack frames.", e); }
+    catch (IndexOutOfBoundsException e) { error.log("The stack has changed.", e); }
+    catch (InvalidStackFrameException e) { error.log("The stack frame requested is invalid.", e); }
+    catch (VMDisconnectedException e) { error.log("VMDisconnected when getting stack frames.", e); }
+    for (int i = start; i < start + length; i++) {
+      if (_frames[i] == null) { _frames[i] = UNAVAILABLE; }
+    }
+  }
+}
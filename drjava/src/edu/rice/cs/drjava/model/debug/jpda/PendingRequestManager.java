@@ -40,8 +40,9 @@ import com.sun.jdi.*;
 import com.sun.jdi.request.*;
 import com.sun.jdi.event.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Vector;
 import java.util.TreeMap;
 
@@ -57,11 +58,18 @@ import edu.rice.cs.drjava.model.debug.DebugException;
 
 public class PendingRequestManager {
   private volatile JPDADebugger _manager;
-  private volatile HashMap<String, Vector<DocumentDebugAction<?>>> _pendingActions;
+  /** The pending actions, by outer class name. */
+  private volatile HashMap<String, PendingClass> _pendingActions;
+  
+  /** The pending actions of an outer class and its inner classes, and the ClassPrepareRequests that watch for them. */
+  private static class PendingClass {
+    private final ArrayList<DocumentDebugAction<?>> _actions = new ArrayList<DocumentDebugAction<?>>();
+    private final ArrayList<ClassPrepareRequest> _requests = new ArrayList<ClassPrepareRequest>();
+  }
   
   public PendingRequestManager(JPDADebugger manager) {
     _manager = manager;
-    _pendingActions = new HashMap<String, Vector<DocumentDebugAction<?>>>();
+    _pendingActions = new HashMap<String, PendingClass>();
   }
   
   /** Called if a breakpoint is set before its class is prepared
@@ -69,21 +77,24 @@ public class PendingRequestManager {
     */
   public void addPendingRequest (DocumentDebugAction<?> action) {
     String className = action.getClassName();
-    Vector<DocumentDebugAction<?>> actions = _pendingActions.get(className);
-    if (actions == null) {
-      actions = new Vector<DocumentDebugAction<?>>();
+    PendingClass pending = _pendingActions.get(className);
+    if (pending == null) {
+      pending = new PendingClass();
       
-      // only create a ClassPrepareRequest once per class
-      ClassPrepareRequest request =
-        _manager.getEventRequestManager().createClassPrepareRequest();
-      // Listen for events from the class, and also its inner classes
-      request.addClassFilter(className + "*");
-      request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
-      request.enable();
+      // only create the ClassPrepareRequests once per class: one for the class itself, and one for its inner classes
+      // (a single "className*" filter would also report every class whose name merely starts with className)
+      EventRequestManager erm = _manager.getEventRequestManager();
+      for (String filter: new String[] { className, className + "$*" }) {
+        ClassPrepareRequest request = erm.createClassPrepareRequest();
+        request.addClassFilter(filter);
+        request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+        request.enable();
+        pending._requests.add(request);
+      }
       //System.out.println("Creating prepareRequest in class " + className);
+      _pendingActions.put(className, pending);
     }
-    actions.add(action);
-    _pendingActions.put(className, actions);
+    pending._actions.add(action);
   }
   
   /** Called if a breakpoint is set and removed before its class is prepared
@@ -91,14 +102,20 @@ public class PendingRequestManager {
     */
   public void removePendingRequest (DocumentDebugAction<?> action) {
     String className = action.getClassName();
-    Vector<DocumentDebugAction<?>> actions = _pendingActions.get(className);
-    if (actions == null) {
+    PendingClass pending = _pendingActions.get(className);
+    if (pending == null) {
       return;
     }
-    actions.remove(action);
-    // check if the vector is empty
-    if (actions.size() == 0) {
+    pending._actions.remove(action);
+    // check if the list is empty
+    if (pending._actions.size() == 0) {
       _pendingActions.remove(className);
+      EventRequestManager erm = _manager.getEventRequestManager();
+      if (erm != null) {
+        try { erm.deleteEventRequests(pending._requests); }
+        catch (VMDisconnectedException e) { /* the requests are gone anyway */ }
+        catch (VMMismatchException e) { /* the requests belong to an earlier session */ }
+      }
     }
   }
   
@@ -126,12 +143,25 @@ public class PendingRequestManager {
     * @return the correct line number for the .java file
     */
   public int LLDDALineNum(DocumentDebugAction<?> dda){
+    return _LLDDALineNum(dda, new HashMap<File, TreeMap<Integer, Integer>>());
+  }
+  
+  /** Changes a Language Level line number into its java file counterpart, reading each line number map only once.
+    * @param dda the DocumentDebugAction whose line needs to be adjusted
+    * @param maps the line number maps read so far, by .java file
+    * @return the correct line number for the .java file
+    */
+  private int _LLDDALineNum(DocumentDebugAction<?> dda, HashMap<File, TreeMap<Integer, Integer>> maps) {
     int line = dda.getLineNumber();
     File f = dda.getFile();
     
     if (DrJavaFileUtils.isLLFile(f)) {
       f = DrJavaFileUtils.getJavaForLLFile(f);
-      TreeMap<Integer, Integer> tM = _manager.getLLSTM().readLLBlock(f);
+      TreeMap<Integer, Integer> tM = maps.get(f);
+      if (tM == null) {
+        tM = _manager.getLLSTM().readLLBlock(f);
+        maps.put(f, tM);
+      }
       line = tM.get(dda.getLineNumber());
     }
     return line;
@@ -139,15 +169,16 @@ public class PendingRequestManager {
   
   /** Called by the EventHandler whenever a ClassPrepareEvent occurs.  
    * This will take the event, get the class that was prepared, lookup the 
-   * Vector of DebugAction that was waiting for this class's preparation, 
-   * iterate through this  Vector, and attempt to create the Breakpoints that
-   * were pending. Since the keys to the Hashtable are the names of the
+   * actions that were waiting for this class's preparation, 
+   * iterate through them, and attempt to create the Breakpoints that
+   * were pending. Since the keys to the map are the names of the
    * outer class, the $ and everything after it must be cropped off from the
    * class name in order to do the lookup. During the lookup, however, the line
    * number of each action is checked to see if the line number is contained
    * in the given event's ReferenceType. If not, we ignore that pending action
    * since it is not in the class that was just prepared, but may be in one of its
-   * inner classes.
+   * inner classes.  The lines of the ReferenceType are fetched once, so the cost
+   * of an event does not grow with the number of requests made to the debuggee.
    * @param event The ClassPrepareEvent that just occured
    * @throws DebugException if something goes wrong
    */
@@ -165,43 +196,46 @@ public class PendingRequestManager {
     }
     
     // Get the pending actions for this class (and inner classes)
-    Vector<DocumentDebugAction<?>> actions = _pendingActions.get(className);
+    PendingClass pending = _pendingActions.get(className);
     Vector<DocumentDebugAction<?>> failedActions =
       new Vector<DocumentDebugAction<?>>();
     //DrJava.consoleOut().println("pending actions: " + actions);
-    if (actions == null) {
-      // Must have been a different class with a matching prefix, ignore it
-      // since we're not interested in this class.
-      return;
-    }
-    else if (actions.isEmpty()) {
+    if (pending == null) {
       // any actions that were waiting for this class to be prepared have been
-      // removed
-      _manager.getEventRequestManager().deleteEventRequest(event.request());
+      // removed, along with the requests; this event was already queued
       return;
     }
+    ArrayList<DocumentDebugAction<?>> actions = pending._actions;
+    
+    // the executable lines of rt, or null if it has no line number info
+    HashSet<Integer> executableLines = null;
+    try {
+      HashSet<Integer> lines = new HashSet<Integer>();
+      for (Location l: rt.allLineLocations()) { lines.add(l.lineNumber()); }
+      executableLines = lines;
+    }
+    catch (AbsentInformationException aie) { /* outer class has no line number info */ }
+    HashMap<File, TreeMap<Integer, Integer>> maps = new HashMap<File, TreeMap<Integer, Integer>>();
+    
     for (int i = 0; i < actions.size(); i++) {
       DocumentDebugAction<?> a = actions.get(i);
-      int lineNumber = LLDDALineNum(a);//a.getLineNumber();
+      int lineNumber = _LLDDALineNum(a, maps);//a.getLineNumber();
       if (lineNumber != DebugAction.ANY_LINE) {
-        try {
-          List<Location> lines = rt.locationsOfLine(lineNumber);
-          if (lines.size() == 0) {
-            // Do not disable action; the line number might just be in another class in the same file
-            String exactClassName = a.getExactClassName();
-            if (exactClassName != null && exactClassName.equals(rt.name())) {
-              _manager.printMessage(actions.get(i).toString() + " not on an executable line; disabled.");
-              actions.get(i).setEnabled(false);
-            }
-            
-            // Requested line number not in reference type, skip this action
-            continue;
-          }
-        }
-        catch (AbsentInformationException aie) {
+        if (executableLines == null) {
           // outer class has no line number info, skip this action
           continue;
         }
+        if (! executableLines.contains(lineNumber)) {
+          // Do not disable action; the line number might just be in another class in the same file
+          String exactClassName = a.getExactClassName();
+          if (exactClassName != null && exactClassName.equals(rt.name())) {
+            _manager.printMessage(a.toString() + " not on an executable line; disabled.");
+            a.setEnabled(false);
+          }
+          
+          // Requested line number not in reference type, skip this action
+          continue;
+        }
       }
       // check if the action was successfully created
       try {
@@ -215,18 +249,6 @@ public class PendingRequestManager {
       }
     }
     
-    // For debugging purposes
-    /*
-     List l = _manager.getEventRequestManager().breakpointRequests();
-     System.out.println("list of eventrequestmanager's breakpointRequests: " +
-     l);
-     for (int i = 0; i < l.size(); i++) {
-     BreakpointRequest br = (BreakpointRequest)l.get(i);
-     System.out.println("isEnabled(): " + br.isEnabled() +
-     " suspendPolicy(): " + br.suspendPolicy() +
-     " location(): " + br.location());
-     }
-     */
     if (failedActions.size() > 0) {
       // need to create an exception framework
       throw new DebugException("Failed actions: " + failedActions);
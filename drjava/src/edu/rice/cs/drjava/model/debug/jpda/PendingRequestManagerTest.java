@@ -0,0 +1,171 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.debug.jpda;
+
+import com.sun.jdi.*;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.request.*;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.GlobalModel;
+import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
+import edu.rice.cs.drjava.model.debug.DebugException;
+
+/** Tests the resolution of pending breakpoints when their class is prepared, using stand-ins for the JDI mirrors.
+  * @version $Id$
+  */
+public final class PendingRequestManagerTest extends DrJavaTestCase {
+  
+  private final List<String> _messages = new ArrayList<String>();
+  private JPDADebugger _debugger;
+  private PendingRequestManager _pending;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    _messages.clear();
+    Map<String, Object> modelMethods = new HashMap<String, Object>();
+    modelMethods.put("printDebugMessage", new InvocationHandler() {
+      public Object invoke(Object proxy, Method m, Object[] args) { _messages.add((String) args[0]); return null; }
+    });
+    final GlobalModel model = _stub(GlobalModel.class, modelMethods);
+    final ClassPrepareRequest request = _stub(ClassPrepareRequest.class, new HashMap<String, Object>());
+    Map<String, Object> ermMethods = new HashMap<String, Object>();
+    ermMethods.put("createClassPrepareRequest", request);
+    final EventRequestManager erm = _stub(EventRequestManager.class, ermMethods);
+    _debugger = new JPDADebugger(model) {
+      EventRequestManager getEventRequestManager() { return erm; }
+    };
+    _pending = new PendingRequestManager(_debugger);
+  }
+  
+  /** A breakpoint in a class without line number information is left pending, not disabled. */
+  public void testClassWithoutLineInfo() throws Exception {
+    TestAction action = new TestAction(5);
+    _pending.addPendingRequest(action);
+    _pending.classPrepared(_prepareEvent(_referenceType(null)));
+    assertTrue("breakpoint should still be enabled", action.isEnabled());
+    assertEquals("no requests should be created", 0, action.created);
+    assertEquals("no messages should be printed", 0, _messages.size());
+  }
+  
+  /** A breakpoint on an executable line gets its requests; one on any other line of the class is disabled. */
+  public void testClassWithLineInfo() throws Exception {
+    TestAction onLine = new TestAction(4);
+    TestAction offLine = new TestAction(5);
+    _pending.addPendingRequest(onLine);
+    _pending.addPendingRequest(offLine);
+    _pending.classPrepared(_prepareEvent(_referenceType(new int[] { 3, 4 })));
+    assertTrue(onLine.isEnabled());
+    assertEquals(1, onLine.created);
+    assertFalse("breakpoint should be disabled", offLine.isEnabled());
+    assertEquals(0, offLine.created);
+    assertEquals(1, _messages.size());
+  }
+  
+  /** A breakpoint on line {@code line} of Foo.java. */
+  private class TestAction extends DocumentDebugAction<BreakpointRequest> {
+    int created = 0;
+    TestAction(int line) throws DebugException {
+      super(_debugger, _document(), 0);
+      _lineNumber = line;
+    }
+    protected void _createRequests(Vector<ReferenceType> refTypes) { created++; }
+  }
+  
+  private static OpenDefinitionsDocument _document() {
+    Map<String, Object> methods = new HashMap<String, Object>();
+    methods.put("getEnclosingClassName", "Foo");
+    methods.put("getQualifiedClassName", "Foo");
+    methods.put("getFile", new File("Foo.java"));
+    return _stub(OpenDefinitionsDocument.class, methods);
+  }
+  
+  /** The class Foo, with the given executable lines, or without line number information if {@code lines} is null. */
+  private static ReferenceType _referenceType(final int[] lines) {
+    Map<String, Object> methods = new HashMap<String, Object>();
+    methods.put("name", "Foo");
+    methods.put("allLineLocations", new InvocationHandler() {
+      public Object invoke(Object proxy, Method m, Object[] args) throws AbsentInformationException {
+        if (lines == null) { throw new AbsentInformationException(); }
+        List<Location> result = new ArrayList<Location>();
+        for (int l : lines) {
+          Map<String, Object> locMethods = new HashMap<String, Object>();
+          locMethods.put("lineNumber", l);
+          result.add(_stub(Location.class, locMethods));
+        }
+        return result;
+      }
+    });
+    return _stub(ReferenceType.class, methods);
+  }
+  
+  private static ClassPrepareEvent _prepareEvent(ReferenceType rt) {
+    Map<String, Object> methods = new HashMap<String, Object>();
+    methods.put("referenceType", rt);
+    return _stub(ClassPrepareEvent.class, methods);
+  }
+  
+  /** An implementation of {@code c} whose methods return the value given by name in {@code methods} (delegating to
+    * it if it is an InvocationHandler), or else a default value.
+    */
+  private static <T> T _stub(Class<T> c, final Map<String, Object> methods) {
+    InvocationHandler h = new InvocationHandler() {
+      public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+        Object result = methods.get(m.getName());
+        if (result instanceof InvocationHandler) { return ((InvocationHandler) result).invoke(proxy, m, args); }
+        else if (result != null) { return result; }
+        else if (m.getName().equals("hashCode")) { return System.identityHashCode(proxy); }
+        else if (m.getName().equals("equals")) { return proxy == args[0]; }
+        else if (m.getReturnType() == boolean.class) { return false; }
+        else if (m.getReturnType() == int.class) { return 0; }
+        else if (m.getReturnType() == long.class) { return 0L; }
+        else { return null; }
+      }
+    };
+    return c.cast(Proxy.newProxyInstance(c.getClassLoader(), new Class<?>[] { c }, h));
+  }
+}
@@ -39,7 +39,6 @@ package edu.rice.cs.drjava.model.definitions;
 import javax.swing.text.*;
 import java.awt.*;
 import javax.swing.event.DocumentEvent;
-import java.util.ArrayList;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.model.*;
@@ -152,22 +151,29 @@ public class ColoringView extends PlainView implements OptionConstants {
     if (! (doc instanceof AbstractDJDocument)) return x; // return if there is no AbstracDJDocument
     
     final AbstractDJDocument _doc = (AbstractDJDocument) doc;
+    final boolean isInteractions = _doc instanceof InteractionsDJDocument;
+    final Segment text = getLineBuffer();
     
-    ArrayList<HighlightStatus> stats = _doc.getHighlightStatus(start, end);
-    if (stats.size() < 1) throw new UnexpectedException("GetHighlightStatus returned nothing!");
-    
-    for (HighlightStatus stat: stats) {
-      int location = stat.getLocation();
-      int length = stat.getLength();
-      
-      // If this highlight status extends past p1, end at p1
-      if (location + length > end) length = end - stat.getLocation();
+    // The cached spans of a line are reused across repaints, so scrolling and caret blinking neither query the
+    // reduced model nor allocate.
+    int pos = start;
+    while (pos < end) {
+      HighlightSpanCache.LineSpans spans = _doc.getHighlightSpans(pos);
+      int size = spans.size();
+      if (size < 1) throw new UnexpectedException("GetHighlightStatus returned nothing!");
       
-      if (! (_doc instanceof InteractionsDJDocument) || ! ((InteractionsDJDocument)_doc).setColoring((start + end)/2, g))      
-        setFormattingForState(g, stat.getState());
-      Segment text = getLineBuffer(); 
-      _doc.getText(location, length, text);
-      x = Utilities.drawTabbedText(text, x, y, g, this, location);  // updates x on each iteration
+      for (int i = spans.indexOf(pos); i < size && pos < end; i++) {
+        // Clip this span to [pos, end)
+        int location = pos;
+        int length = Math.min(spans.getLocation(i) + spans.getLength(i), end) - location;
+        
+        if (! isInteractions || ! ((InteractionsDJDocument)_doc).setColoring((start + end)/2, g))      
+          setFormattingForState(g, spans.getState(i));
+        _doc.getText(location, length, text);
+        x = Utilities.drawTabbedText(text, x, y, g, this, location);  // updates x on each iteration
+        pos = location + length;
+      }
+      if (pos < spans.getEnd()) break;  // the spans do not reach end; nothing more to draw
     }
     return  x;
   }
@@ -45,6 +45,7 @@ import  javax.swing.text.BadLocationException;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.AbstractDJDocument;
 import edu.rice.cs.drjava.model.DJDocument;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.BraceInfo;
 import edu.rice.cs.drjava.config.*;
@@ -1581,4 +1582,97 @@ public final class IndentTest extends DrJavaTestCase {
     _assertContents(_aligned, _doc);
     assertEquals("Document does not have the right length after indent.", _aligned.length(), _doc.getLength());
   }
+  
+  /** Tests that indenting a block large enough to be indented on worker threads produces the same text as indenting
+    * it one line at a time.
+    * @throws BadLocationException if attempts to reference an invalid location
+    */
+  public void testIndentLargeBlock() throws BadLocationException {
+    final String unit =
+      "/** A class {with} a \"javadoc\"\n" +
+      "* comment */\n" +
+      "   public class Foo {\n" +
+      "int x = 5;  // { unbalanced in a comment\n" +
+      "      String s = \"}{\";\n" +
+      "  char c = '{';\n" +
+      "public void m(int y,\n" +
+      "int z) {\n" +
+      "        if (y > z) {\n" +
+      "  x = y +\n" +
+      "z;\n" +
+      "  }\n" +
+      "    /* block\n" +
+      "   comment */\n" +
+      "}\n" +
+      "  }  // end Foo\n" +
+      "  interface Bar { void n(); }\n" +
+      "       enum Baz { A, B }\n";
+    final StringBuilder sb = new StringBuilder("package p;\n  import java.util.*;\n");
+    while (sb.length() < 2 * AbstractDJDocument.PARALLEL_INDENT_THRESHOLD) sb.append(unit);
+    final String text = sb.toString();
+    
+    final DefinitionsDocument expected = new DefinitionsDocument(_notifier);
+    expected.insertString(0, text, null);
+    _doc.insertString(0, text, null);
+    Utilities.invokeAndWait(new Runnable() { 
+      public void run() {
+        try {
+          for (int pos = 0; pos < expected.getLength(); pos = expected._getLineEndPos(pos) + 1) {
+            expected.indentLines(pos, pos);
+          }
+        }
+        catch (Exception e) { throw new RuntimeException(e); }
+      } 
+    });
+    // Start the large block in the middle of the first unit so that its leading segment depends on preceding text
+    safeIndentLines(0, unit.length() / 2);
+    safeIndentLines(unit.length() / 2, _doc.getLength());
+    
+    _assertContents(expected.getText(), _doc);
+  }
+  
+  /** Tests that a large block consisting of a single class, which can only be split at the boundaries between its
+    * members, is indented on worker threads outside of test mode and produces the same text as indenting it one line
+    * at a time.
+    * @throws BadLocationException if attempts to reference an invalid location
+    */
+  public void testIndentLargeClass() throws BadLocationException {
+    final String unit =
+      "      private int _x = 5;  // } unbalanced in a comment\n" +
+      "/** Returns {@code x}. */\n" +
+      "  public int getX() {\n" +
+      "return _x;\n" +
+      "      }\n" +
+      "public void m(int y,\n" +
+      "int z) {\n" +
+      "        if (y > z) {\n" +
+      "  _x = y +\n" +
+      "z;\n" +
+      "  }\n" +
+      "}\n" +
+      "    class Inner { int i; }\n";
+    final StringBuilder sb = new StringBuilder("package p;\n\n  public class Foo {\n");
+    while (sb.length() < 2 * AbstractDJDocument.PARALLEL_INDENT_THRESHOLD) sb.append(unit);
+    sb.append("  }\n");
+    final String text = sb.toString();
+    
+    final DefinitionsDocument expected = new DefinitionsDocument(_notifier);
+    expected.insertString(0, text, null);
+    _doc.insertString(0, text, null);
+    Utilities.invokeAndWait(new Runnable() { 
+      public void run() {
+        try {
+          for (int pos = 0; pos < expected.getLength(); pos = expected._getLineEndPos(pos) + 1) {
+            expected.indentLines(pos, pos);
+          }
+        }
+        catch (Exception e) { throw new RuntimeException(e); }
+      } 
+    });
+    Utilities.TEST_MODE = false;  // the worker threads must satisfy the thread confinement assertions on their own
+    try { safeIndentLines(0, _doc.getLength()); }
+    finally { Utilities.TEST_MODE = true; }
+    
+    _assertContents(expected.getText(), _doc);
+  }
 }
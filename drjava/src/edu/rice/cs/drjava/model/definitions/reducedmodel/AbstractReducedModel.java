@@ -70,41 +70,19 @@ public abstract class AbstractReducedModel implements ReducedModelStates {
     */
   void setBlockOffset(int offset) { _cursor.setBlockOffset(offset); }
   
-  /** Absolute offset for testing purposes. We don't keep track of absolute 
-   * offset as it causes too much confusion and trouble.
+  /** Absolute offset of the cursor.  We don't keep track of absolute offset as it causes too much confusion and 
+   * trouble; it is computed from the size annotations of the token list instead.
    * @return the absolute offset of the cursor
    */
   public int absOffset() { return absOffset(_cursor); }
   
-  /** Absolute offset of the specified iterator.  Inefficient so only used for testing purposes. 
+  /** Absolute offset of the specified iterator.  Runs in O(log n) time.
    * @param cursor the cursor for which to get the offset
    * @return the absolute offset of the cursor
    */
-  public int absOffset(TokenList.Iterator cursor) {
-    int off = cursor.getBlockOffset();
-    TokenList.Iterator it = cursor.copy();
-    if (! it.atStart()) it.prev();
-    
-    while (! it.atStart()) {
-      off += it.current().getSize();
-      it.prev();
-    }
-    it.dispose();
-    return off;
-  }
+  public int absOffset(TokenList.Iterator cursor) { return cursor.weightBefore() + cursor.getBlockOffset(); }
   
-  public int getLength() {
-    TokenList.Iterator it = _tokens.getIterator();
-    it.next();
-    if (it.atEnd()) return 0;
-    int len = 0;
-    while (! it.atEnd()) {
-      len += it.current().getSize();
-      it.next();
-    }
-    it.dispose();
-    return len;
-  }
+  public int getLength() { return _tokens.weight(); }
   
   /** @return the shadowing state of _cursor; only makes sense for ReducedModelComment. */
   public ReducedModelState getState() { return _cursor.getStateAtCurrent(); }
@@ -146,8 +146,10 @@ class Brace extends ReducedToken implements ReducedModelStates {
     type = type.intern();
     int index = findBrace(type);
     if (index == braces.length) throw new BraceException("Invalid brace type \"" + type + "\"");
+    int oldSize = _size;
     _type = index;
     _size = getType().length();
+    sizeChanged(_size - oldSize);
   }
 
   /** Determine the brace _type of the given String. The integer value returned is only used internally.
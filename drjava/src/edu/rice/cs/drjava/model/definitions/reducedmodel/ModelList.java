@@ -40,7 +40,11 @@ import edu.rice.cs.plt.collect.WeakHashSet;
 import java.util.Set;
 
 /** A doubly-linked list class with header and trailer nodes. Allows multiple iterators to make modifications to the 
-  * same list without failing unlike the iterators for java.util.*List.
+  * same list without failing unlike the iterators for java.util.*List.  The data nodes are also threaded through a
+  * balanced binary tree (a treap ordered by list position) in which every node is annotated with the number of nodes
+  * and the total weight of its subtree.  The weight of an item is defined by {@link #weightOf}; for a TokenList it is
+  * the number of characters spanned by the token.  The annotations support computing the position and the weight
+  * prefix of a node, and finding the node that contains a given weight offset, in O(log n) time.
   * @version $Id$
   */
 class ModelList<T> {
@@ -50,6 +54,12 @@ class ModelList<T> {
   private int _length;
   /** a set of objects that can trigger and listen for updates to the list */
   private Set<ModelIterator> _listeners;
+  /** root of the balanced tree over the data nodes; null if the list is empty */
+  private Node<T> _root;
+  /** state of the generator for treap priorities; a fixed seed keeps tree shapes reproducible */
+  private int _seed = 0x2545F491;
+  /** results of the most recent split */
+  private Node<T> _splitLeft, _splitRight;
 
   /** Constructor.  Initializes the head and tail nodes, as well as the listener table and the length variable. */
   ModelList() {
@@ -68,6 +78,28 @@ class ModelList<T> {
     _listeners = new WeakHashSet<ModelIterator>();
   }
 
+  /** Listener through which an item reports a change in its weight to the node holding it. */
+  interface WeightListener {
+    /** @param delta the change in the weight of the item */
+    void weightChanged(int delta);
+  }
+
+  /** Returns the weight of the given item in the size annotation of the tree.  Items have no weight by default.
+    * @param item the item to weigh
+    * @return the weight of item
+    */
+  int weightOf(T item) { return 0; }
+
+  /** Called when an item is placed in the list.  Subclasses whose items have a mutable weight must arrange for the
+    * item to report every change in its weight to listener.
+    * @param item the inserted item
+    * @param listener the listener to notify of changes in the weight of item
+    */
+  void bind(T item, WeightListener listener) { }
+
+  /** @return the total weight of the items in this list */
+  public int weight() { return _weight(_root); }
+
   public void insertFront(T item) { insert(_head._next, item); }
   
   /** Insert a node immediately before the specified point. Assumes point is not head. 
@@ -77,8 +109,16 @@ class ModelList<T> {
    */
   private Node<T> insert(Node<T> point, T item) {
     assert point != _head;
+    int rank = _rank(point);
     Node<T> newNode = point.insert(item);
+    newNode._priority = _nextPriority();
+    newNode._ownWeight = weightOf(item);
+    newNode._pull();
+    _split(_root, rank);
+    Node<T> right = _splitRight;
+    _root = _merge(_merge(_splitLeft, newNode), right);
     _length++;
+    bind(item, newNode);
     return newNode;
   }
 
@@ -87,10 +127,116 @@ class ModelList<T> {
    */
   private void remove(Node<T> point) {
     assert point != _head && point != _tail;
+    _cut(_rank(point), 1);
     point.remove();
     _length--;
   } 
 
+  /** Detaches count consecutive nodes starting at the given rank from the tree.  The detached nodes form a separate 
+    * tree with no parent, so weight changes reported by their items no longer affect this list.
+    * @param rank the rank of the first node to detach
+    * @param count the number of nodes to detach
+    */
+  private void _cut(int rank, int count) {
+    _split(_root, rank);
+    Node<T> left = _splitLeft;
+    _split(_splitRight, count);
+    _root = _merge(left, _splitRight);
+  }
+
+  /** Returns the number of data nodes preceding point.  The tail has rank equal to the length of the list.
+    * @param point a data node or the tail
+    * @return the rank of point
+    */
+  private int _rank(Node<T> point) {
+    if (point == _tail) return _length;
+    assert point != _head;
+    int rank = _count(point._left);
+    for (Node<T> n = point, p = point._parent; p != null; n = p, p = p._parent) {
+      if (p._right == n) rank += _count(p._left) + 1;
+    }
+    return rank;
+  }
+
+  /** Returns the total weight of the nodes preceding point.
+    * @param point any node of this list
+    * @return the weight of the prefix of the list ending just before point
+    */
+  private int _weightBefore(Node<T> point) {
+    if (point == _head) return 0;
+    if (point == _tail) return weight();
+    int w = _weight(point._left);
+    for (Node<T> n = point, p = point._parent; p != null; n = p, p = p._parent) {
+      if (p._right == n) w += _weight(p._left) + p._ownWeight;
+    }
+    return w;
+  }
+
+  /** Splits the tree rooted at t into a tree holding its first k nodes (left in _splitLeft) and a tree holding the 
+    * remaining nodes (left in _splitRight).
+    */
+  private void _split(Node<T> t, int k) {
+    if (t == null) {
+      _splitLeft = null;
+      _splitRight = null;
+      return;
+    }
+    t._parent = null;
+    int leftCount = _count(t._left);
+    if (k <= leftCount) {
+      _split(t._left, k);
+      t._left = _splitRight;
+      if (_splitRight != null) _splitRight._parent = t;
+      t._pull();
+      _splitRight = t;
+    }
+    else {
+      _split(t._right, k - leftCount - 1);
+      t._right = _splitLeft;
+      if (_splitLeft != null) _splitLeft._parent = t;
+      t._pull();
+      _splitLeft = t;
+    }
+  }
+
+  /** Concatenates two trees, all of whose nodes in a precede all of those in b.
+    * @return the root of the combined tree
+    */
+  private Node<T> _merge(Node<T> a, Node<T> b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    if (a._priority > b._priority) {
+      Node<T> right = _merge(a._right, b);
+      a._right = right;
+      right._parent = a;
+      a._pull();
+      a._parent = null;
+      return a;
+    }
+    else {
+      Node<T> left = _merge(a, b._left);
+      b._left = left;
+      left._parent = b;
+      b._pull();
+      b._parent = null;
+      return b;
+    }
+  }
+
+  /** @return the next treap priority (xorshift generator) */
+  private int _nextPriority() {
+    int x = _seed;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    _seed = x;
+    return x;
+  }
+
+  private static int _count(Node<?> n) { return (n == null) ? 0 : n._count; }
+
+  private static int _weight(Node<?> n) { return (n == null) ? 0 : n._weight; }
+
   private void addListener(ModelIterator that) { _listeners.add(that); }
 
   private void removeListener(ModelIterator that) { _listeners.remove(that); }
@@ -109,11 +255,24 @@ class ModelList<T> {
    */
   public ModelIterator getIterator() { return new ModelIterator(); }
 
-  /** The Node class for ModelLists.  The _prev and _next pointers are mutable.  The _item field is null in _head and _tail. */
-  private static class Node<T> {
+  /** The Node class for ModelLists.  The _prev and _next pointers are mutable.  The _item field is null in _head and
+    * _tail.  Data nodes are also nodes of the balanced tree; _head and _tail never appear in the tree.
+    */
+  private static class Node<T> implements WeightListener {
     Node<T> _prev;
     Node<T> _next;
     T _item;
+    
+    Node<T> _parent;
+    Node<T> _left;
+    Node<T> _right;
+    int _priority;
+    /** number of nodes in the subtree rooted here */
+    int _count;
+    /** weight of _item */
+    int _ownWeight;
+    /** total weight of the subtree rooted here */
+    int _weight;
 
     /** Constructor for _head and _tail nodes. */
     Node() { }
@@ -147,6 +306,18 @@ class ModelList<T> {
       _prev._next = _next;
       _next._prev = _prev;
     }
+    
+    /** Recomputes the subtree annotations of this node from its children. */
+    void _pull() {
+      _count = 1 + _count(_left) + _count(_right);
+      _weight = _ownWeight + _weight(_left) + _weight(_right);
+    }
+    
+    /** Propagates a change in the weight of _item to this node and its ancestors. */
+    public void weightChanged(int delta) {
+      _ownWeight += delta;
+      for (Node<T> n = this; n != null; n = n._parent) n._weight += delta;
+    }
   }
 
   /** The iterator class for ModelList.  Package private instead of private so that it can be extended.  The methods of
@@ -228,6 +399,41 @@ class ModelList<T> {
     }
     
     public int pos() { return _pos; }
+    
+    /** @return the total weight of the items preceding the current node; the total weight of the list at the tail. */
+    public int weightBefore() { return _weightBefore(_point); }
+    
+    /** Moves this iterator to the item containing the given weight offset, skipping items of zero weight.  If offset is
+      * the total weight of the list, moves to the tail.  Runs in O(log n) time.
+      * @param offset a weight offset in the range 0 .. weight()
+      * @return the offset of the given weight offset within the weight of the new current item
+      * @throws IllegalArgumentException if offset is out of range
+      */
+    public int seek(int offset) {
+      if (offset < 0 || offset > weight()) throw new IllegalArgumentException("Offset " + offset + " out of range");
+      Node<T> n = _root;
+      int rank = 0;
+      while (n != null) {
+        int leftWeight = _weight(n._left);
+        if (offset < leftWeight) n = n._left;
+        else {
+          offset -= leftWeight;
+          rank += _count(n._left);
+          if (offset < n._ownWeight) {
+            _point = n;
+            _pos = rank + 1;
+            return offset;
+          }
+          offset -= n._ownWeight;
+          rank++;
+          n = n._right;
+        }
+      }
+      assert offset == 0 && rank == _length;
+      _point = _tail;
+      _pos = _length + 1;
+      return 0;
+    }
 
     /** Inserts an item before the current item.  If current is head, we need 
      * to move to the next node to perform the insert properly.  Otherwise, 
@@ -297,6 +503,8 @@ class ModelList<T> {
         rightPoint = iter._point;
       }
       
+      int leftRank = (leftPoint == _head) ? 0 : _rank(leftPoint) + 1;
+      _cut(leftRank, _rank(rightPoint) - leftRank);
       rightPoint._prev = leftPoint;
       leftPoint._next = rightPoint;
       _length -= rightPos - leftPos - 1;  //determine new length
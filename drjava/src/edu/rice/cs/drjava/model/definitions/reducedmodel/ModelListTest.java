@@ -291,12 +291,44 @@ public final class ModelListTest extends DrJavaTestCase {
     
     assertEquals("Removed second iterator", 0, testList.listenerCount());
   }
+  
+  /** Tests the size annotations of a TokenList: total weight, weight prefixes, seeking, and size changes of tokens. */
+  public void testWeightAndSeek() {
+    TokenList tokens = new TokenList();
+    TokenList.Iterator it = tokens.getIterator();
+    // build (Gap<3> { Gap<5> }) by inserting in reverse order
+    it.insert(Brace.MakeBrace("}", ReducedModelStates.FREE));
+    it.insert(new Gap(5, ReducedModelStates.FREE));
+    it.insert(Brace.MakeBrace("{", ReducedModelStates.FREE));
+    it.insert(new Gap(3, ReducedModelStates.FREE));
+    assertEquals("total weight", 10, tokens.weight());
+    
+    assertEquals("seek into first gap", 2, it.seek(2));
+    assertEquals("position of first gap", 1, it.pos());
+    assertEquals("seek onto brace", 0, it.seek(3));
+    assertEquals("{", it.current().getType());
+    assertEquals("weight before brace", 3, it.weightBefore());
+    assertEquals("seek into second gap", 4, it.seek(8));
+    assertEquals("position of second gap", 3, it.pos());
+    
+    it.current().grow(4);
+    assertEquals("total weight after grow", 14, tokens.weight());
+    assertEquals("seek onto closing brace", 0, it.seek(13));
+    assertEquals("}", it.current().getType());
+    assertEquals("weight before closing brace", 13, it.weightBefore());
+    assertEquals("seek to end", 0, it.seek(14));
+    assertTrue("seek to end", it.atEnd());
+    
+    it.prev();
+    it.prev();
+    it.remove();
+    assertEquals("total weight after remove", 5, tokens.weight());
+    assertEquals("seek past removed gap", 0, it.seek(4));
+    assertEquals("}", it.current().getType());
+    try {
+      it.seek(6);
+      fail("seek past end should fail");
+    }
+    catch (IllegalArgumentException e) { /* expected */ }
+  }
 }
-
-
-
-
-
-
-
-
@@ -42,10 +42,27 @@ package edu.rice.cs.drjava.model.definitions.reducedmodel;
 public abstract class ReducedToken implements ReducedModelStates {
   private volatile ReducedModelState _state;
   
+  /** The node of the TokenList holding this token, which tracks the sizes of the tokens in the list. */
+  private volatile ModelList.WeightListener _sizeListener;
+  
   public ReducedToken(ReducedModelState state) {
     _state = state;
   }
   
+  /** Sets the listener notified when the size of this token changes.
+    * @param listener the listener to notify
+    */
+  void setSizeListener(ModelList.WeightListener listener) { _sizeListener = listener; }
+  
+  /** Reports a change in the size of this token to the list holding it.  Must be called by every mutator that changes
+    * the value of getSize().
+    * @param delta the change in size
+    */
+  protected void sizeChanged(int delta) {
+    ModelList.WeightListener listener = _sizeListener;
+    if (listener != null && delta != 0) listener.weightChanged(delta);
+  }
+  
   /** Get the size of the token.
     * @return the number of characters represented by the token
     */
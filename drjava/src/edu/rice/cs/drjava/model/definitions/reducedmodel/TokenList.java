@@ -36,14 +36,24 @@
 
 package edu.rice.cs.drjava.model.definitions.reducedmodel;
 
-/** A list of reduced model tokens.  Uses ModelList as its base.
+/** A list of reduced model tokens.  Uses ModelList as its base, weighing each token by its size so that cursor
+  * movement over long distances runs in O(log n) time.
   * @version $Id$
   */
 public class TokenList extends ModelList<ReducedToken> implements /*imports*/ ReducedModelStates {
   
+  /** The number of tokens a cursor move walks linearly before it switches to a lookup in the size-annotated tree.
+    * Short moves (the common case when typing) are cheaper to walk.
+    */
+  static final int LINEAR_MOVE_LIMIT = 8;
+  
   /** Gets a TokenList.Iterator for this list.  Overrides the weaker method in {@code ModelList<ReducedToken>.Iterator}. */
   public Iterator getIterator() { return new Iterator(); }
   
+  int weightOf(ReducedToken token) { return token.getSize(); }
+  
+  void bind(ReducedToken token, WeightListener listener) { token.setSizeListener(listener); }
+  
   public class Iterator extends ModelIterator {
     
     private int _offset;
@@ -216,9 +226,11 @@ public class TokenList extends ModelList<ReducedToken> implements /*imports*/ Re
       // Initialize loop variables
       int size = current().getSize();
       count = count + currentOffset;
+      int steps = 0;
       
       // Process tokens moving forward
       while (count >= size) { // advance one token
+        if (++steps > LINEAR_MOVE_LIMIT) return _seek(weightBefore() + count, "At end");
         count = count - size;
         next();
         if (atEnd()) {
@@ -256,8 +268,14 @@ public class TokenList extends ModelList<ReducedToken> implements /*imports*/ Re
         currentOffset = current().getSize(); // ! atStart() is precondition for calling current()
       }
       else if (atStart()) throw new IllegalArgumentException("At Start");
+      int steps = 0;
       
       while (count > currentOffset) {
+        if (++steps > LINEAR_MOVE_LIMIT) {
+          int target = weightBefore() + currentOffset - count;
+          if (target < 0) throw new IllegalArgumentException("At Start");
+          return _seek(target, "At Start");
+        }
         count = count - currentOffset;
         prev();
         
@@ -267,6 +285,16 @@ public class TokenList extends ModelList<ReducedToken> implements /*imports*/ Re
       return currentOffset - count;  // Note: returned offset can be 0
     }
     
+    /** Moves this iterator directly to the token containing the absolute offset target using the size-annotated tree.
+      * @param target the absolute offset of the destination
+      * @param boundary the message of the exception thrown if target is out of range
+      * @return the offset of target within the new current token
+      */
+    private int _seek(int target, String boundary) {
+      try { return seek(target); }
+      catch (IllegalArgumentException e) { throw new IllegalArgumentException(boundary); }
+    }
+    
     /** <P>Update the BraceReduction to reflect text deletion.</P>
       * @param count  A number specifying the size and direction of text deletion. Negative values delete text to the 
       *               left of the cursor; positive values delete text to the right. Assumes deletion is within range!
@@ -0,0 +1,151 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.Computer;
+import org.junit.runner.Runner;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+import edu.rice.cs.util.Log;
+
+/** A JUnit computer that runs test classes, and the test methods within each class, on a fixed pool of workers.
+  * Unlike {@link org.junit.experimental.ParallelComputer}, which starts a thread per class and per method, the
+  * number of concurrently running classes and of concurrently running methods is bounded by the worker count.
+  * Classes are started longest-first according to their durations in earlier runs (the LPT heuristic), so a
+  * long class does not start last and leave the other workers idle; classes with no history are started first.
+  * Only leaf runners ({@link BlockJUnit4ClassRunner}) have their methods parallelized, so a worker never waits
+  * for a task queued behind it in the same pool.
+  * @version $Id$
+  */
+class BalancedParallelComputer extends Computer {
+  
+  private static final Log _log = new Log("BalancedParallelComputer.txt", false);
+  
+  private final int _workers;
+  private final Map<String, Long> _classDurations;
+  private final ExecutorService _classPool;
+  private final ExecutorService _methodPool;
+  
+  /** @param workers the number of classes, and the number of methods, that may run at once
+    * @param classDurations running times (in ms) of test classes in earlier runs, keyed by class name
+    */
+  public BalancedParallelComputer(int workers, Map<String, Long> classDurations) {
+    _workers = workers;
+    _classDurations = classDurations;
+    _classPool = Executors.newFixedThreadPool(workers, new WorkerFactory("JUnit Class Worker"));
+    _methodPool = Executors.newFixedThreadPool(workers, new WorkerFactory("JUnit Method Worker"));
+  }
+  
+  /** Order {@code classes} longest-first, then build the suite over them with a class-level scheduler. */
+  @Override
+  public Runner getSuite(RunnerBuilder builder, Class<?>[] classes) throws InitializationError {
+    Class<?>[] ordered = classes.clone();
+    Arrays.sort(ordered, new Comparator<Class<?>>() {  // stable, so classes without history keep their order
+      public int compare(Class<?> c1, Class<?> c2) { return Long.compare(_durationOf(c2), _durationOf(c1)); }
+    });
+    _log.log("Running " + ordered.length + " classes on " + _workers + " workers in order " + Arrays.toString(ordered));
+    Runner suite = super.getSuite(builder, ordered);
+    if (suite instanceof ParentRunner) { ((ParentRunner<?>) suite).setScheduler(new PoolScheduler(_classPool)); }
+    return suite;
+  }
+  
+  @Override
+  protected Runner getRunner(RunnerBuilder builder, Class<?> testClass) throws Throwable {
+    Runner runner = super.getRunner(builder, testClass);
+    if (runner instanceof BlockJUnit4ClassRunner) {
+      ((BlockJUnit4ClassRunner) runner).setScheduler(new PoolScheduler(_methodPool));
+    }
+    return runner;
+  }
+  
+  /** Stop the worker threads; called once the suite has run. */
+  public void shutdown() {
+    _classPool.shutdownNow();
+    _methodPool.shutdownNow();
+  }
+  
+  private long _durationOf(Class<?> c) {
+    Long d = _classDurations.get(c.getName());
+    return (d == null) ? Long.MAX_VALUE : d;
+  }
+  
+  /** Queues the children of one runner on a shared pool and waits for exactly those children to finish. */
+  private static class PoolScheduler implements RunnerScheduler {
+    private final ExecutorService _pool;
+    private final List<Future<?>> _scheduled = new ArrayList<Future<?>>();
+    
+    public PoolScheduler(ExecutorService pool) { _pool = pool; }
+    
+    public void schedule(Runnable childStatement) { _scheduled.add(_pool.submit(childStatement)); }
+    
+    public void finished() {
+      for (Future<?> f : _scheduled) {
+        try { f.get(); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+        catch (ExecutionException e) { _log.log("Test task failed: " + e.getCause()); }
+      }
+    }
+  }
+  
+  /** Creates daemon worker threads, so an abandoned test run cannot keep the interpreter JVM alive. */
+  private static class WorkerFactory implements ThreadFactory {
+    private final String _name;
+    private final AtomicInteger _count = new AtomicInteger(0);
+    public WorkerFactory(String name) { _name = name; }
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, _name + " " + _count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunNotifier;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the ordering and worker bound of BalancedParallelComputer.
+  * @version $Id$
+  */
+public class BalancedParallelComputerTest extends DrJavaTestCase {
+  
+  /** Class names in the order their first test started. */
+  private static final List<String> _started = new ArrayList<String>();
+  private static final AtomicInteger _running = new AtomicInteger(0);
+  private static final AtomicInteger _maxRunning = new AtomicInteger(0);
+  
+  private static void _enter(String name) throws InterruptedException {
+    synchronized(_started) { if (! _started.contains(name)) _started.add(name); }
+    int now = _running.incrementAndGet();
+    int max;
+    do { max = _maxRunning.get(); } while (now > max && ! _maxRunning.compareAndSet(max, now));
+    Thread.sleep(20);
+    _running.decrementAndGet();
+  }
+  
+  public static class CaseA {
+    @org.junit.Test public void a1() throws Exception { _enter("A"); }
+    @org.junit.Test public void a2() throws Exception { _enter("A"); }
+  }
+  public static class CaseB {
+    @org.junit.Test public void b1() throws Exception { _enter("B"); }
+    @org.junit.Test public void b2() throws Exception { _enter("B"); }
+  }
+  public static class CaseC {
+    @org.junit.Test public void c1() throws Exception { _enter("C"); }
+    @org.junit.Test public void c2() throws Exception { _enter("C"); }
+  }
+  
+  private Result _run(int workers, Map<String, Long> durations) {
+    _started.clear();
+    _maxRunning.set(0);
+    BalancedParallelComputer computer = new BalancedParallelComputer(workers, durations);
+    try {
+      Result result = new Result();
+      RunNotifier notifier = new RunNotifier();
+      notifier.addListener(result.createListener());
+      Request.classes(computer, CaseA.class, CaseB.class, CaseC.class).getRunner().run(notifier);
+      return result;
+    }
+    finally { computer.shutdown(); }
+  }
+  
+  /** With one worker, classes start longest-first, and classes without history start before all others. */
+  public void testLongestFirst() {
+    Map<String, Long> durations = new HashMap<String, Long>();
+    durations.put(CaseA.class.getName(), 10L);
+    durations.put(CaseC.class.getName(), 500L);
+    Result result = _run(1, durations);
+    assertEquals(6, result.getRunCount());
+    assertTrue(result.wasSuccessful());
+    assertEquals("[B, C, A]", _started.toString());
+    assertEquals(1, _maxRunning.get());
+  }
+  
+  /** No more than the given number of tests run at once. */
+  public void testBoundedWorkers() {
+    Result result = _run(2, new HashMap<String, Long>());
+    assertEquals(6, result.getRunCount());
+    assertTrue(result.wasSuccessful());
+    assertTrue("max concurrent tests was " + _maxRunning.get(), _maxRunning.get() <= 2);
+  }
+}
@@ -124,6 +124,18 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
   /** The document used to display JUnit test results.  Used only for testing. */
   private final SwingDocument _junitDoc = new SwingDocument();
   
+  /** Start times (in ms) of the tests that are running, keyed by test name.  Also guards the two fields below. */
+  private final HashMap<String, Long> _testStartTimes = new HashMap<String, Long>();
+  
+  /** Running time (in ms) of each test class in the latest run that included it.  Passed to the slave JVM with
+    * each run so that a parallel run can start its longest classes first.  Kept here because the slave JVM is
+    * replaced whenever the interactions pane is reset.
+    */
+  private final HashMap<String, Long> _testClassDurations = new HashMap<String, Long>();
+  
+  /** The classes whose durations have been restarted in the current run. */
+  private final HashSet<String> _timedClasses = new HashSet<String>();
+  
   /** Main constructor.
     * @param jvm RMI interface to a secondary JVM for running tests
     * @param compilerModel the CompilerModel, used only as a lock to prevent simultaneous test and compile
@@ -511,7 +523,9 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
           _notifyJUnitStarted(); 
           // The false return value could be changed to an exception.
     	  _log.log("runTestParallel= "+runTestParallel);
-          boolean testsPresent = _jvm.runTestSuite(runTestParallel);
+          HashMap<String, Long> classDurations;
+          synchronized(_testStartTimes) { classDurations = new HashMap<String, Long>(_testClassDurations); }
+          boolean testsPresent = _jvm.runTestSuite(runTestParallel, classDurations);
           runTestParallel=false;
           if (!testsPresent) {
               throw new RemoteException("No unit test classes were passed to the slave JVM");
@@ -528,6 +542,22 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
    
 //-------------------------------- Helpers --------------------------------//
   
+  /** Adds the running time of the test that just ended to its class's duration for this run.  Test names have the
+    * form "method(class)", as produced by JUnit.
+    */
+  private void _recordTestTime(String testName) {
+    int open = testName.lastIndexOf('(');
+    if (open < 0 || ! testName.endsWith(")")) return;
+    String className = testName.substring(open + 1, testName.length() - 1);
+    synchronized(_testStartTimes) {
+      Long start = _testStartTimes.remove(testName);
+      if (start == null) return;
+      long elapsed = System.currentTimeMillis() - start;
+      Long soFar = _timedClasses.add(className) ? null : _testClassDurations.get(className);
+      _testClassDurations.put(className, (soFar == null) ? elapsed : soFar + elapsed);
+    }
+  }
+  
   /** Helper method to notify JUnitModel listeners that JUnit test suite execution has started. */
   private void _notifyJUnitStarted() { 
     // Use EventQueue.invokeLater so that notification is deferred when running in the event thread.
@@ -599,6 +629,10 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     * @param numTests The number of tests in the suite to be run.
     */
   public void testSuiteStarted(final int numTests) { 
+    synchronized(_testStartTimes) {
+      _testStartTimes.clear();
+      _timedClasses.clear();
+    }
     Utilities.invokeLater(new Runnable() { public void run() { _notifier.junitSuiteStarted(numTests); } });
   }
   
@@ -606,6 +640,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     * @param testName The name of the test being started.
     */
   public void testStarted(final String testName) { 
+    synchronized(_testStartTimes) { _testStartTimes.put(testName, System.currentTimeMillis()); }
     Utilities.invokeLater(new Runnable() { public void run() { _notifier.junitTestStarted(testName); } });
   }
   
@@ -615,6 +650,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     * @param causedError If not successful, whether the test caused an error or simply failed.
     */
   public void testEnded(final String testName, final boolean wasSuccessful, final boolean causedError) {
+    _recordTestTime(testName);
     EventQueue.invokeLater(new Runnable() { 
       public void run() { _notifier.junitTestEnded(testName, wasSuccessful, causedError); }
     });
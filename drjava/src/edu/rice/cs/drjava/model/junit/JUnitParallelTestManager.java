@@ -201,9 +201,10 @@ public class JUnitParallelTestManager extends JUnitTestManager{
   /** Runs the pending test suite set up by the preceding call to findTestClasses.  Runs in a single auxiliary thread,
     * so no need for explicit synchronization.
     * @param runTestParallel    set whether we should run the test in parallel
+    * @param classDurations     running times (in ms) of test classes in earlier runs, used to balance a parallel run
     * @return false if no test suite (even an empty one) has been set up
     */
-  public boolean runTestSuite(Boolean runTestParallel) {
+  public boolean runTestSuite(Boolean runTestParallel, Map<String, Long> classDurations) {
     
     _log.log("runTestSuite() called");
     
@@ -234,7 +235,7 @@ public class JUnitParallelTestManager extends JUnitTestManager{
 				cls.copyInto(clsArray);
 				_testRunner.setCountTestCases(_suite);
 				startTime = System.nanoTime();
-				result = _testRunner.runClass(clsArray);
+				result = _testRunner.runClass(classDurations, clsArray);
 				estimatedTime = System.nanoTime() - startTime;
 				long Second=TimeUnit.SECONDS.convert(estimatedTime, TimeUnit.NANOSECONDS);
 				_log.log("when testing in parallel, testing time is :" + estimatedTime +" in nanoseconds");
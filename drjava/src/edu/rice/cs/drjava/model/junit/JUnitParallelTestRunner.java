@@ -39,9 +39,11 @@ package edu.rice.cs.drjava.model.junit;
 import junit.runner.*;
 import junit.framework.*;
 
-import java.util.Vector;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.junit.experimental.ParallelComputer;
 import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
@@ -62,7 +64,8 @@ public class JUnitParallelTestRunner extends JUnitTestRunner {
   
   protected static final Log _log = new Log("JUnitParallelTestRunner.txt", false);
   
-  protected Vector<String> failedTest=new Vector<String>(); 
+  /** Names (class:method) of the tests that failed in the current run; updated concurrently by the workers. */
+  protected final Set<String> failedTest = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
   
   
 
@@ -95,15 +98,17 @@ public class JUnitParallelTestRunner extends JUnitTestRunner {
 	/**
 	 * method to run class
 	 * 
+	 * @param classDurations running times (in ms) of the test classes in earlier runs, used to balance the workers
 	 * @param classes
 	 * @return
 	 */
-	public synchronized Result runClass(Class<?>... classes) {
+	public synchronized Result runClass(Map<String, Long> classDurations, Class<?>... classes) {
 		_log.log("start run in runclass,countTestCases= " + countTestCases);
 
 		// Reset all bookkeeping
 		_errorCount = 0;
 		_failureCount = 0;
+		failedTest.clear();
 
 		// Run the test
 		_result = new TestResult();
@@ -120,11 +125,7 @@ public class JUnitParallelTestRunner extends JUnitTestRunner {
 			public void testFinished(Description description) {
 				_log.log("  in testEnded " + description.getMethodName());
 				String testName = description.getClassName() + ":" + description.getMethodName();
-				boolean success;
-				if (failedTest.indexOf(testName) == -1)
-					success = true;
-				else
-					success = false;
+				boolean success = ! failedTest.contains(testName);
 				// The parameter testName of testStarted is the form of testMethod(testClass)
 				_jmc.testEnded(description.getMethodName() + "(" + description.getClassName() + ")", success, false);
 			}
@@ -136,7 +137,7 @@ public class JUnitParallelTestRunner extends JUnitTestRunner {
 				failedTest.add(testName);
 			}
 
-		}, classes);
+		}, classDurations, classes);
 	}
    
 }
@@ -1,6 +1,7 @@
 package edu.rice.cs.drjava.model.junit;
 
-import org.junit.experimental.ParallelComputer;
+import java.util.Map;
+
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Request;
 import org.junit.runner.Result;
@@ -12,7 +13,7 @@ import edu.rice.cs.util.Log;
 
 /**
  * This class is used to run test in parallel.
- * It uses ParallelComputer to parallel test method and test class 
+ * It uses a BalancedParallelComputer to run test classes and test methods on a bounded pool of workers.
  * @author zhexin
  *
  */
@@ -24,12 +25,15 @@ public class MyJUnitCore extends JUnitCore {
 	/**
 	 * method to run test classes in parallel 
 	 * @param listener listener for these test case
+	 * @param classDurations running times (in ms) of the test classes in earlier runs, used to order them
 	 * @param classes  test cases
 	 * @return  result of running these test case
 	 */
-	public Result parallelRunClasses(RunListener listener, Class<?>[] classes) {
+	public Result parallelRunClasses(RunListener listener, Map<String, Long> classDurations, Class<?>[] classes) {
 		_log.log("start parallelRunClasses");
-		Runner runner = Request.classes(new ParallelComputer(true, true), classes).getRunner();
+		int workers = Runtime.getRuntime().availableProcessors();
+		BalancedParallelComputer computer = new BalancedParallelComputer(workers, classDurations);
+		Runner runner = Request.classes(computer, classes).getRunner();
 		Result result = new Result();
 		RunListener resultListener = result.createListener();
 		runNotifier.addFirstListener(resultListener);
@@ -39,8 +43,9 @@ public class MyJUnitCore extends JUnitCore {
 			runner.run(runNotifier);
 			runNotifier.fireTestRunFinished(result);
 		} finally {
-			removeListener(listener);
-			removeListener(resultListener);
+			computer.shutdown();
+			runNotifier.removeListener(listener);
+			runNotifier.removeListener(resultListener);
 
 		}
 		return result;
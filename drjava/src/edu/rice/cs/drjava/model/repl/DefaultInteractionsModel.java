@@ -84,6 +84,14 @@ public class DefaultInteractionsModel extends RMIInteractionsModel {
     
     // Add option listeners  // WHEN ARE THESE EVER REMOVED?
     DrJava.getConfig().addOptionListener(OptionConstants.HISTORY_MAX_SIZE, _document.getHistoryOptionListener());
+    _document.setMaxLength(DrJava.getConfig().getSetting(OptionConstants.CONSOLE_MAX_LENGTH).intValue());
+    DrJava.getConfig().addOptionListener(OptionConstants.CONSOLE_MAX_LENGTH, new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) { _document.setMaxLength(oce.value); }
+    });
+    _document.setSpillTrimmed(DrJava.getConfig().getSetting(OptionConstants.CONSOLE_SPILL_TRIMMED).booleanValue());
+    DrJava.getConfig().addOptionListener(OptionConstants.CONSOLE_SPILL_TRIMMED, new OptionListener<Boolean>() {
+      public void optionChanged(OptionEvent<Boolean> oce) { _document.setSpillTrimmed(oce.value); }
+    });
     DrJava.getConfig().addOptionListener(OptionConstants.RUN_WITH_ASSERT,
                                          new OptionListener<Boolean>() {
       public void optionChanged(OptionEvent<Boolean> oce) {
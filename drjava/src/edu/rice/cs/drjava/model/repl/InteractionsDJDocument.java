@@ -51,6 +51,7 @@ import edu.rice.cs.util.swing.Utilities;
 import java.awt.*;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.ListIterator;
 import javax.swing.text.AbstractDocument;
 import javax.swing.undo.*;
 
@@ -221,6 +222,21 @@ public class InteractionsDJDocument extends AbstractDJDocument implements Consol
 //    }
   }
   
+  /** Discards the styles of the first len characters, which have been trimmed from the front of the document, and
+    * shifts the remaining styles to match.  Only runs in event thread. */
+  public void trimColoring(int len) {
+    synchronized(_stylesList) {
+      ListIterator<Pair<Pair<Integer,Integer>,String>> it = _stylesList.listIterator();
+      while (it.hasNext()) {
+        Pair<Pair<Integer,Integer>,String> p = it.next();
+        Pair<Integer,Integer> loc = p.first();
+        if (loc.second() <= len) it.remove();
+        else it.set(new Pair<Pair<Integer,Integer>,String>
+                      (new Pair<Integer,Integer>(Math.max(loc.first() - len, 0), loc.second() - len), p.second()));
+      }
+    }
+  }
+  
   /** Accessor method used to copy contents of _stylesList to an array.  Used in test cases. 
    * @return a copy of the contents of _styleList
    */
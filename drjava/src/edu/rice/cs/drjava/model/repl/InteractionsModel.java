@@ -40,6 +40,7 @@ import java.io.*;
 import java.net.ServerSocket;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 import javax.swing.text.BadLocationException;
 
@@ -53,6 +54,7 @@ import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.util.text.ConsoleDocumentInterface;
 import edu.rice.cs.util.text.ConsoleDocument;
+import edu.rice.cs.util.text.ConsoleOutputBatcher;
 import edu.rice.cs.util.text.EditDocumentException;
 import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.drjava.DrJava;
@@ -87,6 +89,9 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     */
   protected volatile InteractionsDocument _document;
   
+  /** Appends the output of the repl to _document in batches. */
+  private final ConsoleOutputBatcher _output;
+  
   /** Whether we are waiting for the interpreter to register for the first time. */
   protected volatile boolean _waitingForFirstInterpreter;
   
@@ -143,6 +148,7 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     */
   public InteractionsModel(ConsoleDocumentInterface cDoc, final File wd, int historySize, int writeDelay) {
     _document = new InteractionsDocument(cDoc, historySize);
+    _output = new ConsoleOutputBatcher(_document, new Runnable() { public void run() { _scrollToCaretNow(); } });
     _cDoc = cDoc;
     _writeDelay = writeDelay;
     _waitingForFirstInterpreter = true;
@@ -262,6 +268,17 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     */
   public abstract Pair<String,String> getVariableToString(String var);
   
+  /** Gets the string representations of the values of several variables in the current interpreter.  Subclasses
+    * talking to a remote interpreter should override this to make a single request.
+    * @param vars the names of the variables
+    * @return the results of {@link #getVariableToString} for vars, in order
+    */
+  public List<Pair<String,String>> getVariablesToString(List<String> vars) {
+    List<Pair<String,String>> result = new ArrayList<Pair<String,String>>(vars.size());
+    for (String var: vars) { result.add(getVariableToString(var)); }
+    return result;
+  }
+  
   /** Resets the Java interpreter with working directory wd. 
     * @param wd the working directory to be set
     * @param force true if reset is to be forced (restarting the slave JVM)
@@ -482,41 +499,22 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     _debugPortSet = true;
   }
     
-  private static final int DELAY_INTERVAL = 10;
-  private volatile int delayCount = DELAY_INTERVAL;
-  
-  /** Called when the repl prints to System.out.  Includes a delay to prevent flooding the interactions document.  This
-    * method can safely be called from outside the event thread.
+  /** Called when the repl prints to System.out.  Prints are appended to the interactions document in batches, and a
+    * thread printing faster than the document can absorb is held back.  This method can safely be called from outside
+    * the event thread.
     * @param s String to print
     */
   public void replSystemOutPrint(final String s) {
-    Utilities.invokeLater(new Runnable() {
-      public void run() { _document.insertBeforeLastPrompt(s, ConsoleDocument.SYSTEM_OUT_STYLE); }
-    });
-    if (delayCount == 0) {
-      scrollToCaret();
-//      System.err.println(s + " printed; caretPostion = " + _pane.getCaretPosition());
-      _writerDelay();
-      delayCount = DELAY_INTERVAL;
-    }
-    else delayCount--;   
+    _output.print(s, ConsoleDocument.SYSTEM_OUT_STYLE);  // scrolls once the batch is appended
   }
   
-  /** Called when the repl prints to System.err.  Includes a delay to prevent flooding the interactions document.  This
-    * method can safely be called from outside the event thread.
+  /** Called when the repl prints to System.err.  Prints are appended to the interactions document in batches, and a
+    * thread printing faster than the document can absorb is held back.  This method can safely be called from outside
+    * the event thread.
     * @param s String to print 
     */
   public void replSystemErrPrint(final String s) {
-      Utilities.invokeLater(new Runnable() {
-        public void run() { _document.insertBeforeLastPrompt(s, ConsoleDocument.SYSTEM_ERR_STYLE); } 
-      });
-      if (delayCount == 0) {
-        scrollToCaret();
-//      System.err.println(s + " printed; caretPostion = " + _pane.getCaretPosition());
-        _writerDelay();
-        delayCount = DELAY_INTERVAL;
-      }
-      else delayCount--;
+    _output.print(s, ConsoleDocument.SYSTEM_ERR_STYLE);  // scrolls once the batch is appended
   }
   
   /** Returns a line of text entered by the user at the equivalent of System.in.  Only executes in the event thread. */
@@ -555,6 +553,7 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
         _log.log("Adding to history '" + _toAddToHistory + "'");
         _document.addToHistory(_toAddToHistory);  // better place for this action despite bug report #952
         _document.setInProgress(false);
+        _output.flush();  // the output of the interaction precedes the new prompt
         _document.insertPrompt();
         _notifyInteractionEnded();
       }
@@ -769,15 +768,16 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
 //  }
   
   protected void scrollToCaret() {
-    Utilities.invokeLater(new Runnable() {
-      public void run() {
-        final InteractionsPane pane = _pane; 
-        if (pane == null) return;  // Can be called in tests when component has not been realized
-        int pos = pane.getCaretPosition();
-        try { pane.scrollRectToVisible(pane.modelToView(pos)); }
-        catch(BadLocationException e) { throw new UnexpectedException(e); }
-      }
-    });
+    Utilities.invokeLater(new Runnable() { public void run() { _scrollToCaretNow(); } });
+  }
+  
+  /** Scrolls the pane to its caret.  Only runs in the event thread. */
+  private void _scrollToCaretNow() {
+    final InteractionsPane pane = _pane; 
+    if (pane == null) return;  // Can be called in tests when component has not been realized
+    int pos = pane.getCaretPosition();
+    try { pane.scrollRectToVisible(pane.modelToView(pos)); }
+    catch(BadLocationException e) { throw new UnexpectedException(e); }
   }
   
   /** Called when a new Java interpreter has registered and is ready for use. 
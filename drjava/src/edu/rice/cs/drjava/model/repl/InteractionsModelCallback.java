@@ -51,6 +51,11 @@ public interface InteractionsModelCallback {
    */
   public int getDebugPort() throws IOException;
   
+  /** Sets the port number to use for debugging a remote interpreter.
+    * @param port the port the remote interpreter listens on
+    */
+  public void setDebugPort(int port);
+  
   /** Called when the repl prints to System.out.
     * @param s String to print
     */
@@ -44,9 +44,9 @@ import java.rmi.*;
 // NOTE: Do NOT import/use the config framework in this class!
 //  (This class runs in a different JVM, and will not share the config object)
 
+import edu.rice.cs.util.BatchedOutputChannel;
 import edu.rice.cs.util.InputStreamRedirector;
 import edu.rice.cs.util.Log;
-import edu.rice.cs.util.OutputStreamRedirector;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.classloader.ClassFileError;
 import edu.rice.cs.util.newjvm.*;
@@ -117,6 +117,27 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
   /** Remote reference to the MainJVM class in DrJava's primary JVM.  Assigned ONLY once. */
   private volatile MainJVMRemoteI _mainJVM;
   
+  /** Stream identifiers for _output. */
+  private static final int SYSTEM_OUT = 0;
+  private static final int SYSTEM_ERR = 1;
+  
+  /** Maximum number of milliseconds to wait for pending output when this JVM exits. */
+  private static final long EXIT_FLUSH_TIMEOUT = 1000;
+  
+  /** Carries System.out and System.err to the main JVM, coalescing the text printed between remote calls. */
+  private final BatchedOutputChannel _output = new BatchedOutputChannel("Interpreter Output Thread") {
+    protected void deliver(int stream, String s) {
+      try {
+        if (stream == SYSTEM_ERR) _mainJVM.systemErrPrint(s);
+        else _mainJVM.systemOutPrint(s);
+      }
+      catch (RemoteException re) {
+        error.log(re);
+        throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
+      }
+    }
+  };
+  
   /** Private constructor; use the singleton ONLY instance. */
   private InterpreterJVM() {
     super("Reset Interactions Thread", "Poll DrJava Thread");
@@ -147,6 +168,7 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     // redirect stdin
     System.setIn(new InputStreamRedirector() {
       protected String _getInput() {
+        _output.flush();  // show any prompt printed before the read
         try { return _mainJVM.getConsoleInput(); }
         catch(RemoteException re) {
           error.log(re);
@@ -155,27 +177,14 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
       }
     });
     
-    // redirect stdout
-    System.setOut(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemOutPrint(s); }
-        catch (RemoteException re) {
-          error.log(re);
-          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
-        }
-      }
-    }));
+    // redirect stdout and stderr
+    System.setOut(new PrintStream(_output.getOutputStream(SYSTEM_OUT)));
+    System.setErr(new PrintStream(_output.getOutputStream(SYSTEM_ERR)));
     
-    // redirect stderr
-    System.setErr(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemErrPrint(s); }
-        catch (RemoteException re) {
-          error.log(re);
-          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
-        }
-      }
-    }));
+    // deliver pending output if interpreted code calls System.exit
+    Runtime.getRuntime().addShutdownHook(new Thread("Flush Interpreter Output") {
+      public void run() { _output.flush(EXIT_FLUSH_TIMEOUT); }
+    });
     
     /* On Windows, any frame or dialog opened from Interactions pane will appear *behind* DrJava's frame, unless a 
      * previous frame or dialog is shown here.  Not sure what the difference is, but this hack seems to work.  (I'd
@@ -253,7 +262,10 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     try { result = interpreter.interpret(input); }
     catch (InterpreterException e) { debug.logEnd(); return InterpretResult.exception(e); }
     catch (Throwable e) { debug.logEnd(); return InterpretResult.unexpectedException(e); }
-    finally { removeBusyInterpreter(interpreter); }
+    finally {
+      removeBusyInterpreter(interpreter);
+      _output.flush();  // the output of an interaction precedes its result
+    }
     
     return result.apply(new OptionVisitor<Object, InterpretResult>() {
       public InterpretResult forNone() { return InterpretResult.noValue(); }
@@ -352,6 +364,18 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     }
   }
 
+  /** Gets the string representations of the values of several variables in the current interpreter.
+    * @param vars the names of the variables
+    * @return the results of {@link #getVariableToString} for vars, in order
+    */
+  public List<Pair<String,String>> getVariablesToString(List<String> vars) {
+    synchronized(_stateLock) {
+      List<Pair<String,String>> result = new ArrayList<Pair<String,String>>(vars.size());
+      for (String var: vars) { result.add(getVariableToString(var)); }  // recursive locking
+      return result;
+    }
+  }
+
   /** @param c the class to get the name of
    * @return the name of the class, with the right number of array suffixes 
    *         "[]" and while being ambiguous about boxed and primitive types. 
@@ -543,9 +567,9 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     * and does not involve mutable local state.
     * @return false if no test suite is cached; true otherwise
     */
-  public boolean runTestSuite(Boolean runTestParallel) throws RemoteException { 
+  public boolean runTestSuite(Boolean runTestParallel, Map<String, Long> classDurations) throws RemoteException { 
 	  _log.log("runTestSuite with runTestParallel= "+runTestParallel);
-	  return _junitTestManager.runTestSuite(runTestParallel); 
+	  return _junitTestManager.runTestSuite(runTestParallel, classDurations); 
   }
   
   /** Notifies Main JVM that JUnit has been invoked on a non TestCase class.  Unsynchronized because it contains a 
@@ -600,6 +624,7 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     * @param errors The array of errors from all failed tests in the suite.
     */
   public void testSuiteEnded(JUnitError[] errors) {
+    _output.flush();
     try { _mainJVM.testSuiteEnded(errors); }
     catch (RemoteException re) { error.log(re); }
   }
@@ -38,6 +38,7 @@ package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.rmi.RemoteException;
 import java.util.List;
+import java.util.Map;
 import java.io.File;
 
 import edu.rice.cs.plt.tuple.Pair;
@@ -53,7 +54,7 @@ public interface InterpreterJVMRemoteI extends SlaveRemote {
   public List<String> findTestClasses(List<String> classNames, 
     List<File> files, CoverageMetadata coverageMetadata) throws RemoteException;
   
-  public boolean runTestSuite(Boolean runTestParallel) throws RemoteException;
+  public boolean runTestSuite(Boolean runTestParallel, Map<String, Long> classDurations) throws RemoteException;
 
   //public JUnitResultTuple getLastJUnitResult();
 
@@ -121,6 +122,14 @@ public interface InterpreterJVMRemoteI extends SlaveRemote {
    */
   public Pair<String,String> getVariableToString(String var) throws RemoteException;
   
+  /** Gets the string representations of the values of several variables, as {@link #getVariableToString} does for
+    * one, in a single call.
+    * @param vars the names of the variables
+    * @return the results for vars, in order
+    * @throws RemoteException if communication over RMI fails
+    */
+  public List<Pair<String,String>> getVariablesToString(List<String> vars) throws RemoteException;
+  
   /** @return the current class path.
    * @throws RemoteException if communication over RMI fails
    */
@@ -38,6 +38,7 @@ package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.rmi.*;
 import java.io.*;
+import java.net.ServerSocket;
 import java.net.SocketException;
 
 import java.util.List;
@@ -131,6 +132,9 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** Working directory for slave JVM */
   private volatile File _workingDir;
   
+  /** Debug port of the spare slave JVM, or -1 if there is no spare or it does not listen for a debugger. */
+  private volatile int _spareDebugPort = -1;
+  
   /** Creates a new MainJVM to interface to another JVM;  the MainJVM has a 
    * link to the partially initialized global model.  The MainJVM but does 
    * not automatically start the Interpreter JVM.  Callers must set the
@@ -163,7 +167,10 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** Stop the interpreter if it's current running.  (Note that, until {@link #startInterpreterJVM} is called
     * again, all methods that delegate to the interpreter JVM will fail, returning "false" or "none".)
     */
-  public void stopInterpreterJVM() { _state.value().stop(); }
+  public void stopInterpreterJVM() {
+    discardSpareSlave();
+    _state.value().stop();
+  }
   
   /** Get a "fresh" interpreter JVM.  Has the same effect as 
     * {@link #startInterpreterJVM} if no interpreter is running.  If a 
@@ -387,6 +394,18 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     catch (RemoteException e) { _handleRemoteException(e); return Option.none(); }
   }
   
+  /** Gets the string representations of the values of several variables in the current interpreter in one call, or
+    * "none" if the remote JVM is unavailable or an error occurs.  Blocks until the interpreter is connected.
+    * @param vars the names of the variables
+    * @return string representations of vars, in order
+    */
+  public Option<List<Pair<String,String>>> getVariablesToString(List<String> vars) {
+    InterpreterJVMRemoteI remote = _state.value().interpreter(false);
+    if (remote == null) { return Option.none(); }
+    try { return Option.some(remote.getVariablesToString(vars)); }
+    catch (RemoteException e) { _handleRemoteException(e); return Option.none(); }
+  }
+  
   /** Blocks until the interpreter is connected. 
     * @param f file to be added to the class path
     * @return {@code true} if the change was successfully passed to the remote JVM.
@@ -484,15 +503,16 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** Runs the JUnit test suite already cached in the Interpreter JVM.  
     * Blocks until the remote JVM is available.
     * @param runTestParallel Set whether we should run the test in parallel
+    * @param classDurations running times (in ms) of test classes in earlier runs, used to balance a parallel run
     * @return {@code false} if no test suite is cached, the remote JVM is 
     *         unavailable, or an error occurs; true otherwise.
     */
-  public boolean runTestSuite(boolean runTestParallel) { 
+  public boolean runTestSuite(boolean runTestParallel, Map<String, Long> classDurations) { 
     InterpreterJVMRemoteI remote = _state.value().interpreter(true);
     if (remote == null) { return false; }
     try { 
     	_log.log("runTestParallel= "+runTestParallel); 
-    	return remote.runTestSuite(runTestParallel); 	
+    	return remote.runTestSuite(runTestParallel, classDurations); 	
     }
     catch (RemoteException e) { _handleRemoteException(e); return false; }
   }
@@ -699,6 +719,12 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     
     if (_allowAssertions) { jvmArgs.add("-ea"); }
     int debugPort = _getDebugPort();
+    if (debugPort > -1 && _spareDebugPort > -1) {
+      // a spare started with these settings listens on its own port, so the debugger has to attach there
+      debugPort = _spareDebugPort;
+      _interactionsModel.setDebugPort(debugPort);
+    }
+    _spareDebugPort = -1;
     if (debugPort > -1) {
       jvmArgs.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=" + debugPort);
       jvmArgs.add("-Xdebug");
@@ -777,6 +803,36 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     jvmb = jvmb.properties(props);
     
     invokeSlave(jvmb);
+    if (DrJava.getConfig().getSetting(OptionConstants.INTERACTIONS_SPARE_JVM)) { _startSpare(jvmb, debugPort); }
+    else { discardSpareSlave(); }
+  }
+  
+  /** Starts a spare slave JVM for the next reset.  The spare is started like the current slave, except that it
+    * listens for the debugger on a port of its own.
+    * @param jvmb the JVMBuilder the current slave was started with
+    * @param debugPort the debug port of the current slave, or -1 if it does not listen for a debugger
+    */
+  private void _startSpare(JVMBuilder jvmb, int debugPort) {
+    int spareDebugPort = -1;
+    if (debugPort > -1) {
+      try {
+        ServerSocket socket = new ServerSocket(0);
+        spareDebugPort = socket.getLocalPort();
+        socket.close();
+      }
+      catch (IOException e) { return; /* can't find a port; do without a spare */ }
+      String debugArg = "-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=" + debugPort;
+      List<String> spareArgs = new ArrayList<String>();
+      for (String arg: jvmb.jvmArguments()) {
+        if (arg.equals(debugArg)) {
+          spareArgs.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=" + spareDebugPort);
+        }
+        else { spareArgs.add(arg); }
+      }
+      jvmb = jvmb.jvmArguments(spareArgs);
+    }
+    _spareDebugPort = spareDebugPort;
+    startSpareSlave(jvmb);
   }
   
   /** @return the debug port to use, as specified by the model; returns -1 if no usable port could be found. */
@@ -1106,6 +1162,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** InteractionsModel which does not react to events. */
   public static class DummyInteractionsModel implements InteractionsModelCallback {
     public int getDebugPort() throws IOException { return -1; }
+    public void setDebugPort(int port) { }
     public void replSystemOutPrint(String s) { }
     public void replSystemErrPrint(String s) { }
     public String getConsoleInput() {
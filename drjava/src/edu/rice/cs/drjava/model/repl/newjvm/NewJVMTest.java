@@ -40,6 +40,7 @@ import edu.rice.cs.drjava.DrJavaTestCase;
 
 import edu.rice.cs.plt.concurrent.CompletionMonitor;
 import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.util.Log;
 import edu.rice.cs.util.UnexpectedException;
 
@@ -48,6 +49,8 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
 
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
 
@@ -109,6 +112,21 @@ public final class NewJVMTest extends DrJavaTestCase  {
     _log.log("$$$ NewJVMTest.testReturnConstant completed");
   }
 
+  public void testGetVariablesToString() throws Throwable {
+    _log.log("$$$ NewJVMTest.testGetVariablesToString executing");
+    
+    _jvm.resetFlags();
+    assertTrue(_jvm.interpret("int newJVMTestX = 7; String newJVMTestS = null;"));
+    List<Pair<String,String>> values =
+      _jvm.getVariablesToString(Arrays.asList("newJVMTestX", "newJVMTestS", "newJVMTestUndefined")).unwrap();
+    assertEquals("number of results", 3, values.size());
+    assertEquals("int value", "7", values.get(0).first());
+    assertEquals("null value", "null", values.get(1).first());
+    assertNull("undefined value", values.get(2).first());
+    
+    _log.log("$$$ NewJVMTest.testGetVariablesToString completed");
+  }
+
   public void testWorksAfterRestartConstant() throws Throwable {
     _log.log("$$$ NewJVMTest.testWorksAfterRestartConstant executing");
 
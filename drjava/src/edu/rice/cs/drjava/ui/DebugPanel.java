@@ -37,6 +37,7 @@
 package edu.rice.cs.drjava.ui;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.*;
 import javax.swing.table.*;
@@ -89,7 +90,7 @@ public class DebugPanel extends JPanel implements OptionConstants {
 
   private ArrayList<DebugWatchData> _watches;
   private ArrayList<DebugThreadData> _threads;
-  private ArrayList<DebugStackData> _stackFrames;
+  private List<DebugStackData> _stackFrames;
   
   /* The following field is commented out because it was never written (and hence always null). */
 //  private DefaultTreeCellRenderer dtcr;
@@ -640,6 +641,12 @@ public class DebugPanel extends JPanel implements OptionConstants {
     public void breakpointReached(final Breakpoint bp) { }
     public void watchSet(final DebugWatchData w) { }
     public void watchRemoved(final DebugWatchData w) { }
+    
+    /** Repaints the row of an updated watch.  Only runs in event thread. */
+    public void watchUpdated(final DebugWatchData w) {
+      int row = _watches.indexOf(w);
+      if (row >= 0) { ((AbstractTableModel)_watchTable.getModel()).fireTableRowsUpdated(row, row); }
+    }
     public void stepRequested() { }
     public void regionAdded(Breakpoint r) { }
     public void regionChanged(Breakpoint r) { }
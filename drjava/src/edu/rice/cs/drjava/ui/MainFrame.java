@@ -9129,6 +9129,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     public void regionRemoved(final Breakpoint bp) { }    
     public void watchSet(final DebugWatchData w) { }
     public void watchRemoved(final DebugWatchData w) { }
+    public void watchUpdated(final DebugWatchData w) { }
     public void threadStarted() { }
     public void nonCurrThreadDied() { }
   }
@@ -464,6 +464,13 @@ public class ConfigDescriptions {
     add(OptionConstants.BROWSER_HISTORY_MAX_SIZE,
         "Maximum Size of Browser History", 
         "Determines how many entries are kept in the browser history.");
+    add(OptionConstants.DOCUMENT_CACHE_BUDGET, "Memory for Open Documents in MB",
+        "<html>The memory to use for keeping the contents of unmodified open documents<br>"+
+        "ready for editing.  Documents beyond this budget are reloaded when used.<br>"+
+        "Use 0 for a quarter of the maximum heap size.</html>");
+    add(OptionConstants.DOCUMENT_CACHE_COMPRESS, "Compress Unused Documents",
+        "<html>Whether to keep the text of open documents that are not in use in compressed<br>"+
+        "form, which saves memory but makes switching to them slightly slower.</html>");
     
     /* Check box options */
     add(OptionConstants.AUTO_CLOSE_COMMENTS, "Automatically Close Block Comments", 
@@ -526,6 +533,10 @@ public class ConfigDescriptions {
         "The maximum heap the Interactions JVM can use. Select blank for default");
     add(OptionConstants.SLAVE_JVM_ARGS, "JVM Args for Interactions JVM",
         "The command-line arguments to pass to the Interactions JVM.");    
+    add(OptionConstants.INTERACTIONS_SPARE_JVM, "Keep a Spare Interactions JVM Ready",
+        "<html>Start a second Interactions JVM in the background, so that resetting<br>"+
+        "the Interactions Pane does not have to wait for a new JVM to start.<br>"+
+        "This uses the memory of an additional JVM.</html>");
     
     /** Adds all of the components for the Compiler Options Panel of the preferences window
       */
@@ -551,6 +562,10 @@ public class ConfigDescriptions {
     
     add(OptionConstants.SHOW_FALLTHROUGH_WARNINGS, "Show Fall-Through Warnings",
         "<html>Warn about <code>switch</code> block cases that fall through to the next case.</html>");
+    add(OptionConstants.INCREMENTAL_COMPILATION, "Recompile Only Changed Files",
+        "<html>When compiling into a build directory, compile only the files that changed<br>"+
+        "and the files that depend on them.  Files in Java language levels are always<br>"+
+        "compiled in full.</html>");
     
     /*
      * The drop down box containing the compiler names
@@ -580,6 +595,12 @@ public class ConfigDescriptions {
     
     add(OptionConstants.HISTORY_MAX_SIZE, "Size of Interactions History",
         "The number of interactions to remember in the history.");
+    add(OptionConstants.CONSOLE_MAX_LENGTH, "Maximum Console Length",
+        "<html>The number of characters to retain in the Console and Interactions Pane.<br>"+
+        "Older text is removed once this size is exceeded.  Use 0 for no limit.</html>");
+    add(OptionConstants.CONSOLE_SPILL_TRIMMED, "Keep Removed Console Text for Save Copy",
+        "<html>Whether text removed from the Console and Interactions Pane is kept<br>"+
+        "in a temporary file, so that Save Copy still writes the full contents.</html>");
     
     add(OptionConstants.DYNAMICJAVA_ACCESS_CONTROL,
         "Enforce access control", 
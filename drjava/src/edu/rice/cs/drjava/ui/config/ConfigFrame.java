@@ -1044,6 +1044,7 @@ public class ConfigFrame extends SwingFrame {
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.INDENT_INC));
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.RECENT_FILES_MAX_SIZE));
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.BROWSER_HISTORY_MAX_SIZE));
+    addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.DOCUMENT_CACHE_BUDGET));
     
     /* Check box options */
     addOptionComponent(panel, 
@@ -1055,6 +1056,7 @@ public class ConfigFrame extends SwingFrame {
                        newBooleanOptionComponent(OptionConstants.BACKUP_FILES));
     addOptionComponent(panel, 
                        newBooleanOptionComponent(OptionConstants.RESET_CLEAR_CONSOLE));
+    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.DOCUMENT_CACHE_COMPRESS));
 
     addOptionComponent(panel, 
                        newBooleanOptionComponent(OptionConstants.FIND_REPLACE_FOCUS_IN_DEFPANE));
@@ -1083,6 +1085,8 @@ public class ConfigFrame extends SwingFrame {
                        newForcedChoiceOptionComponent(OptionConstants.SLAVE_JVM_XMX));
     addOptionComponent(panel, 
                        newStringOptionComponent(OptionConstants.SLAVE_JVM_ARGS));    
+    addOptionComponent(panel, 
+                       newBooleanOptionComponent(OptionConstants.INTERACTIONS_SPARE_JVM));
     panel.displayComponents();
   }
 
@@ -1254,6 +1258,9 @@ public class ConfigFrame extends SwingFrame {
                        CPC.setEntireColumn(false)
                       );
     
+    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.INCREMENTAL_COMPILATION, false)
+                         .setEntireColumn(true));
+    
     addOptionComponent(panel, 
                        new LabelComponent("<html><br><br>Note: Compiler warnings not shown if compiling any Java language level files.</html>", 
                                           this, true));
@@ -1290,6 +1297,8 @@ public class ConfigFrame extends SwingFrame {
     addOptionComponent(panel, new LabelComponent("<html>&nbsp;</html>", this, true));
       
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.HISTORY_MAX_SIZE));
+    addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.CONSOLE_MAX_LENGTH));
+    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.CONSOLE_SPILL_TRIMMED));
 
     addOptionComponent(panel, new LabelComponent("<html>&nbsp;</html>", this, true));
     addOptionComponent(panel, new LabelComponent("<html>&nbsp;</html>", this, true));
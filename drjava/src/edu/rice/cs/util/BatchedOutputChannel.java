@@ -0,0 +1,200 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/** Coalesces the text printed to one or more output streams into batches that a single daemon thread delivers, in the
+  * order the text was printed, to an abstract destination.  A batch is delivered once it reaches the batch size or
+  * once the text has waited for the coalescing window, so a loop printing many short lines costs one delivery per
+  * batch rather than one per line.  A printing thread blocks while the undelivered text exceeds the pending limit,
+  * which keeps a runaway printer from outpacing the destination.  Text printed to different streams is never merged;
+  * each maximal run printed to one stream is delivered separately.
+  * @version $Id$
+  */
+public abstract class BatchedOutputChannel {
+  
+  /** Default number of characters that triggers an immediate delivery. */
+  public static final int DEFAULT_BATCH_SIZE = 0x2000;  // 8K
+  
+  /** Default number of undelivered characters beyond which printing threads block. */
+  public static final int DEFAULT_MAX_PENDING = 0x40000;  // 256K
+  
+  /** Default number of milliseconds text waits for more text before it is delivered. */
+  public static final long DEFAULT_WINDOW = 20;
+  
+  private final String _name;
+  private final int _batchSize;
+  private final int _maxPending;
+  private final long _window;
+  
+  /** The undelivered runs in print order, and the stream of each run. */
+  private final ArrayList<StringBuilder> _runs = new ArrayList<StringBuilder>();
+  private final ArrayList<Integer> _streams = new ArrayList<Integer>();
+  
+  /** The number of characters ever printed and ever delivered; the difference is the undelivered text, including
+    * that being delivered.  A flush waits for the delivered count to reach the printed count at the time it began.
+    */
+  private long _printed = 0;
+  private long _delivered = 0;
+  
+  /** The number of callers of flush waiting for the pending text to be delivered. */
+  private int _flushers = 0;
+  
+  /** The delivery thread, started on the first print. */
+  private Thread _thread = null;
+  
+  /** @param name the name of the delivery thread */
+  public BatchedOutputChannel(String name) { this(name, DEFAULT_BATCH_SIZE, DEFAULT_MAX_PENDING, DEFAULT_WINDOW); }
+  
+  /** @param name the name of the delivery thread
+    * @param batchSize the number of characters that triggers an immediate delivery
+    * @param maxPending the number of undelivered characters beyond which printing threads block
+    * @param window the number of milliseconds text waits for more text before it is delivered
+    */
+  public BatchedOutputChannel(String name, int batchSize, int maxPending, long window) {
+    _name = name;
+    _batchSize = batchSize;
+    _maxPending = maxPending;
+    _window = window;
+  }
+  
+  /** Delivers a run of text.  Called on the delivery thread only, in print order.
+    * @param stream the stream the text was printed to
+    * @param s the text
+    */
+  protected abstract void deliver(int stream, String s);
+  
+  /** @param stream a stream identifier passed back to deliver
+    * @return an output stream whose text is printed to stream of this channel
+    */
+  public OutputStream getOutputStream(final int stream) {
+    return new OutputStreamRedirector() {
+      public void print(String s) { BatchedOutputChannel.this.print(stream, s); }
+    };
+  }
+  
+  /** Queues text for delivery, blocking while the undelivered text exceeds the pending limit.
+    * @param stream the stream the text is printed to
+    * @param s the text
+    */
+  public synchronized void print(int stream, String s) {
+    if (s.length() == 0) return;
+    if (Thread.currentThread() != _thread) {
+      try { while (_printed - _delivered >= _maxPending) wait(); }
+      catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+    boolean wasIdle = _runs.isEmpty();
+    int last = _runs.size() - 1;
+    if (last >= 0 && _streams.get(last) == stream) _runs.get(last).append(s);
+    else {
+      _runs.add(new StringBuilder(s));
+      _streams.add(stream);
+    }
+    _printed += s.length();
+    if (_thread == null) {
+      _thread = new Thread(_name) { public void run() { _deliverLoop(); } };
+      _thread.setDaemon(true);
+      _thread.start();
+    }
+    else if (wasIdle || _printed - _delivered >= _batchSize) notifyAll();  // start the window or cut it short
+  }
+  
+  /** Waits until all text printed so far has been delivered.  Text printed after the call, perhaps by another
+    * thread that keeps printing, is not waited for.
+    */
+  public void flush() { flush(0); }
+  
+  /** Waits until all text printed so far has been delivered or the timeout has elapsed.  Text printed after the
+    * call is not waited for.
+    * @param timeout the maximum number of milliseconds to wait, or 0 to wait indefinitely
+    * @return true if all text printed before the call has been delivered
+    */
+  public synchronized boolean flush(long timeout) {
+    long target = _printed;
+    if (Thread.currentThread() == _thread) return _delivered >= target;
+    long deadline = System.currentTimeMillis() + timeout;
+    _flushers++;
+    notifyAll();
+    try {
+      while (_delivered < target) {
+        if (timeout == 0) wait();
+        else {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) break;
+          wait(remaining);
+        }
+      }
+    }
+    catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    finally { _flushers--; }
+    return _delivered >= target;
+  }
+  
+  /** The body of the delivery thread. */
+  private void _deliverLoop() {
+    ArrayList<StringBuilder> runs = new ArrayList<StringBuilder>();
+    ArrayList<Integer> streams = new ArrayList<Integer>();
+    while (true) {
+      synchronized(this) {
+        try {
+          while (_runs.isEmpty()) wait();
+          // Give the printer a chance to fill the batch unless it is already full or someone is waiting for it
+          if (_printed - _delivered < _batchSize && _flushers == 0) wait(_window);
+        }
+        catch (InterruptedException e) { /* deliver what we have */ }
+        runs.addAll(_runs);
+        streams.addAll(_streams);
+        _runs.clear();
+        _streams.clear();
+      }
+      try { for (int i = 0; i < runs.size(); i++) deliver(streams.get(i), runs.get(i).toString()); }
+      catch (RuntimeException e) { /* the destination is unreachable; drop the rest of the batch */ }
+      finally {
+        int total = 0;
+        for (StringBuilder run: runs) total += run.length();
+        runs.clear();
+        streams.clear();
+        synchronized(this) {
+          _delivered += total;
+          notifyAll();
+        }
+      }
+    }
+  }
+}
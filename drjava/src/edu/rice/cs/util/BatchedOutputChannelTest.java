@@ -0,0 +1,141 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the ordering, coalescing, flushing and backpressure of BatchedOutputChannel.
+  * @version $Id$
+  */
+public final class BatchedOutputChannelTest extends DrJavaTestCase {
+  
+  /** A channel recording its deliveries. */
+  private static class RecordingChannel extends BatchedOutputChannel {
+    final ArrayList<String> _delivered = new ArrayList<String>();
+    volatile long _deliveryDelay = 0;
+    RecordingChannel(int batchSize, int maxPending, long window) { super("Test Output", batchSize, maxPending, window); }
+    protected void deliver(int stream, String s) {
+      if (_deliveryDelay > 0) {
+        try { Thread.sleep(_deliveryDelay); }
+        catch (InterruptedException e) { /* ignore */ }
+      }
+      synchronized(_delivered) { _delivered.add(stream + ":" + s); }
+    }
+    String joined(int stream) {
+      StringBuilder sb = new StringBuilder();
+      synchronized(_delivered) {
+        for (String d: _delivered) if (d.startsWith(stream + ":")) sb.append(d.substring(2));
+      }
+      return sb.toString();
+    }
+  }
+  
+  public void testCoalescingAndOrder() {
+    RecordingChannel channel = new RecordingChannel(1 << 20, 1 << 20, 10000);
+    PrintStream out = new PrintStream(channel.getOutputStream(0));
+    PrintStream err = new PrintStream(channel.getOutputStream(1));
+    for (int i = 0; i < 1000; i++) out.println(i);
+    err.print("oops");
+    out.print("done");
+    channel.flush();
+    
+    assertEquals("runs on different streams are delivered separately, in order", 3, channel._delivered.size());
+    assertTrue(channel._delivered.get(0).startsWith("0:0\n1\n2\n"));
+    assertEquals("1:oops", channel._delivered.get(1));
+    assertEquals("0:done", channel._delivered.get(2));
+  }
+  
+  public void testWindowDelivery() throws InterruptedException {
+    RecordingChannel channel = new RecordingChannel(1 << 20, 1 << 20, 10);
+    channel.print(0, "a");
+    long deadline = System.currentTimeMillis() + 5000;
+    while (channel.joined(0).length() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+    assertEquals("text is delivered after the window without a flush", "a", channel.joined(0));
+  }
+  
+  public void testBackpressure() {
+    RecordingChannel channel = new RecordingChannel(16, 64, 1);
+    channel._deliveryDelay = 5;
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      String s = "line " + i + "\n";
+      expected.append(s);
+      channel.print(0, s);
+    }
+    assertTrue(channel.flush(10000));
+    assertEquals(expected.toString(), channel.joined(0));
+    assertTrue("prints were coalesced", channel._delivered.size() < 200);
+  }
+  
+  /** A flush waits only for the text printed before it, even while another thread keeps printing. */
+  public void testFlushWithBusyPrinter() throws InterruptedException {
+    final RecordingChannel channel = new RecordingChannel(16, 1 << 20, 1);
+    channel._deliveryDelay = 50;  // every delivery outlasts several prints, so some text is always undelivered
+    final boolean[] stop = { false };
+    Thread printer = new Thread("Busy Printer") {
+      public void run() {
+        while (true) {
+          synchronized(stop) { if (stop[0]) return; }
+          channel.print(1, "background\n");
+          try { Thread.sleep(5); }
+          catch (InterruptedException e) { return; }
+        }
+      }
+    };
+    printer.setDaemon(true);
+    printer.start();
+    try {
+      channel.print(0, "result");
+      final boolean[] flushed = { false };
+      Thread flusher = new Thread("Flusher") {
+        public void run() { channel.flush(); synchronized(flushed) { flushed[0] = true; } }
+      };
+      flusher.setDaemon(true);
+      flusher.start();
+      flusher.join(10000);
+      synchronized(flushed) { assertTrue("flush returned while the printer kept printing", flushed[0]); }
+      assertEquals("result", channel.joined(0));
+    }
+    finally {
+      synchronized(stop) { stop[0] = true; }
+      printer.join(10000);
+    }
+  }
+}
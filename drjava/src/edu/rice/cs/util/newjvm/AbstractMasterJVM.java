@@ -39,8 +39,16 @@ package edu.rice.cs.util.newjvm;
 import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.SecureRandom;
 import java.io.Serializable;
 import java.util.Map;
+import java.util.TreeMap;
 
 import edu.rice.cs.util.Log;
 import edu.rice.cs.util.UnexpectedException;
@@ -94,12 +102,51 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     }
   }
   
+  /** A slave JVM process.  Only the exit of the active slave is reported to handleSlaveQuit; a spare that exits
+    * before it is claimed is simply dropped.  Uses itself as its lock. */
+  private static class SlaveProcess {
+    private boolean _active = false;
+    private boolean _exited = false;
+  }
+  
+  /** A started spare slave together with the key of the JVMBuilder it was started with. */
+  private static class Spare {
+    private final String _key;
+    private final SlaveRemote _slave;
+    private final SlaveProcess _process;
+    public Spare(String key, SlaveRemote slave, SlaveProcess process) {
+      _key = key;
+      _slave = slave;
+      _process = process;
+    }
+  }
+  
   private final StateMonitor<State> _monitor;
   private final SlaveFactory _slaveFactory;
   private final LazyThunk<MasterRemote> _masterStub;
   /** The slave JVM remote stub (non-null when the state is RUNNING). */
   private volatile SlaveRemote _slave;
   
+  /** System property selecting the transport to slaves: "rmi" for plain RMI, otherwise a MultiplexedChannel with RMI
+    * as the fallback. */
+  public static final String TRANSPORT_PROPERTY = "edu.rice.cs.util.newjvm.transport";
+  
+  /** Milliseconds to wait for the slave to connect to a new channel. */
+  private static final int CHANNEL_ACCEPT_TIMEOUT = 10000;
+  
+  /** Source of the cookies that identify channel connections. */
+  private static final SecureRandom _random = new SecureRandom();
+  
+  /** Milliseconds to wait for a mismatched spare slave to exit before starting a new slave. */
+  private static final int SPARE_QUIT_TIMEOUT = 2000;
+  
+  /** Lock guarding _spare and _spareStarting. */
+  private final Object _spareLock = new Object();
+  /** A slave started ahead of time by startSpareSlave, or null. */
+  private Spare _spare = null;
+  /** Whether a spare slave is being started. */
+  private boolean _spareStarting = false;
+  
   /** Set up the master JVM object.  Does not start a slave JVM.
    * @param slaveClassName The fully-qualified class name of the class to start up in the second JVM.  Must be a
    *                       subclass of {@link AbstractSlaveJVM}.
@@ -146,30 +193,23 @@ public abstract class AbstractMasterJVM implements MasterRemote {
   protected final void invokeSlave(JVMBuilder jvmBuilder) {
     transition(State.FRESH, State.STARTING);
 
-    // update jvmBuilder with any special properties
-    Map<String, String> props = ConcurrentUtil.getPropertiesAsMap("plt.", "drjava.", "edu.rice.cs.");
-    if (!props.containsKey("plt.log.working.dir") && // Set plt.log.working.dir, in case the working dir changes
-        (props.containsKey("plt.debug.log") || props.containsKey("plt.error.log") || 
-            props.containsKey("plt.log.factory"))) {
-      props.put("plt.log.working.dir", System.getProperty("user.dir", ""));
+    final JVMBuilder tweakedJVMBuilder = _tweak(jvmBuilder);
+    
+    SlaveRemote spare = _claimSpare(_keyOf(tweakedJVMBuilder));
+    if (spare != null) {
+      debug.log("using spare remote JVM process");
+      handleSlaveConnected(spare);
+      _slave = spare;
+      _monitor.set(State.RUNNING);
+      return;
     }
-    // include props, but shadow them with any definitions in jvmBuilder
-    final JVMBuilder tweakedJVMBuilder = jvmBuilder.properties(CollectUtil.union(props, jvmBuilder.properties()));
 
     SlaveRemote newSlave = null;
     try {
       debug.logStart("invoking remote JVM process");
-      newSlave =
-        (SlaveRemote) ConcurrentUtil.exportInProcess(_slaveFactory, tweakedJVMBuilder, new Runnable1<Process>() {
-          public void run(Process p) {
-            debug.log("Remote JVM quit");
-            _monitor.set(State.FRESH);
-            //debug.log("Entered state " + State.FRESH);
-            debug.logStart("handleSlaveQuit");
-            handleSlaveQuit(p.exitValue());
-            debug.logEnd("handleSlaveQuit");
-          }
-        });
+      SlaveProcess process = new SlaveProcess();
+      process._active = true;
+      newSlave = _export(tweakedJVMBuilder, process);
       debug.logEnd("invoking remote JVM process");
     }
     catch (Exception e) {
@@ -181,7 +221,7 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     }
 
     if (newSlave != null) {
-      try { newSlave.start(_masterStub.value()); }
+      try { newSlave = _start(newSlave); }
       catch (RemoteException e) {
         debug.log(e);
         attemptQuit(newSlave);
@@ -198,6 +238,228 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     }
   }
   
+  /** Starts a spare slave JVM in the background, so that a later {@link #invokeSlave} with an equivalent JVMBuilder
+    * can connect to it immediately instead of paying for JVM startup.  The spare is started (see
+    * {@link SlaveRemote#start}) but not connected; {@link #handleSlaveConnected} is called when it is claimed.  Does
+    * nothing if an equivalent spare is already available or a spare is being started.  A spare started with a
+    * different JVMBuilder replaces the current one.
+    * @param jvmBuilder  JVMBuilder to use in starting the remote process.
+    */
+  protected final void startSpareSlave(JVMBuilder jvmBuilder) {
+    final JVMBuilder tweakedJVMBuilder = _tweak(jvmBuilder);
+    final String key = _keyOf(tweakedJVMBuilder);
+    synchronized(_spareLock) {
+      if (_spareStarting || isDisposed()) return;
+      if (_spare != null && _spare._key.equals(key)) return;
+      _spareStarting = true;
+    }
+    Thread starter = new Thread("Start Spare Slave JVM") {
+      public void run() {
+        Spare spare = null;
+        SlaveRemote slave = null;
+        try {
+          debug.logStart("invoking spare remote JVM process");
+          SlaveProcess process = new SlaveProcess();
+          slave = _export(tweakedJVMBuilder, process);
+          slave = _start(slave);
+          spare = new Spare(key, slave, process);
+          debug.logEnd("invoking spare remote JVM process");
+        }
+        catch (Exception e) {
+          debug.log(e);
+          debug.logEnd("invoking spare remote JVM process (failed)");
+          if (slave != null) attemptQuit(slave);
+        }
+        Spare old = null;
+        synchronized(_spareLock) {
+          _spareStarting = false;
+          if (spare != null && ! isDisposed()) {
+            old = _spare;
+            _spare = spare;
+            spare = null;
+          }
+          _spareLock.notifyAll();
+        }
+        if (old != null) _quitSpare(old);
+        if (spare != null) _quitSpare(spare);  // disposed in the meantime
+      }
+    };
+    starter.setDaemon(true);
+    starter.start();
+  }
+  
+  /** Quits the spare slave JVM, if any. */
+  protected final void discardSpareSlave() {
+    Spare spare;
+    synchronized(_spareLock) {
+      spare = _spare;
+      _spare = null;
+    }
+    if (spare != null) _quitSpare(spare);
+  }
+  
+  /** @return true if a started spare slave JVM is available */
+  protected boolean hasSpareSlave() {
+    synchronized(_spareLock) { return _spare != null; }
+  }
+  
+  /** Takes the spare slave if it was started with the given key, waiting for a spare being started.  A spare started
+    * with a different key is quit.
+    * @param key the key of the JVMBuilder for the slave to be invoked
+    * @return the spare slave, now active, or null if there is no suitable spare
+    */
+  private SlaveRemote _claimSpare(String key) {
+    Spare spare;
+    synchronized(_spareLock) {
+      try { while (_spareStarting) _spareLock.wait(); }
+      catch (InterruptedException e) { throw new UnexpectedException(e); }
+      spare = _spare;
+      _spare = null;
+    }
+    if (spare == null) return null;
+    if (spare._key.equals(key)) {
+      synchronized(spare._process) {
+        if (! spare._process._exited) {
+          spare._process._active = true;
+          return spare._slave;
+        }
+      }
+      return null;
+    }
+    // the new slave may need resources held by the spare, such as a debug port
+    _quitSpare(spare);
+    synchronized(spare._process) {
+      long deadline = System.currentTimeMillis() + SPARE_QUIT_TIMEOUT;
+      try {
+        long left;
+        while (! spare._process._exited && (left = deadline - System.currentTimeMillis()) > 0) {
+          spare._process.wait(left);
+        }
+      }
+      catch (InterruptedException e) { throw new UnexpectedException(e); }
+    }
+    return null;
+  }
+  
+  /** Starts a newly exported slave.  Unless {@link #TRANSPORT_PROPERTY} is "rmi", the slave is first moved onto a
+    * {@link MultiplexedChannel}; if that cannot be set up, RMI is used.
+    * @param rmiSlave  the RMI stub of the slave
+    * @return the stub to use for the slave: a channel proxy or rmiSlave
+    * @throws RemoteException if the slave cannot be started
+    */
+  private SlaveRemote _start(SlaveRemote rmiSlave) throws RemoteException {
+    if (! "rmi".equals(System.getProperty(TRANSPORT_PROPERTY))) {
+      SlaveRemote channelSlave = _openChannel(rmiSlave);
+      if (channelSlave != null) {
+        channelSlave.start(this);  // passed by reference through the channel
+        return channelSlave;
+      }
+    }
+    rmiSlave.start(_masterStub.value());
+    return rmiSlave;
+  }
+  
+  /** Asks the slave to connect to a new channel, and exports this master on it.
+    * @param rmiSlave  the RMI stub of the slave
+    * @return a proxy for the slave on the channel, or null if the channel could not be set up
+    */
+  private SlaveRemote _openChannel(SlaveRemote rmiSlave) {
+    ServerSocket server = null;
+    Socket socket = null;
+    try {
+      server = new ServerSocket(0, 1, InetAddress.getByName(null));
+      server.setSoTimeout(CHANNEL_ACCEPT_TIMEOUT);
+      long cookie = _random.nextLong();
+      rmiSlave.connectChannel(server.getLocalPort(), cookie);
+      socket = server.accept();
+      if (new DataInputStream(socket.getInputStream()).readLong() != cookie) {
+        throw new IOException("Unexpected connection to master channel");
+      }
+      MultiplexedChannel channel = new MultiplexedChannel("Master", socket);
+      channel.export(this);
+      channel.start();
+      return (SlaveRemote) channel.proxy(0, MultiplexedChannel.remoteInterfaces(rmiSlave.getClass()));
+    }
+    catch (IOException e) {
+      // includes RemoteException
+      debug.log("Unable to open channel; using RMI", e);
+      if (socket != null) {
+        try { socket.close(); }
+        catch (IOException e2) { debug.log(e2); }
+      }
+      return null;
+    }
+    finally {
+      if (server != null) {
+        try { server.close(); }
+        catch (IOException e) { debug.log(e); }
+      }
+    }
+  }
+  
+  /** Quits a spare slave that has not exited. */
+  private static void _quitSpare(Spare spare) {
+    synchronized(spare._process) { if (spare._process._exited) return; }
+    attemptQuit(spare._slave);
+  }
+  
+  /** @param jvmBuilder a JVMBuilder supplied by a subclass
+    * @return jvmBuilder, extended with the special properties of this JVM
+    */
+  private static JVMBuilder _tweak(JVMBuilder jvmBuilder) {
+    // update jvmBuilder with any special properties
+    Map<String, String> props = ConcurrentUtil.getPropertiesAsMap("plt.", "drjava.", "edu.rice.cs.");
+    if (!props.containsKey("plt.log.working.dir") && // Set plt.log.working.dir, in case the working dir changes
+        (props.containsKey("plt.debug.log") || props.containsKey("plt.error.log") || 
+            props.containsKey("plt.log.factory"))) {
+      props.put("plt.log.working.dir", System.getProperty("user.dir", ""));
+    }
+    // include props, but shadow them with any definitions in jvmBuilder
+    return jvmBuilder.properties(CollectUtil.union(props, jvmBuilder.properties()));
+  }
+  
+  /** @param jvmBuilder a JVMBuilder
+    * @return a string that is equal for JVMBuilders that start equivalent processes
+    */
+  private static String _keyOf(JVMBuilder jvmBuilder) {
+    StringBuilder sb = new StringBuilder(jvmBuilder.javaCommand());
+    sb.append('\0').append(jvmBuilder.directory());
+    for (String arg: jvmBuilder.jvmArguments()) sb.append('\0').append(arg);
+    sb.append('\0');
+    for (File f: jvmBuilder.classPath()) sb.append(File.pathSeparatorChar).append(f.getAbsolutePath());
+    sb.append('\0').append(new TreeMap<String, String>(jvmBuilder.properties()));
+    Map<String, String> env = jvmBuilder.environment();  // null if the environment is inherited
+    sb.append('\0').append((env == null) ? null : new TreeMap<String, String>(env));
+    return sb.toString();
+  }
+  
+  /** Starts a slave process, reporting its exit to handleSlaveQuit if the process is active at that time.
+    * @param jvmBuilder  JVMBuilder to use in starting the remote process
+    * @param process  the state of the process
+    * @return the remote stub of the slave
+    * @throws Exception if the process cannot be started
+    */
+  private SlaveRemote _export(JVMBuilder jvmBuilder, final SlaveProcess process) throws Exception {
+    return (SlaveRemote) ConcurrentUtil.exportInProcess(_slaveFactory, jvmBuilder, new Runnable1<Process>() {
+      public void run(Process p) {
+        synchronized(process) {
+          process._exited = true;
+          process.notifyAll();
+          if (! process._active) {
+            debug.log("Spare remote JVM quit");
+            return;
+          }
+        }
+        debug.log("Remote JVM quit");
+        _monitor.set(State.FRESH);
+        //debug.log("Entered state " + State.FRESH);
+        debug.logStart("handleSlaveQuit");
+        handleSlaveQuit(p.exitValue());
+        debug.logEnd("handleSlaveQuit");
+      }
+    });
+  }
+  
   /** Quits slave JVM.  If a slave is not currently started and running, blocks until that state is reached.
     * @throws IllegalStateException  If this object has been disposed.
     */
@@ -223,6 +485,7 @@ public abstract class AbstractMasterJVM implements MasterRemote {
    */
   protected void dispose() {
     transition(State.FRESH, State.DISPOSED);
+    discardSpareSlave();
     if (_masterStub.isResolved()) { 
       try { UnicastRemoteObject.unexportObject(this, true); }
       catch (NoSuchObjectException e) { error.log(e); }
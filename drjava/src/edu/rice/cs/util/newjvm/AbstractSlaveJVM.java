@@ -38,6 +38,10 @@ package edu.rice.cs.util.newjvm;
 
 import edu.rice.cs.plt.concurrent.ConcurrentUtil;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
 import java.rmi.*;
 
 import static edu.rice.cs.plt.debug.DebugUtil.error;
@@ -109,6 +113,25 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
     handleStart(master);
   }
   
+  /** Connects to the master's channel and exports this slave on it.
+    * @param port  the port on the local host the master listens on
+    * @param cookie  the value to send first, so that the master can recognize the connection
+    * @throws RemoteException if the connection cannot be made
+    */
+  public final synchronized void connectChannel(int port, long cookie) throws RemoteException {
+    if (_started) { throw new IllegalArgumentException("start() has already been invoked"); }
+    try {
+      Socket socket = new Socket(InetAddress.getByName(null), port);
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      out.writeLong(cookie);
+      out.flush();
+      MultiplexedChannel channel = new MultiplexedChannel("Slave", socket);
+      channel.export(this);
+      channel.start();
+    }
+    catch (IOException e) { throw new ConnectException("Unable to connect to master channel", e); }
+  }
+  
   /** This method is called just before the JVM is quit.  It can be overridden to provide cleanup code, etc. */
   protected void beforeQuit() { }
   
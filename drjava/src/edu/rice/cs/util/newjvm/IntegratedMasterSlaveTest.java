@@ -74,6 +74,11 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
     for (int i = 0; i < 5; i++)  _testMaster.runImmediateQuitTest();
   }
   
+  // this test uses thread pools and starts a THRAD_EXECUTOR-n thread that we cannot join
+  public void testSpareSlave_NOJOIN() throws Exception {
+    for (int i = 0; i < 2; i++) _testMaster.runSpareTest();
+  }
+  
   private static class TestMasterJVM extends AbstractMasterJVM implements TestMasterRemote {
     
     private static final int WAIT_TIMEOUT = 10000; 
@@ -116,6 +121,29 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
       // (All of the post-quit invariants are checked in handleSlaveQuit.
     }
     
+    /** Starts a spare slave, then invokes a slave with the same JVMBuilder; the spare should be used. */
+    public void runSpareTest() throws Exception {
+      _currentTest = "runSpareTest";
+      _justQuit.reset();
+      _slave = null;
+      _letter = 'a';
+      
+      startSpareSlave(JVMBuilder.DEFAULT);
+      long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+      while (! hasSpareSlave() && System.currentTimeMillis() < deadline) { Thread.sleep(50); }
+      assertTrue("spare slave started", hasSpareSlave());
+      
+      invokeSlave(JVMBuilder.DEFAULT);
+      assertFalse("spare slave claimed", hasSpareSlave());
+      assertNotNull("slave connected", _slave);
+      assertEquals("value returned by slave", 0, _slave.getNumber());
+      assertEquals("value returned by slave", 1, _slave.getNumber());
+      
+      quitSlave();
+      assertTrue(_justQuit.attemptEnsureSignaled(WAIT_TIMEOUT));
+      _currentTest = "";
+    }
+    
     public void runTestSequence() throws Exception {
       _currentTest = "runTestSequence";
       _justQuit.reset();
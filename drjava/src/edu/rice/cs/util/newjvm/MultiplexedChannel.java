@@ -0,0 +1,491 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util.newjvm;
+
+import java.io.*;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.Socket;
+import java.rmi.ConnectException;
+import java.rmi.MarshalException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.UnmarshalException;
+import java.rmi.server.RemoteObject;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.rice.cs.plt.debug.DebugUtil.debug;
+import static edu.rice.cs.plt.debug.DebugUtil.error;
+
+/** A two-way remote invocation channel over a single pair of streams, used in place of RMI between a master and a
+  * slave JVM.  Each side exports its {@link Remote} objects on the channel and calls the other side's objects through
+  * dynamic proxies.  All calls in both directions share one connection; a call is a frame tagged with a request id,
+  * so any number of calls can be outstanding, and calls arriving from the other side are run on a pool of daemon
+  * threads (which allows callbacks while a call is pending).
+  * <p>A frame is an int length followed by a kind byte, an int request id, and a body.  Methods are sent by a code
+  * that is defined by the first call that uses it.  Nulls, strings, and boxed ints, longs and booleans have compact
+  * encodings; references to local {@link Remote} objects become proxies on the other side; all other values use
+  * Java serialization.</p>
+  * <p>As with RMI, a call fails with a {@link RemoteException} if the channel breaks; calls pending when the other
+  * side goes away fail with an {@link UnmarshalException} caused by an {@link EOFException}.</p>
+  * @version $Id$
+  */
+final class MultiplexedChannel {
+  
+  private static final byte CALL = 1;
+  private static final byte RETURN = 2;
+  private static final byte THROW = 3;
+  
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INT = 2;
+  private static final byte LONG = 3;
+  private static final byte BOOLEAN = 4;
+  private static final byte REF = 5;
+  private static final byte OBJECT = 6;
+  
+  /** Longest string written with writeUTF; longer strings are serialized. */
+  private static final int MAX_UTF_LENGTH = 65535 / 3;
+  
+  /** Classes of the primitive types, by name. */
+  private static final Map<String, Class<?>> PRIMITIVES = new ConcurrentHashMap<String, Class<?>>();
+  static {
+    for (Class<?> c: new Class<?>[] { boolean.class, byte.class, char.class, short.class, int.class, long.class,
+                                      float.class, double.class, void.class }) {
+      PRIMITIVES.put(c.getName(), c);
+    }
+  }
+  
+  private final String _name;
+  private final DataInputStream _in;
+  private final DataOutputStream _out;
+  /** Closed by close(), if the channel was created on a socket. */
+  private final Socket _socket;
+  
+  /** Lock guarding writes to _out and the method codes in _methodCodes. */
+  private final Object _writeLock = new Object();
+  /** Codes of the methods this side has called, in order of first use. */
+  private final Map<Method, Integer> _methodCodes = new ConcurrentHashMap<Method, Integer>();
+  /** Methods the other side has called, by code.  Only accessed by the reader thread. */
+  private final List<Method> _methods = new ArrayList<Method>();
+  
+  /** Objects exported on this channel, by id. */
+  private final Map<Integer, Object> _exports = new ConcurrentHashMap<Integer, Object>();
+  /** Ids of the exported objects.  Guarded by itself. */
+  private final Map<Object, Integer> _exportIds = new IdentityHashMap<Object, Integer>();
+  /** Proxies for the other side's objects, by id. */
+  private final Map<Integer, Object> _proxies = new ConcurrentHashMap<Integer, Object>();
+  
+  private final AtomicInteger _nextRequest = new AtomicInteger();
+  /** Calls waiting for a response, by request id. */
+  private final Map<Integer, PendingCall> _pending = new ConcurrentHashMap<Integer, PendingCall>();
+  
+  private final ExecutorService _dispatcher;
+  private final Thread _reader;
+  private volatile boolean _closed = false;
+  
+  /** Creates a channel on a connected socket.  Call {@link #start} once the local objects have been exported.
+    * @param name  name of this end of the channel, used for thread names
+    * @param socket  the connected socket
+    * @throws IOException if the socket streams are not available
+    */
+  public MultiplexedChannel(String name, Socket socket) throws IOException {
+    this(name, socket.getInputStream(), socket.getOutputStream(), socket);
+    socket.setTcpNoDelay(true);
+  }
+  
+  /** Creates a channel on a pair of streams, such as the pipes of a process.  Call {@link #start} once the local
+    * objects have been exported.
+    * @param name  name of this end of the channel, used for thread names
+    * @param in  stream from the other side
+    * @param out  stream to the other side
+    */
+  public MultiplexedChannel(String name, InputStream in, OutputStream out) { this(name, in, out, null); }
+  
+  private MultiplexedChannel(final String name, InputStream in, OutputStream out, Socket socket) {
+    _name = name;
+    _in = new DataInputStream(new BufferedInputStream(in));
+    _out = new DataOutputStream(new BufferedOutputStream(out));
+    _socket = socket;
+    _dispatcher = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger _count = new AtomicInteger();
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, name + " Channel Call " + _count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    _reader = new Thread(name + " Channel Reader") {
+      public void run() { _read(); }
+    };
+    _reader.setDaemon(true);
+  }
+  
+  /** Starts reading from the other side. */
+  public void start() { _reader.start(); }
+  
+  /** Exports an object, unless it already is.  The first object exported on a channel has id 0.
+    * @param obj  the object to export
+    * @return the id of the object on this channel
+    */
+  public int export(Remote obj) {
+    synchronized(_exportIds) {
+      Integer id = _exportIds.get(obj);
+      if (id == null) {
+        id = _exportIds.size();
+        _exportIds.put(obj, id);
+        _exports.put(id, obj);
+      }
+      return id;
+    }
+  }
+  
+  /** @param id  the id of an object exported by the other side
+    * @param interfaces  the remote interfaces of that object
+    * @return a proxy for the object
+    */
+  public Object proxy(final int id, Class<?>... interfaces) {
+    Object p = _proxies.get(id);
+    if (p == null) {
+      ClassLoader loader = (interfaces.length == 0) ? MultiplexedChannel.class.getClassLoader() :
+        interfaces[0].getClassLoader();
+      p = Proxy.newProxyInstance(loader, interfaces, new InvocationHandler() {
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+          if (m.getDeclaringClass() == Object.class) {
+            String name = m.getName();
+            if (name.equals("equals")) { return proxy == args[0]; }
+            else if (name.equals("hashCode")) { return System.identityHashCode(proxy); }
+            else { return "Proxy for object " + id + " on channel " + _name; }
+          }
+          return _call(id, m, args);
+        }
+      });
+      _proxies.put(id, p);
+    }
+    return p;
+  }
+  
+  /** @return true if the channel has been closed, either explicitly or because the other side went away */
+  public boolean isClosed() { return _closed; }
+  
+  /** Closes the channel.  Pending calls fail with an UnmarshalException. */
+  public void close() {
+    if (_closed) return;
+    _closed = true;
+    try {
+      if (_socket != null) { _socket.close(); }
+      else { _in.close(); _out.close(); }
+    }
+    catch (IOException e) { debug.log(e); }
+    _dispatcher.shutdown();
+    for (PendingCall c: _pending.values()) { c.fail(new UnmarshalException("Channel closed", new EOFException())); }
+    _pending.clear();
+  }
+  
+  /** @param c  a class
+    * @return the interfaces extending Remote that c or one of its superclasses implements
+    */
+  public static Class<?>[] remoteInterfaces(Class<?> c) {
+    Set<Class<?>> result = new LinkedHashSet<Class<?>>();
+    for (; c != null; c = c.getSuperclass()) {
+      for (Class<?> i: c.getInterfaces()) {
+        if (Remote.class.isAssignableFrom(i) && ! i.equals(Remote.class)) { result.add(i); }
+      }
+    }
+    return result.toArray(new Class<?>[result.size()]);
+  }
+  
+  /* === Calls from this side === */
+  
+  /** The state of a call waiting for a response.  Uses itself as its lock. */
+  private static class PendingCall {
+    private byte _kind = 0;
+    private DataInputStream _body = null;
+    private RemoteException _failure = null;
+    
+    public synchronized void complete(byte kind, DataInputStream body) {
+      _kind = kind;
+      _body = body;
+      notifyAll();
+    }
+    
+    public synchronized void fail(RemoteException e) {
+      if (_kind == 0 && _failure == null) { _failure = e; notifyAll(); }
+    }
+  }
+  
+  private Object _call(int id, Method m, Object[] args) throws Throwable {
+    ByteArrayOutputStream argBytes = new ByteArrayOutputStream();
+    DataOutputStream argOut = new DataOutputStream(argBytes);
+    try {
+      if (args != null) { for (Object arg: args) { _writeValue(argOut, arg); } }
+      argOut.flush();
+    }
+    catch (IOException e) { throw new MarshalException("Unable to marshal arguments of " + m.getName(), e); }
+    
+    int request = _nextRequest.incrementAndGet();
+    PendingCall call = new PendingCall();
+    _pending.put(request, call);
+    try {
+      if (_closed) { throw new ConnectException("Channel " + _name + " is closed"); }
+      synchronized(_writeLock) {
+        Integer code = _methodCodes.get(m);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeInt(id);
+        if (code == null) {
+          code = _methodCodes.size();
+          _methodCodes.put(m, code);
+          headerOut.writeInt(-code - 1);  // define the code
+          headerOut.writeUTF(m.getDeclaringClass().getName());
+          headerOut.writeUTF(m.getName());
+          Class<?>[] params = m.getParameterTypes();
+          headerOut.writeByte(params.length);
+          for (Class<?> p: params) { headerOut.writeUTF(p.getName()); }
+        }
+        else { headerOut.writeInt(code); }
+        headerOut.flush();
+        _writeFrame(CALL, request, header, argBytes);
+      }
+    }
+    catch (RemoteException e) { _pending.remove(request); throw e; }
+    catch (IOException e) {
+      _pending.remove(request);
+      throw new ConnectException("Unable to call " + m.getName() + " on channel " + _name, e);
+    }
+    
+    synchronized(call) {
+      while (call._kind == 0 && call._failure == null) { call.wait(); }
+    }
+    _pending.remove(request);
+    if (call._failure != null) { throw call._failure; }
+    try {
+      Object result = _readValue(call._body);
+      if (call._kind == THROW) { throw (Throwable) result; }
+      return result;
+    }
+    catch (IOException e) { throw new UnmarshalException("Unable to unmarshal result of " + m.getName(), e); }
+    catch (ClassNotFoundException e) {
+      throw new UnmarshalException("Unable to unmarshal result of " + m.getName(), e);
+    }
+  }
+  
+  /** Writes a frame.  Must be called while holding _writeLock. */
+  private void _writeFrame(byte kind, int request, ByteArrayOutputStream... parts) throws IOException {
+    int length = 5;
+    for (ByteArrayOutputStream p: parts) { length += p.size(); }
+    _out.writeInt(length);
+    _out.writeByte(kind);
+    _out.writeInt(request);
+    for (ByteArrayOutputStream p: parts) { p.writeTo(_out); }
+    _out.flush();
+  }
+  
+  /* === Calls from the other side === */
+  
+  /** Reads frames until the channel is closed. */
+  private void _read() {
+    try {
+      while (true) {
+        int length = _in.readInt();
+        byte kind = _in.readByte();
+        int request = _in.readInt();
+        byte[] body = new byte[length - 5];
+        _in.readFully(body);
+        final DataInputStream bodyIn = new DataInputStream(new ByteArrayInputStream(body));
+        if (kind == CALL) { _dispatch(request, bodyIn); }
+        else {
+          PendingCall call = _pending.get(request);
+          if (call == null) { error.log("Response to unknown request " + request + " on channel " + _name); }
+          else { call.complete(kind, bodyIn); }
+        }
+      }
+    }
+    catch (IOException e) {
+      // EOFException is the normal end of the channel
+      if (! _closed && ! (e instanceof EOFException)) { debug.log("Channel " + _name + " broke", e); }
+    }
+    catch (RuntimeException e) { error.log("Channel " + _name + " broke", e); }
+    finally { close(); }
+  }
+  
+  /** Decodes the method of a call and runs the call on the dispatcher. */
+  private void _dispatch(final int request, final DataInputStream body) throws IOException {
+    final int id = body.readInt();
+    int code = body.readInt();
+    Method m = null;
+    Exception failure = null;
+    if (code < 0) {
+      String className = body.readUTF();
+      String methodName = body.readUTF();
+      Class<?>[] params = new Class<?>[body.readByte()];
+      try {
+        for (int i = 0; i < params.length; i++) { params[i] = _classForName(body.readUTF()); }
+        m = _classForName(className).getMethod(methodName, params);
+      }
+      catch (Exception e) { failure = e; }
+      _methods.add(m);  // keep the codes in step even if the method is unknown
+    }
+    else { m = _methods.get(code); }
+    
+    final Method method = m;
+    final Exception methodFailure = failure;
+    _dispatcher.execute(new Runnable() {
+      public void run() {
+        Object result = null;
+        Throwable thrown = null;
+        try {
+          Object target = _exports.get(id);
+          if (target == null) { throw new java.rmi.NoSuchObjectException("No object " + id + " on " + _name); }
+          if (method == null) { throw new UnmarshalException("Unknown method", methodFailure); }
+          Object[] args = new Object[method.getParameterTypes().length];
+          for (int i = 0; i < args.length; i++) { args[i] = _readValue(body); }
+          result = method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) { thrown = e.getCause(); }
+        catch (IOException e) { thrown = new UnmarshalException("Unable to unmarshal arguments", e); }
+        catch (ClassNotFoundException e) { thrown = new UnmarshalException("Unable to unmarshal arguments", e); }
+        catch (Throwable t) { thrown = t; }
+        _respond(request, result, thrown);
+      }
+    });
+  }
+  
+  private void _respond(int request, Object result, Throwable thrown) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte kind = (thrown == null) ? RETURN : THROW;
+    try {
+      DataOutputStream out = new DataOutputStream(bytes);
+      _writeValue(out, (thrown == null) ? result : thrown);
+      out.flush();
+    }
+    catch (IOException e) {
+      bytes.reset();
+      kind = THROW;
+      try {
+        DataOutputStream out = new DataOutputStream(bytes);
+        _writeValue(out, new MarshalException("Unable to marshal result: " + e));
+        out.flush();
+      }
+      catch (IOException e2) { throw new IllegalStateException(e2); }  // a MarshalException is serializable
+    }
+    try { synchronized(_writeLock) { _writeFrame(kind, request, bytes); } }
+    catch (IOException e) {
+      // the other side went away; the reader closes the channel
+      debug.log("Unable to send response on channel " + _name, e);
+    }
+  }
+  
+  /* === Values === */
+  
+  private void _writeValue(DataOutputStream out, Object v) throws IOException {
+    if (v == null) { out.writeByte(NULL); }
+    else if (v instanceof String && ((String) v).length() <= MAX_UTF_LENGTH) {
+      out.writeByte(STRING);
+      out.writeUTF((String) v);
+    }
+    else if (v instanceof Integer) { out.writeByte(INT); out.writeInt((Integer) v); }
+    else if (v instanceof Long) { out.writeByte(LONG); out.writeLong((Long) v); }
+    else if (v instanceof Boolean) { out.writeByte(BOOLEAN); out.writeBoolean((Boolean) v); }
+    else if (v instanceof Remote && ! (v instanceof RemoteObject) && ! Proxy.isProxyClass(v.getClass())) {
+      // a local remote object: pass a reference
+      out.writeByte(REF);
+      out.writeInt(export((Remote) v));
+      Class<?>[] interfaces = remoteInterfaces(v.getClass());
+      out.writeByte(interfaces.length);
+      for (Class<?> i: interfaces) { out.writeUTF(i.getName()); }
+    }
+    else {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream objOut = new ObjectOutputStream(bytes);
+      objOut.writeObject(v);
+      objOut.close();
+      out.writeByte(OBJECT);
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+    }
+  }
+  
+  private Object _readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL: return null;
+      case STRING: return in.readUTF();
+      case INT: return in.readInt();
+      case LONG: return in.readLong();
+      case BOOLEAN: return in.readBoolean();
+      case REF: {
+        int id = in.readInt();
+        Class<?>[] interfaces = new Class<?>[in.readByte()];
+        for (int i = 0; i < interfaces.length; i++) { interfaces[i] = _classForName(in.readUTF()); }
+        return proxy(id, interfaces);
+      }
+      case OBJECT: {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+          protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try { return _classForName(desc.getName()); }
+            catch (ClassNotFoundException e) { return super.resolveClass(desc); }
+          }
+        };
+        return objIn.readObject();
+      }
+      default: throw new StreamCorruptedException("Unknown value tag " + tag);
+    }
+  }
+  
+  private static Class<?> _classForName(String name) throws ClassNotFoundException {
+    Class<?> c = PRIMITIVES.get(name);
+    if (c != null) { return c; }
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    if (loader == null) { loader = MultiplexedChannel.class.getClassLoader(); }
+    return Class.forName(name, false, loader);
+  }
+}
@@ -0,0 +1,158 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util.newjvm;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.UnmarshalException;
+import java.util.Arrays;
+import java.util.List;
+
+/** Tests the calls, values, and failures of a {@link MultiplexedChannel}, with both ends in this JVM.
+  * @version $Id$
+  */
+public class MultiplexedChannelTest extends DrJavaTestCase {
+  
+  public interface Service extends Remote {
+    public int add(int x, int y) throws RemoteException;
+    public Object echo(Object o) throws RemoteException;
+    public String concat(String s, long n, boolean b) throws RemoteException;
+    public void fail(String message) throws RemoteException;
+    public int callBack(Service other, int x) throws RemoteException;
+    public void block() throws RemoteException, InterruptedException;
+  }
+  
+  private static class ServiceImpl implements Service {
+    public int add(int x, int y) { return x + y; }
+    public Object echo(Object o) { return o; }
+    public String concat(String s, long n, boolean b) { return s + n + b; }
+    public void fail(String message) { throw new IllegalArgumentException(message); }
+    public int callBack(Service other, int x) throws RemoteException { return other.add(x, 1) * 2; }
+    public void block() throws InterruptedException { synchronized(this) { wait(); } }
+  }
+  
+  private MultiplexedChannel _a;
+  private MultiplexedChannel _b;
+  private Service _remote;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    PipedInputStream aIn = new PipedInputStream(1 << 16);
+    PipedInputStream bIn = new PipedInputStream(1 << 16);
+    _a = new MultiplexedChannel("A", aIn, new PipedOutputStream(bIn));
+    _b = new MultiplexedChannel("B", bIn, new PipedOutputStream(aIn));
+    _b.export(new ServiceImpl());
+    _a.start();
+    _b.start();
+    _remote = (Service) _a.proxy(0, Service.class);
+  }
+  
+  public void tearDown() throws Exception {
+    _a.close();
+    _b.close();
+    super.tearDown();
+  }
+  
+  public void testValues() throws RemoteException {
+    assertEquals(5, _remote.add(2, 3));
+    assertEquals("x7true", _remote.concat("x", 7L, true));
+    assertNull(_remote.echo(null));
+    List<String> list = Arrays.asList("a", "b");
+    assertEquals(list, _remote.echo(list));
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100000; i++) { sb.append('\u00e9'); }
+    assertEquals("long string", sb.toString(), _remote.echo(sb.toString()));
+  }
+  
+  public void testException() throws RemoteException {
+    try {
+      _remote.fail("bad");
+      fail("should have thrown");
+    }
+    catch (IllegalArgumentException e) { assertEquals("bad", e.getMessage()); }
+    assertEquals("channel still works", 3, _remote.add(1, 2));
+  }
+  
+  public void testCallBack() throws RemoteException {
+    // the local object is passed by reference and called back while the call is pending
+    assertEquals(10, _remote.callBack(new ServiceImpl(), 4));
+  }
+  
+  public void testConcurrentCalls() throws Exception {
+    final int[] results = new int[8];
+    Thread[] threads = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int n = i;
+      threads[i] = new Thread() {
+        public void run() {
+          try { for (int j = 0; j < 100; j++) { results[n] += _remote.add(n, j); } }
+          catch (RemoteException e) { results[n] = -1; }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread t: threads) { t.join(); }
+    for (int i = 0; i < results.length; i++) { assertEquals(100 * i + 4950, results[i]); }
+  }
+  
+  public void testClose() throws Exception {
+    final Exception[] thrown = new Exception[1];
+    Thread t = new Thread() {
+      public void run() {
+        try { _remote.block(); }
+        catch (Exception e) { thrown[0] = e; }
+      }
+    };
+    t.start();
+    Thread.sleep(200);
+    _b.close();
+    t.join(5000);
+    assertTrue("pending call failed", thrown[0] instanceof UnmarshalException);
+    assertTrue("caused by end of stream", thrown[0].getCause() instanceof EOFException);
+    try {
+      _remote.add(1, 2);
+      fail("should have thrown");
+    }
+    catch (RemoteException e) { /* expected */ }
+  }
+}
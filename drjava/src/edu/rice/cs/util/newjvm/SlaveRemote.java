@@ -50,6 +50,14 @@ public interface SlaveRemote extends Remote {
    * @throws RemoteException if communication over RMI fails
    */
   public void start(MasterRemote master) throws RemoteException;
+  
+  /** Connects to a {@link MultiplexedChannel} offered by the master JVM and exports this slave on it.  Called before
+    * {@link #start}, which the master then invokes through the channel.
+    * @param port  the port on the local host the master listens on
+    * @param cookie  the value to send first, so that the master can recognize the connection
+    * @throws RemoteException if communication over RMI fails, or the connection cannot be made
+    */
+  public void connectChannel(int port, long cookie) throws RemoteException;
 
   /** Quits the slave JVM. 
    * @throws RemoteException if communication over RMI fails
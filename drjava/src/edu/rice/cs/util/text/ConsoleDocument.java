@@ -49,6 +49,7 @@ import edu.rice.cs.util.text.ConsoleDocumentInterface;
 import edu.rice.cs.util.text.DocumentEditCondition;
 import edu.rice.cs.util.text.EditDocumentException;
 import edu.rice.cs.util.FileOps;
+import edu.rice.cs.plt.io.IOUtil;
 
 /** A GUI-toolkit agnostic interface to a console document.  This class assumes that the embedded document supports 
   * readers/writers locking and uses that locking protocol to ensure the integrity of the data added in this class
@@ -90,6 +91,17 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
   /** The book object used for printing that represents several pages */
   protected volatile DrJavaBook _book;
   
+  /** Maximum number of characters retained in the document; 0 means unlimited.  Once the document grows past this
+    * size, the oldest text is trimmed from the front down to three quarters of it, ending at a line boundary where
+    * possible. */
+  private volatile int _maxLength = 0;
+  
+  /** Whether trimmed text is kept in _spillFile so that saveCopy can still write the full contents. */
+  private volatile boolean _spillTrimmed = false;
+  
+  /** Temporary file holding the text trimmed from the front of the document, or null if nothing has been spilled. */
+  private volatile File _spillFile = null;
+  
   /** Creates a new ConsoleDocument with the given embedded ConsoleDocumentInterface (a SwingDocument in native DrJava).
     * @param doc the embedded ConsoleDocumentInterface object
     */
@@ -153,10 +165,35 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
       forceRemoveText(0, _document.getLength());
       forceInsertText(0, banner, DEFAULT_STYLE);
       _promptPos = banner.length();
+      _discardSpill();
     }
     catch (EditDocumentException e) { throw new UnexpectedException(e); }
   }
   
+  /** Sets the maximum number of characters retained in the document, trimming it if necessary.  Only runs in the
+    * event thread.
+    * @param maxLength the maximum length, or 0 for unlimited
+    */
+  public void setMaxLength(int maxLength) {
+    _maxLength = maxLength;
+    _trim();
+  }
+  
+  /** @return the maximum number of characters retained in the document, or 0 if unlimited */
+  public int getMaxLength() { return _maxLength; }
+  
+  /** Sets whether text trimmed from the front of the document is kept in a temporary file for saveCopy.  Disabling
+    * discards any text already kept.
+    * @param spill whether to keep trimmed text
+    */
+  public void setSpillTrimmed(boolean spill) {
+    _spillTrimmed = spill;
+    if (! spill) _discardSpill();
+  }
+  
+  /** @return the temporary file holding the text trimmed from the document, or null if there is none */
+  public File getSpillFile() { return _spillFile; }
+  
   /** Prints a prompt for a new input. */
   public void insertPrompt() {
     try {
@@ -165,6 +202,7 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
       _promptPos = len + _prompt.length();
       forceInsertText(len, _prompt, DEFAULT_STYLE); // need forceAppend!
       _document.setHasPrompt(true);
+      _trim();
     }
     catch (EditDocumentException e) { throw new UnexpectedException(e);  }
   }
@@ -216,6 +254,7 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
 //      System.err.println("_promptPos before update = " + _promptPos);
       _promptPos = _promptPos + text.length();
       forceInsertText(pos, text, style);
+      _trim();
     }
     catch (EditDocumentException ble) { throw new UnexpectedException(ble); }
   }
@@ -244,6 +283,53 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
     int offs = _document.getLength();
     _addToStyleLists(offs, str, style);
     _document.insertText(offs, str, style);
+    _trim();
+  }
+  
+  /** Trims text from the front of the document if it is longer than _maxLength, spilling the trimmed text if
+    * _spillTrimmed is set.  Never trims the prompt or the text following it.  Only runs in the event thread.
+    */
+  private void _trim() {
+    final int max = _maxLength;
+    final int len = _document.getLength();
+    if (max == 0 || len <= max) return;
+    
+    final int limit = _getPositionBeforePrompt();
+    int cut = Math.min(len - max + max / 4, limit);
+    if (cut <= 0) return;
+    // End the cut at a line boundary if there is one in the last quarter of the trimmed text
+    final String trimmed = _document.getDocText(0, cut);
+    int nl = trimmed.lastIndexOf('\n');
+    if (nl >= 0 && nl >= cut - max / 4) cut = nl + 1;
+    
+    if (_spillTrimmed) _spill(trimmed.substring(0, cut));
+    _document.forceRemoveText(0, cut);
+    _promptPos -= cut;
+    if (_document instanceof SwingDocument) ((SwingDocument)_document).trimColoring(cut);
+  }
+  
+  /** Appends text to _spillFile, creating it if necessary.  If the file cannot be written, spilling is disabled. */
+  private void _spill(String text) {
+    try {
+      if (_spillFile == null) {
+        _spillFile = File.createTempFile("drjava-console", ".txt");
+        _spillFile.deleteOnExit();
+      }
+      Writer w = new OutputStreamWriter(new FileOutputStream(_spillFile, true));
+      try { w.write(text); }
+      finally { w.close(); }
+    }
+    catch (IOException e) {
+      // Trimmed text can no longer be saved in full; keep the document bounded anyway
+      setSpillTrimmed(false);
+    }
+  }
+  
+  /** Deletes _spillFile, if any. */
+  private void _discardSpill() {
+    File f = _spillFile;
+    _spillFile = null;
+    if (f != null) f.delete();
   }
   
   /** Inserts a string into the document at the given offset and  style, regardless of the edit condition.
@@ -374,6 +460,13 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
         FileOps.saveFile(new FileOps.DefaultFileSaver(file) {
           /** Only runs in event thread so no read lock is necessary. */
           public void saveTo(OutputStream os) throws IOException {
+            // Text trimmed from the front of the document comes first; it was written in the same encoding
+            final File spill = _spillFile;
+            if (spill != null) {
+              InputStream in = new FileInputStream(spill);
+              try { IOUtil.copyInputStream(in, os); }
+              finally { in.close(); }
+            }
             final String text = getDocText(0, getLength());
             OutputStreamWriter osw = new OutputStreamWriter(os);
             osw.write(text,0,text.length());
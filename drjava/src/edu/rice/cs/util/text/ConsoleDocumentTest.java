@@ -36,10 +36,16 @@
 
 package edu.rice.cs.util.text;
 
+import java.io.File;
+import java.io.IOException;
 import javax.swing.text.BadLocationException;
 
 import edu.rice.cs.drjava.model.repl.InteractionsDJDocument;
 import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.FileSaveSelector;
+import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.Utilities;
 
 /** Tests ConsoleDocument.
@@ -125,4 +131,50 @@ public class ConsoleDocumentTest extends DrJavaTestCase {
     _doc.setPromptPos(_doc.getLength());
     assertEquals("promptPos is character position at end of document", _doc.getLength(), _doc.getPromptPos());
   }
+  
+  /** Tests that the document is trimmed from the front once it exceeds its maximum length, and that Save Copy still
+    * writes the trimmed text.
+    * @throws Exception if an error occurs
+    */
+  public void testTrimAndSpill() throws Exception {
+    final File saved = File.createTempFile("drjava-console-test", ".txt");
+    saved.deleteOnExit();
+    final StringBuilder expected = new StringBuilder();
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try {
+          _doc.setPrompt("> ");
+          _doc.insertPrompt();
+          _doc.setSpillTrimmed(true);
+          _doc.setMaxLength(100);
+          for (int i = 0; i < 50; i++) {
+            String line = "line " + i + "\n";
+            expected.append(line);
+            _doc.insertBeforeLastPrompt(line, ConsoleDocument.SYSTEM_OUT_STYLE);
+            assertTrue("document is bounded", _doc.getLength() <= 100);
+          }
+          String text = _doc.getText();
+          assertTrue("trimmed at a line boundary", text.startsWith("line "));
+          assertTrue("prompt is kept", text.endsWith("line 49\n> "));
+          assertEquals("prompt position is adjusted", _doc.getLength(), _doc.getPromptPos());
+          assertNotNull(_doc.getSpillFile());
+          
+          _doc.saveCopy(new FileSaveSelector() {
+            public File getFile() { return saved; }
+            public boolean warnFileOpen(File f) { return true; }
+            public boolean verifyOverwrite(File f) { return true; }
+            public boolean shouldSaveAfterFileMoved(OpenDefinitionsDocument doc, File oldFile) { return true; }
+            public boolean shouldUpdateDocumentState() { return false; }
+          });
+          
+          File spill = _doc.getSpillFile();
+          _doc.reset("");
+          assertNull("reset discards the trimmed text", _doc.getSpillFile());
+          assertFalse(spill.exists());
+        }
+        catch (IOException e) { throw new UnexpectedException(e); }
+      }
+    });
+    assertEquals("saved copy is complete", expected.toString() + "> ", IOUtil.toString(saved));
+  }
 }
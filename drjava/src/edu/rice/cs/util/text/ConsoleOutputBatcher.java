@@ -0,0 +1,134 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util.text;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+
+/** Appends text printed by other threads to a ConsoleDocument in batches.  Text printed while an append is pending
+  * joins that append, so any number of prints between two runs of the event thread costs a single event, and
+  * adjacent text in the same style is inserted into the document at once.  A printing thread outside the event thread
+  * is held back briefly while the unappended text exceeds the pending limit so that it cannot flood the event queue.
+  * @version $Id$
+  */
+public class ConsoleOutputBatcher {
+  
+  /** Number of unappended characters beyond which printing threads are held back. */
+  public static final int MAX_PENDING = 0x40000;  // 256K
+  
+  /** Maximum number of milliseconds a printing thread is held back per print. */
+  public static final long MAX_DELAY = 100;
+  
+  private final ConsoleDocument _doc;
+  
+  /** Run in the event thread after each batch is appended, or null. */
+  private final Runnable _afterAppend;
+  
+  /** The unappended runs in print order, and the style of each run. */
+  private final ArrayList<StringBuilder> _runs = new ArrayList<StringBuilder>();
+  private final ArrayList<String> _styles = new ArrayList<String>();
+  
+  /** The number of unappended characters. */
+  private int _pending = 0;
+  
+  /** Whether an append task is queued in the event thread. */
+  private boolean _scheduled = false;
+  
+  private final Runnable _appendTask = new Runnable() { public void run() { _appendPending(); } };
+  
+  /** @param doc the document to append to */
+  public ConsoleOutputBatcher(ConsoleDocument doc) { this(doc, null); }
+  
+  /** @param doc the document to append to
+    * @param afterAppend a task to run in the event thread once after each batch is appended (such as scrolling the
+    *        view of the document), or null
+    */
+  public ConsoleOutputBatcher(ConsoleDocument doc, Runnable afterAppend) {
+    _doc = doc;
+    _afterAppend = afterAppend;
+  }
+  
+  /** Inserts text before the last prompt of the document in the event thread.  Can safely be called from any thread.
+    * @param s the text
+    * @param style the style of the text
+    */
+  public void print(String s, String style) {
+    if (s.length() == 0) return;
+    boolean schedule;
+    synchronized(this) {
+      if (_pending >= MAX_PENDING && ! EventQueue.isDispatchThread()) {
+        try { wait(MAX_DELAY); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+      }
+      int last = _runs.size() - 1;
+      if (last >= 0 && _styles.get(last).equals(style)) _runs.get(last).append(s);
+      else {
+        _runs.add(new StringBuilder(s));
+        _styles.add(style);
+      }
+      _pending += s.length();
+      schedule = ! _scheduled;
+      _scheduled = true;
+    }
+    if (EventQueue.isDispatchThread()) _appendPending();  // as with Utilities.invokeLater, append synchronously
+    else if (schedule) EventQueue.invokeLater(_appendTask);
+  }
+  
+  /** Appends the text printed so far to the document right away, as before inserting a prompt that must follow it.
+    * Only runs in the event thread.
+    */
+  public void flush() { _appendPending(); }
+  
+  /** Appends the pending runs to the document.  Only runs in the event thread.  A queued task may find nothing to
+    * append if the runs were appended synchronously in the meantime. */
+  private void _appendPending() {
+    StringBuilder[] runs;
+    String[] styles;
+    synchronized(this) {
+      runs = _runs.toArray(new StringBuilder[_runs.size()]);
+      styles = _styles.toArray(new String[_styles.size()]);
+      _runs.clear();
+      _styles.clear();
+      _pending = 0;
+      _scheduled = false;
+      notifyAll();
+    }
+    if (runs.length == 0) return;
+    for (int i = 0; i < runs.length; i++) _doc.insertBeforeLastPrompt(runs[i].toString(), styles[i]);
+    if (_afterAppend != null) _afterAppend.run();
+  }
+}
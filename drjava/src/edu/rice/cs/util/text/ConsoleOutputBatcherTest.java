@@ -0,0 +1,113 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2017, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util.text;
+
+import java.util.concurrent.CountDownLatch;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.repl.InteractionsDJDocument;
+import edu.rice.cs.util.swing.Utilities;
+
+/** Tests ConsoleOutputBatcher.
+  * @version $Id$
+  */
+public class ConsoleOutputBatcherTest extends DrJavaTestCase {
+  private ConsoleDocument _doc;
+  private ConsoleOutputBatcher _batcher;
+  private volatile int _batches;
+  private volatile String _textBeforePrompt;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    _doc = new ConsoleDocument(new InteractionsDJDocument());
+    _batches = 0;
+    _batcher = new ConsoleOutputBatcher(_doc, new Runnable() { public void run() { _batches++; } });
+  }
+  
+  /** Blocks the event thread until the returned latch is released, so that prints pile up. */
+  private static CountDownLatch _blockEventThread() {
+    final CountDownLatch release = new CountDownLatch(1);
+    Utilities.invokeLater(new Runnable() {
+      public void run() {
+        try { release.await(); }
+        catch (InterruptedException e) { throw new RuntimeException(e); }
+      }
+    });
+    return release;
+  }
+  
+  /** Tests that prints made while the event thread is busy are appended, in order, as a single batch. */
+  public void testCoalescing() {
+    CountDownLatch release = _blockEventThread();
+    _batcher.print("one ", ConsoleDocument.SYSTEM_OUT_STYLE);
+    _batcher.print("two ", ConsoleDocument.SYSTEM_OUT_STYLE);
+    _batcher.print("three", ConsoleDocument.SYSTEM_ERR_STYLE);
+    _batcher.print("", ConsoleDocument.SYSTEM_ERR_STYLE);
+    assertEquals("nothing appended yet", "", _doc.getText());
+    release.countDown();
+    Utilities.clearEventQueue();
+    assertEquals("all text appended", "one two three", _doc.getText());
+    assertEquals("one batch", 1, _batches);
+    
+    _batcher.print("four", ConsoleDocument.SYSTEM_OUT_STYLE);
+    Utilities.clearEventQueue();
+    assertEquals("later print appended", "one two threefour", _doc.getText());
+    assertEquals("second batch", 2, _batches);
+  }
+  
+  /** Tests that pending text is flushed ahead of a prompt inserted before the batch's own append runs. */
+  public void testFlushBeforePrompt() {
+    CountDownLatch release = _blockEventThread();
+    _batcher.print("output", ConsoleDocument.SYSTEM_OUT_STYLE);
+    Utilities.invokeLater(new Runnable() {
+      public void run() {
+        _batcher.flush();
+        _textBeforePrompt = _doc.getText();
+        _doc.insertPrompt();
+      }
+    });
+    release.countDown();
+    Utilities.clearEventQueue();
+    assertEquals("flushed", "output", _textBeforePrompt);
+    assertEquals("output precedes prompt", "output" + _doc.getPrompt(), _doc.getText());
+    assertEquals("prompt position", _doc.getLength(), _doc.getPromptPos());
+    assertEquals("the queued append found nothing left", 1, _batches);
+    
+    Utilities.invokeAndWait(new Runnable() { public void run() { _batcher.flush(); } });
+    assertEquals("empty flush is not a batch", 1, _batches);
+  }
+}
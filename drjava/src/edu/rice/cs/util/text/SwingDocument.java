@@ -97,6 +97,12 @@ public class SwingDocument extends DefaultStyledDocument implements EditDocument
    */
   public void addColoring(int start, int end, String style) { }
   
+  /** Discards the coloring of the first len characters, which have been removed from the front of the document, and
+    * shifts the remaining coloring accordingly.  The default implementation does nothing.
+    * @param len the number of characters removed
+    */
+  public void trimColoring(int len) { }
+  
   /** Gets the object which can determine whether an insert or remove edit should be applied, based on the inputs.
     * @return an Object to determine legality of inputs
     */
@@ -37,4 +37,6 @@ public class Options {
   public boolean prohibitBoxing() { return false; }
   /** Disallow unchecked casting conversion. */
   public boolean prohibitUncheckedCasts() { return true; }
+  /** Compile loops that use only primitive local variables to bytecode (see StatementCompiler). */
+  public boolean compileLoops() { return true; }
 }
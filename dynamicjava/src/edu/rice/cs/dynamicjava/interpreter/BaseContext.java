@@ -25,6 +25,8 @@ public class BaseContext implements TypeContext {
   public LocalVariable getLocalVariable(String name, TypeSystem ts) { return null; }
   public Access.Module accessModule() { return new TopLevelAccessModule(""); }
   public Type getReturnType() { return null; }
+  public boolean hasBreakTarget(String label) { return false; }
+  public boolean hasContinueTarget(String label) { return false; }
   public DJClass getThis() { return null; }
   public DJClass getThis(String className) { return null; }
   public DJClass getThis(Type expected, TypeSystem ts) { return null; }
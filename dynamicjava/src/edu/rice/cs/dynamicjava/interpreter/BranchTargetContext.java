@@ -0,0 +1,44 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import koala.dynamicjava.tree.ContinueTarget;
+import koala.dynamicjava.tree.LabeledStatement;
+import koala.dynamicjava.tree.Node;
+import koala.dynamicjava.tree.SwitchStatement;
+
+/**
+ * The body of a statement that may be the target of a {@code break} -- a loop, {@code switch}, or labeled
+ * statement -- and, if it is a loop, of a {@code continue}.  JLS 14.15, 14.16.
+ */
+public class BranchTargetContext extends DelegatingContext {
+  
+  private final Node _target;
+  
+  /** @param target  A {@link ContinueTarget} (loop), {@link SwitchStatement}, or {@link LabeledStatement}. */
+  public BranchTargetContext(TypeContext next, Node target) {
+    super(next);
+    _target = target;
+  }
+  
+  protected BranchTargetContext duplicate(TypeContext next) {
+    return new BranchTargetContext(next, _target);
+  }
+  
+  @Override public boolean hasBreakTarget(String label) {
+    boolean matches;
+    if (label == null) { matches = _target instanceof ContinueTarget || _target instanceof SwitchStatement; }
+    else { matches = hasLabel(label); }
+    return matches || super.hasBreakTarget(label);
+  }
+  
+  @Override public boolean hasContinueTarget(String label) {
+    boolean matches = _target instanceof ContinueTarget && (label == null || hasLabel(label));
+    return matches || super.hasContinueTarget(label);
+  }
+  
+  private boolean hasLabel(String label) {
+    if (_target instanceof ContinueTarget) { return ((ContinueTarget) _target).hasLabel(label); }
+    else if (_target instanceof LabeledStatement) { return ((LabeledStatement) _target).getLabel().equals(label); }
+    else { return false; }
+  }
+  
+}
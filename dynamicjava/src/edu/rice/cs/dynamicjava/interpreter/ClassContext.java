@@ -173,6 +173,11 @@ public class ClassContext extends DelegatingContext {
    */
   @Override public Type getReturnType() { return null; }
   
+  /** A class body is not enclosed by the statements around it. */
+  @Override public boolean hasBreakTarget(String label) { return false; }
+  
+  @Override public boolean hasContinueTarget(String label) { return false; }
+  
   /**
    * The types that are allowed to be thrown in the current context.  If there is no
    * such declaration, the list will be empty.
@@ -220,6 +220,18 @@ public abstract class DelegatingContext implements TypeContext {
     return _next.getReturnType();
   }
   
+  /**
+   * Whether a {@code break} with the given label (or, if {@code label} is {@code null}, an unlabeled
+   * {@code break}) has a target enclosing it in the current context.
+   */
+  public boolean hasBreakTarget(String label) { return _next.hasBreakTarget(label); }
+  
+  /**
+   * Whether a {@code continue} with the given label (or, if {@code label} is {@code null}, an unlabeled
+   * {@code continue}) has a loop enclosing it in the current context.
+   */
+  public boolean hasContinueTarget(String label) { return _next.hasContinueTarget(label); }
+  
   /**
    * The types that are allowed to be thrown in the current context.  If there is no
    * such declaration, the list will be empty.
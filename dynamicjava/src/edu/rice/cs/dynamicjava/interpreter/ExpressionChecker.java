@@ -1210,6 +1210,7 @@ public class ExpressionChecker {
           node.setLeftExpression(promoted.first());
           node.setRightExpression(promoted.second());
           setOperation(node, ExpressionEvaluator.ADD);
+          specialize(node, PrimitiveOperation.ADD);
           Type result = setType(node, getType(promoted.first()));
           evaluateConstantExpression(node);
           return result;
@@ -1262,19 +1263,28 @@ public class ExpressionChecker {
       return setType(node, leftT);
     }
     
-    @Override public Type visit(SubtractExpression node) {  return handleNumericExpression(node); }
+    @Override public Type visit(SubtractExpression node) {  return handleNumericExpression(node, PrimitiveOperation.SUBTRACT); }
     
-    @Override public Type visit(MultiplyExpression node) {  return handleNumericExpression(node); }
+    @Override public Type visit(MultiplyExpression node) {  return handleNumericExpression(node, PrimitiveOperation.MULTIPLY); }
     
-    @Override public Type visit(DivideExpression node) {  return handleNumericExpression(node); }
+    @Override public Type visit(DivideExpression node) {  return handleNumericExpression(node, PrimitiveOperation.DIVIDE); }
     
-    @Override public Type visit(RemainderExpression node) {  return handleNumericExpression(node); }
+    @Override public Type visit(RemainderExpression node) {  return handleNumericExpression(node, PrimitiveOperation.REMAINDER); }
+    
+    /**
+     * Tag {@code node}, whose operands have been promoted, with the version of {@code ops} matching
+     * the operand type, if there is one.
+     */
+    private void specialize(BinaryExpression node, PrimitiveOperation.Family ops) {
+      Option<PrimitiveOperation> op = ops.forOperandType(getType(node.getLeftExpression()));
+      if (op.isSome()) { setPrimitiveOperation(node, op.unwrap()); }
+    }
     
     /**
      * Handles a numeric binary expression ({@code -, *, /, %}).  JLS 15.17, 15.18.
      * @return  The type of the expression
      */
-    private Type handleNumericExpression(BinaryExpression node) {
+    private Type handleNumericExpression(BinaryExpression node, PrimitiveOperation.Family ops) {
       check(node.getLeftExpression());
       check(node.getRightExpression());
       try {
@@ -1283,6 +1293,7 @@ public class ExpressionChecker {
         Pair<Expression, Expression> promoted = ts.binaryPromote(left, right);
         node.setLeftExpression(promoted.first());
         node.setRightExpression(promoted.second());
+        specialize(node, ops);
         Type result = setType(node, getType(promoted.first()));
         evaluateConstantExpression(node);
         return result;
@@ -1326,12 +1337,12 @@ public class ExpressionChecker {
     
     @Override public Type visit(EqualExpression node) {
       return handleEqualityExpression(node, ExpressionEvaluator.OBJECT_EQUAL, 
-                                      ExpressionEvaluator.PRIMITIVE_EQUAL);
+                                      ExpressionEvaluator.PRIMITIVE_EQUAL, PrimitiveOperation.EQUAL);
     }
     
     @Override public Type visit(NotEqualExpression node) {
       return handleEqualityExpression(node, ExpressionEvaluator.OBJECT_NOT_EQUAL,
-                                      ExpressionEvaluator.PRIMITIVE_NOT_EQUAL);
+                                      ExpressionEvaluator.PRIMITIVE_NOT_EQUAL, PrimitiveOperation.NOT_EQUAL);
     }
     
     /**
@@ -1339,7 +1350,8 @@ public class ExpressionChecker {
      * @return  The type of the expression
      */
     private Type handleEqualityExpression(BinaryExpression node, Lambda2<Object, Object, Object> objectCase,
-                                          Lambda2<Object, Object, Object>  primitiveCase) {
+                                          Lambda2<Object, Object, Object>  primitiveCase,
+                                          PrimitiveOperation.Family primitiveOps) {
       Type leftT = check(node.getLeftExpression());
       Type rightT = check(node.getRightExpression());
       if (ts.isReference(leftT) && ts.isReference(rightT)) {
@@ -1365,6 +1377,7 @@ public class ExpressionChecker {
             right = promoted.second();
             node.setLeftExpression(promoted.first());
             node.setRightExpression(promoted.second());
+            specialize(node, primitiveOps);
           }
           else {
             TypePrinter printer = ts.typePrinter();
@@ -1384,19 +1397,19 @@ public class ExpressionChecker {
       return TypeSystem.BOOLEAN;
     }
     
-    @Override public Type visit(LessExpression node) { return handleRelationalExpression(node); }
+    @Override public Type visit(LessExpression node) { return handleRelationalExpression(node, PrimitiveOperation.LESS); }
     
-    @Override public Type visit(LessOrEqualExpression node) { return handleRelationalExpression(node); }
+    @Override public Type visit(LessOrEqualExpression node) { return handleRelationalExpression(node, PrimitiveOperation.LESS_OR_EQUAL); }
     
-    @Override public Type visit(GreaterExpression node) { return handleRelationalExpression(node); }
+    @Override public Type visit(GreaterExpression node) { return handleRelationalExpression(node, PrimitiveOperation.GREATER); }
     
-    @Override public Type visit(GreaterOrEqualExpression node) { return handleRelationalExpression(node); }
+    @Override public Type visit(GreaterOrEqualExpression node) { return handleRelationalExpression(node, PrimitiveOperation.GREATER_OR_EQUAL); }
     
     /**
      * Handles a relational expression ({@code <, <=, >, >=}).  JLS 15.20.1.
      * @return  The type of the expression
      */
-    private Type handleRelationalExpression(BinaryExpression node) {
+    private Type handleRelationalExpression(BinaryExpression node, PrimitiveOperation.Family ops) {
       check(node.getLeftExpression());
       check(node.getRightExpression());
       try {
@@ -1405,6 +1418,7 @@ public class ExpressionChecker {
         Pair<Expression, Expression> promoted = ts.binaryPromote(left, right);
         node.setLeftExpression(promoted.first());
         node.setRightExpression(promoted.second());
+        specialize(node, ops);
         setType(node, TypeSystem.BOOLEAN);
         evaluateConstantExpression(node);
         return TypeSystem.BOOLEAN;
@@ -1417,17 +1431,17 @@ public class ExpressionChecker {
       }
     }
     
-    @Override public Type visit(BitAndExpression node) { return handleBitwiseExpression(node); }
+    @Override public Type visit(BitAndExpression node) { return handleBitwiseExpression(node, PrimitiveOperation.BIT_AND); }
     
-    @Override public Type visit(BitOrExpression node) { return handleBitwiseExpression(node); }
+    @Override public Type visit(BitOrExpression node) { return handleBitwiseExpression(node, PrimitiveOperation.BIT_OR); }
     
-    @Override public Type visit(ExclusiveOrExpression node) { return handleBitwiseExpression(node); }
+    @Override public Type visit(ExclusiveOrExpression node) { return handleBitwiseExpression(node, PrimitiveOperation.EXCLUSIVE_OR); }
     
     /**
      * Handles a bitwise expression ({@code |, &, ^}).  JLS 15.22.
      * @return  The type of the expression
      */
-    private Type handleBitwiseExpression(BinaryExpression node) {
+    private Type handleBitwiseExpression(BinaryExpression node, PrimitiveOperation.Family ops) {
       check(node.getLeftExpression());
       check(node.getRightExpression());
       try {
@@ -1447,6 +1461,7 @@ public class ExpressionChecker {
         }
         node.setLeftExpression(left);
         node.setRightExpression(right);
+        specialize(node, ops);
         Type result = setType(node, getType(left));
         evaluateConstantExpression(node);
         return result;
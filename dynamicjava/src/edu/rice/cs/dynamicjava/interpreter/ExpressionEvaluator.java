@@ -1,5 +1,6 @@
 package edu.rice.cs.dynamicjava.interpreter;
 
+import java.util.List;
 import java.lang.reflect.Array;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.lambda.Lambda2;
@@ -12,6 +13,9 @@ import koala.dynamicjava.tree.visitor.*;
 
 import edu.rice.cs.dynamicjava.Options;
 import edu.rice.cs.dynamicjava.symbol.LocalVariable;
+import edu.rice.cs.dynamicjava.symbol.ArgumentArray;
+import edu.rice.cs.dynamicjava.symbol.type.IntType;
+import edu.rice.cs.dynamicjava.symbol.type.LongType;
 
 import static koala.dynamicjava.interpreter.NodeProperties.*;
 
@@ -35,6 +39,7 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
     Object result;
     if (hasValue(n)) { result = getValue(n); }
     else if (hasTranslation(n)) { result = value(getTranslation(n)); }
+    else if (hasPrimitiveOperation(n)) { result = getPrimitiveOperation(n).value(this, (BinaryExpression) n); }
     else { result = n.acceptVisitor(this); }
     if (hasConvertedType(n)) { result = convert(result, getConvertedType(n).value()); }
     if (hasCheckedType(n)) {
@@ -47,9 +52,56 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
     return result;
   }
   
+  /*
+   * Unboxed evaluation of expressions with the given static type, used by PrimitiveOperation.  Nodes
+   * tagged with a PrimitiveOperation, and widening promotions of them, are evaluated without boxing; 
+   * anything else goes through value().
+   */
+  
+  int intValue(Expression e) {
+    if (isUnboxed(e)) { return getPrimitiveOperation(e).intValue(this, (BinaryExpression) e); }
+    else { return (Integer) value(e); }
+  }
+  
+  long longValue(Expression e) {
+    if (isUnboxed(e)) { return getPrimitiveOperation(e).longValue(this, (BinaryExpression) e); }
+    else if (isPromotion(e)) {
+      Expression promoted = ((CastExpression) e).getExpression();
+      if (getType(promoted) instanceof IntType) { return intValue(promoted); }
+    }
+    return (Long) value(e);
+  }
+  
+  double doubleValue(Expression e) {
+    if (isUnboxed(e)) { return getPrimitiveOperation(e).doubleValue(this, (BinaryExpression) e); }
+    else if (isPromotion(e)) {
+      Expression promoted = ((CastExpression) e).getExpression();
+      if (getType(promoted) instanceof IntType) { return intValue(promoted); }
+      else if (getType(promoted) instanceof LongType) { return longValue(promoted); }
+    }
+    return (Double) value(e);
+  }
+  
+  boolean booleanValue(Expression e) {
+    if (isUnboxed(e)) { return getPrimitiveOperation(e).booleanValue(this, (BinaryExpression) e); }
+    else { return (Boolean) value(e); }
+  }
+  
+  /** Whether {@code e} can be evaluated by its PrimitiveOperation with no checks or conversions. */
+  private static boolean isUnboxed(Expression e) {
+    return hasPrimitiveOperation(e) && !hasValue(e) && !hasTranslation(e) &&
+      !hasConvertedType(e) && !hasCheckedType(e);
+  }
+  
+  /** Whether {@code e} is a non-constant primitive conversion inserted by the checker. */
+  private static boolean isPromotion(Expression e) {
+    return e instanceof CastExpression && hasConvertedType(e) && !hasValue(e) && !hasTranslation(e) &&
+      !hasCheckedType(e);
+  }
+  
   @Override public Object visit(Literal node) { return node.getValue(); }
   
-  @Override public Object visit(VariableAccess node) { return new LValueVisitor().visit(node).value(); }
+  @Override public Object visit(VariableAccess node) { return _bindings.get(getVariable(node)); }
 
   @Override public Object visit(SimpleFieldAccess node) { return new LValueVisitor().visit(node).value(); }
   
@@ -85,14 +137,22 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   }
   
   private Object handleMethodCall(MethodCall node, Object receiver) {
-    Iterable<Object> args;
-    if (node.getArguments() == null) { args = IterUtil.empty(); }
-    else { args = IterUtil.mapSnapshot(node.getArguments(), this); }
-
+    Iterable<Object> args = evaluateArguments(node.getArguments());
     try { return getMethod(node).evaluate(receiver, args, _bindings, _options); }
     catch (EvaluatorException e) { throw new WrappedException(e); }
   }
   
+  /**
+   * Evaluate invocation arguments, in order, into an {@link ArgumentArray}.
+   * @param args  May be null, meaning there are no arguments
+   */
+  private ArgumentArray evaluateArguments(List<? extends Expression> args) {
+    if (args == null || args.isEmpty()) { return ArgumentArray.EMPTY; }
+    Object[] vals = new Object[args.size()];
+    int i = 0;
+    for (Expression arg : args) { vals[i++] = value(arg); }
+    return new ArgumentArray(vals);
+  }
     
   @Override public Object visit(SimpleAllocation node) {
     return handleConstructor(node, null, node.getArguments());
@@ -113,7 +173,7 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   /**
    * @param args  May be null, meaning there are no arguments
    */
-  private Object handleConstructor(Expression node, Expression outer, Iterable<Expression> args) {
+  private Object handleConstructor(Expression node, Expression outer, List<Expression> args) {
     Object outerVal;
     if (outer == null) {
       if (hasEnclosingThis(node)) { outerVal = _bindings.getThis(getEnclosingThis(node)); }
@@ -121,10 +181,7 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
     }
     else { outerVal = value(outer); }
     
-    Iterable<Object> argVals;
-    if (args == null) { argVals = IterUtil.empty(); }
-    else { argVals = IterUtil.mapSnapshot(args, this); }
-
+    Iterable<Object> argVals = evaluateArguments(args);
     try { return getConstructor(node).evaluate(outerVal, argVals, _bindings, _options); }
     catch (EvaluatorException e) { throw new WrappedException(e); }
   }
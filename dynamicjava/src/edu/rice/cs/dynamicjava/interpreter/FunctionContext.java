@@ -110,6 +110,10 @@ public class FunctionContext extends DelegatingContext {
     else { return _f.returnType(); }
   }
   
+  @Override public boolean hasBreakTarget(String label) { return false; }
+  
+  @Override public boolean hasContinueTarget(String label) { return false; }
+  
   @Override public Iterable<Type> getDeclaredThrownTypes() { return _f.thrownTypes(); }
 
   private boolean isStatic() {
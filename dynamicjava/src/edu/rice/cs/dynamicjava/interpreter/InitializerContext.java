@@ -46,6 +46,10 @@ public class InitializerContext extends DelegatingContext {
   
   @Override public Type getReturnType() { return null; }
   
+  @Override public boolean hasBreakTarget(String label) { return false; }
+  
+  @Override public boolean hasContinueTarget(String label) { return false; }
+  
   @Override public Iterable<Type> getDeclaredThrownTypes() { return IterUtil.empty(); }
 
 }
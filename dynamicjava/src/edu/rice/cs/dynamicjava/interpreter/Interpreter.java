@@ -73,6 +73,8 @@ public class Interpreter {
   private Pair<RuntimeBindings, Option<Object>> evaluate(Iterable<Node> tree) throws InterpreterException {
     try {
       StatementEvaluator.Result r = new StatementEvaluator(_bindings, _opt).evaluateSequence(tree);
+      // the checker rejects a break, continue, or return outside of its target
+      assert r.isNormal();
       return Pair.make(r.bindings(), r.value());
     }
     catch (WrappedException e) {
@@ -0,0 +1,186 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import edu.rice.cs.plt.tuple.Option;
+import edu.rice.cs.plt.lambda.WrappedException;
+
+import koala.dynamicjava.tree.BinaryExpression;
+
+import edu.rice.cs.dynamicjava.symbol.type.Type;
+import edu.rice.cs.dynamicjava.symbol.type.IntType;
+import edu.rice.cs.dynamicjava.symbol.type.LongType;
+import edu.rice.cs.dynamicjava.symbol.type.DoubleType;
+
+/**
+ * A binary operator specialized to {@code int}, {@code long}, or {@code double} operands.  The
+ * {@link ExpressionChecker} tags an operator node with the version matching its promoted operand type
+ * (see {@link koala.dynamicjava.interpreter.NodeProperties#PRIMITIVE_OPERATION}); the
+ * {@link ExpressionEvaluator} then evaluates the node's operands, and any tagged operator nodes nested
+ * within them, as primitives.  Only the value of the outermost node is boxed.
+ */
+public abstract class PrimitiveOperation {
+
+  /** Evaluate {@code node}, boxing the result. */
+  abstract Object value(ExpressionEvaluator eval, BinaryExpression node);
+
+  int intValue(ExpressionEvaluator eval, BinaryExpression node) { throw new IllegalArgumentException(); }
+  long longValue(ExpressionEvaluator eval, BinaryExpression node) { throw new IllegalArgumentException(); }
+  double doubleValue(ExpressionEvaluator eval, BinaryExpression node) { throw new IllegalArgumentException(); }
+  boolean booleanValue(ExpressionEvaluator eval, BinaryExpression node) { throw new IllegalArgumentException(); }
+
+
+  /** The versions of a single operator; an operator need not support every operand type. */
+  public static class Family {
+    private final PrimitiveOperation _intOp;
+    private final PrimitiveOperation _longOp;
+    private final PrimitiveOperation _doubleOp;
+
+    private Family(PrimitiveOperation intOp, PrimitiveOperation longOp, PrimitiveOperation doubleOp) {
+      _intOp = intOp;
+      _longOp = longOp;
+      _doubleOp = doubleOp;
+    }
+
+    /** The version of the operator for (promoted) operands of type {@code t}, if there is one. */
+    public Option<PrimitiveOperation> forOperandType(Type t) {
+      if (t instanceof IntType) { return Option.wrap(_intOp); }
+      else if (t instanceof LongType) { return Option.wrap(_longOp); }
+      else if (t instanceof DoubleType) { return Option.wrap(_doubleOp); }
+      else { return Option.none(); }
+    }
+  }
+
+
+  /**
+   * Integer operations may throw an ArithmeticException (division by zero); like the
+   * evaluator's other operations, it is reported as an EvaluatorException.
+   */
+  private static abstract class IntArithmetic extends PrimitiveOperation {
+    protected abstract int apply(int left, int right);
+    Object value(ExpressionEvaluator eval, BinaryExpression node) { return intValue(eval, node); }
+    @Override int intValue(ExpressionEvaluator eval, BinaryExpression node) {
+      int left = eval.intValue(node.getLeftExpression());
+      int right = eval.intValue(node.getRightExpression());
+      try { return apply(left, right); }
+      catch (ArithmeticException e) {
+        throw new WrappedException(new EvaluatorException(e, getClass().getName() + ".apply"));
+      }
+    }
+  }
+
+  private static abstract class LongArithmetic extends PrimitiveOperation {
+    protected abstract long apply(long left, long right);
+    Object value(ExpressionEvaluator eval, BinaryExpression node) { return longValue(eval, node); }
+    @Override long longValue(ExpressionEvaluator eval, BinaryExpression node) {
+      long left = eval.longValue(node.getLeftExpression());
+      long right = eval.longValue(node.getRightExpression());
+      try { return apply(left, right); }
+      catch (ArithmeticException e) {
+        throw new WrappedException(new EvaluatorException(e, getClass().getName() + ".apply"));
+      }
+    }
+  }
+
+  private static abstract class DoubleArithmetic extends PrimitiveOperation {
+    protected abstract double apply(double left, double right);
+    Object value(ExpressionEvaluator eval, BinaryExpression node) { return doubleValue(eval, node); }
+    @Override double doubleValue(ExpressionEvaluator eval, BinaryExpression node) {
+      return apply(eval.doubleValue(node.getLeftExpression()), eval.doubleValue(node.getRightExpression()));
+    }
+  }
+
+  private static abstract class IntComparison extends PrimitiveOperation {
+    protected abstract boolean apply(int left, int right);
+    Object value(ExpressionEvaluator eval, BinaryExpression node) { return booleanValue(eval, node); }
+    @Override boolean booleanValue(ExpressionEvaluator eval, BinaryExpression node) {
+      return apply(eval.intValue(node.getLeftExpression()), eval.intValue(node.getRightExpression()));
+    }
+  }
+
+  private static abstract class LongComparison extends PrimitiveOperation {
+    protected abstract boolean apply(long left, long right);
+    Object value(ExpressionEvaluator eval, BinaryExpression node) { return booleanValue(eval, node); }
+    @Override boolean booleanValue(ExpressionEvaluator eval, BinaryExpression node) {
+      return apply(eval.longValue(node.getLeftExpression()), eval.longValue(node.getRightExpression()));
+    }
+  }
+
+  private static abstract class DoubleComparison extends PrimitiveOperation {
+    protected abstract boolean apply(double left, double right);
+    Object value(ExpressionEvaluator eval, BinaryExpression node) { return booleanValue(eval, node); }
+    @Override boolean booleanValue(ExpressionEvaluator eval, BinaryExpression node) {
+      return apply(eval.doubleValue(node.getLeftExpression()), eval.doubleValue(node.getRightExpression()));
+    }
+  }
+
+
+  public static final Family ADD = new Family(
+    new IntArithmetic() { protected int apply(int l, int r) { return l + r; } },
+    new LongArithmetic() { protected long apply(long l, long r) { return l + r; } },
+    new DoubleArithmetic() { protected double apply(double l, double r) { return l + r; } });
+
+  public static final Family SUBTRACT = new Family(
+    new IntArithmetic() { protected int apply(int l, int r) { return l - r; } },
+    new LongArithmetic() { protected long apply(long l, long r) { return l - r; } },
+    new DoubleArithmetic() { protected double apply(double l, double r) { return l - r; } });
+
+  public static final Family MULTIPLY = new Family(
+    new IntArithmetic() { protected int apply(int l, int r) { return l * r; } },
+    new LongArithmetic() { protected long apply(long l, long r) { return l * r; } },
+    new DoubleArithmetic() { protected double apply(double l, double r) { return l * r; } });
+
+  public static final Family DIVIDE = new Family(
+    new IntArithmetic() { protected int apply(int l, int r) { return l / r; } },
+    new LongArithmetic() { protected long apply(long l, long r) { return l / r; } },
+    new DoubleArithmetic() { protected double apply(double l, double r) { return l / r; } });
+
+  public static final Family REMAINDER = new Family(
+    new IntArithmetic() { protected int apply(int l, int r) { return l % r; } },
+    new LongArithmetic() { protected long apply(long l, long r) { return l % r; } },
+    new DoubleArithmetic() { protected double apply(double l, double r) { return l % r; } });
+
+  public static final Family BIT_AND = new Family(
+    new IntArithmetic() { protected int apply(int l, int r) { return l & r; } },
+    new LongArithmetic() { protected long apply(long l, long r) { return l & r; } },
+    null);
+
+  public static final Family BIT_OR = new Family(
+    new IntArithmetic() { protected int apply(int l, int r) { return l | r; } },
+    new LongArithmetic() { protected long apply(long l, long r) { return l | r; } },
+    null);
+
+  public static final Family EXCLUSIVE_OR = new Family(
+    new IntArithmetic() { protected int apply(int l, int r) { return l ^ r; } },
+    new LongArithmetic() { protected long apply(long l, long r) { return l ^ r; } },
+    null);
+
+  public static final Family EQUAL = new Family(
+    new IntComparison() { protected boolean apply(int l, int r) { return l == r; } },
+    new LongComparison() { protected boolean apply(long l, long r) { return l == r; } },
+    new DoubleComparison() { protected boolean apply(double l, double r) { return l == r; } });
+
+  public static final Family NOT_EQUAL = new Family(
+    new IntComparison() { protected boolean apply(int l, int r) { return l != r; } },
+    new LongComparison() { protected boolean apply(long l, long r) { return l != r; } },
+    new DoubleComparison() { protected boolean apply(double l, double r) { return l != r; } });
+
+  public static final Family LESS = new Family(
+    new IntComparison() { protected boolean apply(int l, int r) { return l < r; } },
+    new LongComparison() { protected boolean apply(long l, long r) { return l < r; } },
+    new DoubleComparison() { protected boolean apply(double l, double r) { return l < r; } });
+
+  public static final Family LESS_OR_EQUAL = new Family(
+    new IntComparison() { protected boolean apply(int l, int r) { return l <= r; } },
+    new LongComparison() { protected boolean apply(long l, long r) { return l <= r; } },
+    new DoubleComparison() { protected boolean apply(double l, double r) { return l <= r; } });
+
+  public static final Family GREATER = new Family(
+    new IntComparison() { protected boolean apply(int l, int r) { return l > r; } },
+    new LongComparison() { protected boolean apply(long l, long r) { return l > r; } },
+    new DoubleComparison() { protected boolean apply(double l, double r) { return l > r; } });
+
+  public static final Family GREATER_OR_EQUAL = new Family(
+    new IntComparison() { protected boolean apply(int l, int r) { return l >= r; } },
+    new LongComparison() { protected boolean apply(long l, long r) { return l >= r; } },
+    new DoubleComparison() { protected boolean apply(double l, double r) { return l >= r; } });
+
+}
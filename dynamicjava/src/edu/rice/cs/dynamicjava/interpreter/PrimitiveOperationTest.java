@@ -0,0 +1,108 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.io.StringReader;
+import junit.framework.TestCase;
+import edu.rice.cs.plt.iter.IterUtil;
+
+import koala.dynamicjava.tree.BinaryExpression;
+import koala.dynamicjava.tree.ExpressionStatement;
+import koala.dynamicjava.tree.Node;
+import koala.dynamicjava.parser.wrapper.JavaCCParser;
+
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.symbol.TypeSystem;
+
+import static koala.dynamicjava.interpreter.NodeProperties.*;
+
+public class PrimitiveOperationTest extends TestCase {
+
+  private static final String DECLS =
+    "byte b = -3; short s = 300; char c = 'A'; int i = 100000; int zero = 0; " +
+    "long l = 1L << 40; long lzero = 0; float f = 1.5f; double d = 0.25; double nan = 0.0 / 0.0;";
+
+  private Interpreter _interp;
+
+  @Override protected void setUp() throws InterpreterException {
+    _interp = new Interpreter(Options.DEFAULT);
+    _interp.interpret(DECLS);
+  }
+
+  private Object eval(String exp) throws InterpreterException { return _interp.interpret(exp).unwrap(); }
+
+  /** Type check {@code DECLS} followed by {@code exp}, and get the checked expression. */
+  private BinaryExpression check(String exp) throws Exception {
+    Iterable<Node> tree = new JavaCCParser(new StringReader(DECLS + exp + ";"), Options.DEFAULT).parseStream();
+    new StatementChecker(new ImportContext(getClass().getClassLoader(), Options.DEFAULT), Options.DEFAULT).checkList(tree);
+    return (BinaryExpression) ((ExpressionStatement) IterUtil.last(tree)).getExpression();
+  }
+
+  private void assertDivisionByZero(String exp) throws InterpreterException {
+    try {
+      eval(exp);
+      fail("Expected an exception: " + exp);
+    }
+    catch (EvaluatorException e) { assertTrue(e.getCause() instanceof ArithmeticException); }
+  }
+
+  public void testSpecialization() throws Exception {
+    BinaryExpression add = check("b + l");
+    assertSame(PrimitiveOperation.ADD.forOperandType(TypeSystem.LONG).unwrap(), getPrimitiveOperation(add));
+    BinaryExpression mul = check("(c + i) * d");
+    assertSame(PrimitiveOperation.MULTIPLY.forOperandType(TypeSystem.DOUBLE).unwrap(), getPrimitiveOperation(mul));
+    assertFalse(hasPrimitiveOperation(check("f + f")));
+    assertFalse(hasPrimitiveOperation(check("l << 2")));
+  }
+
+  public void testMixedWidthPromotion() throws InterpreterException {
+    byte b = -3; short s = 300; char c = 'A'; int i = 100000; long l = 1L << 40; float f = 1.5f; double d = 0.25;
+    assertEquals(b + l, eval("b + l"));
+    assertEquals(l - b * s, eval("l - b * s"));
+    assertEquals(c + i, eval("c + i"));
+    assertEquals((c + i) * 2L, eval("(c + i) * 2L"));
+    assertEquals(c * s - b, eval("c * s - b"));
+    assertEquals(i * i, eval("i * i"));
+    assertEquals(i * (long) i, eval("i * (long) i"));
+    assertEquals((b + c) * l / i, eval("(b + c) * l / i"));
+    assertEquals(i / 7 + d, eval("i / 7 + d"));
+    assertEquals(l % 1000 + 0.5, eval("l % 1000 + 0.5"));
+    assertEquals((c ^ b) & s | i, eval("(c ^ b) & s | i"));
+    assertEquals(f * d + l, eval("f * d + l"));
+  }
+
+  public void testDivisionByZero() throws InterpreterException {
+    assertDivisionByZero("i / zero");
+    assertDivisionByZero("i % zero");
+    assertDivisionByZero("1 + c / (i - i)");
+    assertDivisionByZero("l / lzero");
+    assertDivisionByZero("l % lzero");
+    assertDivisionByZero("(l + 1) * 2 / (b + 3)");
+    assertDivisionByZero("l * 2 % zero");
+    assertEquals(Double.POSITIVE_INFINITY, eval("d / zero"));
+    assertTrue(Double.isNaN((Double) eval("d % lzero")));
+  }
+
+  public void testNaNComparisons() throws InterpreterException {
+    assertEquals(false, eval("nan < 1"));
+    assertEquals(false, eval("nan > 1L"));
+    assertEquals(false, eval("1 <= nan"));
+    assertEquals(false, eval("c >= nan"));
+    assertEquals(false, eval("nan == nan"));
+    assertEquals(true, eval("nan != nan"));
+    assertEquals(true, eval("!(nan >= nan)"));
+    assertEquals(false, eval("nan + 1 == nan * 0"));
+    assertEquals(true, eval("d + nan != i"));
+  }
+
+  public void testLongShifts() throws InterpreterException {
+    int i = 100000; long l = 1L << 40; byte b = -3;
+    assertEquals(l << 23, eval("l << 23"));
+    assertEquals((l << 33) + l, eval("(l << 33) + l"));
+    assertEquals((-l >>> 1) | (-l >> 62), eval("(-l >>> 1) | (-l >> 62)"));
+    assertEquals((l + 1) << 2, eval("(l + 1) << 2"));
+    assertEquals(l >> (i - 99960), eval("l >> (i - 99960)"));
+    assertEquals(i << 33L, eval("i << 33L"));
+    assertEquals((b >> 1L) + l, eval("(b >> 1L) + l"));
+    assertEquals(l << 64 == l, eval("l << 64 == l"));
+  }
+
+}
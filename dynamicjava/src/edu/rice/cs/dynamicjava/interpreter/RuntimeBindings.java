@@ -1,9 +1,7 @@
 package edu.rice.cs.dynamicjava.interpreter;
 
 import java.util.Map;
-import java.util.HashMap;
-import java.util.Collections;
-import edu.rice.cs.plt.tuple.Pair;
+import java.util.Arrays;
 import edu.rice.cs.plt.iter.IterUtil;
 
 import edu.rice.cs.dynamicjava.symbol.*;
@@ -16,72 +14,120 @@ import edu.rice.cs.dynamicjava.symbol.type.VariableType;
   * the calling context.  Without this flexibility, it would have to be determined at what point
   * (if any) in the calling context's chain of environments the function declaration and the calling
   * context share a common lexical scope.
+  * 
+  * <p>Each frame stores its bindings in small parallel arrays, searched by identity.  A frame usually
+  * holds a single variable (one is created per local variable declaration), so this avoids hashing
+  * and the per-frame map allocation.</p>
   */
 public class RuntimeBindings {
   
+  private static final LocalVariable[] NO_VARS = new LocalVariable[0];
+  private static final VariableType[] NO_TVARS = new VariableType[0];
+  private static final DJClass[] NO_CLASSES = new DJClass[0];
+  private static final Object[] NO_VALS = new Object[0];
+  private static final Type[] NO_TYPES = new Type[0];
+  
   public static final RuntimeBindings EMPTY = new RuntimeBindings();
   
   private final RuntimeBindings _parent;
-  private final Map<LocalVariable, Object> _vars;
-  private final Map<VariableType, Type> _tvars; // might be useful someday...
-  private final Map<DJClass, Object> _thisVals;
+  private final LocalVariable[] _vars;
+  private final Object[] _vals;
+  private final VariableType[] _tvars; // might be useful someday...
+  private final Type[] _tvals;
+  private final DJClass[] _thisClasses;
+  private final Object[] _thisVals;
+  
+  private RuntimeBindings(RuntimeBindings parent, LocalVariable[] vars, Object[] vals,
+                          VariableType[] tvars, Type[] tvals, DJClass[] thisClasses, Object[] thisVals) {
+    _parent = parent;
+    _vars = vars;
+    _vals = vals;
+    _tvars = tvars;
+    _tvals = tvals;
+    _thisClasses = thisClasses;
+    _thisVals = thisVals;
+  }
   
   public RuntimeBindings(RuntimeBindings parent, Map<LocalVariable, Object> vars,
                          Map<VariableType, Type> tvars, Map<DJClass, Object> thisVals) {
     _parent = parent;
-    _vars = new HashMap<LocalVariable, Object>(vars);
-    _tvars = new HashMap<VariableType, Type>(tvars);
-    _thisVals = new HashMap<DJClass, Object>(thisVals);
+    _vars = vars.keySet().toArray(NO_VARS);
+    _vals = new Object[_vars.length];
+    for (int i = 0; i < _vars.length; i++) { _vals[i] = vars.get(_vars[i]); }
+    _tvars = tvars.keySet().toArray(NO_TVARS);
+    _tvals = new Type[_tvars.length];
+    for (int i = 0; i < _tvars.length; i++) { _tvals[i] = tvars.get(_tvars[i]); }
+    _thisClasses = thisVals.keySet().toArray(NO_CLASSES);
+    _thisVals = new Object[_thisClasses.length];
+    for (int i = 0; i < _thisClasses.length; i++) { _thisVals[i] = thisVals.get(_thisClasses[i]); }
   }
   
   private RuntimeBindings() {
-    this(null, Collections.<LocalVariable, Object>emptyMap(),
-         Collections.<VariableType, Type>emptyMap(), Collections.<DJClass, Object>emptyMap());
+    this(null, NO_VARS, NO_VALS, NO_TVARS, NO_TYPES, NO_CLASSES, NO_VALS);
   }
   
   public RuntimeBindings(RuntimeBindings parent, LocalVariable var, Object val) {
-    this(parent, Collections.singletonMap(var, val), Collections.<VariableType, Type>emptyMap(),
-         Collections.<DJClass, Object>emptyMap());
+    this(parent, new LocalVariable[]{ var }, new Object[]{ val }, NO_TVARS, NO_TYPES, NO_CLASSES, NO_VALS);
   }
   
   public RuntimeBindings(RuntimeBindings parent, Iterable<LocalVariable> vars, Iterable<Object> vals) {
-    this(parent, makeMap(vars, vals), Collections.<VariableType, Type>emptyMap(),
-         Collections.<DJClass, Object>emptyMap());
+    _parent = parent;
+    LocalVariable[] varArray = IterUtil.toArray(vars, LocalVariable.class);
+    Object[] valArray = IterUtil.toArray(vals, Object.class);
+    // as with a zip, unpaired entries are dropped
+    int size = Math.min(varArray.length, valArray.length);
+    _vars = (size == varArray.length) ? varArray : Arrays.copyOf(varArray, size);
+    _vals = (size == valArray.length) ? valArray : Arrays.copyOf(valArray, size);
+    _tvars = NO_TVARS;
+    _tvals = NO_TYPES;
+    _thisClasses = NO_CLASSES;
+    _thisVals = NO_VALS;
   }
   
-  private static <K, V> Map<K, V> makeMap(Iterable<? extends K> keys, Iterable<? extends V> vals) {
-    Map<K, V> result = new HashMap<K, V>();
-    for (Pair<K, V> entry : IterUtil.zip(keys, vals)) { result.put(entry.first(), entry.second()); }
-    return result;
+  public RuntimeBindings(RuntimeBindings parent, DJClass thisClass, Object thisObj) {
+    this(parent, NO_VARS, NO_VALS, NO_TVARS, NO_TYPES, new DJClass[]{ thisClass }, new Object[]{ thisObj });
   }
   
-  public RuntimeBindings(RuntimeBindings parent, DJClass thisClass, Object thisObj) {
-      this(parent, Collections.<LocalVariable, Object>emptyMap(),
-           Collections.<VariableType, Type>emptyMap(), Collections.singletonMap(thisClass, thisObj));
+  /** The index of {@code v} in this frame, or {@code -1}; later entries take precedence. */
+  private int indexOf(LocalVariable v) {
+    for (int i = _vars.length - 1; i >= 0; i--) {
+      if (_vars[i] == v) { return i; }
+    }
+    return -1;
   }
   
   public Object get(LocalVariable v) {
-    if (_vars.containsKey(v)) { return _vars.get(v); }
-    else if (_parent != null) { return _parent.get(v); }
-    else { throw new IllegalArgumentException("Variable " + v + " is undefined"); }
+    for (RuntimeBindings b = this; b != null; b = b._parent) {
+      int i = b.indexOf(v);
+      if (i >= 0) { return b._vals[i]; }
+    }
+    throw new IllegalArgumentException("Variable " + v + " is undefined");
   }
   
   public void set(LocalVariable v, Object val) {
-    if (_vars.containsKey(v)) { _vars.put(v, val); }
-    else if (_parent != null) { _parent.set(v, val); }
-    else { throw new IllegalArgumentException("Variable " + v + " is undefined"); }
+    for (RuntimeBindings b = this; b != null; b = b._parent) {
+      int i = b.indexOf(v);
+      if (i >= 0) { b._vals[i] = val; return; }
+    }
+    throw new IllegalArgumentException("Variable " + v + " is undefined");
   }
 
   public Type get(VariableType v) {
-    if (_tvars.containsKey(v)) { return _tvars.get(v); }
-    else if (_parent != null) { return _parent.get(v); }
-    else { throw new IllegalArgumentException("Type variable " + v + " is undefined"); }
+    for (RuntimeBindings b = this; b != null; b = b._parent) {
+      for (int i = b._tvars.length - 1; i >= 0; i--) {
+        if (b._tvars[i].equals(v)) { return b._tvals[i]; }
+      }
+    }
+    throw new IllegalArgumentException("Type variable " + v + " is undefined");
   }
   
   public Object getThis(DJClass c) {
-    if (_thisVals.containsKey(c)) { return _thisVals.get(c); }
-    else if (_parent != null) { return _parent.getThis(c); }
-    else { throw new IllegalArgumentException("This value " + c + " is undefined"); }
+    for (RuntimeBindings b = this; b != null; b = b._parent) {
+      for (int i = b._thisClasses.length - 1; i >= 0; i--) {
+        if (b._thisClasses[i].equals(c)) { return b._thisVals[i]; }
+      }
+    }
+    throw new IllegalArgumentException("This value " + c + " is undefined");
   }
 
 }
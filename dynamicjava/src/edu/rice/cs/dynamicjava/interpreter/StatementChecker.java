@@ -386,7 +386,7 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
       throw new ExecutionError("condition.type", node);
     }
     
-    node.getBody().acceptVisitor(this);
+    node.getBody().acceptVisitor(new StatementChecker(new BranchTargetContext(context, node), opt));
     return context;
   }
 
@@ -394,7 +394,7 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
    * Visits a DoStatement.  JLS 14.13.
    */
   @Override public TypeContext visit(DoStatement node) {
-    node.getBody().acceptVisitor(this);
+    node.getBody().acceptVisitor(new StatementChecker(new BranchTargetContext(context, node), opt));
     checkType(node.getCondition());
     try {
       Expression exp = ts.makePrimitive(node.getCondition());
@@ -434,7 +434,7 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
     
     if (node.getUpdate() != null) { checker.checkList(node.getUpdate()); }
 
-    node.getBody().acceptVisitor(checker);
+    node.getBody().acceptVisitor(new StatementChecker(new BranchTargetContext(newContext, node), opt));
     return context; // We do *not* return newContext
   }
 
@@ -481,7 +481,7 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
       throw new ExecutionError("iterable.type", node);
     }
     
-    node.getBody().acceptVisitor(new StatementChecker(newContext, opt));
+    node.getBody().acceptVisitor(new StatementChecker(new BranchTargetContext(newContext, node), opt));
     return context; // We do *not* return newContext
   }
 
@@ -547,6 +547,7 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
       }
     }
     
+    StatementChecker bodyChecker = new StatementChecker(new BranchTargetContext(context, node), opt);
     Set<Object> values = new HashSet<Object>();
     boolean hasDefault = false;
     for (SwitchBlock bk : node.getBindings()) {
@@ -581,7 +582,7 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
         values.add(getValue(exp));
       }
       
-      if (bk.getStatements() != null) { checkList(bk.getStatements()); }
+      if (bk.getStatements() != null) { bodyChecker.checkList(bk.getStatements()); }
     }
       
     return context;
@@ -600,7 +601,8 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
    * Visits a LabeledStatement.  JLS 14.7.
    */
   @Override public TypeContext visit(LabeledStatement node) {
-    return node.getStatement().acceptVisitor(this);
+    node.getStatement().acceptVisitor(new StatementChecker(new BranchTargetContext(context, node), opt));
+    return context;
   }
 
   /**
@@ -737,12 +739,30 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
     return context;
   }
   
+  /**
+   * Visits a BreakStatement.  JLS 14.15.
+   */
   @Override public TypeContext visit(BreakStatement node) {
-    return context; // TODO: check control-flow context, labels
+    String label = node.getLabel();
+    if (!context.hasBreakTarget(label)) {
+      if (label == null) { throw new ExecutionError("break.not.allowed", node); }
+      setErrorStrings(node, label);
+      throw new ExecutionError("undefined.label", node);
+    }
+    return context;
   }
 
+  /**
+   * Visits a ContinueStatement.  JLS 14.16.
+   */
   @Override public TypeContext visit(ContinueStatement node) {
-    return context; // TODO: check control-flow context, labels
+    String label = node.getLabel();
+    if (!context.hasContinueTarget(label)) {
+      if (label == null || context.hasBreakTarget(label)) { throw new ExecutionError("continue.not.allowed", node); }
+      setErrorStrings(node, label);
+      throw new ExecutionError("undefined.label", node);
+    }
+    return context;
   }
 
   @Override public TypeContext visit(ExpressionStatement node) {
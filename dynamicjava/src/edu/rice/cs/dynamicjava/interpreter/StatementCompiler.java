@@ -0,0 +1,809 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import edu.rice.cs.plt.lambda.Runnable1;
+import edu.rice.cs.plt.lambda.WrappedException;
+import edu.rice.cs.plt.tuple.Option;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import koala.dynamicjava.tree.*;
+import koala.dynamicjava.tree.visitor.*;
+
+import edu.rice.cs.dynamicjava.symbol.LocalVariable;
+import edu.rice.cs.dynamicjava.symbol.SymbolUtil;
+import edu.rice.cs.dynamicjava.symbol.type.*;
+
+import static org.objectweb.asm.Opcodes.*;
+import static koala.dynamicjava.interpreter.NodeProperties.*;
+import static edu.rice.cs.plt.debug.DebugUtil.debug;
+
+/**
+ * Compiles loops to JVM bytecode, as a faster alternative to evaluating them with a {@link StatementEvaluator}.
+ * Only loops that work entirely with primitive values are eligible: every variable must be a primitive local,
+ * every expression a constant, a variable access, an assignment, or a primitive operator, and every statement a
+ * block, expression, local variable declaration, {@code if}, loop, {@code break}, or {@code continue} (with a target
+ * inside the loop).  Anything else -- including a loop the JVM rejects -- is left to the StatementEvaluator.
+ *
+ * <p>A compiled loop looks something like the following, where {@code sum} and {@code n} were declared
+ * outside the loop and {@code i} inside it:</p>
+ * <pre>
+ * public final class CompiledLoop$1 implements Runnable1 {
+ *   public void run(Object arg) {
+ *     Object[] frame = (Object[]) arg;
+ *     int sum = (Integer) frame[0];
+ *     int n = (Integer) frame[1];
+ *     try { for (int i = 0; i &lt; n; i++) { sum += i; } }
+ *     finally { frame[0] = sum; } // only assigned variables are written back
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>Primitive operations follow the JVM, so they agree with ExpressionEvaluator except where the evaluator
+ * stores a promoted value without narrowing it (for example, {@code b += 1} with {@code byte b}); here, the
+ * variable keeps its declared type.</p>
+ */
+public class StatementCompiler {
+
+  private static final String RUNNABLE1_NAME = org.objectweb.asm.Type.getInternalName(Runnable1.class);
+  private static final AtomicInteger _classCount = new AtomicInteger(0);
+
+  /**
+   * Get the compiled form of {@code loop}, compiling it if this has not been attempted before.  The result is
+   * cached as a property of the node, so repeated evaluations (in a method body, for example) compile only once.
+   * The node is locked while it is compiled, since a method body may be evaluated by several threads at once.
+   * @return  The compiled loop, or {@code none} if the loop is not eligible
+   */
+  public static Option<CompiledStatement> compile(Node loop) {
+    synchronized (loop) {
+      if (hasCompiledStatement(loop)) { return getCompiledStatement(loop); }
+      Option<CompiledStatement> result;
+      try { result = Option.some(new StatementCompiler().compileLoop(loop)); }
+      catch (UnsupportedException e) {
+        debug.logValue("Loop not compiled", e.getMessage());
+        result = Option.none();
+      }
+      setCompiledStatement(loop, result);
+      return result;
+    }
+  }
+
+  /** A compiled loop, run against the RuntimeBindings that define its free variables. */
+  public static class CompiledStatement {
+    private final Runnable1<Object[]> _code;
+    private final LocalVariable[] _vars;
+    private final Class<?>[] _types;
+    private final boolean[] _assigned;
+    private final String _runMethod;
+
+    private CompiledStatement(Runnable1<Object[]> code, LocalVariable[] vars, Class<?>[] types,
+                              boolean[] assigned, String runMethod) {
+      _code = code;
+      _vars = vars;
+      _types = types;
+      _assigned = assigned;
+      _runMethod = runMethod;
+    }
+
+    /**
+     * Run the loop.  Variables assigned by the loop are updated in {@code bindings} even if the loop completes
+     * abruptly.  A thrown exception (an ArithmeticException, the only kind compiled code can produce) is wrapped
+     * as the StatementEvaluator would wrap it.
+     */
+    public void run(RuntimeBindings bindings) {
+      Object[] frame = new Object[_vars.length];
+      for (int i = 0; i < _vars.length; i++) {
+        // the evaluator may hold a promoted value (an Integer in a byte variable, for example)
+        frame[i] = ExpressionEvaluator.convert(bindings.get(_vars[i]), _types[i]);
+      }
+      try { _code.run(frame); }
+      catch (ArithmeticException e) { throw new WrappedException(new EvaluatorException(e, _runMethod)); }
+      finally {
+        for (int i = 0; i < _vars.length; i++) {
+          if (_assigned[i]) { bindings.set(_vars[i], frame[i]); }
+        }
+      }
+    }
+  }
+
+  /** Thrown during compilation when the loop uses a construct that is not supported. */
+  private static class UnsupportedException extends RuntimeException {
+    public UnsupportedException(String message) { super(message); }
+    public UnsupportedException(Node n) { super(n.getClass().getSimpleName() + " at " + n.getSourceInfo()); }
+  }
+
+  /** Defines a single compiled loop; a loader per loop allows the class to be unloaded along with the AST. */
+  private static class CodeLoader extends ClassLoader {
+    public CodeLoader() { super(StatementCompiler.class.getClassLoader()); }
+    public Class<?> define(String name, byte[] bytes) { return defineClass(name, bytes, 0, bytes.length); }
+  }
+
+  /** A statement that break or continue statements can jump to. */
+  private static class Target {
+    public final Node node;
+    public final Label breakLabel;
+    public final Label continueLabel; // null for non-loops
+    public Target(Node n, Label b, Label c) { node = n; breakLabel = b; continueLabel = c; }
+  }
+
+  private MethodVisitor _mv;
+  private int _nextSlot;
+  private final Map<LocalVariable, Integer> _slots = new HashMap<LocalVariable, Integer>();
+  private final Map<LocalVariable, Class<?>> _kinds = new HashMap<LocalVariable, Class<?>>();
+  private final List<LocalVariable> _free = new ArrayList<LocalVariable>();
+  private final Set<LocalVariable> _assigned = new HashSet<LocalVariable>();
+  private final LinkedList<Target> _targets = new LinkedList<Target>();
+
+  private StatementCompiler() {}
+
+  private CompiledStatement compileLoop(Node loop) {
+    String name = "CompiledLoop$" + _classCount.incrementAndGet();
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, "java/lang/Object",
+             new String[]{ RUNNABLE1_NAME });
+
+    MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    init.visitInsn(RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    // Free variables are discovered while the body is compiled, so the code that loads them appears last
+    _mv = cw.visitMethod(ACC_PUBLIC, "run", "(Ljava/lang/Object;)V", null, null);
+    _nextSlot = 2;
+    Label body = new Label();
+    Label bodyEnd = new Label();
+    Label handler = new Label();
+    Label prologue = new Label();
+    _mv.visitCode();
+    _mv.visitTryCatchBlock(body, bodyEnd, handler, null);
+    _mv.visitVarInsn(ALOAD, 1);
+    _mv.visitTypeInsn(CHECKCAST, "[Ljava/lang/Object;");
+    _mv.visitVarInsn(ASTORE, 1);
+    _mv.visitJumpInsn(GOTO, prologue);
+    _mv.visitLabel(body);
+    _mv.visitInsn(NOP); // guarantees a non-empty protected range
+    loop.acceptVisitor(new StatementVisitor());
+    _mv.visitLabel(bodyEnd);
+    emitWriteBack();
+    _mv.visitInsn(RETURN);
+    _mv.visitLabel(handler);
+    int exceptionSlot = _nextSlot++;
+    _mv.visitVarInsn(ASTORE, exceptionSlot);
+    emitWriteBack();
+    _mv.visitVarInsn(ALOAD, exceptionSlot);
+    _mv.visitInsn(ATHROW);
+    _mv.visitLabel(prologue);
+    for (int i = 0; i < _free.size(); i++) {
+      LocalVariable v = _free.get(i);
+      Class<?> k = _kinds.get(v);
+      String box = boxName(k);
+      _mv.visitVarInsn(ALOAD, 1);
+      emitInt(i);
+      _mv.visitInsn(AALOAD);
+      _mv.visitTypeInsn(CHECKCAST, box);
+      _mv.visitMethodInsn(INVOKEVIRTUAL, box, k.getName() + "Value", "()" + descriptor(k), false);
+      _mv.visitVarInsn(opcode(k, ISTORE), _slots.get(v));
+    }
+    _mv.visitJumpInsn(GOTO, body);
+    _mv.visitMaxs(0, 0);
+    _mv.visitEnd();
+    cw.visitEnd();
+
+    byte[] bytes;
+    try { bytes = cw.toByteArray(); }
+    catch (RuntimeException e) { throw new UnsupportedException(e.toString()); } // such as a method that's too large
+
+    Runnable1<Object[]> code;
+    try {
+      @SuppressWarnings("unchecked") Runnable1<Object[]> c =
+        (Runnable1<Object[]>) new CodeLoader().define(name, bytes).getDeclaredConstructor().newInstance();
+      code = c;
+    }
+    catch (LinkageError e) { throw new UnsupportedException(e.toString()); }
+    catch (NoSuchMethodException e) { throw new UnsupportedException(e.toString()); }
+    catch (InstantiationException e) { throw new UnsupportedException(e.toString()); }
+    catch (IllegalAccessException e) { throw new UnsupportedException(e.toString()); }
+    catch (InvocationTargetException e) { throw new UnsupportedException(e.getCause().toString()); }
+
+    int n = _free.size();
+    LocalVariable[] vars = _free.toArray(new LocalVariable[n]);
+    Class<?>[] types = new Class<?>[n];
+    boolean[] assigned = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      types[i] = _kinds.get(vars[i]);
+      assigned[i] = _assigned.contains(vars[i]);
+    }
+    return new CompiledStatement(code, vars, types, assigned, name + ".run");
+  }
+
+  /** Box each assigned free variable back into the frame. */
+  private void emitWriteBack() {
+    for (int i = 0; i < _free.size(); i++) {
+      LocalVariable v = _free.get(i);
+      if (_assigned.contains(v)) {
+        Class<?> k = _kinds.get(v);
+        _mv.visitVarInsn(ALOAD, 1);
+        emitInt(i);
+        _mv.visitVarInsn(opcode(k, ILOAD), _slots.get(v));
+        _mv.visitMethodInsn(INVOKESTATIC, boxName(k), "valueOf", "(" + descriptor(k) + ")L" + boxName(k) + ";",
+                            false);
+        _mv.visitInsn(AASTORE);
+      }
+    }
+  }
+
+
+  /* * * * * * * * * *
+   * VARIABLES
+   * * * * * * * * * */
+
+  /** The JVM slot of {@code v}; a variable not declared in the loop is added to the free variables. */
+  private int slotFor(LocalVariable v) {
+    Integer result = _slots.get(v);
+    if (result == null) {
+      Class<?> k = primitiveClass(v.type());
+      if (k == null) { throw new UnsupportedException("variable " + v.declaredName()); }
+      result = newSlot(v, k);
+      _free.add(v);
+    }
+    return result;
+  }
+
+  private int newSlot(LocalVariable v, Class<?> k) {
+    int result = _nextSlot;
+    _nextSlot += (k == long.class || k == double.class) ? 2 : 1;
+    _slots.put(v, result);
+    _kinds.put(v, k);
+    return result;
+  }
+
+  /** The local variable that {@code exp} (the target of an assignment) refers to. */
+  private LocalVariable assignedVariable(Expression exp) {
+    if (hasTranslation(exp)) { return assignedVariable(getTranslation(exp)); }
+    else if (exp instanceof VariableAccess) {
+      LocalVariable v = getVariable(exp);
+      slotFor(v);
+      _assigned.add(v);
+      return v;
+    }
+    else { throw new UnsupportedException(exp); }
+  }
+
+  private static Class<?> primitiveClass(Type t) {
+    if (t instanceof BooleanType) { return boolean.class; }
+    else if (t instanceof CharType) { return char.class; }
+    else if (t instanceof ByteType) { return byte.class; }
+    else if (t instanceof ShortType) { return short.class; }
+    else if (t instanceof IntType) { return int.class; }
+    else if (t instanceof LongType) { return long.class; }
+    else if (t instanceof FloatType) { return float.class; }
+    else if (t instanceof DoubleType) { return double.class; }
+    else { return null; }
+  }
+
+
+  /* * * * * * * * * *
+   * INSTRUCTIONS
+   * * * * * * * * * */
+
+  /** The variant of an int instruction (ILOAD, IADD, etc.) for values of the given primitive type. */
+  private static int opcode(Class<?> k, int intOpcode) {
+    return org.objectweb.asm.Type.getType(k).getOpcode(intOpcode);
+  }
+
+  private static String descriptor(Class<?> k) { return org.objectweb.asm.Type.getDescriptor(k); }
+
+  private static String boxName(Class<?> k) {
+    if (k == boolean.class) { return "java/lang/Boolean"; }
+    else if (k == char.class) { return "java/lang/Character"; }
+    else if (k == byte.class) { return "java/lang/Byte"; }
+    else if (k == short.class) { return "java/lang/Short"; }
+    else if (k == int.class) { return "java/lang/Integer"; }
+    else if (k == long.class) { return "java/lang/Long"; }
+    else if (k == float.class) { return "java/lang/Float"; }
+    else { return "java/lang/Double"; }
+  }
+
+  /** Whether values of type {@code k} are ints on the JVM stack. */
+  private static boolean isIntLike(Class<?> k) {
+    return k == boolean.class || k == char.class || k == byte.class || k == short.class || k == int.class;
+  }
+
+  private static boolean isWide(Class<?> k) { return k == long.class || k == double.class; }
+
+  private void emitInt(int val) {
+    if (val >= -1 && val <= 5) { _mv.visitInsn(ICONST_0 + val); }
+    else if (val >= Byte.MIN_VALUE && val <= Byte.MAX_VALUE) { _mv.visitIntInsn(BIPUSH, val); }
+    else if (val >= Short.MIN_VALUE && val <= Short.MAX_VALUE) { _mv.visitIntInsn(SIPUSH, val); }
+    else { _mv.visitLdcInsn(val); }
+  }
+
+  /** Push a constant, returning its primitive type. */
+  private Class<?> emitConstant(Object val, Node n) {
+    if (val instanceof Boolean) { emitInt(((Boolean) val) ? 1 : 0); return boolean.class; }
+    else if (val instanceof Character) { emitInt((Character) val); return char.class; }
+    else if (val instanceof Byte) { emitInt((Byte) val); return byte.class; }
+    else if (val instanceof Short) { emitInt((Short) val); return short.class; }
+    else if (val instanceof Integer) { emitInt((Integer) val); return int.class; }
+    else if (val instanceof Long) { _mv.visitLdcInsn(val); return long.class; }
+    else if (val instanceof Float) { _mv.visitLdcInsn(val); return float.class; }
+    else if (val instanceof Double) { _mv.visitLdcInsn(val); return double.class; }
+    else { throw new UnsupportedException(n); }
+  }
+
+  private void emitOne(Class<?> k) {
+    if (isIntLike(k)) { _mv.visitInsn(ICONST_1); }
+    else if (k == long.class) { _mv.visitInsn(LCONST_1); }
+    else if (k == float.class) { _mv.visitInsn(FCONST_1); }
+    else { _mv.visitInsn(DCONST_1); }
+  }
+
+  private void emitDup(Class<?> k) { _mv.visitInsn(isWide(k) ? DUP2 : DUP); }
+
+  private void emitPop(Class<?> k) { _mv.visitInsn(isWide(k) ? POP2 : POP); }
+
+  /** Convert the value on the stack from one primitive type to another, as a Java cast would. */
+  private void emitConversion(Class<?> from, Class<?> to, Node n) {
+    if (from == to) { return; }
+    if (from == boolean.class || to == boolean.class) { throw new UnsupportedException(n); }
+    char fromSort = isIntLike(from) ? 'I' : descriptor(from).charAt(0);
+    char toSort = isIntLike(to) ? 'I' : descriptor(to).charAt(0);
+    switch (fromSort) {
+      case 'I':
+        if (toSort == 'J') { _mv.visitInsn(I2L); } else if (toSort == 'F') { _mv.visitInsn(I2F); }
+        else if (toSort == 'D') { _mv.visitInsn(I2D); }
+        break;
+      case 'J':
+        if (toSort == 'I') { _mv.visitInsn(L2I); } else if (toSort == 'F') { _mv.visitInsn(L2F); }
+        else if (toSort == 'D') { _mv.visitInsn(L2D); }
+        break;
+      case 'F':
+        if (toSort == 'I') { _mv.visitInsn(F2I); } else if (toSort == 'J') { _mv.visitInsn(F2L); }
+        else if (toSort == 'D') { _mv.visitInsn(F2D); }
+        break;
+      case 'D':
+        if (toSort == 'I') { _mv.visitInsn(D2I); } else if (toSort == 'J') { _mv.visitInsn(D2L); }
+        else if (toSort == 'F') { _mv.visitInsn(D2F); }
+        break;
+    }
+    if (to == byte.class) { _mv.visitInsn(I2B); }
+    else if (to == short.class) { _mv.visitInsn(I2S); }
+    else if (to == char.class) { _mv.visitInsn(I2C); }
+  }
+
+
+  /* * * * * * * * * *
+   * EXPRESSIONS
+   * * * * * * * * * */
+
+  /**
+   * Emit code to push the value of {@code n}, mirroring {@link ExpressionEvaluator#value}.
+   * @return  The primitive type of the pushed value
+   */
+  private Class<?> value(Node n) {
+    Class<?> result;
+    if (hasValue(n)) { result = emitConstant(getValue(n), n); }
+    else if (hasTranslation(n)) { result = value(getTranslation(n)); }
+    else { result = n.acceptVisitor(new ExpressionVisitor()); }
+    if (hasConvertedType(n)) {
+      Class<?> target = getConvertedType(n).value();
+      emitConversion(result, target, n);
+      result = target;
+    }
+    if (hasCheckedType(n)) { throw new UnsupportedException(n); }
+    return result;
+  }
+
+  /** Emit code to push a boolean value. */
+  private void condition(Node n) {
+    if (value(n) != boolean.class) { throw new UnsupportedException(n); }
+  }
+
+  /** Emit code to push both operands, which must be promoted to the same numeric (or, if allowed, boolean) type. */
+  private Class<?> operands(Node n, Node left, Node right, boolean allowFloat, boolean allowBoolean) {
+    Class<?> k = value(left);
+    if (value(right) != k) { throw new UnsupportedException(n); }
+    if (k == int.class || k == long.class || (allowFloat && (k == float.class || k == double.class)) ||
+        (allowBoolean && k == boolean.class)) {
+      return k;
+    }
+    else { throw new UnsupportedException(n); }
+  }
+
+  /** Emit code applying a numeric or bitwise operation to the values on the stack. */
+  private void emitOperation(AssignExpression node, Class<?> leftK, Class<?> rightK) {
+    int op = arithmeticOpcode(node);
+    if (op == ISHL || op == ISHR || op == IUSHR) {
+      if (rightK == long.class) { _mv.visitInsn(L2I); }
+      else if (rightK != int.class) { throw new UnsupportedException(node); }
+      if (leftK != int.class && leftK != long.class) { throw new UnsupportedException(node); }
+    }
+    else {
+      boolean bitwise = (op == IAND || op == IOR || op == IXOR);
+      boolean ok = (leftK == int.class || leftK == long.class) ||
+                   (bitwise ? leftK == boolean.class : (leftK == float.class || leftK == double.class));
+      if (leftK != rightK || !ok) { throw new UnsupportedException(node); }
+    }
+    _mv.visitInsn(opcode(leftK, op));
+  }
+
+  /** The int opcode for the operation of an operator-assignment expression. */
+  private static int arithmeticOpcode(AssignExpression node) {
+    if (node instanceof AddAssignExpression) {
+      if (getOperation(node) != ExpressionEvaluator.ADD) { throw new UnsupportedException(node); }
+      return IADD;
+    }
+    else if (node instanceof SubtractAssignExpression) { return ISUB; }
+    else if (node instanceof MultiplyAssignExpression) { return IMUL; }
+    else if (node instanceof DivideAssignExpression) { return IDIV; }
+    else if (node instanceof RemainderAssignExpression) { return IREM; }
+    else if (node instanceof BitAndAssignExpression) { return IAND; }
+    else if (node instanceof BitOrAssignExpression) { return IOR; }
+    else if (node instanceof ExclusiveOrAssignExpression) { return IXOR; }
+    else if (node instanceof ShiftLeftAssignExpression) { return ISHL; }
+    else if (node instanceof ShiftRightAssignExpression) { return ISHR; }
+    else if (node instanceof UnsignedShiftRightAssignExpression) { return IUSHR; }
+    else { throw new UnsupportedException(node); }
+  }
+
+  /** Store the value on the stack (of type {@code k}) in {@code v}, leaving the converted value on the stack. */
+  private Class<?> emitAssign(LocalVariable v, Class<?> k, Node n) {
+    Class<?> varK = _kinds.get(v);
+    emitConversion(k, varK, n);
+    emitDup(varK);
+    _mv.visitVarInsn(opcode(varK, ISTORE), _slots.get(v));
+    return varK;
+  }
+
+  private class ExpressionVisitor extends AbstractVisitor<Class<?>> {
+
+    @Override public Class<?> defaultCase(Node n) { throw new UnsupportedException(n); }
+
+    @Override public Class<?> visit(VariableAccess node) {
+      LocalVariable v = getVariable(node);
+      int slot = slotFor(v);
+      Class<?> k = _kinds.get(v);
+      _mv.visitVarInsn(opcode(k, ILOAD), slot);
+      return k;
+    }
+
+    @Override public Class<?> visit(CastExpression node) {
+      // conversions are handled by value()
+      return value(node.getExpression());
+    }
+
+    @Override public Class<?> visit(SimpleAssignExpression node) {
+      LocalVariable v = assignedVariable(node.getLeftExpression());
+      return emitAssign(v, value(node.getRightExpression()), node);
+    }
+
+    private Class<?> handleOpAssign(AssignExpression node) {
+      if (!hasLeftExpression(node)) { throw new UnsupportedException(node); }
+      LocalVariable v = assignedVariable(node.getLeftExpression());
+      Class<?> leftK = value(getLeftExpression(node)); // not to be confused with node.getLeft...
+      Class<?> rightK = value(node.getRightExpression());
+      emitOperation(node, leftK, rightK);
+      return emitAssign(v, leftK, node);
+    }
+
+    @Override public Class<?> visit(AddAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(SubtractAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(MultiplyAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(DivideAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(RemainderAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(BitAndAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(BitOrAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(ExclusiveOrAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(ShiftLeftAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(ShiftRightAssignExpression node) { return handleOpAssign(node); }
+    @Override public Class<?> visit(UnsignedShiftRightAssignExpression node) { return handleOpAssign(node); }
+
+    private Class<?> handleIncrement(UnaryExpression node, boolean increment, boolean prefix) {
+      if (!hasLeftExpression(node)) { throw new UnsupportedException(node); }
+      LocalVariable v = assignedVariable(node.getExpression());
+      Class<?> k = value(getLeftExpression(node)); // not to be confused with node.getLeft...
+      if (k == boolean.class) { throw new UnsupportedException(node); }
+      if (!prefix) { emitDup(k); }
+      emitOne(k);
+      _mv.visitInsn(opcode(k, increment ? IADD : ISUB));
+      Class<?> varK = _kinds.get(v);
+      emitConversion(isIntLike(k) ? int.class : k, varK, node);
+      if (prefix) { emitDup(varK); }
+      _mv.visitVarInsn(opcode(varK, ISTORE), _slots.get(v));
+      return prefix ? varK : k;
+    }
+
+    @Override public Class<?> visit(PostIncrement node) { return handleIncrement(node, true, false); }
+    @Override public Class<?> visit(PreIncrement node) { return handleIncrement(node, true, true); }
+    @Override public Class<?> visit(PostDecrement node) { return handleIncrement(node, false, false); }
+    @Override public Class<?> visit(PreDecrement node) { return handleIncrement(node, false, true); }
+
+    @Override public Class<?> visit(NotExpression node) {
+      condition(node.getExpression());
+      _mv.visitInsn(ICONST_1);
+      _mv.visitInsn(IXOR);
+      return boolean.class;
+    }
+
+    @Override public Class<?> visit(ComplementExpression node) {
+      Class<?> k = value(node.getExpression());
+      if (k == int.class) { _mv.visitInsn(ICONST_M1); _mv.visitInsn(IXOR); }
+      else if (k == long.class) { _mv.visitLdcInsn(-1L); _mv.visitInsn(LXOR); }
+      else { throw new UnsupportedException(node); }
+      return k;
+    }
+
+    @Override public Class<?> visit(PlusExpression node) {
+      Class<?> k = value(node.getExpression());
+      if (isIntLike(k) && k != int.class) { throw new UnsupportedException(node); }
+      return k;
+    }
+
+    @Override public Class<?> visit(MinusExpression node) {
+      Class<?> k = value(node.getExpression());
+      if (k == boolean.class || (isIntLike(k) && k != int.class)) { throw new UnsupportedException(node); }
+      _mv.visitInsn(opcode(k, INEG));
+      return k;
+    }
+
+    private Class<?> handleArithmetic(BinaryExpression node, int intOpcode) {
+      Class<?> k = operands(node, node.getLeftExpression(), node.getRightExpression(), true, false);
+      _mv.visitInsn(opcode(k, intOpcode));
+      return k;
+    }
+
+    @Override public Class<?> visit(AddExpression node) {
+      if (getOperation(node) != ExpressionEvaluator.ADD) { throw new UnsupportedException(node); }
+      return handleArithmetic(node, IADD);
+    }
+    @Override public Class<?> visit(SubtractExpression node) { return handleArithmetic(node, ISUB); }
+    @Override public Class<?> visit(MultiplyExpression node) { return handleArithmetic(node, IMUL); }
+    @Override public Class<?> visit(DivideExpression node) { return handleArithmetic(node, IDIV); }
+    @Override public Class<?> visit(RemainderExpression node) { return handleArithmetic(node, IREM); }
+
+    private Class<?> handleBitwise(BinaryExpression node, int intOpcode) {
+      Class<?> k = operands(node, node.getLeftExpression(), node.getRightExpression(), false, true);
+      _mv.visitInsn(opcode(k, intOpcode));
+      return k;
+    }
+
+    @Override public Class<?> visit(BitAndExpression node) { return handleBitwise(node, IAND); }
+    @Override public Class<?> visit(BitOrExpression node) { return handleBitwise(node, IOR); }
+    @Override public Class<?> visit(ExclusiveOrExpression node) { return handleBitwise(node, IXOR); }
+
+    private Class<?> handleShift(BinaryExpression node, int intOpcode) {
+      Class<?> k = value(node.getLeftExpression());
+      Class<?> countK = value(node.getRightExpression());
+      if (countK == long.class) { _mv.visitInsn(L2I); }
+      else if (countK != int.class) { throw new UnsupportedException(node); }
+      if (k != int.class && k != long.class) { throw new UnsupportedException(node); }
+      _mv.visitInsn(opcode(k, intOpcode));
+      return k;
+    }
+
+    @Override public Class<?> visit(ShiftLeftExpression node) { return handleShift(node, ISHL); }
+    @Override public Class<?> visit(ShiftRightExpression node) { return handleShift(node, ISHR); }
+    @Override public Class<?> visit(UnsignedShiftRightExpression node) { return handleShift(node, IUSHR); }
+
+    /**
+     * Compare the operands, pushing a boolean.  {@code ifOpcode} is the IFxx instruction that jumps when the
+     * comparison holds.  Floating-point comparisons treat NaN as javac does: every comparison but != is false.
+     */
+    private Class<?> handleComparison(BinaryExpression node, int ifOpcode, boolean allowBoolean) {
+      Class<?> k = operands(node, node.getLeftExpression(), node.getRightExpression(), true, allowBoolean);
+      Label isTrue = new Label();
+      Label end = new Label();
+      if (isIntLike(k)) { _mv.visitJumpInsn(ifOpcode + (IF_ICMPEQ - IFEQ), isTrue); }
+      else {
+        boolean nanIsGreater = (ifOpcode == IFLT || ifOpcode == IFLE);
+        if (k == long.class) { _mv.visitInsn(LCMP); }
+        else if (k == float.class) { _mv.visitInsn(nanIsGreater ? FCMPG : FCMPL); }
+        else { _mv.visitInsn(nanIsGreater ? DCMPG : DCMPL); }
+        _mv.visitJumpInsn(ifOpcode, isTrue);
+      }
+      _mv.visitInsn(ICONST_0);
+      _mv.visitJumpInsn(GOTO, end);
+      _mv.visitLabel(isTrue);
+      _mv.visitInsn(ICONST_1);
+      _mv.visitLabel(end);
+      return boolean.class;
+    }
+
+    @Override public Class<?> visit(LessExpression node) { return handleComparison(node, IFLT, false); }
+    @Override public Class<?> visit(LessOrEqualExpression node) { return handleComparison(node, IFLE, false); }
+    @Override public Class<?> visit(GreaterExpression node) { return handleComparison(node, IFGT, false); }
+    @Override public Class<?> visit(GreaterOrEqualExpression node) { return handleComparison(node, IFGE, false); }
+
+    @Override public Class<?> visit(EqualExpression node) {
+      if (getOperation(node) != ExpressionEvaluator.PRIMITIVE_EQUAL) { throw new UnsupportedException(node); }
+      return handleComparison(node, IFEQ, true);
+    }
+
+    @Override public Class<?> visit(NotEqualExpression node) {
+      if (getOperation(node) != ExpressionEvaluator.PRIMITIVE_NOT_EQUAL) { throw new UnsupportedException(node); }
+      return handleComparison(node, IFNE, true);
+    }
+
+    /** Short-circuit: the left value is the result if it equals {@code shortCircuitValue}. */
+    private Class<?> handleLogical(BinaryExpression node, boolean shortCircuitValue) {
+      Label end = new Label();
+      condition(node.getLeftExpression());
+      _mv.visitInsn(DUP);
+      _mv.visitJumpInsn(shortCircuitValue ? IFNE : IFEQ, end);
+      _mv.visitInsn(POP);
+      condition(node.getRightExpression());
+      _mv.visitLabel(end);
+      return boolean.class;
+    }
+
+    @Override public Class<?> visit(AndExpression node) { return handleLogical(node, false); }
+    @Override public Class<?> visit(OrExpression node) { return handleLogical(node, true); }
+
+    @Override public Class<?> visit(ConditionalExpression node) {
+      Label ifFalse = new Label();
+      Label end = new Label();
+      condition(node.getConditionExpression());
+      _mv.visitJumpInsn(IFEQ, ifFalse);
+      Class<?> k = value(node.getIfTrueExpression());
+      _mv.visitJumpInsn(GOTO, end);
+      _mv.visitLabel(ifFalse);
+      if (value(node.getIfFalseExpression()) != k) { throw new UnsupportedException(node); }
+      _mv.visitLabel(end);
+      return k;
+    }
+
+  }
+
+
+  /* * * * * * * * * *
+   * STATEMENTS
+   * * * * * * * * * */
+
+  private void statements(Iterable<? extends Node> nodes, StatementVisitor v) {
+    for (Node n : nodes) { n.acceptVisitor(v); }
+  }
+
+  private class StatementVisitor extends AbstractVisitor<Void> {
+
+    @Override public Void defaultCase(Node n) { throw new UnsupportedException(n); }
+
+    @Override public Void visit(EmptyStatement node) { return null; }
+
+    @Override public Void visit(BlockStatement node) { statements(node.getStatements(), this); return null; }
+
+    @Override public Void visit(ExpressionStatement node) {
+      if (hasStatementTranslation(node)) { return getStatementTranslation(node).acceptVisitor(this); }
+      emitPop(value(node.getExpression()));
+      return null;
+    }
+
+    @Override public Void visit(VariableDeclaration node) {
+      Class<?> k = getErasedType(node).value();
+      if (!k.isPrimitive()) { throw new UnsupportedException(node); }
+      LocalVariable v = getVariable(node);
+      int slot = newSlot(v, k);
+      if (node.getInitializer() == null) { emitConstant(SymbolUtil.initialValue(k), node); }
+      else { emitConversion(value(node.getInitializer()), k, node); }
+      _mv.visitVarInsn(opcode(k, ISTORE), slot);
+      return null;
+    }
+
+    @Override public Void visit(IfThenStatement node) {
+      Label end = new Label();
+      condition(node.getCondition());
+      _mv.visitJumpInsn(IFEQ, end);
+      node.getThenStatement().acceptVisitor(this);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(IfThenElseStatement node) {
+      Label elseL = new Label();
+      Label end = new Label();
+      condition(node.getCondition());
+      _mv.visitJumpInsn(IFEQ, elseL);
+      node.getThenStatement().acceptVisitor(this);
+      _mv.visitJumpInsn(GOTO, end);
+      _mv.visitLabel(elseL);
+      node.getElseStatement().acceptVisitor(this);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(WhileStatement node) {
+      Label top = new Label();
+      Label end = new Label();
+      _mv.visitLabel(top);
+      condition(node.getCondition());
+      _mv.visitJumpInsn(IFEQ, end);
+      loopBody(node, node.getBody(), end, top);
+      _mv.visitJumpInsn(GOTO, top);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(DoStatement node) {
+      Label top = new Label();
+      Label cont = new Label();
+      Label end = new Label();
+      _mv.visitLabel(top);
+      loopBody(node, node.getBody(), end, cont);
+      _mv.visitLabel(cont);
+      condition(node.getCondition());
+      _mv.visitJumpInsn(IFNE, top);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(ForStatement node) {
+      Label top = new Label();
+      Label cont = new Label();
+      Label end = new Label();
+      if (node.getInitialization() != null) { statements(node.getInitialization(), this); }
+      _mv.visitLabel(top);
+      if (node.getCondition() != null) {
+        condition(node.getCondition());
+        _mv.visitJumpInsn(IFEQ, end);
+      }
+      loopBody(node, node.getBody(), end, cont);
+      _mv.visitLabel(cont);
+      if (node.getUpdate() != null) { statements(node.getUpdate(), this); }
+      _mv.visitJumpInsn(GOTO, top);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    private void loopBody(Node loop, Node body, Label breakLabel, Label continueLabel) {
+      _targets.addFirst(new Target(loop, breakLabel, continueLabel));
+      body.acceptVisitor(this);
+      _targets.removeFirst();
+    }
+
+    @Override public Void visit(LabeledStatement node) {
+      Label end = new Label();
+      _targets.addFirst(new Target(node, end, null));
+      node.getStatement().acceptVisitor(this);
+      _targets.removeFirst();
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(BreakStatement node) {
+      String label = node.getLabel();
+      for (Target t : _targets) {
+        boolean matches;
+        if (label == null) { matches = (t.continueLabel != null); }
+        else if (t.node instanceof LabeledStatement) { matches = label.equals(((LabeledStatement) t.node).getLabel()); }
+        else { matches = ((ContinueTarget) t.node).hasLabel(label); }
+        if (matches) { _mv.visitJumpInsn(GOTO, t.breakLabel); return null; }
+      }
+      throw new UnsupportedException(node); // the target is outside the compiled loop
+    }
+
+    @Override public Void visit(ContinueStatement node) {
+      String label = node.getLabel();
+      for (Target t : _targets) {
+        if (t.continueLabel != null && (label == null || ((ContinueTarget) t.node).hasLabel(label))) {
+          _mv.visitJumpInsn(GOTO, t.continueLabel);
+          return null;
+        }
+      }
+      throw new UnsupportedException(node);
+    }
+
+  }
+
+}
@@ -0,0 +1,84 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.io.StringReader;
+import junit.framework.TestCase;
+import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.tuple.Option;
+
+import koala.dynamicjava.tree.Node;
+import koala.dynamicjava.parser.wrapper.JavaCCParser;
+
+import edu.rice.cs.dynamicjava.Options;
+
+public class StatementCompilerTest extends TestCase {
+
+  private static final Options INTERPRETED = new Options() {
+    @Override public boolean compileLoops() { return false; }
+  };
+
+  /** Type check {@code decls} followed by {@code loop}, and try to compile the loop. */
+  private boolean compiles(String decls, String loop) throws Exception {
+    Iterable<Node> tree = new JavaCCParser(new StringReader(decls + loop), Options.DEFAULT).parseStream();
+    new StatementChecker(new ImportContext(getClass().getClassLoader(), Options.DEFAULT), Options.DEFAULT).checkList(tree);
+    Option<StatementCompiler.CompiledStatement> result = StatementCompiler.compile(IterUtil.last(tree));
+    return result.isSome();
+  }
+
+  /** Run {@code code}, then evaluate {@code result}, both with and without compiled loops; they must agree. */
+  private Object run(String code, String result) throws InterpreterException {
+    Interpreter compiled = new Interpreter(Options.DEFAULT);
+    Interpreter interpreted = new Interpreter(INTERPRETED);
+    compiled.interpret(code);
+    interpreted.interpret(code);
+    Object expected = interpreted.interpret(result).unwrap();
+    Object actual = compiled.interpret(result).unwrap();
+    assertEquals(expected, actual);
+    return actual;
+  }
+
+  public void testEligibility() throws Exception {
+    assertTrue(compiles("int sum = 0; int n = 10;", "for (int i = 0; i < n; i++) { sum += i; }"));
+    assertTrue(compiles("double x = 1.0;", "while (x < 100) x *= 1.5;"));
+    assertTrue(compiles("long a = 3;", "outer: do { for (int j = 0; j < 3; j++) { if (j == a) continue outer; a--; } } while (a > 0);"));
+    assertFalse(compiles("int sum = 0;", "for (int i = 0; i < 3; i++) { System.out.println(i); }"));
+    assertFalse(compiles("String s = \"\";", "for (int i = 0; i < 3; i++) { s += i; }"));
+    assertFalse(compiles("Integer boxed = 0;", "while (boxed < 3) { boxed++; }"));
+    assertFalse(compiles("int[] a = new int[3];", "for (int i = 0; i < 3; i++) { a[i] = i; }"));
+  }
+
+  public void testArithmetic() throws InterpreterException {
+    assertEquals(4950, run("int sum = 0; for (int i = 0; i < 100; i++) { sum += i; }", "sum"));
+    assertEquals(3628800L, run("long f = 1; int k = 10; while (k > 1) f *= k--;", "f"));
+    run("double d = 0; float g = 0; for (int i = 1; i <= 10; i++) { d += 1.0 / i; g -= i % 3; }", "d + \" \" + g");
+    run("int bits = 0; long mask = -1L; for (int s = 0; s < 70; s += 7) { bits ^= (int) (mask >>> s) << 1; mask <<= 1; }",
+        "bits + \" \" + mask");
+    run("boolean flip = false; int c = 0; while (c < 5 && !flip || c < 2) { flip = (c++ % 2 == 0) ? !flip : flip; }",
+        "flip + \" \" + c");
+    run("char ch = 'a'; short sh = 0; for (int i = 0; i < 30; i++) { ch++; sh += 1000; }", "(int) ch * 100000 + sh");
+  }
+
+  public void testNaNComparisons() throws InterpreterException {
+    run("double nan = 0.0 / 0.0; int count = 0; for (int i = 0; i < 1; i++) { " +
+        "if (nan < 1) count += 1; if (nan > 1) count += 2; if (nan == nan) count += 4; if (nan != nan) count += 8; }",
+        "count");
+  }
+
+  public void testControlFlow() throws InterpreterException {
+    assertEquals(12, run("int hits = 0; outer: for (int i = 0; i < 5; i++) { for (int j = 0; j < 5; j++) { " +
+                        "if (j > i) continue outer; if (i == 4) break outer; hits++; } }", "hits + 2"));
+    assertEquals(1, run("int once = 0; do { once++; break; } while (true);", "once"));
+  }
+
+  /** Division by zero is reported as in the evaluator, and earlier assignments are kept. */
+  public void testException() throws InterpreterException {
+    Interpreter i = new Interpreter(Options.DEFAULT);
+    i.interpret("int n = 0; int d = 3;");
+    try {
+      i.interpret("while (true) { n++; d--; n = n / d; }");
+      fail("Expected an exception");
+    }
+    catch (EvaluatorException e) { assertTrue(e.getCause() instanceof ArithmeticException); }
+    assertEquals(0, i.interpret("d").unwrap());
+  }
+
+}
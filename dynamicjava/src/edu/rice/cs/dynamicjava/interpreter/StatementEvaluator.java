@@ -23,8 +23,9 @@ import static koala.dynamicjava.interpreter.NodeProperties.*;
  * Evaluates the given statement, assumed to have been processed by the {@link StatementChecker}
  * without any errors.  Exceptions that occur during interpretation are wrapped in
  * {@link EvaluatorException}s; these, in turn, are wrapped in WrappedExceptions so that
- * they can be thrown within visitor methods.  Changes in control flow are signalled by throwing
- * {@link ControlFlowException}s.
+ * they can be thrown within visitor methods.  Changes in control flow ({@code break}, {@code continue},
+ * and {@code return}) are signalled by the {@link Result.Completion} of a statement's result; as in
+ * the JLS (14.1), a statement that completes abruptly is propagated outward until it reaches its target.
  */
 public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Result> {
   
@@ -35,19 +36,46 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
    * declaration, for example, may be that variable's value (depending on the Options used).
    */
   public static class Result {
+    
+    /** The way in which a statement completed (JLS 14.1). */
+    public static enum Completion { NORMAL, BREAK, CONTINUE, RETURN };
+    
     private Option<Object> _val;
     private RuntimeBindings _bindings;
+    private Completion _completion;
+    private String _label;
     
     public Result(Object val, RuntimeBindings b) {
       _val = Option.some(val);
       _bindings = b;
+      _completion = Completion.NORMAL;
+      _label = null;
     }
     public Result(RuntimeBindings b) {
       _val = Option.none();
       _bindings = b;
+      _completion = Completion.NORMAL;
+      _label = null;
     }
+    
+    /**
+     * An abrupt completion.  For {@code BREAK} and {@code CONTINUE}, {@code label} is the target label, 
+     * or {@code null}; for {@code RETURN}, {@code val} is the returned value, if any.
+     */
+    public Result(Completion c, String label, Option<Object> val, RuntimeBindings b) {
+      _val = val;
+      _bindings = b;
+      _completion = c;
+      _label = label;
+    }
+    
+    /** The value of the statement or, for a {@code RETURN} completion, the returned value. */
     public Option<Object> value() { return _val; }
     public RuntimeBindings bindings() { return _bindings; }
+    public Completion completion() { return _completion; }
+    public boolean isNormal() { return _completion == Completion.NORMAL; }
+    public boolean hasLabel() { return _label != null; }
+    public String label() { return _label; }
   }
   
 
@@ -62,8 +90,12 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
   
   public Result evaluateSequence(Iterable<? extends Node> nodes) {
     Result result = new Result(_bindings);
+    // only declarations extend the bindings, so an evaluator can usually be reused
+    StatementEvaluator eval = this;
     for (Node n : nodes) {
-      result = n.acceptVisitor(new StatementEvaluator(result.bindings(), _opt));
+      if (result.bindings() != eval._bindings) { eval = new StatementEvaluator(result.bindings(), _opt); }
+      result = n.acceptVisitor(eval);
+      if (!result.isNormal()) { break; }
     }
     return result;
   }
@@ -111,18 +143,23 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
     }
   }
 
+  /**
+   * Run {@code loop} as compiled bytecode, if that is enabled and the loop is eligible.
+   * @return  {@code true} if the loop was run
+   */
+  private boolean runCompiled(Node loop) {
+    if (!_opt.compileLoops()) { return false; }
+    Option<StatementCompiler.CompiledStatement> compiled = StatementCompiler.compile(loop);
+    if (compiled.isSome()) { compiled.unwrap().run(_bindings); }
+    return compiled.isSome();
+  }
+
   @Override public Result visit(WhileStatement node) {
+    if (runCompiled(node)) { return new Result(_bindings); }
     ExpressionEvaluator eval = new ExpressionEvaluator(_bindings, _opt);
-    try {
-      while ((Boolean) eval.value(node.getCondition())) {
-        try { node.getBody().acceptVisitor(this); }
-        catch (ContinueException e) {
-          if (e.hasLabel() && !node.hasLabel(e.label())) { throw e; }
-        }
-      }
-    }
-    catch (BreakException e) {
-      if (e.hasLabel() && !node.hasLabel(e.label())) { throw e; }
+    while ((Boolean) eval.value(node.getCondition())) {
+      Result r = node.getBody().acceptVisitor(this);
+      if (!continuesLoop(r, node)) { return exitLoop(r, node); }
     }
     return new Result(_bindings);
   }
@@ -160,31 +197,23 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
     }
     
     StatementEvaluator seval = new StatementEvaluator(newB, _opt);
-    try {
-      while (true) {
-        Object elt;
-        try { // must catch any exceptions thrown by execution of the iterator's methods
-          if (!iter.hasNext()) { break; }
-          elt = iter.next();
-        }
-        catch (Throwable t) { throw new WrappedException(new EvaluatorException(t)); }
-        
-        try {
-          newB.set(param, elt);
-          node.getBody().acceptVisitor(seval);
-        }
-        catch (ContinueException e) {
-          if (e.hasLabel() && !node.hasLabel(e.label())) { throw e; }
-        }
+    while (true) {
+      Object elt;
+      try { // must catch any exceptions thrown by execution of the iterator's methods
+        if (!iter.hasNext()) { break; }
+        elt = iter.next();
       }
-    }
-    catch (BreakException e) {
-      if (e.hasLabel() && !node.hasLabel(e.label())) { throw e; }
+      catch (Throwable t) { throw new WrappedException(new EvaluatorException(t)); }
+      
+      newB.set(param, elt);
+      Result r = node.getBody().acceptVisitor(seval);
+      if (!continuesLoop(r, node)) { return exitLoop(r, node); }
     }
     return new Result(_bindings);
   }
   
   @Override public Result visit(ForStatement node) {
+    if (runCompiled(node)) { return new Result(_bindings); }
     RuntimeBindings newB = _bindings;
     if (node.getInitialization() != null) {
       newB = evaluateSequence(node.getInitialization()).bindings();
@@ -193,35 +222,40 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
     Iterable<Node> update = node.getUpdate();
     ExpressionEvaluator eval = new ExpressionEvaluator(newB, _opt);
     StatementEvaluator seval = new StatementEvaluator(newB, _opt);
-    try {
-      while (cond == null || (Boolean) eval.value(cond)) {
-        try { node.getBody().acceptVisitor(seval); }
-        catch (ContinueException e) {
-          if (e.hasLabel() && !node.hasLabel(e.label())) { throw e; }
-        }
-        if (update != null) { seval.evaluateSequence(update); }
-      }
-    }
-    catch (BreakException e) {
-      if (e.hasLabel() && !node.hasLabel(e.label())) { throw e; }
+    while (cond == null || (Boolean) eval.value(cond)) {
+      Result r = node.getBody().acceptVisitor(seval);
+      if (!continuesLoop(r, node)) { return exitLoop(r, node); }
+      if (update != null) { seval.evaluateSequence(update); }
     }
     return new Result(_bindings);
   }
 
   @Override public Result visit(DoStatement node) {
+    if (runCompiled(node)) { return new Result(_bindings); }
     ExpressionEvaluator eval = new ExpressionEvaluator(_bindings, _opt);
-    try {
-      do {
-        try { node.getBody().acceptVisitor(this); } 
-        catch (ContinueException e) {
-          if (e.hasLabel() && !node.hasLabel(e.label())) { throw e; }
-        }
-      } while ((Boolean) eval.value(node.getCondition()));
-    } catch (BreakException e) {
-      if (e.hasLabel() && !node.hasLabel(e.label())) { throw e; }
-    }
+    do {
+      Result r = node.getBody().acceptVisitor(this);
+      if (!continuesLoop(r, node)) { return exitLoop(r, node); }
+    } while ((Boolean) eval.value(node.getCondition()));
     return new Result(_bindings);
   }
+  
+  /** Whether {@code loop} should go on to its next iteration after its body completes with {@code r}. */
+  private static boolean continuesLoop(Result r, ContinueTarget loop) {
+    switch (r.completion()) {
+      case NORMAL: return true;
+      case CONTINUE: return !r.hasLabel() || loop.hasLabel(r.label());
+      default: return false;
+    }
+  }
+  
+  /** The result of {@code loop}, given that its body completed with {@code r} and did not continue. */
+  private Result exitLoop(Result r, ContinueTarget loop) {
+    if (r.completion() == Result.Completion.BREAK && (!r.hasLabel() || loop.hasLabel(r.label()))) {
+      return new Result(_bindings);
+    }
+    else { return r; }
+  }
 
   @Override public Result visit(SwitchStatement node) {
     ExpressionEvaluator eval = new ExpressionEvaluator(_bindings, _opt);
@@ -247,40 +281,41 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
     
     Iterable<Node> toEvaluate = IterUtil.empty();
     while (body.hasNext()) { toEvaluate = IterUtil.compose(toEvaluate, body.next().getStatements()); }
-    try { evaluateSequence(toEvaluate); }
-    catch (BreakException e) {
-      if (e.hasLabel()) { throw e; }
+    Result r = evaluateSequence(toEvaluate);
+    if (r.isNormal() || (r.completion() == Result.Completion.BREAK && !r.hasLabel())) {
+      return new Result(_bindings);
     }
-    return new Result(_bindings);
+    else { return r; }
   }
   
   @Override public Result visit(LabeledStatement node) {
-    try { node.getStatement().acceptVisitor(this); }
-    catch (BreakException e) {
-      if (!e.hasLabel() || !e.label().equals(node.getLabel())) { throw e; }
+    Result r = node.getStatement().acceptVisitor(this);
+    if (r.isNormal() || (r.completion() == Result.Completion.BREAK && r.hasLabel() &&
+                         r.label().equals(node.getLabel()))) {
+      return new Result(_bindings);
     }
-    return new Result(_bindings);
+    else { return r; }
   }
 
   @Override public Result visit(SynchronizedStatement node) {
+    Result r;
     synchronized (new ExpressionEvaluator(_bindings, _opt).value(node.getLock())) {
-      node.getBody().acceptVisitor(this);
+      r = node.getBody().acceptVisitor(this);
     }
-    return new Result(_bindings);
+    return r.isNormal() ? new Result(_bindings) : r;
   }
 
   @Override public Result visit(BreakStatement node) {
-    if (node.getLabel() == null) { throw new BreakException(); }
-    else { throw new BreakException(node.getLabel()); }
+    return new Result(Result.Completion.BREAK, node.getLabel(), Option.none(), _bindings);
   }
 
   @Override public Result visit(ContinueStatement node) {
-    if (node.getLabel() == null) { throw new ContinueException(); }
-    else { throw new ContinueException(node.getLabel()); }
+    return new Result(Result.Completion.CONTINUE, node.getLabel(), Option.none(), _bindings);
   }
 
   @Override public Result visit(TryStatement node) {
-    try { node.getTryBlock().acceptVisitor(this); }
+    Result r = null;
+    try { r = node.getTryBlock().acceptVisitor(this); }
     catch (WrappedException e) {
       if (e.getCause() instanceof EvaluatorException) {
         Throwable t = e.getCause().getCause();
@@ -289,7 +324,7 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
           if (getErasedType(cs).value().isInstance(t)) {
             handled = true;
             RuntimeBindings newB = new RuntimeBindings(_bindings, getVariable(cs.getException()), t);
-            cs.getBlock().acceptVisitor(new StatementEvaluator(newB, _opt));
+            r = cs.getBlock().acceptVisitor(new StatementEvaluator(newB, _opt));
             break;
           }
         }
@@ -298,9 +333,13 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
       else { throw e; }
     }
     finally {
-      if (node.getFinallyBlock() != null) { node.getFinallyBlock().acceptVisitor(this); }
+      if (node.getFinallyBlock() != null) {
+        Result finallyResult = node.getFinallyBlock().acceptVisitor(this);
+        // an abrupt finally block replaces the try statement's completion, including a pending exception
+        if (!finallyResult.isNormal()) { return finallyResult; }
+      }
     }
-    return new Result(_bindings);
+    return r.isNormal() ? new Result(_bindings) : r;
   }
   
   @Override public Result visit(ThrowStatement node) {
@@ -318,28 +357,29 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
   }
 
   @Override public Result visit(ReturnStatement node) {
-    if (node.getExpression() == null) { throw new ReturnException(); }
-    else {
-      Object result = new ExpressionEvaluator(_bindings, _opt).value(node.getExpression());
-      throw new ReturnException(result);
-    }
+    Option<Object> result;
+    if (node.getExpression() == null) { result = Option.none(); }
+    else { result = Option.some(new ExpressionEvaluator(_bindings, _opt).value(node.getExpression())); }
+    return new Result(Result.Completion.RETURN, null, result, _bindings);
   }
 
   @Override public Result visit(IfThenStatement node) {
     if ((Boolean) new ExpressionEvaluator(_bindings, _opt).value(node.getCondition())) {
-      node.getThenStatement().acceptVisitor(this);
+      Result r = node.getThenStatement().acceptVisitor(this);
+      if (!r.isNormal()) { return r; }
     }
     return new Result(_bindings);
   }
 
   @Override public Result visit(IfThenElseStatement node) {
+    Result r;
     if ((Boolean) new ExpressionEvaluator(_bindings, _opt).value(node.getCondition())) {
-      node.getThenStatement().acceptVisitor(this);
+      r = node.getThenStatement().acceptVisitor(this);
     }
     else {
-      node.getElseStatement().acceptVisitor(this);
+      r = node.getElseStatement().acceptVisitor(this);
     }
-    return new Result(_bindings);
+    return r.isNormal() ? new Result(_bindings) : r;
   }
 
   @Override public Result visit(AssertStatement node) {
@@ -367,32 +407,4 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
   }
   
   
-  public static class ControlFlowException extends RuntimeException {}
-
-  public static class LabelControlException extends ControlFlowException {
-    private final String _label;
-    public LabelControlException() { _label = null; }
-    public LabelControlException(String label) { _label = label; }
-    public boolean hasLabel() { return _label != null; }
-    public String label() { return _label; }
-  }
-
-  public static class ContinueException extends LabelControlException {
-    public ContinueException() { super(); }
-    public ContinueException(String label) { super(label); }
-  }
-
-  public static class BreakException extends LabelControlException {
-    public BreakException() { super(); }
-    public BreakException(String label) { super(label); }
-  }
-  
-  public static class ReturnException extends ControlFlowException {
-    private final Option<Object> _value;
-    public ReturnException() { _value = Option.none(); }
-    public ReturnException(Object value) { _value = Option.some(value); }
-    public Option<Object> value() { return _value; }
-  }
-  
-  
 }
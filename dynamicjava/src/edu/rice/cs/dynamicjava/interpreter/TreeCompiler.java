@@ -1373,12 +1373,10 @@ public class TreeCompiler {
     private Object evaluateBlock(BlockStatement block, Class<?> returnType,
                                  RuntimeBindings bindings) throws Throwable {
       try {
-        block.acceptVisitor(new StatementEvaluator(bindings, _opt));
-        // if we didn't return, produce null or a zero primitive
-        return SymbolUtil.initialValue(returnType);
-      }
-      catch (StatementEvaluator.ReturnException e) {
-        return e.value().unwrap(null);
+        StatementEvaluator.Result r = block.acceptVisitor(new StatementEvaluator(bindings, _opt));
+        if (r.completion() == StatementEvaluator.Result.Completion.RETURN) { return r.value().unwrap(null); }
+        // if we didn't return, produce null or a zero primitive (the checker rejects a stray break or continue)
+        else { assert r.isNormal(); return SymbolUtil.initialValue(returnType); }
       }
       catch (WrappedException e) {
         if (e.getCause() instanceof EvaluatorException) {
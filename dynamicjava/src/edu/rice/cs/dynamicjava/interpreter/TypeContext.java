@@ -150,6 +150,18 @@ public interface TypeContext {
    */
   public Type getReturnType();
   
+  /**
+   * Whether a {@code break} with the given label (or, if {@code label} is {@code null}, an unlabeled
+   * {@code break}) has a target enclosing it in the current context.
+   */
+  public boolean hasBreakTarget(String label);
+  
+  /**
+   * Whether a {@code continue} with the given label (or, if {@code label} is {@code null}, an unlabeled
+   * {@code continue}) has a loop enclosing it in the current context.
+   */
+  public boolean hasContinueTarget(String label);
+  
   /**
    * The types that are allowed to be thrown in the current context.  If there is no
    * such declaration, the list will be empty.
@@ -0,0 +1,42 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import java.util.Iterator;
+import edu.rice.cs.plt.iter.AbstractIterable;
+import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.iter.SizedIterable;
+
+/**
+ * The evaluated arguments of an invocation, as an array.  Evaluators pass an instance where an
+ * {@code Iterable} of arguments is expected, so that reflection-based invocations (see {@link JavaClass})
+ * can use the array directly rather than copying the arguments out of an arbitrary {@code Iterable}.
+ * The array is owned by this object and must not be modified.
+ */
+public final class ArgumentArray extends AbstractIterable<Object> implements SizedIterable<Object> {
+  
+  public static final ArgumentArray EMPTY = new ArgumentArray(new Object[0]);
+  
+  private final Object[] _vals;
+  
+  public ArgumentArray(Object[] vals) { _vals = vals; }
+  
+  /** The arguments.  Callers must not modify the result. */
+  public Object[] asArray() { return _vals; }
+  
+  /**
+   * Get the arguments in {@code args} as an array, avoiding a copy if {@code args} is an ArgumentArray.
+   * Callers must not modify the result.
+   */
+  public static Object[] toArray(Iterable<Object> args) {
+    if (args instanceof ArgumentArray) { return ((ArgumentArray) args)._vals; }
+    else { return IterUtil.toArray(args, Object.class); }
+  }
+  
+  public Iterator<Object> iterator() { return IterUtil.asIterable(_vals).iterator(); }
+  public boolean isEmpty() { return _vals.length == 0; }
+  public int size() { return _vals.length; }
+  public int size(int bound) { return _vals.length <= bound ? _vals.length : bound; }
+  public boolean isInfinite() { return false; }
+  public boolean hasFixedSize() { return true; }
+  public boolean isStatic() { return true; }
+  
+}
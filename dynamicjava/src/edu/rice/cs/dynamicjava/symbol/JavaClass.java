@@ -159,7 +159,8 @@ public class JavaClass implements DJClass {
 
   protected class JavaField implements DJField {
     protected final Field _f;
-    public JavaField(Field f) { _f = f; }
+    private volatile boolean _unlocked; // setAccessible need only be attempted once
+    public JavaField(Field f) { _f = f; _unlocked = false; }
     public String declaredName() { return _f.getName(); }
     public DJClass declaringClass() { return JavaClass.this; }
     public Type type() { return classAsType(_f.getType()); }
@@ -187,8 +188,7 @@ public class JavaClass implements DJClass {
           if (!isStatic() && receiver == null) {
             throw new WrappedException(new EvaluatorException(new NullPointerException()));
           }
-          try { _f.setAccessible(true); }
-          catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+          unlock();
           try { return _f.get(receiver); }
           catch (IllegalAccessException e) {
             // should have been caught by static analysis
@@ -208,8 +208,7 @@ public class JavaClass implements DJClass {
           if (!isStatic() && receiver == null) {
             throw new WrappedException(new EvaluatorException(new NullPointerException()));
           }
-          try { _f.setAccessible(true); }
-          catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+          unlock();
           try { _f.set(receiver, o); }
           catch (IllegalAccessException e) {
             // should have been caught by static analysis
@@ -228,6 +227,14 @@ public class JavaClass implements DJClass {
       };
     }
       
+    private void unlock() {
+      if (!_unlocked) {
+        try { _f.setAccessible(true); }
+        catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+        _unlocked = true;
+      }
+    }
+    
     public String toString() { return "JavaField(" + declaredName() + ")"; }
 }
 
@@ -253,9 +260,11 @@ public class JavaClass implements DJClass {
     protected final Constructor<?> _k;
     protected final Type _outerType;
     private final Thunk<Iterable<LocalVariable>> _params;
+    private volatile boolean _unlocked; // setAccessible need only be attempted once
     
     public JavaConstructor(Constructor<?> k) {
       _k = k;
+      _unlocked = false;
       DJClass outer = SymbolUtil.dynamicOuterClass(JavaClass.this);
       _outerType = (outer == null) ? null : SymbolUtil.thisType(outer);
       _params = makeParamThunk(); /* allows overriding */
@@ -283,17 +292,19 @@ public class JavaClass implements DJClass {
     
     public Object evaluate(Object outer, Iterable<Object> args, RuntimeBindings bindings, Options options) 
       throws EvaluatorException {
+      Object[] argsArray = ArgumentArray.toArray(args);
       if (_outerType != null) {
         if (outer == null) {
           throw new WrappedException(new EvaluatorException(new NullPointerException()));
         }
-        args = IterUtil.compose(outer, args);
+        Object[] withOuter = new Object[argsArray.length + 1];
+        withOuter[0] = outer;
+        System.arraycopy(argsArray, 0, withOuter, 1, argsArray.length);
+        argsArray = withOuter;
       }
       
-      try { _k.setAccessible(true); }
-      catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+      unlock();
       
-      Object[] argsArray = IterUtil.toArray(args, Object.class);
       try {
         return _k.newInstance(argsArray);
       }
@@ -318,6 +329,14 @@ public class JavaClass implements DJClass {
       }
     }
     
+    private void unlock() {
+      if (!_unlocked) {
+        try { _k.setAccessible(true); }
+        catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+        _unlocked = true;
+      }
+    }
+    
     public String toString() { return "JavaConstructor(" + declaredName() + ")"; }
   }
   
@@ -331,7 +350,8 @@ public class JavaClass implements DJClass {
   protected class JavaMethod implements DJMethod {
     protected final Method _m;
     private final Thunk<Iterable<LocalVariable>> _params;
-    public JavaMethod(Method m) { _m = m; _params = makeParamThunk(); /* allows overriding */ }
+    private volatile boolean _unlocked; // setAccessible need only be attempted once
+    public JavaMethod(Method m) { _m = m; _unlocked = false; _params = makeParamThunk(); /* allows overriding */ }
     protected Thunk<Iterable<LocalVariable>> makeParamThunk() { return paramFactory(_m.getParameterTypes()); }
     public String declaredName() { return _m.getName(); }
     public DJClass declaringClass() { return JavaClass.this; }
@@ -354,10 +374,9 @@ public class JavaClass implements DJClass {
         throw new WrappedException(new EvaluatorException(new NullPointerException()));
       }
       
-      try { _m.setAccessible(true); }
-      catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+      unlock();
       
-      Object[] argsArray = IterUtil.toArray(args, Object.class);
+      Object[] argsArray = ArgumentArray.toArray(args);
       try {
         return _m.invoke(receiver, argsArray);
       }
@@ -378,6 +397,14 @@ public class JavaClass implements DJClass {
       }
     }
     
+    private void unlock() {
+      if (!_unlocked) {
+        try { _m.setAccessible(true); }
+        catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+        _unlocked = true;
+      }
+    }
+    
     public String toString() { return "JavaMethod(" + declaredName() + ")"; }
   }
   
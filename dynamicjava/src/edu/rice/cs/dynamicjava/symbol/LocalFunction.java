@@ -46,12 +46,11 @@ public class LocalFunction implements Function {
     throws EvaluatorException {
     RuntimeBindings bodyBindings = new RuntimeBindings(bindings, parameters(), args);
     try {
-      _ast.getBody().acceptVisitor(new StatementEvaluator(bodyBindings, options));
-      // if there was no return, return null or an appropriate zero primitive
-      return SymbolUtil.initialValue(NodeProperties.getErasedType(_ast).value());
-    }
-    catch (StatementEvaluator.ReturnException e) {
-      return e.value().unwrap(null);
+      StatementEvaluator.Result r = _ast.getBody().acceptVisitor(new StatementEvaluator(bodyBindings, options));
+      if (r.completion() == StatementEvaluator.Result.Completion.RETURN) { return r.value().unwrap(null); }
+      // if there was no return, return null or an appropriate zero primitive (the checker rejects a stray
+      // break or continue)
+      else { assert r.isNormal(); return SymbolUtil.initialValue(NodeProperties.getErasedType(_ast).value()); }
     }
     catch (WrappedException e) {
       if (e.getCause() instanceof EvaluatorException) { throw (EvaluatorException) e.getCause(); }
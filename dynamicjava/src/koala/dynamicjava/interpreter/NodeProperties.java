@@ -32,12 +32,15 @@ import koala.dynamicjava.interpreter.error.ExecutionError;
 import koala.dynamicjava.tree.Node;
 import koala.dynamicjava.tree.Expression;
 import edu.rice.cs.dynamicjava.interpreter.TypeContext;
+import edu.rice.cs.dynamicjava.interpreter.StatementCompiler;
+import edu.rice.cs.dynamicjava.interpreter.PrimitiveOperation;
 import edu.rice.cs.dynamicjava.symbol.*;
 import edu.rice.cs.dynamicjava.symbol.type.Type;
 import edu.rice.cs.dynamicjava.symbol.type.VariableType;
 import edu.rice.cs.plt.lambda.Thunk;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.lambda.Lambda2;
+import edu.rice.cs.plt.tuple.Option;
 
 /**
  * This class provides concrete methods to facilitate attaching and reading auxiliary properties
@@ -450,6 +453,46 @@ public class NodeProperties {
       return n.hasProperty(OPERATION);
     }
 
+    /**
+     * A PrimitiveOperation -- a version of a binary operator specialized to its (promoted) primitive 
+     * operand type, allowing evaluation without boxing intermediate results
+     */
+    public final static String PRIMITIVE_OPERATION = "primitiveOperation";
+
+    public static PrimitiveOperation getPrimitiveOperation(Node n) {
+      return (PrimitiveOperation) n.getProperty(PRIMITIVE_OPERATION);
+    }
+    
+    public static PrimitiveOperation setPrimitiveOperation(Node n, PrimitiveOperation op) {
+      n.setProperty(PRIMITIVE_OPERATION, op);
+      return op;
+    }
+    
+    public static boolean hasPrimitiveOperation(Node n) {
+      return n.hasProperty(PRIMITIVE_OPERATION);
+    }
+
+    /**
+     * An Option<StatementCompiler.CompiledStatement> -- the bytecode-compiled form of a loop, or none
+     * if the loop could not be compiled
+     */
+    public final static String COMPILED_STATEMENT = "compiledStatement";
+
+    @SuppressWarnings("unchecked")
+    public static Option<StatementCompiler.CompiledStatement> getCompiledStatement(Node n) {
+      return (Option<StatementCompiler.CompiledStatement>) n.getProperty(COMPILED_STATEMENT);
+    }
+    
+    public static Option<StatementCompiler.CompiledStatement>
+      setCompiledStatement(Node n, Option<StatementCompiler.CompiledStatement> c) {
+      n.setProperty(COMPILED_STATEMENT, c);
+      return c;
+    }
+    
+    public static boolean hasCompiledStatement(Node n) {
+      return n.hasProperty(COMPILED_STATEMENT);
+    }
+
     /**
      * This class contains only static method and constants,
      * so it is not useful to create instances of it.
@@ -0,0 +1,390 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import org.objectweb.asm.*;
+
+import edu.rice.cs.javalanglevels.util.Log;
+
+/** A persistent cache of the signatures (modifiers, supertypes, fields, and non-private methods) of the classes in an
+  * archive, used by LanguageLevelConverter to build SymbolDatas for library classes without reading and parsing their
+  * class files.  There is one cache file per archive in the cache directory, identified by the path, time stamp, and
+  * size of the archive.  A cache file is memory-mapped when first needed; the signatures are decoded only when they are
+  * requested.  Signatures of classes that are not yet in the cache are added when the cache is flushed, which
+  * ConversionSession does at the end of every conversion.
+  * <p>
+  * The cache directory is given by the system property {@value #CACHE_DIR_PROPERTY}; it defaults to a directory in 
+  * the temporary directory.  Setting the property to the empty string disables the cache.</p>
+  * @version $Id$
+  */
+public class ClassSignatureCache {
+  
+  public static final Log _log = new Log("ClassSignatureCache.txt", false);
+  
+  /** The system property naming the cache directory. */
+  public static final String CACHE_DIR_PROPERTY = "edu.rice.cs.javalanglevels.signature.cache";
+  
+  /** The first int of every cache file; "LLSG". */
+  private static final int MAGIC = 0x4C4C5347;
+  
+  /** The format version; must be changed whenever the file format changes. */
+  private static final int VERSION = 1;
+  
+  /** The caches opened so far, by archive; null values mark archives that cannot be cached. */
+  private static final HashMap<File, ClassSignatureCache> _caches = new HashMap<File, ClassSignatureCache>();
+  
+  private final File _archive;
+  private final File _file;
+  private final long _lastModified;
+  private final long _length;
+  
+  /** The contents of the cache file, or null if it has not been loaded or does not exist. */
+  private ByteBuffer _mapped = null;
+  private boolean _isLoaded = false;
+  
+  /** The offsets of the records in _mapped, by internal class name. */
+  private final HashMap<String, Integer> _offsets = new HashMap<String, Integer>();
+  
+  /** The signatures added since the cache file was written, by internal class name. */
+  private final LinkedHashMap<String, Signature> _added = new LinkedHashMap<String, Signature>();
+  
+  private ClassSignatureCache(File archive, File file) {
+    _archive = archive;
+    _file = file;
+    _lastModified = archive.lastModified();
+    _length = archive.length();
+  }
+  
+  /** @return the cache directory, or null if caching is disabled */
+  private static File _cacheDir() {
+    String dir = System.getProperty(CACHE_DIR_PROPERTY);
+    if (dir == null) {
+      dir = new File(System.getProperty("java.io.tmpdir"), "javalanglevels-" + System.getProperty("user.name")).getPath();
+    }
+    return (dir.length() == 0) ? null : new File(dir);
+  }
+  
+  /** @param resource  the URL of a class file
+    * @return the cache for the archive containing the resource, or null if the resource is not in an archive or 
+    *         caching is disabled
+    */
+  public static ClassSignatureCache forResource(URL resource) {
+    if (! resource.getProtocol().equals("jar")) return null;
+    String path = resource.getPath();
+    int bang = path.indexOf("!/");
+    if (bang < 0) return null;
+    try { return forArchive(new File(new URI(path.substring(0, bang)))); }
+    catch (URISyntaxException e) { return null; }
+    catch (IllegalArgumentException e) { return null; }  // not a file URI
+  }
+  
+  /** @param archive  a jar or zip file
+    * @return the cache for archive, or null if caching is disabled */
+  public static synchronized ClassSignatureCache forArchive(File archive) {
+    if (_caches.containsKey(archive)) {
+      ClassSignatureCache cache = _caches.get(archive);
+      // A cache for an archive that was modified since it was opened is replaced
+      if (cache == null || (cache._lastModified == archive.lastModified() && cache._length == archive.length())) {
+        return cache;
+      }
+    }
+    File dir = _cacheDir();
+    ClassSignatureCache cache = null;
+    if (dir != null) {
+      String name = archive.getName() + "-" + Integer.toHexString(archive.getAbsolutePath().hashCode()) + ".sig";
+      cache = new ClassSignatureCache(archive, new File(dir, name));
+    }
+    _caches.put(archive, cache);
+    return cache;
+  }
+  
+  /** Forgets the caches opened so far, so that they are read again from their cache files. */
+  static synchronized void forgetAll() { _caches.clear(); }
+  
+  /** Writes the signatures added to all caches to their cache files. */
+  public static void flushAll() {
+    ArrayList<ClassSignatureCache> caches;
+    synchronized(ClassSignatureCache.class) { caches = new ArrayList<ClassSignatureCache>(_caches.values()); }
+    for (ClassSignatureCache c: caches) if (c != null) c.flush();
+  }
+  
+  /** @param name  the internal name of a class in the archive
+    * @return the cached signature of the class, or null if it is not cached
+    */
+  public synchronized Signature get(String name) {
+    _load();
+    Signature s = _added.get(name);
+    if (s != null) return s;
+    Integer offset = _offsets.get(name);
+    if (offset == null) return null;
+    try { return Signature.read(new DataInputStream(new ByteBufferInputStream(_mapped, offset))); }
+    catch (IOException e) {
+      _log.log("Corrupt cache file " + _file + ": " + e);
+      _offsets.clear();
+      return null;
+    }
+  }
+  
+  /** Adds a signature to this cache; it is written to the cache file by the next flush.
+    * @param name  the internal name of a class in the archive
+    * @param s  the signature of the class
+    */
+  public synchronized void put(String name, Signature s) { _added.put(name, s); }
+  
+  /** Maps the cache file and reads its index, unless it is missing or belongs to another version of the archive. */
+  private void _load() {
+    if (_isLoaded) return;
+    _isLoaded = true;
+    if (! _file.isFile()) return;
+    try {
+      RandomAccessFile raf = new RandomAccessFile(_file, "r");
+      try {
+        FileChannel channel = raf.getChannel();
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(mapped, 0));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || ! in.readUTF().equals(_archive.getAbsolutePath()) ||
+            in.readLong() != _lastModified || in.readLong() != _length) {
+          _log.log("Ignoring stale cache file " + _file);
+          return;
+        }
+        int count = in.readInt();
+        HashMap<String, Integer> offsets = new HashMap<String, Integer>(count * 2);
+        for (int i = 0; i < count; i++) {
+          String name = in.readUTF();
+          offsets.put(name, in.readInt());
+        }
+        _offsets.putAll(offsets);
+        _mapped = mapped;
+      }
+      finally { raf.close(); }  // the mapping remains valid
+    }
+    catch (IOException e) { _log.log("Cannot read cache file " + _file + ": " + e); }
+  }
+  
+  /** Writes the cache file if signatures were added since it was last written.  Failures are ignored; the cache is
+    * only an optimization. */
+  public synchronized void flush() {
+    if (_added.isEmpty()) return;
+    _load();
+    TreeMap<String, Signature> all = new TreeMap<String, Signature>();
+    for (String name: new ArrayList<String>(_offsets.keySet())) {
+      Signature s = get(name);
+      if (s != null) all.put(name, s);
+    }
+    all.putAll(_added);
+    
+    try {
+      // Serialize the records first to learn their offsets
+      ByteArrayOutputStream records = new ByteArrayOutputStream();
+      DataOutputStream recordsOut = new DataOutputStream(records);
+      LinkedHashMap<String, Integer> relative = new LinkedHashMap<String, Integer>();
+      for (Map.Entry<String, Signature> e: all.entrySet()) {
+        relative.put(e.getKey(), recordsOut.size());
+        e.getValue().write(recordsOut);
+      }
+      recordsOut.flush();
+      
+      ByteArrayOutputStream header = new ByteArrayOutputStream();
+      DataOutputStream headerOut = new DataOutputStream(header);
+      headerOut.writeInt(MAGIC);
+      headerOut.writeInt(VERSION);
+      headerOut.writeUTF(_archive.getAbsolutePath());
+      headerOut.writeLong(_lastModified);
+      headerOut.writeLong(_length);
+      headerOut.writeInt(relative.size());
+      // Each index entry is the name followed by a 4-byte offset
+      int indexSize = 0;
+      for (String name: relative.keySet()) indexSize += 2 + _utfLength(name) + 4;
+      int base = headerOut.size() + indexSize;
+      for (Map.Entry<String, Integer> e: relative.entrySet()) {
+        headerOut.writeUTF(e.getKey());
+        headerOut.writeInt(base + e.getValue());
+      }
+      headerOut.flush();
+      
+      File dir = _file.getParentFile();
+      if (! dir.isDirectory() && ! dir.mkdirs()) throw new IOException("Cannot create " + dir);
+      File temp = File.createTempFile(_file.getName(), ".tmp", dir);
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+      try {
+        header.writeTo(out);
+        records.writeTo(out);
+      }
+      finally { out.close(); }
+      _mapped = null;  // the renamed file replaces the mapped one
+      if (! temp.renameTo(_file)) {
+        _file.delete();
+        if (! temp.renameTo(_file)) {
+          temp.delete();
+          throw new IOException("Cannot rename " + temp + " to " + _file);
+        }
+      }
+    }
+    catch (IOException e) { _log.log("Cannot write cache file " + _file + ": " + e); }
+    
+    // Keep the signatures in memory; the new file is mapped if this cache is opened again
+    _offsets.clear();
+    _added.clear();
+    _added.putAll(all);
+  }
+  
+  /** @return the number of bytes in the modified UTF-8 encoding of s, as written by DataOutput.writeUTF */
+  private static int _utfLength(String s) {
+    int len = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 0x0001 && c <= 0x007F) len++;
+      else if (c > 0x07FF) len += 3;
+      else len += 2;
+    }
+    return len;
+  }
+  
+  /** An input stream reading a ByteBuffer from a given position, without disturbing the position of the buffer. */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer _buf;
+    ByteBufferInputStream(ByteBuffer buf, int offset) {
+      _buf = buf.duplicate();
+      _buf.position(offset);
+    }
+    public int read() { return _buf.hasRemaining() ? (_buf.get() & 0xff) : -1; }
+    public int read(byte[] b, int off, int len) {
+      if (! _buf.hasRemaining()) return -1;
+      len = Math.min(len, _buf.remaining());
+      _buf.get(b, off, len);
+      return len;
+    }
+  }
+  
+  /** The parts of a class file that LanguageLevelConverter uses to build a SymbolData. */
+  public static class Signature {
+    private int _access;
+    private String _name;
+    private String _superName;
+    private String[] _interfaces;
+    private final ArrayList<String[]> _fields = new ArrayList<String[]>();   // access, name, desc
+    private final ArrayList<String[]> _methods = new ArrayList<String[]>();  // access, name, desc, exceptions...
+    
+    private Signature() { }
+    
+    /** @param reader  a reader for a class file
+      * @return the signature of the class */
+    public static Signature read(ClassReader reader) {
+      final Signature s = new Signature();
+      reader.accept(new ClassVisitor(Opcodes.ASM4) {
+        public void visit(int version, int access, String name, String sig, String sup, String[] interfaces) {
+          s._access = access;
+          s._name = name;
+          s._superName = sup;
+          s._interfaces = (interfaces == null) ? new String[0] : interfaces;
+        }
+        public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+          s._fields.add(new String[] { Integer.toString(access), name, desc });
+          return null;
+        }
+        public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exceptions) {
+          if ((access & Opcodes.ACC_PRIVATE) != 0) return null;  // private methods are never used
+          int n = (exceptions == null) ? 0 : exceptions.length;
+          String[] m = new String[3 + n];
+          m[0] = Integer.toString(access);
+          m[1] = name;
+          m[2] = desc;
+          if (n > 0) System.arraycopy(exceptions, 0, m, 3, n);
+          s._methods.add(m);
+          return null;
+        }
+      }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      return s;
+    }
+    
+    /** Replays this signature to a class visitor, in the order ClassReader would. */
+    public void accept(ClassVisitor v) {
+      v.visit(Opcodes.V1_5, _access, _name, null, _superName, _interfaces.clone());
+      for (String[] f: _fields) v.visitField(Integer.parseInt(f[0]), f[1], f[2], null, null);
+      for (String[] m: _methods) {
+        String[] exceptions = (m.length == 3) ? null : Arrays.copyOfRange(m, 3, m.length);
+        v.visitMethod(Integer.parseInt(m[0]), m[1], m[2], null, exceptions);
+      }
+      v.visitEnd();
+    }
+    
+    private void write(DataOutputStream out) throws IOException {
+      out.writeInt(_access);
+      out.writeUTF(_name);
+      out.writeUTF(_superName == null ? "" : _superName);
+      _writeStrings(out, _interfaces);
+      out.writeInt(_fields.size());
+      for (String[] f: _fields) _writeStrings(out, f);
+      out.writeInt(_methods.size());
+      for (String[] m: _methods) _writeStrings(out, m);
+    }
+    
+    private static Signature read(DataInputStream in) throws IOException {
+      Signature s = new Signature();
+      s._access = in.readInt();
+      s._name = in.readUTF();
+      s._superName = in.readUTF();
+      if (s._superName.length() == 0) s._superName = null;
+      s._interfaces = _readStrings(in);
+      int fields = in.readInt();
+      for (int i = 0; i < fields; i++) s._fields.add(_readStrings(in));
+      int methods = in.readInt();
+      for (int i = 0; i < methods; i++) s._methods.add(_readStrings(in));
+      return s;
+    }
+    
+    private static void _writeStrings(DataOutputStream out, String[] strings) throws IOException {
+      out.writeShort(strings.length);
+      for (String str: strings) out.writeUTF(str);
+    }
+    
+    private static String[] _readStrings(DataInputStream in) throws IOException {
+      String[] strings = new String[in.readUnsignedShort()];
+      for (int i = 0; i < strings.length; i++) strings[i] = in.readUTF();
+      return strings;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import junit.framework.TestCase;
+import java.util.*;
+import java.io.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.*;
+
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the persistent cache of class signatures used by LanguageLevelConverter. */
+public class ClassSignatureCacheTest extends TestCase {
+  
+  private static final File ARCHIVE = new File("lib/buildlib/junit.jar");
+  private static final String[] CLASSES = { "junit/framework/TestCase", "junit/framework/Assert", "junit/framework/Test" };
+  
+  private String _oldCacheDir;
+  private File _cacheDir;
+  
+  public void setUp() throws IOException {
+    _oldCacheDir = System.getProperty(ClassSignatureCache.CACHE_DIR_PROPERTY);
+    _cacheDir = IOUtil.createAndMarkTempDirectory("signatures", "");
+    System.setProperty(ClassSignatureCache.CACHE_DIR_PROPERTY, _cacheDir.getPath());
+    ClassSignatureCache.forgetAll();
+  }
+  
+  public void tearDown() {
+    if (_oldCacheDir == null) System.clearProperty(ClassSignatureCache.CACHE_DIR_PROPERTY);
+    else System.setProperty(ClassSignatureCache.CACHE_DIR_PROPERTY, _oldCacheDir);
+    ClassSignatureCache.forgetAll();
+    IOUtil.deleteRecursively(_cacheDir);
+  }
+  
+  /** Records the calls made by a signature or a class reader. */
+  private static List<String> _record(final ClassSignatureCache.Signature s) {
+    final List<String> calls = new ArrayList<String>();
+    s.accept(new ClassVisitor(Opcodes.ASM4) {
+      public void visit(int version, int access, String name, String sig, String sup, String[] interfaces) {
+        calls.add("class " + access + " " + name + " " + sup + " " + Arrays.toString(interfaces));
+      }
+      public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+        calls.add("field " + access + " " + name + " " + desc);
+        return null;
+      }
+      public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exceptions) {
+        calls.add("method " + access + " " + name + " " + desc + " " + Arrays.toString(exceptions));
+        return null;
+      }
+    });
+    return calls;
+  }
+  
+  private static ClassSignatureCache.Signature _readFromArchive(String name) throws IOException {
+    ZipFile zip = new ZipFile(ARCHIVE);
+    try {
+      ZipEntry e = zip.getEntry(name + ".class");
+      return ClassSignatureCache.Signature.read(new ClassReader(IOUtil.toByteArray(zip.getInputStream(e))));
+    }
+    finally { zip.close(); }
+  }
+  
+  /** Tests that signatures survive being written to and mapped from a cache file. */
+  public void testPersistence() throws IOException {
+    ClassSignatureCache cache = ClassSignatureCache.forArchive(ARCHIVE);
+    assertNotNull("caching enabled", cache);
+    assertSame("one cache per archive", cache, ClassSignatureCache.forArchive(ARCHIVE));
+    assertNull("empty cache", cache.get(CLASSES[0]));
+    
+    Map<String, List<String>> expected = new HashMap<String, List<String>>();
+    for (String name: CLASSES) {
+      ClassSignatureCache.Signature s = _readFromArchive(name);
+      expected.put(name, _record(s));
+      cache.put(name, s);
+    }
+    assertTrue("TestCase has methods", expected.get(CLASSES[0]).size() > 5);
+    ClassSignatureCache.flushAll();
+    assertEquals("one cache file", 1, _cacheDir.listFiles().length);
+    
+    ClassSignatureCache.forgetAll();
+    ClassSignatureCache reopened = ClassSignatureCache.forArchive(ARCHIVE);
+    assertNotSame("reopened", cache, reopened);
+    for (String name: CLASSES) assertEquals(name, expected.get(name), _record(reopened.get(name)));
+    assertNull("not cached", reopened.get("junit/framework/TestSuite"));
+    
+    // Adding to a mapped cache keeps the old signatures
+    reopened.put("junit/framework/TestSuite", _readFromArchive("junit/framework/TestSuite"));
+    reopened.flush();
+    ClassSignatureCache.forgetAll();
+    ClassSignatureCache third = ClassSignatureCache.forArchive(ARCHIVE);
+    for (String name: CLASSES) assertEquals(name, expected.get(name), _record(third.get(name)));
+    assertNotNull("added", third.get("junit/framework/TestSuite"));
+  }
+  
+  /** Tests that caching can be disabled. */
+  public void testDisabled() {
+    System.setProperty(ClassSignatureCache.CACHE_DIR_PROPERTY, "");
+    assertNull("disabled", ClassSignatureCache.forArchive(ARCHIVE));
+  }
+}
@@ -0,0 +1,189 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** The state that a client of the language level converter (such as DrJava or a grading server) keeps across
+  * conversions.  A LanguageLevelConverter runs each conversion inside its session.  The session installs a fresh
+  * symbol table, table of new symbols, and continuation table at the start of a conversion, so conversions of
+  * different sessions never see each other's symbols, and the symbols of one conversion are not kept alive by the
+  * next.  Because the converter and its visitors still keep this state in static fields, conversions are serialized:
+  * a conversion started while another is in progress (in any session) waits for it to finish.
+  * <p>
+  * The session also caches the symbols read from library class files: those in archives on the boot class path and
+  * class path (the JDK and library jars) and in directories on the boot class path.  Later conversions with the same
+  * paths do not read those class files again.  Symbols read from class directories on the class path are not cached,
+  * since those typically hold the user's own classes.  Clients must call {@link #invalidate} or 
+  * {@link #invalidateAll} when libraries change.</p>
+  * <p>
+  * SymbolData is mutable, but the cached symbols are shared, not copied, by every later conversion in the session.
+  * They are therefore read-only once cached: a symbol read from a class file is complete (see 
+  * LanguageLevelConverter._classFile2SymbolData), and the visitors must only modify the symbols of the source files 
+  * being converted.  A conversion that needs to change a library symbol must replace it in the symbol table with a 
+  * new SymbolData instead.</p>
+  * @version $Id$
+  */
+public class ConversionSession {
+  
+  /** Serializes conversions, which share the static state of the converter and its visitors. */
+  private static final ReentrantLock CONVERSION_LOCK = new ReentrantLock();
+  
+  /** The session of the conversion in progress; guarded by CONVERSION_LOCK. */
+  private static ConversionSession _current = null;
+  
+  /** The cached symbols read from library class files, by fully qualified name; read-only (see above). */
+  private final HashMap<String, SymbolData> _archiveSymbols = new HashMap<String, SymbolData>();
+  
+  /** The names of the symbols read from archives during the conversion in progress. */
+  private final HashSet<String> _newArchiveSymbols = new HashSet<String>();
+  
+  /** The boot class path and class path the cached symbols were read from. */
+  private String _pathKey = null;
+  
+  /** @return the session of the conversion in progress in the current thread, or null */
+  static ConversionSession current() {
+    return CONVERSION_LOCK.isHeldByCurrentThread() ? _current : null;
+  }
+  
+  /** Starts a conversion in this session: waits for any conversion in progress, then installs a fresh symbol table
+    * containing the cached symbols.  Must be followed by a call to end().
+    * @param options  the options for the conversion
+    */
+  void begin(Options options) {
+    CONVERSION_LOCK.lock();
+    _current = this;
+    String pathKey = _pathKey(options);
+    if (! pathKey.equals(_pathKey)) {
+      _archiveSymbols.clear();
+      _pathKey = pathKey;
+    }
+    LanguageLevelConverter.OPT = options;
+    LanguageLevelConverter.symbolTable.clear();
+    LanguageLevelConverter.symbolTable.putAll(_archiveSymbols);
+    LanguageLevelConverter._newSDs.clear();
+    LanguageLevelVisitor.continuations = null;
+  }
+  
+  /** Ends the conversion in progress in this session, caching the complete symbols read from archives. */
+  void end() {
+    try {
+      for (String name: _newArchiveSymbols) {
+        SymbolData sd = LanguageLevelConverter.symbolTable.get(name);
+        if (sd != null && ! sd.isContinuation()) _archiveSymbols.put(name, sd);
+      }
+      _newArchiveSymbols.clear();
+      LanguageLevelConverter._newSDs.clear();  // the visitors are no longer needed
+      LanguageLevelVisitor.continuations = null;
+      ClassSignatureCache.flushAll();
+    }
+    finally {
+      _current = null;
+      CONVERSION_LOCK.unlock();
+    }
+  }
+  
+  /** Records that the named symbol was read from a class file in an archive.
+    * @param name  the fully qualified name of the symbol
+    */
+  void archiveSymbolRead(String name) { _newArchiveSymbols.add(name); }
+  
+  /** @return the number of cached symbols */
+  public int getCachedSymbolCount() {
+    CONVERSION_LOCK.lock();
+    try { return _archiveSymbols.size(); }
+    finally { CONVERSION_LOCK.unlock(); }
+  }
+  
+  /** Discards the cached symbol for the named class, and the cached symbols that refer to it, so they are read again
+    * by the next conversion.
+    * @param className  the fully qualified name of a class whose class file changed
+    */
+  public void invalidate(String className) {
+    CONVERSION_LOCK.lock();
+    try {
+      if (_archiveSymbols.remove(className) == null) return;
+      // Remove the symbols referring to removed symbols until there are none left
+      boolean removed = true;
+      while (removed) {
+        removed = false;
+        Iterator<SymbolData> it = _archiveSymbols.values().iterator();
+        while (it.hasNext()) {
+          if (_refersToUncached(it.next())) {
+            it.remove();
+            removed = true;
+          }
+        }
+      }
+    }
+    finally { CONVERSION_LOCK.unlock(); }
+  }
+  
+  /** Discards all cached symbols. */
+  public void invalidateAll() {
+    CONVERSION_LOCK.lock();
+    try { _archiveSymbols.clear(); }
+    finally { CONVERSION_LOCK.unlock(); }
+  }
+  
+  /** @return true if sd refers to a non-primitive symbol (other than itself) that is not cached */
+  private boolean _refersToUncached(SymbolData sd) {
+    if (_isUncached(sd, sd.getSuperClass())) return true;
+    for (SymbolData i: sd.getInterfaces()) if (_isUncached(sd, i)) return true;
+    for (VariableData v: sd.getVars()) if (_isUncached(sd, v.getType())) return true;
+    for (MethodData m: sd.getMethods()) {
+      if (_isUncached(sd, m.getReturnType())) return true;
+      for (VariableData p: m.getParams()) if (_isUncached(sd, p.getType())) return true;
+    }
+    return false;
+  }
+  
+  private boolean _isUncached(SymbolData sd, SymbolData ref) {
+    return ref != null && ref != sd && ! (ref instanceof PrimitiveData) && _archiveSymbols.get(ref.getName()) != ref;
+  }
+  
+  /** @return a string identifying the boot class path and class path of options */
+  private static String _pathKey(Options options) {
+    StringBuilder sb = new StringBuilder();
+    for (File f: options.bootClassPath()) sb.append(f.getPath()).append(File.pathSeparatorChar);
+    sb.append('\n');
+    for (File f: options.classPath()) sb.append(f.getPath()).append(File.pathSeparatorChar);
+    return sb.toString();
+  }
+}
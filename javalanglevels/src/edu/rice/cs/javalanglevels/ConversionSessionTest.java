@@ -0,0 +1,159 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import edu.rice.cs.javalanglevels.parser.*;
+import edu.rice.cs.javalanglevels.tree.*;
+import junit.framework.TestCase;
+import java.util.*;
+import java.io.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import edu.rice.cs.plt.reflect.JavaVersion;
+import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.io.IOUtil;
+
+import static edu.rice.cs.javalanglevels.ElementaryLevelTest.lf;
+
+/** Tests that a ConversionSession can be shared by several conversions, caching library symbols between them without
+  * changing the results of the conversions.
+  */
+public class ConversionSessionTest extends TestCase {
+  
+  private static final Options OPTIONS = 
+    new Options(JavaVersion.JAVA_8, IterUtil.make(new File("lib/buildlib/junit.jar")));
+  
+  private static final Options NO_CLASS_PATH = new Options(JavaVersion.JAVA_8, IterUtil.<File>empty());
+  
+  private File _directory;
+  private ConversionSession _session;
+  
+  public void setUp() {
+    _directory = new File("testFiles/forIntermediateLevelTest");
+    _session = new ConversionSession();
+  }
+  
+  private static File[] _dj1Files(File dir) {
+    return dir.listFiles(new FileFilter() {
+      public boolean accept(File pathName) { return pathName.getAbsolutePath().endsWith(".dj1"); }
+    });
+  }
+  
+  /** Converts the correct files in the session and checks the augmented files. */
+  private void _convertSuccessful() throws IOException { _convertSuccessful(OPTIONS); }
+  
+  /** Converts the correct files in the session with the given options and checks the augmented files. */
+  private void _convertSuccessful(Options options) throws IOException {
+    File[] testFiles = _dj1Files(_directory);
+    Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>> result =
+      new LanguageLevelConverter(_session).convert(testFiles, options);
+    assertEquals("should be no parse exceptions", new LinkedList<JExprParseException>(), result.getFirst());
+    assertEquals("should be no visitor exceptions", new LinkedList<Pair<String, JExpressionIF>>(), result.getSecond());
+    for (File f: testFiles) {
+      String fileName = f.getAbsolutePath();
+      fileName = fileName.substring(0, fileName.length() - 4);
+      File correctFile = new File(fileName + ".expected");
+      if (correctFile.exists()) {
+        assertEquals("File " + f.getName() + " should have been parsed and augmented correctly.",
+                     lf(IOUtil.toString(correctFile)), lf(IOUtil.toString(new File(fileName + ".java"))));
+      }
+    }
+  }
+  
+  /** Tests that repeated conversions in one session, including conversions with errors, give the same results. */
+  public void testRepeatedConversions() throws IOException {
+    _convertSuccessful();
+    int cached = _session.getCachedSymbolCount();
+    assertTrue("library symbols are cached", cached > 0);
+    
+    _convertSuccessful();
+    
+    for (File f: _dj1Files(new File(_directory, "shouldBreak"))) {
+      Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>> result =
+        new LanguageLevelConverter(_session).convert(new File[] { f }, NO_CLASS_PATH);
+      assertTrue("should be parse exceptions or visitor exceptions in file " + f.getName(), 
+                 ! result.getFirst().isEmpty() || ! result.getSecond().isEmpty());
+    }
+    
+    _convertSuccessful();
+    assertEquals("cache is refilled after the class path changed back", cached, _session.getCachedSymbolCount());
+  }
+  
+  /** Tests that invalidated symbols, and the symbols referring to them, are dropped from the cache. */
+  public void testInvalidate() throws IOException {
+    _convertSuccessful();
+    int cached = _session.getCachedSymbolCount();
+    _session.invalidate("java.lang.String");
+    assertTrue("String and its dependents dropped", _session.getCachedSymbolCount() < cached);
+    _convertSuccessful();
+    
+    _session.invalidateAll();
+    assertEquals("all dropped", 0, _session.getCachedSymbolCount());
+    _convertSuccessful();
+  }
+  
+  /** Tests that the symbols read from a class directory are cached if it is on the boot class path, but not if it is
+    * on the class path. */
+  public void testClassDirectories() throws IOException {
+    _convertSuccessful();
+    int cached = _session.getCachedSymbolCount();
+    
+    File junitDir = IOUtil.createAndMarkTempDirectory("junit", "");
+    ZipFile junit = new ZipFile("lib/buildlib/junit.jar");
+    try {
+      for (ZipEntry e: Collections.list(junit.entries())) {
+        File f = new File(junitDir, e.getName());
+        if (e.isDirectory()) f.mkdirs();
+        else {
+          f.getParentFile().mkdirs();
+          InputStream in = junit.getInputStream(e);
+          OutputStream out = new FileOutputStream(f);
+          try { IOUtil.copyInputStream(in, out); }
+          finally { in.close(); out.close(); }
+        }
+      }
+    }
+    finally { junit.close(); }
+    Iterable<File> bootClassPath = IOUtil.parsePath(System.getProperty("sun.boot.class.path", ""));
+    
+    _convertSuccessful(new Options(JavaVersion.JAVA_8, IterUtil.make(junitDir), bootClassPath));
+    assertTrue("JUnit symbols not cached", _session.getCachedSymbolCount() < cached);
+    _convertSuccessful(new Options(JavaVersion.JAVA_8, IterUtil.<File>empty(), 
+                                   IterUtil.compose(bootClassPath, junitDir)));
+    assertEquals("JUnit symbols cached", cached, _session.getCachedSymbolCount());
+  }
+}
@@ -94,4 +94,14 @@ public class JExprParserTest extends TestCase {
                    lf(sf.toString()));
     }
   }
+  
+  /** Each parser attributes source positions to its own file, so that files can be parsed concurrently. */
+  public void testParsersKeepTheirFiles() throws IOException, ParseException {
+    File first = new File("testFiles/AllocationExpressions.test");
+    File second = new File("testFiles/Expressions.test");
+    JExprParser firstParser = new JExprParser(first);
+    JExprParser secondParser = new JExprParser(second);
+    assertEquals(first, firstParser.SourceFile().getSourceInfo().getFile());
+    assertEquals(second, secondParser.SourceFile().getSourceInfo().getFile());
+  }
 }
@@ -39,6 +39,12 @@ package edu.rice.cs.javalanglevels;
 import java.lang.reflect.Modifier;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.objectweb.asm.*;
 
@@ -57,8 +63,9 @@ import edu.rice.cs.plt.reflect.JavaVersion;
 import edu.rice.cs.plt.reflect.PathClassLoader;
 
 /** An instance of this class converts a language level file to a .java file of the same name by first visiting the 
-  * file to error-check it, and then by augmenting the file.  This class is tested at the top level in the
-  * AdvancedLevelTest, ElementaryLevelTest, and IntermediateLevelTest.
+  * file to error-check it, and then by augmenting the file.  Only the parsing of the files is done in parallel; 
+  * checking and augmentation are serial, and conversions are serialized by their ConversionSession.  This class is
+  * tested at the top level in the AdvancedLevelTest, ElementaryLevelTest, and IntermediateLevelTest.
   */
 public class LanguageLevelConverter {
   
@@ -67,9 +74,8 @@ public class LanguageLevelConverter {
   /* TODO: get rid of all the static dreck (except constants) used in this class and its affiliated
    * classes.  Ugly, ugly, ugly ...  Corky 11-11-14 */
   
-  /** Hashtable for a shared symbolTable.  Since this field is static, only one instance of
-    * LanguageLevelConverter should exist at a time.  If we create a
-    * LanguageLevelConverter instance for each translation, we must drop the static attribute. */
+  /** Hashtable for a shared symbolTable.  Since this field is static, only one conversion can run at a time; 
+    * ConversionSession serializes conversions and refills this table at the start of each one. */
   public static final Symboltable symbolTable = new Symboltable();
   
   public static Options OPT = Options.DEFAULT;
@@ -83,18 +89,30 @@ public class LanguageLevelConverter {
   
   public static final SymbolData OBJECT;  // initialized in static initialization block
   
-  /** Stores all the SymbolDatas (and corresponding visitors) created as in course of conversion.  If we create a
-    * LanguageLevelConverter instance for each translation, we must drop the static attribute. */
+  /** Stores all the SymbolDatas (and corresponding visitors) created as in course of conversion.  Cleared by
+    * ConversionSession at the start and end of each conversion. */
   public static final Hashtable<SymbolData, LanguageLevelVisitor> _newSDs = 
     new Hashtable<SymbolData, LanguageLevelVisitor>();
   
+  /** The maximum number of threads used to parse files. */
+  private static final int MAX_PARSER_THREADS = 8;
+  
   /**Holds any parse exceptions that are encountered*/
   private LinkedList<JExprParseException> _parseExceptions = new LinkedList<JExprParseException>();
   
   /**Holds any visitor exceptions that are encountered*/
   private LinkedList<Pair<String, JExpressionIF>> _visitorErrors = new LinkedList<Pair<String, JExpressionIF>>();
   
-  /* Relying on default constructor. */
+  /** The session in which this converter runs its conversions. */
+  private final ConversionSession _session;
+  
+  /** Creates a converter with a session of its own. */
+  public LanguageLevelConverter() { this(new ConversionSession()); }
+  
+  /** Creates a converter that runs its conversions in the given session, sharing the symbols the session caches.
+    * @param session  the session
+    */
+  public LanguageLevelConverter(ConversionSession session) { _session = session; }
   
   /** Ensures that the symbol table contains essential symbols.  Executed as part of LanguageLevelVisitor init
     * and typechecker inits (TryCatchBodyTypeChecker, TypeChecker, ExpressionTypeChecker). */
@@ -134,6 +152,27 @@ public class LanguageLevelConverter {
     }
   };
   
+  /** Determines whether a class file found by RESOURCES belongs to a library, whose symbol a ConversionSession may
+    * keep across conversions: a class in an archive (a jar, or the jrt image of a modular JDK) or in a directory on 
+    * the boot class path.  Other class directories usually hold the user's own classes, which change between 
+    * conversions.
+    * @param url  the URL of a class file
+    * @return true if the class file is part of a library
+    */
+  private static boolean _isLibraryResource(java.net.URL url) {
+    String protocol = url.getProtocol();
+    if (protocol.equals("jar") || protocol.equals("jrt")) return true;
+    if (! protocol.equals("file")) return false;
+    String path;
+    try { path = new File(url.toURI()).getAbsolutePath(); }
+    catch (java.net.URISyntaxException e) { return false; }
+    catch (IllegalArgumentException e) { return false; }
+    for (File dir: OPT.bootClassPath()) {
+      if (path.startsWith(dir.getAbsolutePath() + File.separator) && dir.isDirectory()) return true;
+    }
+    return false;
+  }
+  
   /** Creates a ModifiersAndVisibility from the provided modifier flags. */
   private static ModifiersAndVisibility _createMav(int flags) {
     LinkedList<String> strings = new LinkedList<String>();
@@ -168,20 +207,32 @@ public class LanguageLevelConverter {
   public static SymbolData _classFile2SymbolData(final String qualifiedClassName, final String programRoot) {
     _log.log("***** _classFile2SymbolData(" + qualifiedClassName + ", " + programRoot + ") called");
     
-    ClassReader reader = null;
+    ClassSignatureCache.Signature signature = null;
     try {
-      String fileName = qualifiedClassName.replace('.', '/') + ".class";
+      String internalName = qualifiedClassName.replace('.', '/');
+      String fileName = internalName + ".class";
       _log.log("***** reading class file: " + fileName);
-      InputStream stream = RESOURCES.value().getResourceAsStream(fileName);
-      if (stream == null && programRoot != null) {
-        stream = PathClassLoader.getResourceInPathAsStream(fileName, new File(programRoot));
+      java.net.URL url = RESOURCES.value().getResource(fileName);
+      ClassSignatureCache cache = null;
+      if (url != null && _isLibraryResource(url)) {  // its symbol, and its signature if in a jar, may be cached
+        ConversionSession session = ConversionSession.current();
+        if (session != null) session.archiveSymbolRead(qualifiedClassName);
+        cache = ClassSignatureCache.forResource(url);
+        if (cache != null) signature = cache.get(internalName);
       }
-      if (stream == null) { 
-        _log.log("***** class file was empty! *****");
-        return null; 
+      if (signature == null) {
+        InputStream stream = (url == null) ? null : url.openStream();
+        if (stream == null && programRoot != null) {
+          stream = PathClassLoader.getResourceInPathAsStream(fileName, new File(programRoot));
+        }
+        if (stream == null) { 
+          _log.log("***** class file was empty! *****");
+          return null; 
+        }
+        // Let IOUtil handle the stream here, because it closes it when it's done, unlike ASM.
+        signature = ClassSignatureCache.Signature.read(new ClassReader(IOUtil.toByteArray(stream)));
+        if (cache != null) cache.put(internalName, signature);
       }
-      // Let IOUtil handle the stream here, because it closes it when it's done, unlike ASM.
-      reader = new ClassReader(IOUtil.toByteArray(stream));
     }
     catch (IOException e) { return null; }
     
@@ -301,7 +352,7 @@ public class LanguageLevelConverter {
       
     };
     _log.log("***** Loading member signatures for file system class " + qualifiedClassName + " and all of its unloaded supertypes");
-    reader.accept(extractData, ClassReader.SKIP_CODE);
+    signature.accept(extractData);
 //    System.err.println("####### Finished loading " + qualifiedClassName);
     
     // Remove the class from the list of continuations to resolve.
@@ -359,6 +410,93 @@ public class LanguageLevelConverter {
     OBJECT = symbolTable.get("java.lang.Object");
   }
   
+  /** The outcome of parsing a single file: either a parse tree with the names of its top-level classes, a parse
+    * exception, or an I/O error. */
+  private static class ParseResult {
+    private boolean _isEmpty = false;
+    private SourceFile _sourceFile = null;
+    private final Set<String> _topLevelClasses = new HashSet<String>();
+    private ParseException _parseException = null;
+    private IOException _ioException = null;
+  }
+  
+  /** Parses a file.  Parsing touches no shared state, so files can be parsed concurrently.
+    * @param f  the file to parse
+    * @return the result of parsing f; its _isEmpty flag is set if f is empty
+    */
+  private static ParseResult _parse(File f) {
+    final ParseResult result = new ParseResult();
+    try {
+      // Check for a null file
+      BufferedReader tempBr = new BufferedReader(new FileReader(f));
+      String firstLine = tempBr.readLine();
+      tempBr.close();
+      if (firstLine == null) { 
+        result._isEmpty = true;
+        return result;
+      }
+      if (! isJavaFile(f)) return result;
+      
+      JExprParser jep = new JExprParser(f);
+      _log.log("Parsing " + f);
+      final SourceFile sf = jep.SourceFile();
+      // Parse the classes in sf
+      for (TypeDefBase t: sf.getTypes()) {
+        t.visit(new JExpressionIFAbstractVisitor<Void>() {
+          public Void forClassDef(ClassDef that) {
+            String className = that.getName().getText();
+            _log.log("Class '" + className + "' found in file " + sf);
+            result._topLevelClasses.add(className); 
+            return null; 
+          }
+          public Void defaultCase(JExpressionIF that) { return null; }
+        });
+      }
+      result._sourceFile = sf;
+      _log.log("Completed parsing " + f);
+    }
+    catch (ParseException pe) { result._parseException = pe; }
+    catch (IOException ioe) { result._ioException = ioe; }
+    return result;
+  }
+  
+  /** Starts parsing the given files on a thread pool, unless there is only one file or one processor.
+    * @param files  the files to parse
+    * @param pool  the thread pool to use; null to parse each file when its result is requested
+    * @return the pending results in the order of files, or null if pool is null
+    */
+  private static List<Future<ParseResult>> _parseAll(File[] files, ExecutorService pool) {
+    if (pool == null) return null;
+    List<Future<ParseResult>> results = new ArrayList<Future<ParseResult>>(files.length);
+    for (final File f: files) {
+      results.add(pool.submit(new Callable<ParseResult>() {
+        public ParseResult call() { return _parse(f); }
+      }));
+    }
+    return results;
+  }
+  
+  /** @return a thread pool for parsing the given files, or null if they should be parsed sequentially */
+  private static ExecutorService _makeParserPool(File[] files) {
+    int threads = Math.min(Math.min(files.length, Runtime.getRuntime().availableProcessors()), MAX_PARSER_THREADS);
+    if (threads <= 1) return null;
+    return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Language Level Parser");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+  
+  /** @return the result of parsing the i-th file, waiting for it if necessary */
+  private static ParseResult _getParseResult(File[] files, List<Future<ParseResult>> pending, int i) {
+    if (pending == null) return _parse(files[i]);
+    try { return pending.get(i).get(); }
+    catch (InterruptedException e) { throw new UnexpectedException(e); }
+    catch (ExecutionException e) { throw new UnexpectedException(e.getCause()); }
+  }
+  
   /***Add the parse exception to the list of parse exceptions*/
   private void _addParseException(ParseException pe) {
     JExprParseException jpe;
@@ -385,14 +523,18 @@ public class LanguageLevelConverter {
   // "Visit" is an extremely vague notion; I presume it means construct a symbol table for the file.
   public Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>>
     convert(File[] files, Options options, Map<File,Set<String>> sourceToTopLevelClassMap) {
+    _session.begin(options);  // waits for any other conversion and installs a fresh symbol table
+    try { return _convert(files, sourceToTopLevelClassMap); }
+    finally { _session.end(); }
+  }
+  
+  /** Performs a conversion inside _session; see convert. */
+  private Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>>
+    _convert(File[] files, Map<File,Set<String>> sourceToTopLevelClassMap) {
     
 //    System.err.println("LanguageLevelConverter.convert called on files:  " + Arrays.toString(files));
     _log.log("LanguageLevelConverter.convert called on files:  " + Arrays.toString(files));
-    OPT = options;
-//    System.err.println("Options = " + options);
     assert symbolTable != null;
-    symbolTable.clear();
-    _newSDs.clear();
     
     /**initialize so we don't get null pointer exception*/
     // We need a LinkedList for errors to be shared by the visitors to each file.
@@ -445,93 +587,81 @@ public class LanguageLevelConverter {
     /* Maintains the list of Full Java files, which are parsed for symbols and checked for gross errors. */
     LinkedList<File> javaFiles = new LinkedList<File>();
     
+    /* Parsing touches no shared state, so all files are parsed concurrently.  The conformance pass below consumes the
+     * results in file order, so errors are reported in the same order as when parsing sequentially.  Everything after
+     * parsing -- conformance checking, type checking, and augmentation -- runs serially in this thread: it reads and
+     * writes symbolTable, _newSDs, and the visitors' static error and continuation tables, which are shared by the 
+     * whole process (see ConversionSession). */
+    ExecutorService parserPool = _makeParserPool(files);
+    List<Future<ParseResult>> pendingParses = _parseAll(files, parserPool);
+    
     /** First pass: classfication and conformance checking */
-    for (File f : files) {    
-      try {
+    try {
+      for (int i = 0; i < files.length; i++) {
+        File f = files[i];
+        try {
 //        if (filesNotToCheck.contains(f)) continue;  // Detects equal File objects
-        
-        // Check for a null file
-        BufferedReader tempBr = new BufferedReader(new FileReader(f));
-        String firstLine = tempBr.readLine();
-        tempBr.close();
-        if (firstLine == null) continue;
-        
-        if (isAdvancedFile(f))  advanced.addLast(f);
-        else if (isFullJavaFile(f)) javaFiles.addLast(f);
-        
-        if (isJavaFile(f)) {  /* a .dj0, .dj1, .dj2,, .dj, or .java file; all but .dj and .java are legacy */
-          System.out.flush();
-          SourceFile sf = null;
-          JExprParser jep = new JExprParser(f);
-          try { 
-            _log.log("Parsing " + f);
-            sf = jep.SourceFile();  // Does the SourceFile method parse the file f embedded in jep?  NO!
-            // Parse the classes in sf
-            final Set<String> topLevelClasses = new HashSet<String>();
-            final SourceFile fsf = sf;
-            for (TypeDefBase t: sf.getTypes()) {
-              t.visit(new JExpressionIFAbstractVisitor<Void>() {
-                public Void forClassDef(ClassDef that) {
-                  String className = that.getName().getText();
-                  _log.log("Class '" + className + "' found in file " + fsf);
-                  topLevelClasses.add(className); 
-                  return null; 
-                }
-                public Void defaultCase(JExpressionIF that) { return null; }
-              });
-            }
-            sourceToTopLevelClassMap.put(f, topLevelClasses);
-            _log.log("Completed parsing " + f);
-          } 
-          catch (ParseException pe) {
-            // If there is a ParseException, go to next file.
-            _addParseException(pe);
-            _log.log("GENERATED (non-Parse) exception in parsing file " + sf);
-            continue;
-          }
-          catch (Exception pe) { throw new UnexpectedException(pe); }  // catch any other Exceptions thrown in parsing
           
-          LinkedList<String> importedPackageBase = new LinkedList<String>();
-          importedPackageBase.add("java.lang");
-            
-          // Now create a LanguageLevelVisitor to do the first pass over the file.
-          LanguageLevelVisitor llv;
-          if (isLanguageLevelFile(f)) { // Intermediate is the only language level other than full Java.
-            llv = new IntermediateVisitor(f,
-                                          importedPackageBase,
-                                          new LinkedList<Pair<String, JExpressionIF>>(),
-                                          new Hashtable<String, Triple<SourceInfo, LanguageLevelVisitor, SymbolData>>(),
-                                          new LinkedList<Command>(),
-                                          languageLevelVisitedFiles);
-          }
-          else {
-            assert isAdvancedFile(f) || isFullJavaFile(f);  // Advanced files are treated exactly like full Java.
-            llv = new FullJavaVisitor(f,
-                                      importedPackageBase,
-                                      new LinkedList<Pair<String, JExpressionIF>>(),
-                                      new Hashtable<String, Triple<SourceInfo, LanguageLevelVisitor, SymbolData>>(), 
-                                      new LinkedList<Command>(),
-                                      languageLevelVisitedFiles);
-          }
+          ParseResult parsed = _getParseResult(files, pendingParses, i);
+          if (parsed._ioException != null) throw parsed._ioException;
+          if (parsed._isEmpty) continue;  // Skip a null file
+          
+          if (isAdvancedFile(f))  advanced.addLast(f);
+          else if (isFullJavaFile(f)) javaFiles.addLast(f);
           
-          // Conformance checking pass
-          sf.visit(llv);
+          if (isJavaFile(f)) {  /* a .dj0, .dj1, .dj2,, .dj, or .java file; all but .dj and .java are legacy */
+            if (parsed._parseException != null) {
+              // If there is a ParseException, go to next file.
+              _addParseException(parsed._parseException);
+              _log.log("Parse exception in parsing file " + f);
+              continue;
+            }
+            SourceFile sf = parsed._sourceFile;
+            sourceToTopLevelClassMap.put(f, parsed._topLevelClasses);
+            
+            LinkedList<String> importedPackageBase = new LinkedList<String>();
+            importedPackageBase.add("java.lang");
+              
+            // Now create a LanguageLevelVisitor to do the first pass over the file.
+            LanguageLevelVisitor llv;
+            if (isLanguageLevelFile(f)) { // Intermediate is the only language level other than full Java.
+              llv = new IntermediateVisitor(f,
+                                            importedPackageBase,
+                                            new LinkedList<Pair<String, JExpressionIF>>(),
+                                            new Hashtable<String, Triple<SourceInfo, LanguageLevelVisitor, SymbolData>>(),
+                                            new LinkedList<Command>(),
+                                            languageLevelVisitedFiles);
+            }
+            else {
+              assert isAdvancedFile(f) || isFullJavaFile(f);  // Advanced files are treated exactly like full Java.
+              llv = new FullJavaVisitor(f,
+                                        importedPackageBase,
+                                        new LinkedList<Pair<String, JExpressionIF>>(),
+                                        new Hashtable<String, Triple<SourceInfo, LanguageLevelVisitor, SymbolData>>(), 
+                                        new LinkedList<Command>(),
+                                        languageLevelVisitedFiles);
+            }
+            
+            // Conformance checking pass
+            sf.visit(llv);
 //          _log.log("\nDUMPING SYMBOLTABLE AFTER PHASE 1 PROCESSING OF " + f + "\n\n" + symbolTable + "\n");
-          visited.add(new Triple<LanguageLevelVisitor, SourceFile, File>(llv, sf, f));
-          _log.log("\nCONTINUATIONS AFTER PHASE 1 PROCESSING OF " + f + "\n\n" + llv.continuations + "\n");
-          _log.log("\nERRORS AFTER PHASE 1 PROCESSING OF " + f + "\n\n" + llv.errors + "\n");
+            visited.add(new Triple<LanguageLevelVisitor, SourceFile, File>(llv, sf, f));
+            _log.log("\nCONTINUATIONS AFTER PHASE 1 PROCESSING OF " + f + "\n\n" + llv.continuations + "\n");
+            _log.log("\nERRORS AFTER PHASE 1 PROCESSING OF " + f + "\n\n" + llv.errors + "\n");
 //          if (! llv.errors.isEmpty()) Utilities.show("errors after " + f + "\n" + llv.errors);
-          //add the continuations to the hash table.
-          continuations.putAll(llv.continuations);
-          fixUps.addAll(llv.fixUps);
-          languageLevelVisitorErrors.addAll(llv.errors);
+            //add the continuations to the hash table.
+            continuations.putAll(llv.continuations);
+            fixUps.addAll(llv.fixUps);
+            languageLevelVisitorErrors.addAll(llv.errors);
+          }
+        }
+        catch (IOException ioe) {
+          // The NullLiteral is a hack to get a JExpression with the correct SourceInfo inside.
+          _addVisitorError(new Pair<String, JExpressionIF>(ioe.getMessage(), new NullLiteral(SourceInfo.NONE)));
         }
-      }
-      catch (IOException ioe) {
-        // The NullLiteral is a hack to get a JExpression with the correct SourceInfo inside.
-        _addVisitorError(new Pair<String, JExpressionIF>(ioe.getMessage(), new NullLiteral(SourceInfo.NONE)));
       }
     }
+    finally { if (parserPool != null) parserPool.shutdownNow(); }
 
     /* Resolve continuations created in conformance pass and log any generated errors.  TODO: refactor use of 
      * getSymbolData with a flag; create a new method for resolving continuations.  Use a common helper.  */
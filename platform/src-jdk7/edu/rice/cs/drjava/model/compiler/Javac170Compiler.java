@@ -48,6 +48,7 @@ import javax.tools.JavaFileObject;
 import javax.tools.JavaCompiler;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
+import javax.tools.DiagnosticListener;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 
@@ -67,6 +68,19 @@ import static edu.rice.cs.plt.debug.DebugUtil.error;
  */
 public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompiler {
   
+  /** The compiler, created on first use and kept for later compilations. */
+  private JavaCompiler _compiler = null;
+  
+  /** The file manager shared by compilations with the same class paths.  It keeps the class path archives open and
+    * indexed between compilations.  Null if there is none. */
+  private StandardJavaFileManager _fileManager = null;
+  
+  /** The class paths and archive time stamps _fileManager was used with. */
+  private String _fileManagerKey = null;
+  
+  /** The diagnostics of the compilation in progress; the shared file manager reports to it. */
+  private volatile DiagnosticListener<? super JavaFileObject> _diagnostics = null;
+  
   public Javac170Compiler(JavaVersion.FullVersion version, String location, List<? extends File> defaultBootClassPath) {
     super(version, location, defaultBootClassPath);
   }
@@ -124,7 +138,10 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
     // to the class loader.
     JavaCompiler compiler = null;
     try {
-      compiler = (JavaCompiler)(Class.forName("com.sun.tools.javac.api.JavacTool").newInstance());
+      synchronized(this) {
+        if (_compiler == null) _compiler = (JavaCompiler)(Class.forName("com.sun.tools.javac.api.JavacTool").newInstance());
+        compiler = _compiler;
+      }
     }
     catch(ClassNotFoundException e) {
       errors.addFirst(new DJError("Compile exception: " + e, false));
@@ -142,52 +159,108 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
       return errors;
     }
     
-    /** Default FileManager provided by Context class */
     DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
-    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);    
-    Iterable<? extends JavaFileObject> fileObjects = fileManager.getJavaFileObjectsFromFiles(files);
     
-    try {
-//      System.err.println("Calling '" + compiler + "' with options " + options);
-      compiler.getTask(null, fileManager, diagnostics, options, null, fileObjects).call();
-      for (Diagnostic<? extends JavaFileObject> d: diagnostics.getDiagnostics()) {
-        Diagnostic.Kind dt = d.getKind();
-        boolean isWarning = false;  // init required by javac
-        
-        switch (dt) {
-          case OTHER:             continue; // skip, do not record
-          case NOTE:              continue; // skip, do not record
-          case MANDATORY_WARNING: isWarning = true; break;
-          case WARNING:           isWarning = true; break;
-          case ERROR:             isWarning = false; break;
-        }
-        
-        /* The new Java 6.0 Diagnostic interface appears to be broken.  The expression d.getSource().getName() returns a 
-         * non-existent path--the name of the test file (allocated as a TEMP file) appended to the source root for 
-         * DrJava--in GlobalModelCompileErrorsTest.testCompileFailsCorrectLineNumbers().  The expression 
-         * d.getSource().toUri().getPath() returns the correct result as does ((JCDiagnostic) d).getSourceName(). */
-        if (d.getSource() != null) {
-          errors.add(new DJError(new File(d.getSource().toUri().getPath()), // d.getSource().getName() fails! 
-                                 ((int) d.getLineNumber()) - 1,  // javac starts counting at 1
-                                 ((int) d.getColumnNumber()) - 1, 
-                                 d.getMessage(null),    // null is the locale
-                                 isWarning));
-        }
-        else {
-          errors.add(new DJError(d.getMessage(null), isWarning));
+    // Compilations share the file manager, so they must not overlap
+    synchronized(this) {
+      try {
+        StandardJavaFileManager fileManager = _getFileManager(compiler, classPath, bootClassPath);
+        _diagnostics = diagnostics;
+        Iterable<? extends JavaFileObject> fileObjects = fileManager.getJavaFileObjectsFromFiles(files);
+  //      System.err.println("Calling '" + compiler + "' with options " + options);
+        compiler.getTask(null, fileManager, diagnostics, options, null, fileObjects).call();
+        for (Diagnostic<? extends JavaFileObject> d: diagnostics.getDiagnostics()) {
+          Diagnostic.Kind dt = d.getKind();
+          boolean isWarning = false;  // init required by javac
+          
+          switch (dt) {
+            case OTHER:             continue; // skip, do not record
+            case NOTE:              continue; // skip, do not record
+            case MANDATORY_WARNING: isWarning = true; break;
+            case WARNING:           isWarning = true; break;
+            case ERROR:             isWarning = false; break;
+          }
+          
+          /* The new Java 6.0 Diagnostic interface appears to be broken.  The expression d.getSource().getName() returns a 
+           * non-existent path--the name of the test file (allocated as a TEMP file) appended to the source root for 
+           * DrJava--in GlobalModelCompileErrorsTest.testCompileFailsCorrectLineNumbers().  The expression 
+           * d.getSource().toUri().getPath() returns the correct result as does ((JCDiagnostic) d).getSourceName(). */
+          if (d.getSource() != null) {
+            errors.add(new DJError(new File(d.getSource().toUri().getPath()), // d.getSource().getName() fails! 
+                                   ((int) d.getLineNumber()) - 1,  // javac starts counting at 1
+                                   ((int) d.getColumnNumber()) - 1, 
+                                   d.getMessage(null),    // null is the locale
+                                   isWarning));
+          }
+          else {
+            errors.add(new DJError(d.getMessage(null), isWarning));
+          }
         }
       }
-      fileManager.close();
-    }
-    catch(Throwable t) {  // compiler threw an exception/error (typically out of memory error)
-      errors.addFirst(new DJError("Compile exception: " + t, false));
-      error.log(t);
+      catch(Throwable t) {  // compiler threw an exception/error (typically out of memory error)
+        errors.addFirst(new DJError("Compile exception: " + t, false));
+        error.log(t);
+        resetCaches();  // do not trust the state of the file manager
+      }
+      finally { _diagnostics = null; }
     }
     
     debug.logEnd("compile()");
     return errors;
   }
   
+  /** Returns the file manager for a compilation with the given class paths, reusing the previous one if the class paths 
+    * and the time stamps of their archives are unchanged.  Must be called while holding the lock on this.
+    * @param compiler the compiler
+    * @param classPath the class path, or null
+    * @param bootClassPath the boot class path, or null for the default
+    * @return the file manager to use
+    */
+  private StandardJavaFileManager _getFileManager(JavaCompiler compiler, List<? extends File> classPath,
+                                                  List<? extends File> bootClassPath) {
+    if (bootClassPath == null) { bootClassPath = _defaultBootClassPath; }
+    StringBuilder key = new StringBuilder();
+    _appendPathKey(key, classPath);
+    _appendPathKey(key, bootClassPath);
+    String k = key.toString();
+    if (_fileManager == null || ! k.equals(_fileManagerKey)) {
+      resetCaches();
+      DiagnosticListener<JavaFileObject> forward = new DiagnosticListener<JavaFileObject>() {
+        public void report(Diagnostic<? extends JavaFileObject> d) {
+          DiagnosticListener<? super JavaFileObject> l = _diagnostics;
+          if (l != null) l.report(d);
+        }
+      };
+      _fileManager = compiler.getStandardFileManager(forward, null, null);
+      _fileManagerKey = k;
+    }
+    return _fileManager;
+  }
+  
+  /** Appends the entries of path to key, together with the time stamps and sizes of the archives among them. */
+  private static void _appendPathKey(StringBuilder key, List<? extends File> path) {
+    key.append('\n');
+    if (path == null) return;
+    for (File f: path) {
+      key.append(f.getPath());
+      if (f.isFile()) key.append('@').append(f.lastModified()).append('/').append(f.length());
+      key.append(File.pathSeparatorChar);
+    }
+  }
+  
+  /** Returns the file manager shared by compilations, or null if none is open.  Package private for testing. */
+  synchronized StandardJavaFileManager getFileManager() { return _fileManager; }
+  
+  /** Closes the shared file manager, releasing the class path archives it keeps open. */
+  public synchronized void resetCaches() {
+    if (_fileManager != null) {
+      try { _fileManager.close(); }
+      catch(IOException e) { error.log(e); }
+      _fileManager = null;
+      _fileManagerKey = null;
+    }
+  }
+  
   private Iterable<String> _createOptions(List<? extends File> classPath, List<? extends File> sourcePath, File destination, 
                                           List<? extends File> bootClassPath, String sourceVersion, boolean showWarnings) {    
     if (bootClassPath == null) { bootClassPath = _defaultBootClassPath; }
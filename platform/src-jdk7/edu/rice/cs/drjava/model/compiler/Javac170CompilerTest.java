@@ -1,8 +1,15 @@
 package edu.rice.cs.drjava.model.compiler;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import javax.tools.StandardJavaFileManager;
+import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.reflect.JavaVersion;
 
 // DJError class is not in the same package as this
@@ -18,6 +25,74 @@ public class Javac170CompilerTest extends TestCase {
     assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
   }
   
+  public void testRepeatedCompile() {
+    Javac170Compiler c = new Javac170Compiler(JavaVersion.CURRENT_FULL, "", null);
+    assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
+    assertTrue("reusing the file manager", doCompile(c, "testFiles/IterableTest.java").isEmpty());
+    c.resetCaches();
+    assertTrue("after reset", doCompile(c, "testFiles/IterableTest.java").isEmpty());
+  }
+  
+  public void testResetCachesRebuildsFileManager() {
+    Javac170Compiler c = new Javac170Compiler(JavaVersion.CURRENT_FULL, "", null);
+    assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
+    StandardJavaFileManager fileManager = c.getFileManager();
+    assertNotNull(fileManager);
+    assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
+    assertSame("reused while the class path is unchanged", fileManager, c.getFileManager());
+    c.resetCaches();
+    assertNull("closed by reset", c.getFileManager());
+    assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
+    assertNotNull(c.getFileManager());
+    assertNotSame("rebuilt after reset", fileManager, c.getFileManager());
+  }
+  
+  public void testChangedArchiveIsReloaded() throws IOException {
+    File dir = IOUtil.createAndMarkTempDirectory("javac170", "");
+    try {
+      File jar = new File(dir, "lib.jar");
+      File user = new File(dir, "User.java");
+      IOUtil.writeStringToFile(user, "public class User { int x = Lib.a(); }");
+      List<File> classPath = Arrays.asList(jar);
+      File out = new File(dir, "out");
+      out.mkdir();
+      
+      Javac170Compiler c = new Javac170Compiler(JavaVersion.CURRENT_FULL, "", null);
+      writeLibrary(dir, jar, "a");
+      assertTrue(c.compile(fileList(user.getPath()), classPath, null, out, null, null, true).isEmpty());
+      StandardJavaFileManager fileManager = c.getFileManager();
+      
+      // Replace Lib.a() by Lib.b(), keeping the archive's path but advancing its time stamp
+      long stamp = jar.lastModified();
+      writeLibrary(dir, jar, "b");
+      jar.setLastModified(stamp + 10000);
+      List<? extends DJError> errors = c.compile(fileList(user.getPath()), classPath, null, out, null, null, true);
+      assertNotSame("rebuilt after the archive changed", fileManager, c.getFileManager());
+      assertFalse("the stale Lib.a() is not served", errors.isEmpty());
+    }
+    finally { IOUtil.deleteRecursively(dir); }
+  }
+  
+  /** Compiles a class Lib declaring the given static method, using a separate compiler, and writes it to jar. */
+  private static void writeLibrary(File dir, File jar, String method) throws IOException {
+    File src = new File(dir, "lib-src");
+    File classes = new File(dir, "lib-classes");
+    src.mkdir();
+    classes.mkdir();
+    File lib = new File(src, "Lib.java");
+    IOUtil.writeStringToFile(lib, "public class Lib { public static int " + method + "() { return 1; } }");
+    Javac170Compiler c = new Javac170Compiler(JavaVersion.CURRENT_FULL, "", null);
+    assertTrue(c.compile(fileList(lib.getPath()), null, null, classes, null, null, true).isEmpty());
+    c.resetCaches();
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      out.putNextEntry(new JarEntry("Lib.class"));
+      out.write(IOUtil.toByteArray(new File(classes, "Lib.class")));
+      out.closeEntry();
+    }
+    finally { out.close(); }
+  }
+  
   private static List<? extends DJError> doCompile(CompilerInterface c, String... files) {
     return c.compile(fileList(files), null, null, null, null, null, true);
   }
@@ -35,22 +35,20 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package edu.rice.cs.plt.reflect;
 
 import java.net.URL;
-import java.net.URLClassLoader;
-import java.net.MalformedURLException;
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.Set;
+import java.util.HashSet;
 
-import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.iter.IterUtil;
 import edu.rice.cs.util.Log;
 
-import static edu.rice.cs.plt.debug.DebugUtil.error;
-import static edu.rice.cs.plt.debug.DebugUtil.debug;
-
 /** A class loader that mimics the standard application system loader by loading classes from
   * a file path of directories and jar files.  This class also supports a <em>dynamic</em>
   * class path: an {@code Iterable} provided as input to the constructor is held, not copied,
@@ -61,6 +59,9 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
   * later transitively resolves the referenced classes, they may no longer exist, or may be
   * shadowed.  This is not a unique problem, however -- the standard system class loader is
   * based on an underlying file system that may also change in arbitrary ways at any time.
+  * <p>Jar files are indexed once per JVM and shared among all path class loaders (see {@link PathEntry}),
+  * so creating a new loader over an existing class path, as happens on every interactions reset, does
+  * not rescan its jars.  Only a bounded number of jars are held open at a time.</p>
   */
 public class PathClassLoader extends AbstractClassLoader {
   
@@ -99,8 +100,8 @@ public class PathClassLoader extends AbstractClassLoader {
   }
 
   private final Iterable<? extends File> _path;
-  private URLClassLoader _urlLoader;
-  private Iterable<File> _urlLoaderPath;
+  private volatile List<PathEntry> _entries;
+  private volatile Iterable<File> _entriesPath;
 
   /** Create a path class loader with the default parent ({@link ClassLoader#getSystemClassLoader})
     * and the specified path.
@@ -114,7 +115,7 @@ public class PathClassLoader extends AbstractClassLoader {
   public PathClassLoader(Iterable<? extends File> path) {
     super();
     _path = path;
-    updateURLLoader();
+    updateEntries();
   }
   
   /** Create a path class loader with the given parent and path */
@@ -124,20 +125,33 @@ public class PathClassLoader extends AbstractClassLoader {
   public PathClassLoader(ClassLoader parent, Iterable<? extends File> path) {
     super(parent);
     _path = path;
-    updateURLLoader();
+    updateEntries();
     _log.log("Constructing PathClassLoader with parent " + parent + " and path '" + path + "'");
   }
 
-  private void updateURLLoader() {
-    _urlLoaderPath = IterUtil.snapshot(_path);
-    List<URL> urls = new LinkedList<URL>();
-    for (File f : _urlLoaderPath) {
-      try { urls.add(f.toURI().toURL()); }
-      catch (IllegalArgumentException e) { error.log(e); }
-      catch (MalformedURLException e) { error.log(e); }
-      // just skip the path element if there's an error
+  /** Resolve the current path to shared entries, followed by the class paths named in jar manifests. */
+  private synchronized void updateEntries() {
+    Iterable<File> path = IterUtil.snapshot(_path);
+    List<PathEntry> entries = new ArrayList<PathEntry>();
+    Set<File> seen = new HashSet<File>();
+    LinkedList<File> toVisit = new LinkedList<File>();
+    for (File f : path) { toVisit.add(f); }
+    while (!toVisit.isEmpty()) {
+      File f = toVisit.removeFirst();
+      if (seen.add(f.getAbsoluteFile())) {
+        PathEntry entry = PathEntry.forFile(f);
+        entries.add(entry);
+        toVisit.addAll(0, entry.impliedPath());
+      }
     }
-    _urlLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]), EmptyClassLoader.INSTANCE);
+    _entries = entries;
+    _entriesPath = path;
+  }
+  
+  /** Get the entries for the current path, re-resolving them if the path has changed. */
+  private List<PathEntry> entries() {
+    if (!IterUtil.isEqual(_path, _entriesPath)) { updateEntries(); }
+    return _entries;
   }
   
 //  /** This override is defined solely to trace calls to this method; it immediately invokes the
@@ -152,34 +166,38 @@ public class PathClassLoader extends AbstractClassLoader {
   @Override 
   protected Class<?> findClass(String name) throws ClassNotFoundException {
     _log.log("PathClassLoader.findClass(" + name + ") called");
-    URL resource = findResource(name.replace('.', '/') + ".class");
-    if (resource == null) { throw new ClassNotFoundException(); }
-    else {
-      try {
-        InputStream stream = resource.openStream();
-        try {
-          byte[] bytes = IOUtil.toByteArray(stream);
-          Class<?> result = defineClass(name, bytes, 0, bytes.length);
-          definePackageForClass(name);
-          return result;
-        }
-        finally { stream.close(); }
-      }
+    String resourceName = name.replace('.', '/') + ".class";
+    for (PathEntry entry : entries()) {
+      byte[] bytes;
+      try { bytes = entry.readResource(resourceName); }
       catch (IOException e) { throw new ClassNotFoundException("Can't access class file", e); }
+      if (bytes != null) {
+        Class<?> result = defineClass(name, bytes, 0, bytes.length);
+        definePackageForClass(name);
+        return result;
+      }
     }
+    throw new ClassNotFoundException();
   }
   
   @Override 
   protected URL findResource(String name) {
     _log.log("findResource(" + name + ") called; _path is " + _path);
-    if (!IterUtil.isEqual(_path, _urlLoaderPath)) { updateURLLoader(); }
-    return _urlLoader.findResource(name);
+    for (PathEntry entry : entries()) {
+      URL result = entry.findResource(name);
+      if (result != null) { return result; }
+    }
+    return null;
   }
   
   @Override 
   protected Enumeration<URL> findResources(String name) throws IOException {
     _log.log("findResources(" + name + ") called _path is " + _path);
-    if (!IterUtil.isEqual(_path, _urlLoaderPath)) { updateURLLoader(); }
-    return _urlLoader.findResources(name);
+    List<URL> result = new LinkedList<URL>();
+    for (PathEntry entry : entries()) {
+      URL url = entry.findResource(name);
+      if (url != null) { result.add(url); }
+    }
+    return Collections.enumeration(result);
   }
 }
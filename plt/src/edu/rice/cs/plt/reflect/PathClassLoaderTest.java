@@ -35,6 +35,16 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package edu.rice.cs.plt.reflect;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import edu.rice.cs.plt.io.IOUtil;
 
 public class PathClassLoaderTest extends ClassLoaderTestCase {
   
@@ -121,6 +131,95 @@ public class PathClassLoaderTest extends ClassLoaderTestCase {
     assertCannotGet(lC, "D");
   }
   
+  public void testLoadsJar() throws Exception {
+    File jar = IOUtil.createAndMarkTempFile("pathClassLoader", ".jar");
+    writeJar(jar, INTBOX_DIR, "pkg/IntBox.class", A_DIR, "pkg/A.class");
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, jar);
+    assertLoadsClassAsLoader(l, "pkg.IntBox");
+    assertCanGet(l, "pkg.A", 1);
+    assertDoesNotLoadClass(l, "pkg.C");
+    assertEquals("jar", l.getResource("pkg/A.class").getProtocol());
+    assertNull(l.getResource("pkg/C.class"));
+    
+    // a changed jar is seen by loaders created afterwards
+    writeJar(jar, INTBOX_DIR, "pkg/IntBox.class", B_DIR, "bpkg/B.class");
+    jar.setLastModified(jar.lastModified() + 2000);
+    PathClassLoader l2 = new PathClassLoader(BASE_LOADER, jar);
+    assertCanGet(l2, "bpkg.B", 2);
+    assertDoesNotLoadClass(l2, "pkg.A");
+  }
+  
+  public void testJarResourceNames() throws Exception {
+    File jar = IOUtil.createAndMarkTempFile("pathClassLoader", ".jar");
+    writeTextJar(jar, null, "dir with space/a#b.txt", "found");
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, jar);
+    URL url = l.getResource("dir with space/a#b.txt");
+    assertTrue(url.toString().endsWith("!/dir%20with%20space/a%23b.txt"));
+    assertEquals("found", read(url));
+  }
+  
+  public void testMultiReleaseJar() throws Exception {
+    Manifest mf = new Manifest();
+    mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    mf.getMainAttributes().putValue("Multi-Release", "true");
+    File jar = IOUtil.createAndMarkTempFile("pathClassLoader", ".jar");
+    writeTextJar(jar, mf, "res.txt", "base", "META-INF/versions/9/res.txt", "nine",
+                 "META-INF/versions/" + (Math.max(PathEntry.RELEASE, 9) + 1) + "/res.txt", "future");
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, jar);
+    String expected = (PathEntry.RELEASE >= 9) ? "nine" : "base";
+    assertEquals(expected, read(l.getResource("res.txt")));
+    assertEquals(expected, new String(PathEntry.forFile(jar).readResource("res.txt"), "UTF-8"));
+  }
+  
+  /** Jars closed to stay within the limit on open jars are reopened when they are used again. */
+  public void testReopensClosedJars() throws Exception {
+    PathEntry[] entries = new PathEntry[PathEntry.MAX_OPEN_JARS + 2];
+    for (int i = 0; i < entries.length; i++) {
+      File jar = IOUtil.createAndMarkTempFile("pathClassLoader", ".jar");
+      writeTextJar(jar, null, "res.txt", "jar " + i);
+      entries[i] = PathEntry.forFile(jar);
+    }
+    for (int i = 0; i < entries.length; i++) {
+      assertEquals("jar " + i, new String(entries[i].readResource("res.txt"), "UTF-8"));
+      assertNotNull(entries[i].findResource("res.txt"));
+    }
+    assertEquals("jar 0", new String(entries[0].readResource("res.txt"), "UTF-8"));
+  }
+  
+  /** Write a jar from pairs of (root directory, relative file name). */
+  private void writeJar(File jar, Object... contents) throws IOException {
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      for (int i = 0; i < contents.length; i += 2) {
+        String name = (String) contents[i+1];
+        out.putNextEntry(new ZipEntry(name));
+        out.write(IOUtil.toByteArray(new File((File) contents[i], name)));
+        out.closeEntry();
+      }
+    }
+    finally { out.close(); }
+  }
+  
+  /** Write a jar with the given manifest (if not {@code null}) from pairs of (file name, text). */
+  private void writeTextJar(File jar, Manifest mf, String... contents) throws IOException {
+    JarOutputStream out = (mf == null) ? new JarOutputStream(new FileOutputStream(jar)) :
+                                         new JarOutputStream(new FileOutputStream(jar), mf);
+    try {
+      for (int i = 0; i < contents.length; i += 2) {
+        out.putNextEntry(new ZipEntry(contents[i]));
+        out.write(contents[i+1].getBytes("UTF-8"));
+        out.closeEntry();
+      }
+    }
+    finally { out.close(); }
+  }
+  
+  private String read(URL url) throws IOException {
+    InputStream in = url.openStream();
+    try { return new String(IOUtil.toByteArray(in), "UTF-8"); }
+    finally { in.close(); }
+  }
+  
   private void assertCanGet(ClassLoader l, String className, int value) throws Exception {
     Class<?> c = l.loadClass(className);
     Object instance = c.newInstance();
@@ -0,0 +1,361 @@
+/*BEGIN_COPYRIGHT_BLOCK*
+
+PLT Utilities BSD License
+
+Copyright (c) 2007-2010 JavaPLT group at Rice University
+All rights reserved.
+
+Developed by:   Java Programming Languages Team
+                Rice University
+                http://www.cs.rice.edu/~javaplt/
+
+Redistribution and use in source and binary forms, with or without modification, are permitted 
+provided that the following conditions are met:
+
+    - Redistributions of source code must retain the above copyright notice, this list of conditions 
+      and the following disclaimer.
+    - Redistributions in binary form must reproduce the above copyright notice, this list of 
+      conditions and the following disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+    - Neither the name of the JavaPLT group, Rice University, nor the names of the library's 
+      contributors may be used to endorse or promote products derived from this software without 
+      specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR 
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND 
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS AND 
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL 
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, 
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT 
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.plt.reflect;
+
+import java.net.URL;
+import java.net.MalformedURLException;
+import java.io.File;
+import java.io.InputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import edu.rice.cs.plt.io.IOUtil;
+
+import static edu.rice.cs.plt.debug.DebugUtil.error;
+
+/** An element of a class path -- a directory or a jar file -- shared by all {@link PathClassLoader}s in the
+  * JVM.  Entries are cached by absolute file, so a jar that appears on many loaders' paths is indexed once:
+  * its central directory (read by {@link ZipFile} when the jar is opened) serves every lookup.  A cached
+  * entry is replaced when it is requested again and its file has changed: a jar's modification time or length
+  * differs, a directory has disappeared, or a missing file has appeared.
+  * <p>At most {@link #MAX_OPEN_JARS} jars are held open at a time.  The least recently used jar is closed
+  * when another is opened, and a replaced jar is closed immediately, so jars do not stay locked (as they
+  * would on Windows) for the life of the JVM.  A closed jar is reopened if a loader that still refers to it
+  * uses it again.</p>
+  */
+abstract class PathEntry {
+  
+  /** The number of jars kept open; a class path longer than this reopens jars as it is searched. */
+  static final int MAX_OPEN_JARS = 32;
+  
+  /** The Java release of this JVM (8 for 1.8), which selects the versions used in multi-release jars. */
+  static final int RELEASE = _release();
+  
+  private static final Map<File, PathEntry> _cache = new HashMap<File, PathEntry>();
+  
+  /** The open jars, least recently used first.  Locked before (never while holding) a JarEntry's lock. */
+  private static final LinkedHashMap<JarEntry, Boolean> _openJars = new LinkedHashMap<JarEntry, Boolean>(16, 0.75f, true);
+  
+  /** Get the shared entry for {@code f}, opening it if it is not cached or its cached version is stale. */
+  public static PathEntry forFile(File f) {
+    File key = f.getAbsoluteFile();
+    PathEntry stale = null;
+    PathEntry result;
+    synchronized(_cache) {
+      result = _cache.get(key);
+      if (result == null || result.isStale()) {
+        stale = result;
+        result = _open(key);
+        _cache.put(key, result);
+      }
+    }
+    // Loaders that resolved the stale entry earlier reopen it (and see the new file) if they use it again.
+    if (stale instanceof JarEntry) { _closed((JarEntry) stale); }
+    if (result instanceof JarEntry) { _used((JarEntry) result); }
+    return result;
+  }
+  
+  private static PathEntry _open(File f) {
+    if (f.isDirectory()) { return new DirectoryEntry(f); }
+    else if (f.isFile()) {
+      try { return new JarEntry(f); }
+      catch (IOException e) { error.log(e); }
+    }
+    return new MissingEntry(f);
+  }
+  
+  /** Record that {@code jar} is open and was just used, closing the least recently used jars beyond the limit. */
+  private static void _used(JarEntry jar) {
+    List<JarEntry> evicted = new ArrayList<JarEntry>();
+    synchronized(_openJars) {
+      _openJars.put(jar, Boolean.TRUE);
+      Iterator<JarEntry> oldest = _openJars.keySet().iterator();
+      while (_openJars.size() > MAX_OPEN_JARS) { evicted.add(oldest.next()); oldest.remove(); }
+    }
+    for (JarEntry e : evicted) { e.close(); }
+  }
+  
+  /** Close {@code jar} and forget it was open. */
+  private static void _closed(JarEntry jar) {
+    synchronized(_openJars) { _openJars.remove(jar); }
+    jar.close();
+  }
+  
+  private static int _release() {
+    String version = System.getProperty("java.specification.version", "");
+    if (version.startsWith("1.")) { version = version.substring(2); }
+    try { return Integer.parseInt(version); }
+    catch (NumberFormatException e) { return 0; }
+  }
+  
+  /** Percent-encode a '/'-separated resource name for use as the path of a URL.  Characters other than
+    * '/' and those that may appear unescaped in a URL path segment are encoded as UTF-8 bytes, as
+    * {@link File#toURI} does for file names.
+    */
+  static String encodeName(String name) {
+    StringBuilder result = new StringBuilder(name.length());
+    byte[] bytes;
+    try { bytes = name.getBytes("UTF-8"); }
+    catch (UnsupportedEncodingException e) { throw new RuntimeException(e); } // UTF-8 is always supported
+    for (byte b : bytes) {
+      char c = (char) (b & 0xff);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+          "/-_.!~*'()@:&=+$,;".indexOf(c) >= 0) {
+        result.append(c);
+      }
+      else {
+        result.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)));
+        result.append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+      }
+    }
+    return result.toString();
+  }
+  
+  protected final File _file;
+  
+  protected PathEntry(File f) { _file = f; }
+  
+  /** The file this entry represents. */
+  public File file() { return _file; }
+  
+  /** Whether the file system has changed in a way that invalidates this entry. */
+  protected abstract boolean isStale();
+  
+  /** Locate the named resource ('/'-separated), or return {@code null} if it is not in this entry. */
+  public abstract URL findResource(String name);
+  
+  /** Read the named resource fully, or return {@code null} if it is not in this entry. */
+  public abstract byte[] readResource(String name) throws IOException;
+  
+  /** Additional path elements implied by this entry (a jar manifest's Class-Path attribute). */
+  public List<File> impliedPath() { return Collections.emptyList(); }
+  
+  /** Read exactly {@code size} bytes from {@code in} (or the whole stream if the size is unknown), closing it. */
+  protected static byte[] readFully(InputStream in, long size) throws IOException {
+    try {
+      if (size < 0 || size > Integer.MAX_VALUE) { return IOUtil.toByteArray(in); }
+      byte[] result = new byte[(int) size];
+      int offset = 0;
+      while (offset < result.length) {
+        int read = in.read(result, offset, result.length - offset);
+        if (read < 0) { throw new IOException("Unexpected end of stream"); }
+        offset += read;
+      }
+      return result;
+    }
+    finally { in.close(); }
+  }
+  
+  private static class DirectoryEntry extends PathEntry {
+    public DirectoryEntry(File f) { super(f); }
+    protected boolean isStale() { return !_file.isDirectory(); }
+    
+    private File _resourceFile(String name) {
+      File result = new File(_file, name.replace('/', File.separatorChar));
+      return result.isFile() ? result : null;
+    }
+    
+    public URL findResource(String name) {
+      File f = _resourceFile(name);
+      if (f == null) { return null; }
+      try { return f.toURI().toURL(); }
+      catch (MalformedURLException e) { error.log(e); return null; }
+    }
+    
+    public byte[] readResource(String name) throws IOException {
+      File f = _resourceFile(name);
+      return (f == null) ? null : readFully(new FileInputStream(f), f.length());
+    }
+  }
+  
+  private static class JarEntry extends PathEntry {
+    private final String _urlPrefix;
+    private final long _lastModified;
+    private final long _length;
+    private final List<File> _impliedPath;
+    /** The releases, newest first, of this multi-release jar's META-INF/versions directories that apply to
+      * this JVM; empty if the jar is not multi-release.
+      */
+    private final int[] _versions;
+    /** The open jar, or {@code null} if it has been closed.  Guarded by {@code this}. */
+    private ZipFile _zip;
+    
+    public JarEntry(File f) throws IOException {
+      super(f);
+      // read the file attributes first, so a concurrent change is noticed at the next lookup
+      _lastModified = f.lastModified();
+      _length = f.length();
+      _urlPrefix = "jar:" + f.toURI().toURL() + "!/";
+      ZipFile zip = new ZipFile(f);
+      Attributes attributes = _readAttributes(zip);
+      _impliedPath = _readClassPath(attributes);
+      _versions = "true".equalsIgnoreCase(attributes.getValue("Multi-Release")) ? _readVersions(zip) : new int[0];
+      synchronized(this) { _zip = zip; }
+    }
+    
+    protected boolean isStale() {
+      return !_file.isFile() || _file.lastModified() != _lastModified || _file.length() != _length;
+    }
+    
+    private Attributes _readAttributes(ZipFile zip) {
+      ZipEntry mf = zip.getEntry("META-INF/MANIFEST.MF");
+      if (mf != null) {
+        try { return new Manifest(zip.getInputStream(mf)).getMainAttributes(); }
+        catch (IOException e) { error.log(e); }
+      }
+      return new Attributes();
+    }
+    
+    /** Interpret the manifest's Class-Path attribute the way URLClassLoader does: relative URLs, resolved
+      * against the jar's location.  Malformed or non-file URLs are skipped.
+      */
+    private List<File> _readClassPath(Attributes attributes) {
+      String cp = attributes.getValue(Attributes.Name.CLASS_PATH);
+      if (cp == null) { return Collections.emptyList(); }
+      List<File> result = new LinkedList<File>();
+      URL base;
+      try { base = _file.toURI().toURL(); }
+      catch (MalformedURLException e) { error.log(e); return result; }
+      StringTokenizer tok = new StringTokenizer(cp);
+      while (tok.hasMoreTokens()) {
+        try {
+          URL url = new URL(base, tok.nextToken());
+          if (url.getProtocol().equals("file")) { result.add(new File(url.toURI())); }
+        }
+        catch (Exception e) { error.log(e); }
+      }
+      return result;
+    }
+    
+    /** Find the META-INF/versions/<i>N</i> directories with 9 &lt;= <i>N</i> &lt;= {@link #RELEASE}. */
+    private static int[] _readVersions(ZipFile zip) {
+      TreeSet<Integer> versions = new TreeSet<Integer>(Collections.reverseOrder());
+      String prefix = "META-INF/versions/";
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        int slash = name.indexOf('/', prefix.length());
+        if (name.startsWith(prefix) && slash > prefix.length()) {
+          try {
+            int v = Integer.parseInt(name.substring(prefix.length(), slash));
+            if (v >= 9 && v <= RELEASE) { versions.add(v); }
+          }
+          catch (NumberFormatException e) { /* not a version directory */ }
+        }
+      }
+      int[] result = new int[versions.size()];
+      int i = 0;
+      for (int v : versions) { result[i++] = v; }
+      return result;
+    }
+    
+    public List<File> impliedPath() { return _impliedPath; }
+    
+    /** Get the open jar, reopening it if it has been closed.  Must be called while holding {@code this}. */
+    private ZipFile _zip() throws IOException {
+      if (_zip == null) { _zip = new ZipFile(_file); }
+      return _zip;
+    }
+    
+    /** Find the entry for {@code name}, preferring the newest applicable version in a multi-release jar. */
+    private ZipEntry _find(ZipFile zip, String name) {
+      if (!name.startsWith("META-INF/")) {
+        for (int v : _versions) {
+          ZipEntry result = zip.getEntry("META-INF/versions/" + v + "/" + name);
+          if (result != null) { return result; }
+        }
+      }
+      return zip.getEntry(name);
+    }
+    
+    public URL findResource(String name) {
+      try {
+        ZipEntry entry;
+        synchronized(this) { entry = _find(_zip(), name); }
+        if (entry == null) { return null; }
+        return new URL(_urlPrefix + encodeName(entry.getName()));
+      }
+      catch (IOException e) { error.log(e); return null; }
+      finally { _used(this); }
+    }
+    
+    public byte[] readResource(String name) throws IOException {
+      try {
+        // hold the lock while reading, so the jar is not closed underneath us
+        synchronized(this) {
+          ZipFile zip = _zip();
+          ZipEntry entry = _find(zip, name);
+          return (entry == null || entry.isDirectory()) ? null : readFully(zip.getInputStream(entry), entry.getSize());
+        }
+      }
+      finally { _used(this); }
+    }
+    
+    /** Close the jar; it is reopened if this entry is used again. */
+    public synchronized void close() {
+      if (_zip != null) {
+        try { _zip.close(); }
+        catch (IOException e) { error.log(e); }
+        _zip = null;
+      }
+    }
+  }
+  
+  /** A file that doesn't exist (or can't be read as a jar); replaced once the file appears or changes. */
+  private static class MissingEntry extends PathEntry {
+    private final boolean _existed;
+    private final long _lastModified;
+    public MissingEntry(File f) { super(f); _existed = f.exists(); _lastModified = f.lastModified(); }
+    protected boolean isStale() { return _file.exists() != _existed || _file.lastModified() != _lastModified; }
+    public URL findResource(String name) { return null; }
+    public byte[] readResource(String name) { return null; }
+  }
+  
+}